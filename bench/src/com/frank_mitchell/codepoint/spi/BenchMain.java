@@ -0,0 +1,111 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2023 Frank Mitchell.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.frank_mitchell.codepoint.spi;
+
+import java.util.Collection;
+import java.util.Locale;
+import java.util.regex.Pattern;
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Run benchmarks with the usual JMH command line, always adding the
+ * allocation profiler, then summarize each result as nanoseconds per
+ * code point and bytes allocated per operation.
+ *
+ * @author Frank Mitchell
+ */
+public final class BenchMain {
+
+    private static final Pattern SINK = Pattern.compile(".*(Sink|Writer)Bench\\..*");
+
+    private BenchMain() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        final Options cmdline = new CommandLineOptions(args);
+        final Options opts = new OptionsBuilder()
+                .parent(cmdline)
+                .addProfiler(GCProfiler.class)
+                .build();
+        final Collection<RunResult> results = new Runner(opts).run();
+
+        System.out.println();
+        System.out.printf("%-60s %-18s %10s %10s %12s%n",
+                "Benchmark", "Encoding", "Size", "ns/cp", "B/op");
+        for (RunResult r : results) {
+            summarize(r);
+        }
+    }
+
+    private static void summarize(RunResult r) {
+        final BenchmarkParams p = r.getParams();
+        final String encoding = p.getParam("encoding");
+        final String size = p.getParam("size");
+        final Result<?> primary = r.getPrimaryResult();
+        final double nsPerOp = primary.getScore()
+                * nanosPer(primary.getScoreUnit());
+
+        String nsPerCp = "";
+        if (encoding != null && size != null && encoding.indexOf(':') > 0) {
+            final int bytes = Integer.parseInt(size);
+            final long cps = SINK.matcher(p.getBenchmark()).matches()
+                    ? Corpus.sinkCodePoints(encoding, bytes)
+                    : Corpus.codePoints(encoding, bytes);
+            if (cps > 0) {
+                nsPerCp = String.format(Locale.ROOT, "%.3f", nsPerOp / cps);
+            }
+        }
+
+        final Result<?> alloc = r.getSecondaryResults().get("gc.alloc.rate.norm");
+        final String bytesPerOp = (alloc == null) ? ""
+                : String.format(Locale.ROOT, "%.1f", alloc.getScore());
+
+        System.out.printf(Locale.ROOT, "%-60s %-18s %10s %10s %12s%n",
+                p.getBenchmark(),
+                encoding == null ? "" : encoding,
+                size == null ? "" : size,
+                nsPerCp, bytesPerOp);
+    }
+
+    private static double nanosPer(String unit) {
+        // AverageTime units look like "ns/op", "us/op", ...
+        if (unit.startsWith("ns")) {
+            return 1.0;
+        } else if (unit.startsWith("us")) {
+            return 1.0e3;
+        } else if (unit.startsWith("ms")) {
+            return 1.0e6;
+        } else if (unit.startsWith("s")) {
+            return 1.0e9;
+        }
+        return Double.NaN;
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2023 Frank Mitchell.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.frank_mitchell.codepoint.spi;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Read all of a {@link ByteBuffer} through {@link ByteBufferSource}.
+ *
+ * @author Frank Mitchell
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g"})
+public class ByteBufferSourceBench {
+
+    @Param({"US-ASCII:ascii", "ISO-8859-1:ascii", "ISO-8859-1:latin",
+        "UTF-8:ascii", "UTF-8:latin", "UTF-8:cjk", "UTF-8:emoji",
+        "UTF-16:ascii", "UTF-16:cjk", "UTF-16:emoji"})
+    public String encoding;
+
+    @Param({"64", "4096", "1048576", "268435456"})
+    public int size;
+
+    private Charset _charset;
+    private ByteBuffer _bytes;
+
+    @Setup
+    public void setUp() {
+        _charset = Corpus.charset(encoding);
+        _bytes = ByteBuffer.wrap(Corpus.encode(encoding, size)).asReadOnlyBuffer();
+    }
+
+    @Benchmark
+    public long read() throws IOException {
+        long sum = 0;
+        try (ByteBufferSource src = new ByteBufferSource(_bytes.duplicate(), _charset)) {
+            while (src.hasNext()) {
+                src.next();
+                sum += src.getCodePoint();
+            }
+        }
+        return sum;
+    }
+}
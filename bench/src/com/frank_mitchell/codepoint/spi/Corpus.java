@@ -0,0 +1,218 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2023 Frank Mitchell.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.frank_mitchell.codepoint.spi;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Deterministic sample text for benchmarks.
+ * An "encoding" parameter has the form {@code charset:mix}, where
+ * {@code mix} is one of
+ * <dl>
+ * <dt>ascii</dt><dd>letters, digits and punctuation</dd>
+ * <dt>latin</dt><dd>mostly ASCII with a quarter Latin-1 accented letters</dd>
+ * <dt>cjk</dt><dd>mostly CJK ideographs with some ASCII</dd>
+ * <dt>emoji</dt><dd>ASCII, CJK, and emoji outside the BMP</dd>
+ * </dl>
+ *
+ * @author Frank Mitchell
+ */
+final class Corpus {
+
+    /**
+     * Code points in the block of text we repeat.
+     */
+    static final int BLOCK_LENGTH = 4096;
+
+    /**
+     * Largest block of code points a sink benchmark keeps in memory.
+     */
+    static final int SINK_BLOCK_BYTES = 1 << 20;
+
+    private static final String ASCII =
+            "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789.,;:!?'\"()-";
+    private static final String LATIN =
+            "\u00E0\u00E1\u00E2\u00E3\u00E4\u00E5\u00E6\u00E7\u00E8\u00E9\u00EA\u00EB\u00EC\u00ED\u00EE\u00EF\u00F1\u00F2"
+            + "\u00F3\u00F4\u00F5\u00F6\u00F8\u00F9\u00FA\u00FB\u00FC\u00FD\u00FF\u00DF\u00C0\u00C9\u00CE\u00D5\u00DC\u00C7\u00D1";
+
+    private Corpus() {
+    }
+
+    static Charset charset(String encoding) {
+        return Charset.forName(encoding.substring(0, encoding.indexOf(':')));
+    }
+
+    static String mix(String encoding) {
+        return encoding.substring(encoding.indexOf(':') + 1);
+    }
+
+    /**
+     * A block of sample text.
+     *
+     * @param mix the content mix
+     * @return about {@link #BLOCK_LENGTH} code points of text
+     */
+    static String block(String mix) {
+        final SplittableRandom rnd = new SplittableRandom(42);
+        final StringBuilder b = new StringBuilder();
+        int count = 0;
+        while (count < BLOCK_LENGTH) {
+            final int wordlen = 1 + rnd.nextInt(9);
+            for (int i = 0; i < wordlen; i++) {
+                b.appendCodePoint(pick(mix, rnd));
+            }
+            b.append(rnd.nextInt(12) == 0 ? '\n' : ' ');
+            count += wordlen + 1;
+        }
+        return b.toString();
+    }
+
+    private static int pick(String mix, SplittableRandom rnd) {
+        switch (mix) {
+            case "ascii":
+                return ASCII.charAt(rnd.nextInt(ASCII.length()));
+            case "latin":
+                return rnd.nextInt(4) == 0
+                        ? LATIN.charAt(rnd.nextInt(LATIN.length()))
+                        : ASCII.charAt(rnd.nextInt(ASCII.length()));
+            case "cjk":
+                return rnd.nextInt(10) == 0
+                        ? ASCII.charAt(rnd.nextInt(ASCII.length()))
+                        : 0x4E00 + rnd.nextInt(0x5000);
+            case "emoji":
+                final int r = rnd.nextInt(10);
+                if (r < 6) {
+                    return ASCII.charAt(rnd.nextInt(ASCII.length()));
+                } else if (r < 8) {
+                    return 0x4E00 + rnd.nextInt(0x5000);
+                } else {
+                    return 0x1F600 + rnd.nextInt(0x50);
+                }
+            default:
+                throw new IllegalArgumentException("Unknown content mix: " + mix);
+        }
+    }
+
+    /**
+     * Repeat sample text up to a number of bytes, ending on a character
+     * boundary.
+     *
+     * @param encoding charset and content mix
+     * @param size maximum number of bytes
+     * @return encoded text
+     */
+    static byte[] encode(String encoding, int size) {
+        final CharsetEncoder enc = charset(encoding).newEncoder();
+        final CharBuffer text = CharBuffer.wrap(block(mix(encoding)));
+        final ByteBuffer out = ByteBuffer.allocate(size);
+        while (true) {
+            final CoderResult r = enc.encode(text, out, false);
+            if (r.isOverflow()) {
+                break;
+            }
+            if (r.isError()) {
+                throw new IllegalArgumentException(encoding + ": " + r);
+            }
+            text.rewind();
+        }
+        return Arrays.copyOf(out.array(), out.position());
+    }
+
+    /**
+     * Decode encoded text into code points.
+     *
+     * @param encoding charset and content mix
+     * @param bytes text from {@link #encode(String, int)}
+     * @return the code points
+     */
+    static int[] decode(String encoding, byte[] bytes) {
+        return new String(bytes, charset(encoding)).codePoints().toArray();
+    }
+
+    /**
+     * Count the code points a source benchmark reads per operation.
+     *
+     * @param encoding charset and content mix
+     * @param size maximum number of bytes
+     * @return number of code points in {@link #encode(String, int)}
+     */
+    static long codePoints(String encoding, int size) {
+        final CharsetDecoder dec = charset(encoding).newDecoder();
+        final ByteBuffer in = ByteBuffer.wrap(encode(encoding, size));
+        final CharBuffer out = CharBuffer.allocate(8192);
+        long count = 0;
+        boolean done = false;
+        while (!done) {
+            final CoderResult r = dec.decode(in, out, true);
+            done = r.isUnderflow() && dec.flush(out).isUnderflow();
+            out.flip();
+            while (out.hasRemaining()) {
+                if (!Character.isLowSurrogate(out.get())) {
+                    count++;
+                }
+            }
+            out.clear();
+        }
+        return count;
+    }
+
+    /**
+     * The block of code points a sink benchmark writes repeatedly.
+     *
+     * @param encoding charset and content mix
+     * @param size total bytes to write per operation
+     * @return code points to write
+     */
+    static int[] sinkBlock(String encoding, int size) {
+        return decode(encoding, encode(encoding, Math.min(size, SINK_BLOCK_BYTES)));
+    }
+
+    /**
+     * How many times a sink benchmark writes {@link #sinkBlock}.
+     *
+     * @param size total bytes to write per operation
+     * @return number of repetitions
+     */
+    static int sinkRepeats(int size) {
+        return Math.max(1, size / Math.min(size, SINK_BLOCK_BYTES));
+    }
+
+    /**
+     * Count the code points a sink benchmark writes per operation.
+     *
+     * @param encoding charset and content mix
+     * @param size total bytes to write per operation
+     * @return number of code points written
+     */
+    static long sinkCodePoints(String encoding, int size) {
+        return (long) sinkBlock(encoding, size).length * sinkRepeats(size);
+    }
+}
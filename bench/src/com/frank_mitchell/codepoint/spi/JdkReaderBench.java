@@ -0,0 +1,111 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2023 Frank Mitchell.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.frank_mitchell.codepoint.spi;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Baseline: decode a stream with a plain {@link InputStreamReader}, one
+ * character at a time and in bulk, combining surrogates by hand.
+ *
+ * @author Frank Mitchell
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g"})
+public class JdkReaderBench {
+
+    @Param({"US-ASCII:ascii", "ISO-8859-1:ascii", "ISO-8859-1:latin",
+        "UTF-8:ascii", "UTF-8:latin", "UTF-8:cjk", "UTF-8:emoji",
+        "UTF-16:ascii", "UTF-16:cjk", "UTF-16:emoji"})
+    public String encoding;
+
+    @Param({"64", "4096", "1048576", "268435456"})
+    public int size;
+
+    private Charset _charset;
+    private byte[] _bytes;
+    private final char[] _chars = new char[8192];
+
+    @Setup
+    public void setUp() {
+        _charset = Corpus.charset(encoding);
+        _bytes = Corpus.encode(encoding, size);
+    }
+
+    @Benchmark
+    public long readChar() throws IOException {
+        long sum = 0;
+        try (Reader r = new InputStreamReader(new ByteArrayInputStream(_bytes), _charset)) {
+            for (int c = r.read(); c >= 0; c = r.read()) {
+                if (Character.isHighSurrogate((char) c)) {
+                    c = Character.toCodePoint((char) c, (char) r.read());
+                }
+                sum += c;
+            }
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public long readBulk() throws IOException {
+        long sum = 0;
+        try (Reader r = new InputStreamReader(new ByteArrayInputStream(_bytes), _charset)) {
+            int pending = -1;
+            for (int n = r.read(_chars); n >= 0; n = r.read(_chars)) {
+                for (int i = 0; i < n; i++) {
+                    final char c = _chars[i];
+                    if (pending >= 0) {
+                        sum += Character.toCodePoint((char) pending, c);
+                        pending = -1;
+                    } else if (Character.isHighSurrogate(c)) {
+                        pending = c;
+                    } else {
+                        sum += c;
+                    }
+                }
+            }
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2023 Frank Mitchell.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.frank_mitchell.codepoint.spi;
+
+/**
+ * Log-linear histogram of latencies in nanoseconds, accurate to about 6%.
+ * Recording never allocates; each thread keeps its own and
+ * {@link #add(LatencyHistogram)} merges them afterward.
+ *
+ * @author Frank Mitchell
+ */
+final class LatencyHistogram {
+
+    private static final int SUB_BITS = 4;
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+
+    private final long[] _counts = new long[64 * SUB_COUNT];
+    private long _total;
+
+    private static int bucket(long nanos) {
+        if (nanos < SUB_COUNT) {
+            return (int) Math.max(0, nanos);
+        }
+        final int exp = 63 - Long.numberOfLeadingZeros(nanos);
+        final int sub = (int) (nanos >>> (exp - SUB_BITS)) & (SUB_COUNT - 1);
+        return (exp - SUB_BITS + 1) * SUB_COUNT + sub;
+    }
+
+    private static long upperBound(int bucket) {
+        if (bucket < SUB_COUNT) {
+            return bucket;
+        }
+        final int exp = bucket / SUB_COUNT + SUB_BITS - 1;
+        final long sub = bucket % SUB_COUNT;
+        return ((SUB_COUNT + sub + 1) << (exp - SUB_BITS)) - 1;
+    }
+
+    void record(long nanos) {
+        _counts[bucket(nanos)]++;
+        _total++;
+    }
+
+    void add(LatencyHistogram other) {
+        for (int i = 0; i < _counts.length; i++) {
+            _counts[i] += other._counts[i];
+        }
+        _total += other._total;
+    }
+
+    long count() {
+        return _total;
+    }
+
+    /**
+     * Latency at a percentile.
+     *
+     * @param pct percentile between 0 and 100
+     * @return upper bound of the bucket holding that percentile
+     */
+    long percentile(double pct) {
+        if (_total == 0) {
+            return 0;
+        }
+        final long rank = (long) Math.ceil(_total * pct / 100.0);
+        long seen = 0;
+        for (int i = 0; i < _counts.length; i++) {
+            seen += _counts[i];
+            if (seen >= rank && _counts[i] > 0) {
+                return upperBound(i);
+            }
+        }
+        return upperBound(_counts.length - 1);
+    }
+}
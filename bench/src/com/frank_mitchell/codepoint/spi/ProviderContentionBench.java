@@ -0,0 +1,165 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2023 Frank Mitchell.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.frank_mitchell.codepoint.spi;
+
+import com.frank_mitchell.codepoint.CodePointSource;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@link Provider} lookups and {@code synchronized} source methods under
+ * contention.
+ * JMH runs one thread by default; choose the thread count on the command
+ * line, e.g. {@code ProviderContention -t 16}, or run {@link ScalingBench}
+ * to sweep from 1 to 64 threads.
+ * Sample time mode reports p99 latency, throughput mode operations per
+ * microsecond.
+ *
+ * @author Frank Mitchell
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g"})
+public class ProviderContentionBench {
+
+    private static final Charset[] CHARSETS = {
+        StandardCharsets.US_ASCII,
+        StandardCharsets.ISO_8859_1,
+        StandardCharsets.UTF_8,
+        StandardCharsets.UTF_16
+    };
+
+    @State(Scope.Benchmark)
+    public static class Shared {
+
+        /**
+         * Number of distinct types {@link #lookupChurn} cycles through.
+         */
+        @Param({"4096"})
+        public int types;
+
+        private final InputStream _stream = new ByteArrayInputStream(new byte[0]);
+        private final String _text = Corpus.block("emoji");
+        private final AtomicReference<CodePointSource> _source = new AtomicReference<>();
+        private TypeChurn _churn;
+        private Provider _provider;
+
+        @Setup(Level.Trial)
+        public void loadTypes() throws IOException {
+            _churn = new TypeChurn(types);
+        }
+
+        /**
+         * A new provider for every iteration, so each one starts by
+         * resolving every churned type.
+         */
+        @Setup(Level.Iteration)
+        public void newProvider() {
+            _provider = new Provider();
+            _source.set(new CharSequenceSource(_text));
+        }
+
+        CodePointSource sharedSource() {
+            return _source.get();
+        }
+
+        void replaceSource(CodePointSource old) {
+            _source.compareAndSet(old, new CharSequenceSource(_text));
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+
+        private int _next;
+        private CodePointSource _source;
+
+        @Setup(Level.Iteration)
+        public void reset(Shared shared) {
+            // Spread threads across types and charsets
+            _next = (int) (Thread.currentThread().getId() * 7919);
+            _source = new CharSequenceSource(shared._text);
+        }
+
+        int next() {
+            return _next++ & Integer.MAX_VALUE;
+        }
+    }
+
+    @Benchmark
+    public CodePointSource lookupFixed(Shared s, Cursor c) throws IOException {
+        final Charset cs = CHARSETS[c.next() % CHARSETS.length];
+        return s._provider.getSource(InputStream.class, s._stream, cs);
+    }
+
+    @Benchmark
+    public CodePointSource lookupChurn(Shared s, Cursor c) throws IOException {
+        final int i = c.next();
+        return s._churn.getSource(s._provider, i % s._churn.size(),
+                CHARSETS[i % CHARSETS.length]);
+    }
+
+    @Benchmark
+    public int sharedSourceRead(Shared s) throws IOException {
+        final CodePointSource src = s.sharedSource();
+        synchronized (src) {
+            // hasNext() and next() lock separately; hold the lock so another
+            // thread can't drain the source in between.
+            if (src.hasNext()) {
+                src.next();
+                return src.getCodePoint();
+            }
+        }
+        s.replaceSource(src);
+        return -1;
+    }
+
+    @Benchmark
+    public int privateSourceRead(Shared s, Cursor c) throws IOException {
+        if (!c._source.hasNext()) {
+            c._source = new CharSequenceSource(s._text);
+        }
+        c._source.next();
+        return c._source.getCodePoint();
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2023 Frank Mitchell.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.frank_mitchell.codepoint.spi;
+
+import com.frank_mitchell.codepoint.CodePointSink;
+import com.frank_mitchell.codepoint.CodePointSource;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of asking a {@link Provider} for a source or sink, compared with
+ * constructing a {@link ReaderSource} or {@link WriterSink} directly.
+ * Neither reads or writes anything.
+ *
+ * @author Frank Mitchell
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g"})
+public class ProviderLookupBench {
+
+    @Param({"US-ASCII", "UTF-8", "UTF-16"})
+    public String charset;
+
+    private final Provider _provider = new Provider();
+    private final byte[] _bytes = "x".getBytes(StandardCharsets.US_ASCII);
+    private Charset _charset;
+
+    @Setup
+    public void setUp() {
+        _charset = Charset.forName(charset);
+    }
+
+    @Benchmark
+    public CodePointSource providerSource() throws IOException {
+        return _provider.getSource(InputStream.class,
+                new ByteArrayInputStream(_bytes), _charset);
+    }
+
+    @Benchmark
+    public CodePointSource directSource() throws IOException {
+        return new ReaderSource(new ByteArrayInputStream(_bytes), _charset);
+    }
+
+    @Benchmark
+    public CodePointSink providerSink() throws IOException {
+        return _provider.getSink(OutputStream.class,
+                OutputStream.nullOutputStream(), _charset);
+    }
+
+    @Benchmark
+    public CodePointSink directSink() {
+        return new WriterSink(OutputStream.nullOutputStream(), _charset);
+    }
+}
@@ -0,0 +1,266 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2023 Frank Mitchell.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.frank_mitchell.codepoint.spi;
+
+import com.frank_mitchell.codepoint.CodePointSource;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Sweep thread counts for {@link Provider} lookups and shared sources, on
+ * platform threads and (where the JVM has them) virtual threads, and
+ * print throughput and latency percentiles for each.
+ * <p>
+ * JMH runs a fixed number of platform threads per benchmark, so this is a
+ * plain harness instead.  Options, all optional:
+ * <dl>
+ * <dt>{@code --threads 1,2,4,8,16,32,64}</dt><dd>thread counts</dd>
+ * <dt>{@code --workloads fixed,churn,shared,private}</dt><dd>what each thread does</dd>
+ * <dt>{@code --kinds platform,virtual}</dt><dd>kinds of threads</dd>
+ * <dt>{@code --types 4096}</dt><dd>distinct types for the churn workload</dd>
+ * <dt>{@code --warmup 2} {@code --seconds 5}</dt><dd>duration of each phase</dd>
+ * </dl>
+ *
+ * @author Frank Mitchell
+ */
+public final class ScalingBench {
+
+    private static final Charset[] CHARSETS = {
+        StandardCharsets.US_ASCII,
+        StandardCharsets.ISO_8859_1,
+        StandardCharsets.UTF_8,
+        StandardCharsets.UTF_16
+    };
+
+    /**
+     * One operation, performed repeatedly by each thread.
+     */
+    private interface Workload {
+        Object run(int step) throws IOException;
+    }
+
+    private final Map<String, String> _options;
+    private final String _text = Corpus.block("emoji");
+    private TypeChurn _churn;
+
+    private ScalingBench(Map<String, String> options) {
+        _options = options;
+    }
+
+    public static void main(String[] args) throws Exception {
+        final Map<String, String> options = new LinkedHashMap<>();
+        options.put("threads", "1,2,4,8,16,32,64");
+        options.put("workloads", "fixed,churn,shared,private");
+        options.put("kinds", "platform,virtual");
+        options.put("types", "4096");
+        options.put("warmup", "2");
+        options.put("seconds", "5");
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            if (!args[i].startsWith("--") || !options.containsKey(args[i].substring(2))) {
+                throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+            options.put(args[i].substring(2), args[i + 1]);
+        }
+        new ScalingBench(options).run(System.out);
+    }
+
+    private List<String> list(String key) {
+        return Arrays.asList(_options.get(key).split(","));
+    }
+
+    private long millis(String key) {
+        return (long) (Double.parseDouble(_options.get(key)) * 1000);
+    }
+
+    private void run(PrintStream out) throws Exception {
+        out.printf("%-8s %-8s %7s %14s %10s %10s %10s%n",
+                "Kind", "Workload", "Threads", "ops/s", "p50 ns", "p99 ns", "p99.9 ns");
+        for (String kind : list("kinds")) {
+            final ThreadFactory factory = threadFactory(kind);
+            if (factory == null) {
+                out.println("# " + kind + " threads not available in this JVM");
+                continue;
+            }
+            for (String workload : list("workloads")) {
+                for (String n : list("threads")) {
+                    final int threads = Integer.parseInt(n.trim());
+                    final Result r = measure(factory, threads, workload);
+                    out.printf(Locale.ROOT, "%-8s %-8s %7d %14.0f %10d %10d %10d%n",
+                            kind, workload, threads, r.opsPerSecond,
+                            r.latency.percentile(50), r.latency.percentile(99),
+                            r.latency.percentile(99.9));
+                }
+            }
+        }
+    }
+
+    private static ThreadFactory threadFactory(String kind) {
+        switch (kind) {
+            case "platform":
+                return Thread::new;
+            case "virtual":
+                // Thread.ofVirtual() arrived in Java 21; we build for 11.
+                try {
+                    final Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+                    return (ThreadFactory) Class.forName("java.lang.Thread$Builder")
+                            .getMethod("factory").invoke(builder);
+                } catch (ReflectiveOperationException | UnsupportedOperationException e) {
+                    return null;
+                }
+            default:
+                throw new IllegalArgumentException("Unknown thread kind " + kind);
+        }
+    }
+
+    /**
+     * Set up a workload with a new {@link Provider}, so every measurement
+     * starts with an empty cache.
+     */
+    private Workload workload(String name) throws IOException {
+        final Provider provider = new Provider();
+        switch (name) {
+            case "fixed": {
+                final InputStream stream = new ByteArrayInputStream(new byte[0]);
+                return step -> provider.getSource(InputStream.class, stream,
+                        CHARSETS[step % CHARSETS.length]);
+            }
+            case "churn": {
+                if (_churn == null) {
+                    _churn = new TypeChurn(Integer.parseInt(_options.get("types")));
+                }
+                final TypeChurn churn = _churn;
+                return step -> churn.getSource(provider, step % churn.size(),
+                        CHARSETS[step % CHARSETS.length]);
+            }
+            case "shared": {
+                final AtomicReference<CodePointSource> shared =
+                        new AtomicReference<>(new CharSequenceSource(_text));
+                return step -> {
+                    final CodePointSource src = shared.get();
+                    synchronized (src) {
+                        if (src.hasNext()) {
+                            src.next();
+                            return src.getCodePoint();
+                        }
+                    }
+                    shared.compareAndSet(src, new CharSequenceSource(_text));
+                    return -1;
+                };
+            }
+            case "private": {
+                final ThreadLocal<CodePointSource> mine = new ThreadLocal<>();
+                return step -> {
+                    CodePointSource src = mine.get();
+                    if (src == null || !src.hasNext()) {
+                        src = new CharSequenceSource(_text);
+                        mine.set(src);
+                    }
+                    src.next();
+                    return src.getCodePoint();
+                };
+            }
+            default:
+                throw new IllegalArgumentException("Unknown workload " + name);
+        }
+    }
+
+    private static final class Result {
+        double opsPerSecond;
+        final LatencyHistogram latency = new LatencyHistogram();
+    }
+
+    private static final int WARMUP = 0;
+    private static final int MEASURE = 1;
+    private static final int STOP = 2;
+
+    private volatile int _phase;
+    private volatile Object _sink;
+
+    private Result measure(ThreadFactory factory, int threads, String name) throws Exception {
+        final Workload work = workload(name);
+        final CountDownLatch ready = new CountDownLatch(threads);
+        final CountDownLatch done = new CountDownLatch(threads);
+        final LatencyHistogram[] histograms = new LatencyHistogram[threads];
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        _phase = WARMUP;
+        for (int t = 0; t < threads; t++) {
+            final LatencyHistogram h = new LatencyHistogram();
+            final int offset = t * 7919;
+            histograms[t] = h;
+            final Thread thread = factory.newThread(() -> {
+                ready.countDown();
+                try {
+                    int step = offset;
+                    int phase;
+                    Object last = null;
+                    while ((phase = _phase) != STOP) {
+                        final long start = System.nanoTime();
+                        last = work.run(step++ & Integer.MAX_VALUE);
+                        final long elapsed = System.nanoTime() - start;
+                        if (phase == MEASURE) {
+                            h.record(elapsed);
+                        }
+                    }
+                    _sink = last;
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                } finally {
+                    done.countDown();
+                }
+            });
+            thread.start();
+        }
+        ready.await();
+        Thread.sleep(millis("warmup"));
+        final long begin = System.nanoTime();
+        _phase = MEASURE;
+        Thread.sleep(millis("seconds"));
+        _phase = STOP;
+        final long end = System.nanoTime();
+        done.await();
+        if (failure.get() != null) {
+            throw new IllegalStateException(name + " failed", failure.get());
+        }
+
+        final Result r = new Result();
+        for (LatencyHistogram h : histograms) {
+            r.latency.add(h);
+        }
+        r.opsPerSecond = r.latency.count() * 1.0e9 / (end - begin);
+        return r;
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2023 Frank Mitchell.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.frank_mitchell.codepoint.spi;
+
+import com.frank_mitchell.codepoint.CodePointSource;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Many distinct {@link InputStream} types with the same behavior.
+ * Each copy of {@link ChurnStream} lives in its own class loader, the way
+ * a plugin or web application would load its own classes.
+ *
+ * @author Frank Mitchell
+ */
+final class TypeChurn {
+
+    private final List<Class<? extends InputStream>> _types;
+    private final List<InputStream> _streams;
+
+    /**
+     * Load copies of {@link ChurnStream}.
+     *
+     * @param count number of copies
+     * @throws IOException if the class file could not be read
+     */
+    TypeChurn(int count) throws IOException {
+        final byte[] code = classBytes(ChurnStream.class);
+        final List<Class<? extends InputStream>> types = new ArrayList<>(count);
+        final List<InputStream> streams = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            final CopyLoader loader = new CopyLoader(ChurnStream.class.getClassLoader());
+            final Class<? extends InputStream> type =
+                    loader.define(ChurnStream.class.getName(), code).asSubclass(InputStream.class);
+            types.add(type);
+            streams.add(newInstance(type));
+        }
+        _types = Collections.unmodifiableList(types);
+        _streams = Collections.unmodifiableList(streams);
+    }
+
+    private static InputStream newInstance(Class<? extends InputStream> type) {
+        try {
+            return type.getConstructor(byte[].class).newInstance((Object) new byte[0]);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static byte[] classBytes(Class<?> c) throws IOException {
+        final String name = c.getName().replace('.', '/') + ".class";
+        try (InputStream in = c.getClassLoader().getResourceAsStream(name)) {
+            if (in == null) {
+                throw new IOException("Cannot find " + name);
+            }
+            return in.readAllBytes();
+        }
+    }
+
+    int size() {
+        return _types.size();
+    }
+
+    Class<? extends InputStream> get(int i) {
+        return _types.get(i);
+    }
+
+    /**
+     * Ask a provider for a source wrapping an (empty) instance of one of
+     * the types.
+     * Nothing is read, so the same instance serves every call.
+     *
+     * @param p the provider
+     * @param i the type's index
+     * @param cs the charset
+     * @return a new source
+     * @throws IOException if the provider could not create a source
+     */
+    CodePointSource getSource(Provider p, int i, Charset cs) throws IOException {
+        return getSource(p, _types.get(i), _streams.get(i), cs);
+    }
+
+    private static <T extends InputStream> CodePointSource getSource(
+            Provider p, Class<T> type, InputStream in, Charset cs) throws IOException {
+        return p.getSource(type, type.cast(in), cs);
+    }
+
+    private static final class CopyLoader extends ClassLoader {
+
+        CopyLoader(ClassLoader parent) {
+            super(parent);
+        }
+
+        Class<?> define(String name, byte[] code) {
+            return defineClass(name, code, 0, code.length);
+        }
+    }
+}
@@ -0,0 +1,230 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2023 Frank Mitchell.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.frank_mitchell.codepoint;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Unicode case folding, for comparing text without regard to case.
+ * {@link #SIMPLE} folding maps every code point to one code point;
+ * {@link #FULL} folding may map one to as many as
+ * {@link #MAX_EXPANSION}, e.g. U+00DF "&szlig;" to "ss".
+ * Neither applies the Turkic rules for dotted and dotless I.
+ * <p>
+ * ASCII folds without a table lookup or a branch.
+ * Everything else goes through a two-level table built from the JDK's
+ * case mappings the first time each kind of folding is used; only pages
+ * that fold something take any space.
+ *
+ * @author Frank Mitchell
+ * @see CaseFoldingSource
+ * @see CaseFoldingSink
+ */
+public enum CaseFolding {
+
+    /**
+     * Fold each code point to exactly one code point.
+     */
+    SIMPLE,
+
+    /**
+     * Fold each code point to one or more code points.
+     */
+    FULL;
+
+    /**
+     * Most code points {@link #FULL} folding maps one code point to.
+     */
+    public static final int MAX_EXPANSION = 3;
+
+    /**
+     * Fold one code point.
+     * For {@link #FULL} folding of a code point that folds to several,
+     * this returns the first of them.
+     *
+     * @param cp a code point
+     * @return its folded form
+     */
+    public int fold(int cp) {
+        if (cp < 0x80) {
+            return foldAscii(cp);
+        }
+        final int entry = table().get(cp);
+        if (entry == 0) {
+            return cp;
+        }
+        return (entry > 0) ? entry - 1 : table().expansion(entry)[0];
+    }
+
+    /**
+     * Fold one code point into an array.
+     *
+     * @param cp a code point
+     * @param dest where to put the folded code points, which must have room
+     *      for {@link #MAX_EXPANSION} from {@code off}
+     * @param off where in {@code dest} to start
+     * @return the number of code points written
+     */
+    public int fold(int cp, int[] dest, int off) {
+        if (cp < 0x80) {
+            dest[off] = foldAscii(cp);
+            return 1;
+        }
+        final int entry = table().get(cp);
+        if (entry >= 0) {
+            dest[off] = (entry == 0) ? cp : entry - 1;
+            return 1;
+        }
+        final int[] exp = table().expansion(entry);
+        System.arraycopy(exp, 0, dest, off, exp.length);
+        return exp.length;
+    }
+
+    /**
+     * Fold a string.
+     *
+     * @param s a string
+     * @return its folded form
+     */
+    public String fold(CharSequence s) {
+        final StringBuilder b = new StringBuilder(s.length());
+        final int[] buf = new int[MAX_EXPANSION];
+        for (int i = 0; i < s.length(); ) {
+            final int cp = Character.codePointAt(s, i);
+            final int n = fold(cp, buf, 0);
+            for (int j = 0; j < n; j++) {
+                b.appendCodePoint(buf[j]);
+            }
+            i += Character.charCount(cp);
+        }
+        return b.toString();
+    }
+
+    /**
+     * Fold an ASCII code point.
+     *
+     * @param cp a code point below 0x80
+     * @return {@code cp} in lower case
+     */
+    static int foldAscii(int cp) {
+        // d | (25 - d) is negative unless 0 <= d <= 25
+        final int d = cp - 'A';
+        return cp + ((((d | (25 - d)) >>> 31) ^ 1) << 5);
+    }
+
+    private Table table() {
+        return (this == FULL) ? FullTable.TABLE : SimpleTable.TABLE;
+    }
+
+    private static final class SimpleTable {
+        static final Table TABLE = new Table(false);
+    }
+
+    private static final class FullTable {
+        static final Table TABLE = new Table(true);
+    }
+
+    /**
+     * Folds for every code point, in pages of 256.
+     * An entry is 0 if the code point folds to itself, the folded code
+     * point plus 1, or the complement of an index into the expansions.
+     */
+    private static final class Table {
+
+        private final int[][] _pages = new int[(Character.MAX_CODE_POINT + 1) >>> 8][];
+        private final int[][] _expansions;
+
+        Table(boolean full) {
+            final List<int[]> expansions = new ArrayList<>();
+            for (int cp = 0x80; cp <= Character.MAX_CODE_POINT; cp++) {
+                final int[] folded = full ? fullFold(cp) : new int[] {simpleFold(cp)};
+                final int entry;
+                if (folded.length > 1) {
+                    entry = ~expansions.size();
+                    expansions.add(folded);
+                } else if (folded[0] != cp) {
+                    entry = folded[0] + 1;
+                } else {
+                    continue;
+                }
+                int[] page = _pages[cp >>> 8];
+                if (page == null) {
+                    page = new int[256];
+                    _pages[cp >>> 8] = page;
+                }
+                page[cp & 0xFF] = entry;
+            }
+            _expansions = expansions.toArray(new int[0][]);
+        }
+
+        int get(int cp) {
+            final int[] page = _pages[cp >>> 8];
+            return (page == null) ? 0 : page[cp & 0xFF];
+        }
+
+        int[] expansion(int entry) {
+            return _expansions[~entry];
+        }
+
+        /**
+         * Lower case of upper case is simple case folding, except that
+         * Cherokee folds to upper case and dotted and dotless I don't
+         * fold at all.
+         */
+        private static int simpleFold(int cp) {
+            if (cp == 0x130 || cp == 0x131 || (cp >= 0x13A0 && cp <= 0x13F5)) {
+                return cp;
+            } else if (cp >= 0x13F8 && cp <= 0x13FD) {
+                return cp - 8;
+            } else if (cp >= 0xAB70 && cp <= 0xABBF) {
+                return cp - 0xAB70 + 0x13A0;
+            }
+            return Character.toLowerCase(Character.toUpperCase(cp));
+        }
+
+        /**
+         * Full case folding comes from the JDK's full case mappings, which
+         * only cased letters have.
+         */
+        private static int[] fullFold(int cp) {
+            switch (Character.getType(cp)) {
+                case Character.UPPERCASE_LETTER:
+                case Character.LOWERCASE_LETTER:
+                case Character.TITLECASE_LETTER:
+                    final String s = new String(Character.toChars(cp))
+                            .toUpperCase(Locale.ROOT).toLowerCase(Locale.ROOT);
+                    if (s.codePointCount(0, s.length()) > 1) {
+                        return s.codePoints().toArray();
+                    }
+                    final int simple = simpleFold(cp);
+                    // e.g. U+1E9E folds to U+00DF, which folds to "ss"
+                    return (simple != cp) ? fullFold(simple) : new int[] {cp};
+                default:
+                    return new int[] {simpleFold(cp)};
+            }
+        }
+    }
+}
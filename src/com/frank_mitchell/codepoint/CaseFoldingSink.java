@@ -0,0 +1,121 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2023 Frank Mitchell.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.frank_mitchell.codepoint;
+
+import java.io.IOException;
+import java.util.Objects;
+
+/**
+ * Writes code points to another sink with their case folded.
+ * Blocks written with {@link #putCodePoints(int[], int, int)} are folded
+ * and passed on a block at a time.
+ *
+ * @author Frank Mitchell
+ */
+public final class CaseFoldingSink implements CodePointSink {
+
+    private static final int BLOCK = 1024;
+
+    private final CodePointSink _sink;
+    private final CaseFolding _folding;
+    private final int[] _out = new int[BLOCK * CaseFolding.MAX_EXPANSION];
+
+    /**
+     * Fold the case of what goes into another sink.
+     *
+     * @param sink the sink
+     * @param folding simple or full folding
+     */
+    public CaseFoldingSink(CodePointSink sink, CaseFolding folding) {
+        _sink = Objects.requireNonNull(sink);
+        _folding = Objects.requireNonNull(folding);
+    }
+
+    private Object getLock() {
+        return this;
+    }
+
+    /**
+     * How this sink folds case.
+     *
+     * @return simple or full folding
+     */
+    public CaseFolding getFolding() {
+        return _folding;
+    }
+
+    @Override
+    public EncodingPolicy getEncodingPolicy() {
+        return _sink.getEncodingPolicy();
+    }
+
+    @Override
+    public void setEncodingPolicy(EncodingPolicy policy) {
+        _sink.setEncodingPolicy(policy);
+    }
+
+    @Override
+    public void putCodePoint(int cp) throws IOException {
+        synchronized (getLock()) {
+            if (cp < 0x80) {
+                _sink.putCodePoint(CaseFolding.foldAscii(cp));
+            } else {
+                final int n = _folding.fold(cp, _out, 0);
+                for (int i = 0; i < n; i++) {
+                    _sink.putCodePoint(_out[i]);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void putCodePoints(int[] cps, int off, int len) throws IOException {
+        Objects.checkFromIndexSize(off, len, cps.length);
+        synchronized (getLock()) {
+            for (int start = off; start < off + len; start += BLOCK) {
+                final int end = Math.min(start + BLOCK, off + len);
+                int n = 0;
+                for (int i = start; i < end; i++) {
+                    final int cp = cps[i];
+                    if (cp < 0x80) {
+                        _out[n++] = CaseFolding.foldAscii(cp);
+                    } else {
+                        n += _folding.fold(cp, _out, n);
+                    }
+                }
+                _sink.putCodePoints(_out, 0, n);
+            }
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        _sink.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        _sink.close();
+    }
+}
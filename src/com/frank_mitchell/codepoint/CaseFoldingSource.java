@@ -0,0 +1,155 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2023 Frank Mitchell.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.frank_mitchell.codepoint;
+
+import java.io.IOException;
+import java.util.Objects;
+
+/**
+ * Reads code points from another source with their case folded.
+ * Code points are read and folded a block at a time.
+ *
+ * @author Frank Mitchell
+ */
+public final class CaseFoldingSource implements CodePointSource {
+
+    private static final int BLOCK = 1024;
+
+    private final CodePointSource _source;
+    private final CaseFolding _folding;
+    private final int[] _in = new int[BLOCK];
+    private final int[] _out = new int[BLOCK * CaseFolding.MAX_EXPANSION];
+    private int _outPos;
+    private int _outLen;
+    private int _current = -1;
+
+    /**
+     * Fold the case of what another source reads.
+     *
+     * @param source the source
+     * @param folding simple or full folding
+     */
+    public CaseFoldingSource(CodePointSource source, CaseFolding folding) {
+        _source = Objects.requireNonNull(source);
+        _folding = Objects.requireNonNull(folding);
+    }
+
+    private Object getLock() {
+        return this;
+    }
+
+    /**
+     * How this source folds case.
+     *
+     * @return simple or full folding
+     */
+    public CaseFolding getFolding() {
+        return _folding;
+    }
+
+    @Override
+    public DecodingPolicy getDecodingPolicy() {
+        return _source.getDecodingPolicy();
+    }
+
+    @Override
+    public void setDecodingPolicy(DecodingPolicy policy) {
+        _source.setDecodingPolicy(policy);
+    }
+
+    @Override
+    public int getCodePoint() {
+        synchronized (getLock()) {
+            if (_current < 0) {
+                throw new IllegalStateException("have not called next() yet");
+            }
+            return _current;
+        }
+    }
+
+    @Override
+    public boolean hasNext() throws IOException {
+        synchronized (getLock()) {
+            return _outPos < _outLen || fill();
+        }
+    }
+
+    @Override
+    public void next() throws IOException {
+        synchronized (getLock()) {
+            if (_outPos < _outLen || fill()) {
+                _current = _out[_outPos++];
+            } else {
+                _current = -1;
+            }
+        }
+    }
+
+    @Override
+    public int read(int[] cps, int off, int len) throws IOException {
+        Objects.checkFromIndexSize(off, len, cps.length);
+        if (len == 0) {
+            return 0;
+        }
+        synchronized (getLock()) {
+            int n = 0;
+            while (n < len && (_outPos < _outLen || fill())) {
+                final int count = Math.min(len - n, _outLen - _outPos);
+                System.arraycopy(_out, _outPos, cps, off + n, count);
+                _outPos += count;
+                n += count;
+            }
+            if (n == 0) {
+                return -1;
+            }
+            _current = cps[off + n - 1];
+            return n;
+        }
+    }
+
+    /**
+     * Read and fold the next block.
+     *
+     * @return whether there was anything to read
+     */
+    private boolean fill() throws IOException {
+        final int n = _source.read(_in, 0, _in.length);
+        _outPos = 0;
+        _outLen = 0;
+        for (int i = 0; i < n; i++) {
+            final int cp = _in[i];
+            if (cp < 0x80) {
+                _out[_outLen++] = CaseFolding.foldAscii(cp);
+            } else {
+                _outLen += _folding.fold(cp, _out, _outLen);
+            }
+        }
+        return _outLen > 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        _source.close();
+    }
+}
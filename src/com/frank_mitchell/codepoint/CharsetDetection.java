@@ -0,0 +1,91 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2023 Frank Mitchell.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.frank_mitchell.codepoint;
+
+import java.nio.charset.Charset;
+import java.util.Objects;
+
+/**
+ * The charset a {@link DetectingSource} decided its input was in, and how
+ * sure it was.
+ *
+ * @author Frank Mitchell
+ */
+public final class CharsetDetection {
+
+    private final Charset _charset;
+    private final double _confidence;
+    private final boolean _bom;
+
+    /**
+     * Record a detection.
+     *
+     * @param cs the charset
+     * @param confidence from 0 (a pure guess) to 1 (certain)
+     * @param bom whether a byte order mark gave the charset away
+     */
+    public CharsetDetection(Charset cs, double confidence, boolean bom) {
+        if (!(confidence >= 0.0 && confidence <= 1.0)) {
+            throw new IllegalArgumentException("confidence " + confidence + " not in [0, 1]");
+        }
+        _charset = Objects.requireNonNull(cs);
+        _confidence = confidence;
+        _bom = bom;
+    }
+
+    /**
+     * The charset of the input.
+     *
+     * @return the charset
+     */
+    public Charset getCharset() {
+        return _charset;
+    }
+
+    /**
+     * How sure the source is about {@link #getCharset()}.
+     * A byte order mark gives 1.0; input too short or too plain to tell
+     * anything from gives close to 0.
+     *
+     * @return a number from 0 to 1
+     */
+    public double getConfidence() {
+        return _confidence;
+    }
+
+    /**
+     * Whether the input began with a byte order mark.
+     * The source skips it.
+     *
+     * @return whether there was a byte order mark
+     */
+    public boolean hasByteOrderMark() {
+        return _bom;
+    }
+
+    @Override
+    public String toString() {
+        return _charset.name() + " (" + _confidence + (_bom ? ", BOM)" : ")");
+    }
+}
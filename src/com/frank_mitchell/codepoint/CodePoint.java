@@ -25,6 +25,8 @@ import com.frank_mitchell.codepoint.spi.Provider;
 import java.io.IOException;
 import java.nio.charset.Charset;
 import java.util.Objects;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
 
 /**
  * Wraps an input or output object with an instance of {@link CodePointSource} 
@@ -38,14 +40,30 @@ import java.util.Objects;
  */
 public class CodePoint {
 
-    /*
-     * Should load as service, but ...
-     */
-    private static final CodePointProvider PROVIDER = new Provider();
+    private static final CodePointProvider PROVIDER = loadProvider();
 
     private CodePoint() {
     }
 
+    /**
+     * Find a {@link CodePointProvider} service, preferring one other than
+     * our default {@link Provider}.
+     *
+     * @return the first non-default provider, or a new {@link Provider}
+     */
+    private static CodePointProvider loadProvider() {
+        try {
+            for (CodePointProvider p : ServiceLoader.load(CodePointProvider.class, CodePoint.class.getClassLoader())) {
+                if (!(p instanceof Provider)) {
+                    return p;
+                }
+            }
+        } catch (ServiceConfigurationError e) {
+            // Fall back to the default.
+        }
+        return new Provider();
+    }
+
     @SuppressWarnings("unchecked")
     private static <T> Class<T> getClassFor(T obj) {
         // Not sure how to tell the compiler that the class of T is Class<T>.
@@ -79,6 +97,46 @@ public class CodePoint {
         return PROVIDER.getSource(clz, in, cs);
     }
 
+    /**
+     * Wrap an input object of unknown charset with a
+     * {@link DetectingSource}.
+     * @param <T> The type of in
+     * @param in an object providing a stream of bytes
+     * @return a DetectingSource wrapping {@code in}
+     * @throws IOException if reading in caused an exception
+     */
+    public static <T> DetectingSource getDetectingSource(T in) throws IOException {
+        Objects.requireNonNull(in, "No DetectingSource for null");
+        return PROVIDER.getDetectingSource(getClassFor(in), in);
+    }
+
+    /**
+     * Copy every remaining code point from a source to a sink, without
+     * flushing or closing either.
+     * When both come from the same provider it may skip decoding and
+     * encoding; e.g. a UTF-8 stream copied to a UTF-8 stream is only
+     * checked, then copied byte for byte.
+     * @param in the source
+     * @param out the sink
+     * @return the number of code points copied
+     * @throws IOException if reading or writing caused an exception
+     */
+    public static long transfer(CodePointSource in, CodePointSink out) throws IOException {
+        Objects.requireNonNull(in, "No source");
+        Objects.requireNonNull(out, "No sink");
+        return PROVIDER.transfer(in, out);
+    }
+
+    /**
+     * Start a pipeline of stages over a source.
+     * @param in the source
+     * @return a pipe with no stages yet
+     * @see CodePointPipe
+     */
+    public static CodePointPipe pipe(CodePointSource in) {
+        return new CodePointPipe(in);
+    }
+
     /**
      * Wrap an output object with a {@link CodePointSink}.
      * @param <T> The type of out
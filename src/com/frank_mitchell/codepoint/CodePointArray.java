@@ -0,0 +1,363 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2023 Frank Mitchell.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.frank_mitchell.codepoint;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * A growable array of code points, one element per code point, that
+ * stores them as narrowly as it can.
+ * Like the JDK's compact strings it starts with a {@code byte[]} for
+ * Latin-1, widening to a {@code char[]} for the rest of the BMP and to an
+ * {@code int[]} for supplementary code points, but only once a code point
+ * needs it.
+ * Any index can be read in constant time.
+ * <p>
+ * Write to it as a {@link CodePointSink}, and read it with any number of
+ * independent cursors from {@link #getSource(int)}.
+ * Cursors see code points appended after they were created.
+ *
+ * @author Frank Mitchell
+ */
+public final class CodePointArray implements CodePointSink {
+
+    private byte[] _bytes;
+    private char[] _chars;
+    private int[] _ints;
+    private int _width = 1;
+    private int _length;
+
+    /**
+     * Reads an array from some index onward.
+     */
+    private final class Cursor implements CodePointSource {
+
+        private int _pos;
+        private int _current = -1;
+
+        Cursor(int start) {
+            _pos = start;
+        }
+
+        @Override
+        public int getCodePoint() {
+            synchronized (getLock()) {
+                if (_current < 0) {
+                    throw new IllegalStateException("have not called next() yet");
+                }
+                return _current;
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            synchronized (getLock()) {
+                return _pos < _length;
+            }
+        }
+
+        @Override
+        public void next() {
+            synchronized (getLock()) {
+                _current = (_pos < _length) ? get(_pos++) : -1;
+            }
+        }
+
+        @Override
+        public int read(int[] cps, int off, int len) {
+            Objects.checkFromIndexSize(off, len, cps.length);
+            if (len == 0) {
+                return 0;
+            }
+            synchronized (getLock()) {
+                final int n = Math.min(len, _length - _pos);
+                if (n <= 0) {
+                    return -1;
+                }
+                copy(_pos, cps, off, n);
+                _pos += n;
+                _current = cps[off + n - 1];
+                return n;
+            }
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    /**
+     * Create an empty array.
+     */
+    public CodePointArray() {
+        this(16);
+    }
+
+    /**
+     * Create an empty array with room for some code points.
+     *
+     * @param capacity how many code points to hold before growing
+     */
+    public CodePointArray(int capacity) {
+        _bytes = new byte[Math.max(capacity, 1)];
+    }
+
+    private Object getLock() {
+        return this;
+    }
+
+    private static int widthOf(int cp) {
+        return (cp >= 0 && cp <= 0xFF) ? 1 : (cp >= 0 && cp <= 0xFFFF) ? 2 : 4;
+    }
+
+    /**
+     * The number of code points.
+     *
+     * @return the length
+     */
+    public int length() {
+        synchronized (getLock()) {
+            return _length;
+        }
+    }
+
+    /**
+     * How many bytes each code point takes now.
+     *
+     * @return 1 for Latin-1, 2 for the BMP, or 4
+     */
+    public int getWidth() {
+        synchronized (getLock()) {
+            return _width;
+        }
+    }
+
+    /**
+     * The code point at an index.
+     *
+     * @param index the index
+     * @return the code point
+     * @throws IndexOutOfBoundsException unless {@code 0 <= index < length()}
+     */
+    public int codePointAt(int index) {
+        synchronized (getLock()) {
+            Objects.checkIndex(index, _length);
+            return get(index);
+        }
+    }
+
+    private int get(int index) {
+        switch (_width) {
+            case 1:
+                return _bytes[index] & 0xFF;
+            case 2:
+                return _chars[index];
+            default:
+                return _ints[index];
+        }
+    }
+
+    private void copy(int from, int[] dest, int off, int len) {
+        switch (_width) {
+            case 1:
+                for (int i = 0; i < len; i++) {
+                    dest[off + i] = _bytes[from + i] & 0xFF;
+                }
+                break;
+            case 2:
+                for (int i = 0; i < len; i++) {
+                    dest[off + i] = _chars[from + i];
+                }
+                break;
+            default:
+                System.arraycopy(_ints, from, dest, off, len);
+                break;
+        }
+    }
+
+    /**
+     * A cursor that reads from the start.
+     *
+     * @return a new source
+     */
+    public CodePointSource getSource() {
+        return getSource(0);
+    }
+
+    /**
+     * A cursor that reads from an index.
+     *
+     * @param start the index of the first code point to read
+     * @return a new source
+     * @throws IndexOutOfBoundsException unless {@code 0 <= start <= length()}
+     */
+    public CodePointSource getSource(int start) {
+        synchronized (getLock()) {
+            Objects.checkIndex(start, _length + 1);
+            return new Cursor(start);
+        }
+    }
+
+    /**
+     * Copy the code points into a new {@code int[]}.
+     *
+     * @return the code points
+     */
+    public int[] toArray() {
+        synchronized (getLock()) {
+            final int[] result = new int[_length];
+            copy(0, result, 0, _length);
+            return result;
+        }
+    }
+
+    /**
+     * Remove every code point, keeping the current storage.
+     */
+    public void clear() {
+        synchronized (getLock()) {
+            _length = 0;
+        }
+    }
+
+    /**
+     * Make room for more code points of some width.
+     */
+    private void ensure(int width, int more) {
+        final int needed = _length + more;
+        if (needed < 0) {
+            throw new OutOfMemoryError("CodePointArray too large");
+        }
+        final int capacity = capacity();
+        final int size = (needed > capacity) ? Math.max(needed, capacity * 2) : capacity;
+        if (width > _width) {
+            final int[] all = new int[_length];
+            copy(0, all, 0, _length);
+            if (width == 2) {
+                _chars = new char[size];
+                for (int i = 0; i < _length; i++) {
+                    _chars[i] = (char) all[i];
+                }
+            } else {
+                _ints = Arrays.copyOf(all, size);
+                _chars = null;
+            }
+            _bytes = null;
+            _width = width;
+        } else if (size > capacity) {
+            switch (_width) {
+                case 1:
+                    _bytes = Arrays.copyOf(_bytes, size);
+                    break;
+                case 2:
+                    _chars = Arrays.copyOf(_chars, size);
+                    break;
+                default:
+                    _ints = Arrays.copyOf(_ints, size);
+                    break;
+            }
+        }
+    }
+
+    private int capacity() {
+        switch (_width) {
+            case 1:
+                return _bytes.length;
+            case 2:
+                return _chars.length;
+            default:
+                return _ints.length;
+        }
+    }
+
+    @Override
+    public void putCodePoint(int cp) {
+        synchronized (getLock()) {
+            ensure(widthOf(cp), 1);
+            put(_length++, cp);
+        }
+    }
+
+    private void put(int index, int cp) {
+        switch (_width) {
+            case 1:
+                _bytes[index] = (byte) cp;
+                break;
+            case 2:
+                _chars[index] = (char) cp;
+                break;
+            default:
+                _ints[index] = cp;
+                break;
+        }
+    }
+
+    @Override
+    public void putCodePoints(int[] cps, int off, int len) {
+        Objects.checkFromIndexSize(off, len, cps.length);
+        synchronized (getLock()) {
+            int width = _width;
+            for (int i = off; i < off + len && width < 4; i++) {
+                width = Math.max(width, widthOf(cps[i]));
+            }
+            ensure(width, len);
+            switch (_width) {
+                case 1:
+                    for (int i = 0; i < len; i++) {
+                        _bytes[_length + i] = (byte) cps[off + i];
+                    }
+                    break;
+                case 2:
+                    for (int i = 0; i < len; i++) {
+                        _chars[_length + i] = (char) cps[off + i];
+                    }
+                    break;
+                default:
+                    System.arraycopy(cps, off, _ints, _length, len);
+                    break;
+            }
+            _length += len;
+        }
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public void close() {
+    }
+
+    @Override
+    public String toString() {
+        synchronized (getLock()) {
+            final StringBuilder b = new StringBuilder(_length);
+            for (int i = 0; i < _length; i++) {
+                b.appendCodePoint(get(i));
+            }
+            return b.toString();
+        }
+    }
+}
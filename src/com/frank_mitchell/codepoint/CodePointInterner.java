@@ -0,0 +1,371 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2023 Frank Mitchell.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.frank_mitchell.codepoint;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * A bounded table of canonical strings, looked up by code points so that
+ * a repeated token (e.g. a JSON object key) costs no new {@code String}.
+ * Code points come from an array, a span of a {@link CodePointSource}, or
+ * a {@link Sink} that hashes them as they're written; a string is created
+ * only when the table doesn't have it yet.
+ * <p>
+ * The table uses open addressing with linear probing, at most half full.
+ * When it holds {@code capacity} strings, each new one evicts an old one
+ * chosen by the CLOCK algorithm: lookups mark a string, and the clock hand
+ * clears marks until it finds one that hasn't been used since its last
+ * pass.
+ *
+ * @author Frank Mitchell
+ */
+public final class CodePointInterner {
+
+    private static final int SEED = 0x811C9DC5;
+
+    private final int _capacity;
+    private final int _mask;
+    private final String[] _strings;
+    private final int[] _hashes;
+    private final boolean[] _used;
+    private final int[] _scratch = new int[256];
+    private int _size;
+    private int _hand;
+    private long _hits;
+    private long _misses;
+    private long _evictions;
+
+    /**
+     * Collects code points for an interner, hashing them as they come.
+     * A sink isn't meant to be shared between threads, but any number of
+     * sinks can share an interner.
+     */
+    public static final class Sink implements CodePointSink {
+
+        private final CodePointInterner _interner;
+        private int[] _buffer = new int[32];
+        private int _length;
+        private int _hash = SEED;
+        private EncodingPolicy _policy = EncodingPolicy.REPORT;
+
+        private Sink(CodePointInterner interner) {
+            _interner = interner;
+        }
+
+        @Override
+        public EncodingPolicy getEncodingPolicy() {
+            return _policy;
+        }
+
+        @Override
+        public void setEncodingPolicy(EncodingPolicy policy) {
+            _policy = Objects.requireNonNull(policy);
+        }
+
+        @Override
+        public void putCodePoint(int cp) {
+            if (_length == _buffer.length) {
+                _buffer = Arrays.copyOf(_buffer, _length * 2);
+            }
+            _buffer[_length++] = cp;
+            _hash = step(_hash, cp);
+        }
+
+        @Override
+        public void putCodePoints(int[] cps, int off, int len) {
+            Objects.checkFromIndexSize(off, len, cps.length);
+            if (_length + len > _buffer.length) {
+                _buffer = Arrays.copyOf(_buffer, Math.max(_length + len, _length * 2));
+            }
+            for (int i = off; i < off + len; i++) {
+                _hash = step(_hash, cps[i]);
+            }
+            System.arraycopy(cps, off, _buffer, _length, len);
+            _length += len;
+        }
+
+        /**
+         * The number of code points written since the last
+         * {@link #intern()}.
+         *
+         * @return the length of the pending token
+         */
+        public int length() {
+            return _length;
+        }
+
+        /**
+         * The canonical string for what's been written since the last
+         * call, which starts a new token.
+         *
+         * @return the interned string
+         */
+        public String intern() {
+            final String result = _interner.lookup(_buffer, 0, _length, finish(_hash, _length));
+            _length = 0;
+            _hash = SEED;
+            return result;
+        }
+
+        /**
+         * Forget what's been written since the last {@link #intern()}.
+         */
+        public void clear() {
+            _length = 0;
+            _hash = SEED;
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    /**
+     * Create an interner.
+     *
+     * @param capacity the most strings to hold at once
+     * @throws IllegalArgumentException if {@code capacity} isn't positive
+     */
+    public CodePointInterner(int capacity) {
+        if (capacity <= 0 || capacity > (1 << 29)) {
+            throw new IllegalArgumentException("bad capacity " + capacity);
+        }
+        _capacity = capacity;
+        final int slots = Integer.highestOneBit(capacity * 2 - 1) << 1;
+        _mask = slots - 1;
+        _strings = new String[slots];
+        _hashes = new int[slots];
+        _used = new boolean[slots];
+    }
+
+    private Object getLock() {
+        return this;
+    }
+
+    private static int step(int hash, int cp) {
+        return (hash ^ cp) * 0x01000193;
+    }
+
+    private static int finish(int hash, int length) {
+        hash ^= length;
+        hash ^= hash >>> 16;
+        hash *= 0x85EBCA6B;
+        hash ^= hash >>> 13;
+        return hash;
+    }
+
+    /**
+     * A new sink that feeds this interner.
+     *
+     * @return a new sink
+     */
+    public Sink newSink() {
+        return new Sink(this);
+    }
+
+    /**
+     * The canonical string for some code points.
+     *
+     * @param cps an array of code points
+     * @param off where the token starts
+     * @param len how many code points it has
+     * @return the interned string
+     */
+    public String intern(int[] cps, int off, int len) {
+        Objects.checkFromIndexSize(off, len, cps.length);
+        int hash = SEED;
+        for (int i = off; i < off + len; i++) {
+            hash = step(hash, cps[i]);
+        }
+        return lookup(cps, off, len, finish(hash, len));
+    }
+
+    /**
+     * The canonical string for the next code points from a source.
+     *
+     * @param in the source
+     * @param len how many code points to read
+     * @return the interned string, shorter than {@code len} if the source
+     *      ran out
+     * @throws IOException if reading caused an exception
+     */
+    public String intern(CodePointSource in, int len) throws IOException {
+        synchronized (getLock()) {
+            final int[] buffer = (len <= _scratch.length) ? _scratch : new int[len];
+            int n = 0;
+            while (n < len) {
+                final int r = in.read(buffer, n, len - n);
+                if (r < 0) {
+                    break;
+                }
+                n += r;
+            }
+            return intern(buffer, 0, n);
+        }
+    }
+
+    private String lookup(int[] cps, int off, int len, int hash) {
+        synchronized (getLock()) {
+            int slot = hash & _mask;
+            for (String s = _strings[slot]; s != null; s = _strings[slot]) {
+                if (_hashes[slot] == hash && matches(s, cps, off, len)) {
+                    _used[slot] = true;
+                    _hits++;
+                    return s;
+                }
+                slot = (slot + 1) & _mask;
+            }
+            _misses++;
+            if (_size == _capacity) {
+                evict();
+                // Deleting may have shifted entries into the free slot.
+                slot = hash & _mask;
+                while (_strings[slot] != null) {
+                    slot = (slot + 1) & _mask;
+                }
+            }
+            final String s = new String(cps, off, len);
+            _strings[slot] = s;
+            _hashes[slot] = hash;
+            _used[slot] = false;
+            _size++;
+            return s;
+        }
+    }
+
+    private static boolean matches(String s, int[] cps, int off, int len) {
+        int j = 0;
+        for (int i = off; i < off + len; i++) {
+            if (j >= s.length()) {
+                return false;
+            }
+            final int cp = s.codePointAt(j);
+            if (cp != cps[i]) {
+                return false;
+            }
+            j += Character.charCount(cp);
+        }
+        return j == s.length();
+    }
+
+    /**
+     * Remove the first unmarked string at or after the clock hand,
+     * clearing marks on the way.
+     */
+    private void evict() {
+        while (true) {
+            final int slot = _hand;
+            _hand = (_hand + 1) & _mask;
+            if (_strings[slot] == null) {
+                continue;
+            }
+            if (_used[slot]) {
+                _used[slot] = false;
+                continue;
+            }
+            delete(slot);
+            _evictions++;
+            return;
+        }
+    }
+
+    /**
+     * Empty a slot and move later entries of its probe run back, so
+     * lookups never stop early at the hole.
+     */
+    private void delete(int hole) {
+        _strings[hole] = null;
+        _size--;
+        for (int slot = (hole + 1) & _mask; _strings[slot] != null; slot = (slot + 1) & _mask) {
+            final int home = _hashes[slot] & _mask;
+            // Move back unless home lies cyclically in (hole, slot].
+            if (((slot - home) & _mask) >= ((slot - hole) & _mask)) {
+                _strings[hole] = _strings[slot];
+                _hashes[hole] = _hashes[slot];
+                _used[hole] = _used[slot];
+                _strings[slot] = null;
+                hole = slot;
+            }
+        }
+    }
+
+    /**
+     * The most strings this holds at once.
+     *
+     * @return the capacity
+     */
+    public int getCapacity() {
+        return _capacity;
+    }
+
+    /**
+     * The number of strings this holds now.
+     *
+     * @return the size
+     */
+    public int size() {
+        synchronized (getLock()) {
+            return _size;
+        }
+    }
+
+    /**
+     * The number of lookups that found their string.
+     *
+     * @return the hit count
+     */
+    public long getHits() {
+        synchronized (getLock()) {
+            return _hits;
+        }
+    }
+
+    /**
+     * The number of lookups that had to create a string.
+     *
+     * @return the miss count
+     */
+    public long getMisses() {
+        synchronized (getLock()) {
+            return _misses;
+        }
+    }
+
+    /**
+     * The number of strings removed to make room for others.
+     *
+     * @return the eviction count
+     */
+    public long getEvictions() {
+        synchronized (getLock()) {
+            return _evictions;
+        }
+    }
+}
@@ -0,0 +1,314 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2023 Frank Mitchell.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.frank_mitchell.codepoint;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+
+/**
+ * An immutable Aho-Corasick automaton that finds many patterns at once in
+ * a {@link CodePointSource}, in one pass and without keeping the text.
+ * <p>
+ * ASCII transitions come from a dense table, already resolved through
+ * failure links, so an ASCII code point costs one array lookup.
+ * A state with no ASCII transitions of its own shares the table row of its
+ * failure state.
+ * Other transitions are kept as a sorted list per state and follow failure
+ * links when they miss.
+ * <p>
+ * With {@code ignoreCase} both patterns and text go through
+ * {@link CaseFolding#SIMPLE}, which maps one code point to one, so offsets
+ * still count code points of the original text.
+ *
+ * @author Frank Mitchell
+ */
+public final class CodePointMatcher {
+
+    /**
+     * Receives matches as a matcher finds them.
+     */
+    @FunctionalInterface
+    public interface Handler {
+
+        /**
+         * Handle one match.
+         * Matches come in order of where they end; among matches that end
+         * at the same code point, longer ones come first.
+         *
+         * @param pattern the index of the pattern matched
+         * @param offset the offset in code points of the start of the
+         *      match, from where scanning started
+         * @return whether to keep scanning
+         * @throws IOException to stop scanning
+         */
+        boolean onMatch(int pattern, long offset) throws IOException;
+    }
+
+    private static final int BLOCK = 1024;
+
+    private final boolean _ignoreCase;
+    private final int[] _lengths;
+    /**
+     * For each pattern, the next pattern with the same code points, or -1.
+     */
+    private final int[] _same;
+    private final int[] _fail;
+    /**
+     * For each state, the first pattern ending there, or -1.
+     */
+    private final int[] _output;
+    /**
+     * For each state, the nearest state on its failure chain (itself
+     * included) where a pattern ends, or -1.
+     */
+    private final int[] _report;
+    private final int[] _asciiRow;
+    private final int[] _ascii;
+    private final int[] _sparseStart;
+    private final int[] _sparseKeys;
+    private final int[] _sparseTargets;
+
+    /**
+     * Compile patterns into a matcher.
+     *
+     * @param patterns the patterns, each a sequence of code points;
+     *      handlers see each pattern by its index in this list
+     * @param ignoreCase whether to fold case of patterns and text
+     * @return a new matcher
+     * @throws IllegalArgumentException if a pattern is empty or holds an
+     *      invalid code point
+     */
+    public static CodePointMatcher compile(List<int[]> patterns, boolean ignoreCase) {
+        return new CodePointMatcher(patterns, ignoreCase);
+    }
+
+    /**
+     * Compile strings into a matcher.
+     *
+     * @param ignoreCase whether to fold case of patterns and text
+     * @param patterns the patterns; handlers see each pattern by its
+     *      index among the arguments
+     * @return a new matcher
+     * @throws IllegalArgumentException if a pattern is empty
+     */
+    public static CodePointMatcher compile(boolean ignoreCase, CharSequence... patterns) {
+        final List<int[]> cps = new ArrayList<>(patterns.length);
+        for (CharSequence p : patterns) {
+            cps.add(p.codePoints().toArray());
+        }
+        return new CodePointMatcher(cps, ignoreCase);
+    }
+
+    private CodePointMatcher(List<int[]> patterns, boolean ignoreCase) {
+        _ignoreCase = ignoreCase;
+        _lengths = new int[patterns.size()];
+        _same = new int[patterns.size()];
+
+        // Build the trie.
+        final List<TreeMap<Integer, Integer>> children = new ArrayList<>();
+        final List<Integer> outputs = new ArrayList<>();
+        children.add(new TreeMap<>());
+        outputs.add(-1);
+        for (int id = 0; id < _lengths.length; id++) {
+            final int[] pattern = Objects.requireNonNull(patterns.get(id));
+            if (pattern.length == 0) {
+                throw new IllegalArgumentException("pattern " + id + " is empty");
+            }
+            int state = 0;
+            for (int cp : pattern) {
+                if (!Character.isValidCodePoint(cp)) {
+                    throw new IllegalArgumentException("pattern " + id + " has invalid code point " + cp);
+                }
+                final int key = fold(cp);
+                Integer next = children.get(state).get(key);
+                if (next == null) {
+                    next = children.size();
+                    children.get(state).put(key, next);
+                    children.add(new TreeMap<>());
+                    outputs.add(-1);
+                }
+                state = next;
+            }
+            _lengths[id] = pattern.length;
+            _same[id] = -1;
+            if (outputs.get(state) < 0) {
+                outputs.set(state, id);
+            } else {
+                int last = outputs.get(state);
+                while (_same[last] >= 0) {
+                    last = _same[last];
+                }
+                _same[last] = id;
+            }
+        }
+
+        final int n = children.size();
+        _fail = new int[n];
+        _output = new int[n];
+        _report = new int[n];
+        _asciiRow = new int[n];
+        _sparseStart = new int[n + 1];
+        for (int s = 0; s < n; s++) {
+            _output[s] = outputs.get(s);
+        }
+
+        // Lay out sparse transitions.
+        int sparse = 0;
+        int rows = 0;
+        for (int s = 0; s < n; s++) {
+            _sparseStart[s] = sparse;
+            sparse += children.get(s).tailMap(0x80).size();
+            if (s == 0 || !children.get(s).headMap(0x80).isEmpty()) {
+                rows++;
+            }
+        }
+        _sparseStart[n] = sparse;
+        _sparseKeys = new int[sparse];
+        _sparseTargets = new int[sparse];
+        for (int s = 0; s < n; s++) {
+            int i = _sparseStart[s];
+            for (Map.Entry<Integer, Integer> e : children.get(s).tailMap(0x80).entrySet()) {
+                _sparseKeys[i] = e.getKey();
+                _sparseTargets[i] = e.getValue();
+                i++;
+            }
+        }
+
+        // Breadth first, so every failure state is done before it's needed.
+        _ascii = new int[rows * 0x80];
+        int row = 0;
+        final ArrayDeque<Integer> queue = new ArrayDeque<>();
+        queue.add(0);
+        while (!queue.isEmpty()) {
+            final int s = queue.remove();
+            final TreeMap<Integer, Integer> kids = children.get(s);
+            final Map<Integer, Integer> asciiKids = kids.headMap(0x80);
+            if (s == 0) {
+                _asciiRow[s] = row;
+                row += 0x80;
+            } else if (asciiKids.isEmpty()) {
+                _asciiRow[s] = _asciiRow[_fail[s]];
+            } else {
+                _asciiRow[s] = row;
+                System.arraycopy(_ascii, _asciiRow[_fail[s]], _ascii, row, 0x80);
+                row += 0x80;
+            }
+            for (Map.Entry<Integer, Integer> e : asciiKids.entrySet()) {
+                _ascii[_asciiRow[s] + e.getKey()] = e.getValue();
+            }
+            _report[s] = (_output[s] >= 0) ? s : (s == 0) ? -1 : _report[_fail[s]];
+            for (Map.Entry<Integer, Integer> e : kids.entrySet()) {
+                final int child = e.getValue();
+                _fail[child] = (s == 0) ? 0 : step(_fail[s], e.getKey());
+                queue.add(child);
+            }
+        }
+    }
+
+    private int fold(int cp) {
+        if (!_ignoreCase) {
+            return cp;
+        }
+        return (cp < 0x80) ? CaseFolding.foldAscii(cp) : CaseFolding.SIMPLE.fold(cp);
+    }
+
+    /**
+     * The state after reading a (folded) code point.
+     */
+    private int step(int state, int cp) {
+        if (cp < 0x80) {
+            return _ascii[_asciiRow[state] + cp];
+        }
+        while (true) {
+            final int i = Arrays.binarySearch(_sparseKeys, _sparseStart[state], _sparseStart[state + 1], cp);
+            if (i >= 0) {
+                return _sparseTargets[i];
+            }
+            if (state == 0) {
+                return 0;
+            }
+            state = _fail[state];
+        }
+    }
+
+    /**
+     * The number of patterns.
+     *
+     * @return how many patterns this matches
+     */
+    public int getPatternCount() {
+        return _lengths.length;
+    }
+
+    /**
+     * Whether this ignores case.
+     *
+     * @return whether patterns and text are case folded
+     */
+    public boolean isIgnoreCase() {
+        return _ignoreCase;
+    }
+
+    /**
+     * Find every occurrence of every pattern in the rest of a source,
+     * including overlapping ones.
+     * The source isn't closed.
+     *
+     * @param in the source
+     * @param handler receives each match
+     * @return the number of code points read
+     * @throws IOException if reading or the handler caused an exception
+     */
+    public long scan(CodePointSource in, Handler handler) throws IOException {
+        Objects.requireNonNull(handler);
+        final int[] block = new int[BLOCK];
+        long offset = 0;
+        int state = 0;
+        for (int n = in.read(block, 0, block.length); n >= 0; n = in.read(block, 0, block.length)) {
+            for (int i = 0; i < n; i++) {
+                final int cp = block[i];
+                if (cp < 0x80) {
+                    state = _ascii[_asciiRow[state] + (_ignoreCase ? CaseFolding.foldAscii(cp) : cp)];
+                } else {
+                    state = step(state, fold(cp));
+                }
+                for (int s = _report[state]; s >= 0; s = _report[_fail[s]]) {
+                    for (int id = _output[s]; id >= 0; id = _same[id]) {
+                        if (!handler.onMatch(id, offset + i + 1 - _lengths[id])) {
+                            return offset + i + 1;
+                        }
+                    }
+                }
+            }
+            offset += n;
+        }
+        return offset;
+    }
+}
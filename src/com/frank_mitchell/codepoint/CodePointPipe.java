@@ -0,0 +1,292 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2023 Frank Mitchell.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.frank_mitchell.codepoint;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.function.IntPredicate;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * A source that reads another source through a series of stages, such as
+ * <pre>
+ *     CodePoint.pipe(source)
+ *         .filter(CodePointSet.of(" \t\r\n").complement())
+ *         .map(Character::toLowerCase)
+ *         .limit(1000)
+ *         .drainTo(sink);
+ * </pre>
+ * Unlike an {@link java.util.stream.IntStream} a pipe is itself a
+ * {@link CodePointSource}, so it can go anywhere a source can.
+ * <p>
+ * All the stages run in one loop over a block of code points at a time,
+ * in the caller's array when reading through
+ * {@link #read(int[], int, int)} or {@link #drainTo(CodePointSink)}.
+ * Add stages before reading; a pipe never reads past the code point that
+ * reaches its last {@link #limit(long)}.
+ *
+ * @author Frank Mitchell
+ */
+public final class CodePointPipe implements CodePointSource {
+
+    private static final int BLOCK = 1024;
+
+    private static final byte FILTER = 0;
+    private static final byte MAP = 1;
+    private static final byte LIMIT = 2;
+
+    private final CodePointSource _source;
+    private byte[] _kinds = new byte[0];
+    private IntPredicate[] _filters = new IntPredicate[0];
+    private IntUnaryOperator[] _maps = new IntUnaryOperator[0];
+    private long[] _remaining = new long[0];
+    private boolean _started;
+
+    /**
+     * Whether a limit has been reached.
+     */
+    private boolean _done;
+    private int[] _buf;
+    private int _bufPos;
+    private int _bufLen;
+    private int _current = -1;
+
+    /**
+     * Start a pipe with no stages.
+     *
+     * @param source where the code points come from
+     */
+    public CodePointPipe(CodePointSource source) {
+        _source = Objects.requireNonNull(source);
+    }
+
+    private Object getLock() {
+        return this;
+    }
+
+    private CodePointPipe add(byte kind, IntPredicate filter, IntUnaryOperator map, long limit) {
+        synchronized (getLock()) {
+            if (_started) {
+                throw new IllegalStateException("Pipe has already been read");
+            }
+            final int n = _kinds.length;
+            _kinds = Arrays.copyOf(_kinds, n + 1);
+            _filters = Arrays.copyOf(_filters, n + 1);
+            _maps = Arrays.copyOf(_maps, n + 1);
+            _remaining = Arrays.copyOf(_remaining, n + 1);
+            _kinds[n] = kind;
+            _filters[n] = filter;
+            _maps[n] = map;
+            _remaining[n] = limit;
+            return this;
+        }
+    }
+
+    /**
+     * Keep only code points that pass a test, e.g. a {@link CodePointSet}.
+     *
+     * @param p the test
+     * @return this pipe
+     * @throws IllegalStateException if reading has begun
+     */
+    public CodePointPipe filter(IntPredicate p) {
+        return add(FILTER, Objects.requireNonNull(p), null, 0);
+    }
+
+    /**
+     * Replace each code point with another.
+     *
+     * @param f a function from code point to code point
+     * @return this pipe
+     * @throws IllegalStateException if reading has begun
+     */
+    public CodePointPipe map(IntUnaryOperator f) {
+        return add(MAP, null, Objects.requireNonNull(f), 0);
+    }
+
+    /**
+     * End the pipe after {@code n} code points reach this stage.
+     *
+     * @param n the most code points to pass on
+     * @return this pipe
+     * @throws IllegalStateException if reading has begun
+     */
+    public CodePointPipe limit(long n) {
+        if (n < 0) {
+            throw new IllegalArgumentException("Negative limit " + n);
+        }
+        return add(LIMIT, null, null, n);
+    }
+
+    /**
+     * Read code points into an array and run every stage over them in
+     * place.
+     *
+     * @return how many code points came out, or -1 at the end
+     */
+    private int pump(int[] cps, int off, int len) throws IOException {
+        _started = true;
+        while (!_done) {
+            long max = len;
+            for (int k = 0; k < _kinds.length; k++) {
+                if (_kinds[k] == LIMIT) {
+                    max = Math.min(max, _remaining[k]);
+                }
+            }
+            if (max == 0) {
+                _done = true;
+                break;
+            }
+            final int n = _source.read(cps, off, (int) max);
+            if (n < 0) {
+                // The source may have more later
+                break;
+            }
+            int out = off;
+            next:
+            for (int i = off; i < off + n; i++) {
+                int cp = cps[i];
+                for (int k = 0; k < _kinds.length; k++) {
+                    switch (_kinds[k]) {
+                        case FILTER:
+                            if (!_filters[k].test(cp)) {
+                                continue next;
+                            }
+                            break;
+                        case MAP:
+                            cp = _maps[k].applyAsInt(cp);
+                            break;
+                        default:
+                            if (_remaining[k] == 0) {
+                                continue next;
+                            }
+                            _remaining[k]--;
+                            break;
+                    }
+                }
+                cps[out++] = cp;
+            }
+            if (out > off) {
+                return out - off;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public DecodingPolicy getDecodingPolicy() {
+        return _source.getDecodingPolicy();
+    }
+
+    @Override
+    public void setDecodingPolicy(DecodingPolicy policy) {
+        _source.setDecodingPolicy(policy);
+    }
+
+    @Override
+    public int getCodePoint() {
+        synchronized (getLock()) {
+            if (_current < 0) {
+                throw new IllegalStateException("have not called next() yet");
+            }
+            return _current;
+        }
+    }
+
+    private boolean fill() throws IOException {
+        if (_buf == null) {
+            _buf = new int[BLOCK];
+        }
+        _bufPos = 0;
+        _bufLen = Math.max(pump(_buf, 0, _buf.length), 0);
+        return _bufLen > 0;
+    }
+
+    @Override
+    public boolean hasNext() throws IOException {
+        synchronized (getLock()) {
+            return _bufPos < _bufLen || fill();
+        }
+    }
+
+    @Override
+    public void next() throws IOException {
+        synchronized (getLock()) {
+            if (_bufPos < _bufLen || fill()) {
+                _current = _buf[_bufPos++];
+            } else {
+                _current = -1;
+            }
+        }
+    }
+
+    @Override
+    public int read(int[] cps, int off, int len) throws IOException {
+        Objects.checkFromIndexSize(off, len, cps.length);
+        if (len == 0) {
+            return 0;
+        }
+        synchronized (getLock()) {
+            final int n;
+            if (_bufPos < _bufLen) {
+                n = Math.min(len, _bufLen - _bufPos);
+                System.arraycopy(_buf, _bufPos, cps, off, n);
+                _bufPos += n;
+            } else {
+                n = pump(cps, off, len);
+                if (n < 0) {
+                    return -1;
+                }
+            }
+            _current = cps[off + n - 1];
+            return n;
+        }
+    }
+
+    /**
+     * Write everything left in this pipe to a sink, which is neither
+     * flushed nor closed.
+     *
+     * @param sink the sink
+     * @return the number of code points written
+     * @throws IOException if reading or writing caused an exception
+     */
+    public long drainTo(CodePointSink sink) throws IOException {
+        synchronized (getLock()) {
+            final int[] block = new int[BLOCK];
+            long count = 0;
+            for (int n = read(block, 0, block.length); n >= 0; n = read(block, 0, block.length)) {
+                sink.putCodePoints(block, 0, n);
+                count += n;
+            }
+            return count;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        _source.close();
+    }
+}
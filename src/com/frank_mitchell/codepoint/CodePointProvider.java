@@ -72,4 +72,41 @@ public interface CodePointProvider {
      * @throws IOException if wrapping or reading from {@code in} caused an exception
      */
     <T> CodePointSource getSource(Class<T> clz, T in, Charset cs) throws IOException;
+
+    /**
+     * Copy every remaining code point from a source to a sink.
+     * Neither is flushed or closed.
+     * This default moves code points in blocks through
+     * {@link CodePointSource#read(int[], int, int)} and
+     * {@link CodePointSink#putCodePoints(int[], int, int)}; a provider
+     * that knows its sources and sinks can do better.
+     * @param in the source
+     * @param out the sink
+     * @return the number of code points copied
+     * @throws IOException if reading or writing caused an exception
+     */
+    default long transfer(CodePointSource in, CodePointSink out) throws IOException {
+        final int[] block = new int[1024];
+        long count = 0;
+        for (int n = in.read(block, 0, block.length); n >= 0; n = in.read(block, 0, block.length)) {
+            out.putCodePoints(block, 0, n);
+            count += n;
+        }
+        return count;
+    }
+
+    /**
+     * Wrap an input object of unknown charset with a source that works out
+     * the charset from the first few bytes.
+     * @param <T> The type of {@code in}
+     * @param clz the type of {@code in} when looking for a suitable wrapper.
+     * @param in an object providing a stream of bytes
+     * @return a DetectingSource wrapping {@code in}
+     * @throws IOException if reading from {@code in} caused an exception
+     * @throws UnsupportedOperationException if this provider can't detect
+     *      charsets
+     */
+    default <T> DetectingSource getDetectingSource(Class<T> clz, T in) throws IOException {
+        throw new UnsupportedOperationException(getClass().getName() + " can't detect charsets");
+    }
 }
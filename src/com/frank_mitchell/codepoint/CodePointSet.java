@@ -0,0 +1,259 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2023 Frank Mitchell.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.frank_mitchell.codepoint;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntPredicate;
+
+/**
+ * An immutable set of code points, for filtering and matching.
+ * The set is kept as a sorted list of the code points where membership
+ * starts and stops, with a bit mask for ASCII, so testing an ASCII code
+ * point costs a shift and testing any other a binary search.
+ *
+ * @author Frank Mitchell
+ */
+public final class CodePointSet implements IntPredicate {
+
+    /**
+     * The set with no code points.
+     */
+    public static final CodePointSet EMPTY = new CodePointSet(new int[0]);
+
+    /**
+     * The set of every code point.
+     */
+    public static final CodePointSet ALL = new CodePointSet(new int[] {0, Character.MAX_CODE_POINT + 1});
+
+    /**
+     * Starts of ranges at even indexes, ends (exclusive) at odd indexes.
+     */
+    private final int[] _list;
+    private final long _ascii0;
+    private final long _ascii1;
+
+    private CodePointSet(int[] list) {
+        _list = list;
+        long a0 = 0;
+        long a1 = 0;
+        for (int i = 0; i < list.length && list[i] < 0x80; i += 2) {
+            final int end = (i + 1 < list.length) ? Math.min(list[i + 1], 0x80) : 0x80;
+            for (int cp = list[i]; cp < end; cp++) {
+                if (cp < 64) {
+                    a0 |= 1L << cp;
+                } else {
+                    a1 |= 1L << (cp - 64);
+                }
+            }
+        }
+        _ascii0 = a0;
+        _ascii1 = a1;
+    }
+
+    /**
+     * The set of code points in a string.
+     *
+     * @param chars the code points
+     * @return a set
+     */
+    public static CodePointSet of(CharSequence chars) {
+        return of(chars.codePoints().toArray());
+    }
+
+    /**
+     * The set of some code points.
+     *
+     * @param cps the code points
+     * @return a set
+     */
+    public static CodePointSet of(int... cps) {
+        final int[] ranges = new int[cps.length * 2];
+        for (int i = 0; i < cps.length; i++) {
+            check(cps[i]);
+            ranges[2 * i] = cps[i];
+            ranges[2 * i + 1] = cps[i] + 1;
+        }
+        return fromRanges(ranges);
+    }
+
+    /**
+     * The set of a range of code points.
+     *
+     * @param first the first code point in the set
+     * @param last the last code point in the set
+     * @return a set
+     * @throws IllegalArgumentException if {@code last < first}, or either
+     *      isn't a code point
+     */
+    public static CodePointSet range(int first, int last) {
+        check(first);
+        check(last);
+        if (last < first) {
+            throw new IllegalArgumentException("Empty range " + first + ".." + last);
+        }
+        return new CodePointSet(new int[] {first, last + 1});
+    }
+
+    /**
+     * The set of every code point that passes a test, such as
+     * {@code Character::isLetter}.
+     * This tests every code point once, so build the set once and keep it.
+     *
+     * @param p the test
+     * @return a set
+     */
+    public static CodePointSet matching(IntPredicate p) {
+        final List<Integer> list = new ArrayList<>();
+        boolean in = false;
+        for (int cp = 0; cp <= Character.MAX_CODE_POINT; cp++) {
+            if (p.test(cp) != in) {
+                list.add(cp);
+                in = !in;
+            }
+        }
+        if (in) {
+            list.add(Character.MAX_CODE_POINT + 1);
+        }
+        return new CodePointSet(list.stream().mapToInt(Integer::intValue).toArray());
+    }
+
+    private static void check(int cp) {
+        if (!Character.isValidCodePoint(cp)) {
+            throw new IllegalArgumentException("Not a code point: " + cp);
+        }
+    }
+
+    /**
+     * Make a set from (start, end) pairs in any order, overlapping or not.
+     */
+    private static CodePointSet fromRanges(int[] ranges) {
+        final int n = ranges.length / 2;
+        final long[] pairs = new long[n];
+        for (int i = 0; i < n; i++) {
+            pairs[i] = ((long) ranges[2 * i] << 32) | ranges[2 * i + 1];
+        }
+        Arrays.sort(pairs);
+        final int[] list = new int[ranges.length];
+        int size = 0;
+        for (long pair : pairs) {
+            final int start = (int) (pair >>> 32);
+            final int end = (int) pair;
+            if (size > 0 && start <= list[size - 1]) {
+                list[size - 1] = Math.max(list[size - 1], end);
+            } else {
+                list[size++] = start;
+                list[size++] = end;
+            }
+        }
+        return new CodePointSet(Arrays.copyOf(list, size));
+    }
+
+    /**
+     * Whether this set contains a code point.
+     *
+     * @param cp a code point
+     * @return whether it's in this set
+     */
+    public boolean contains(int cp) {
+        if (cp >= 0 && cp < 0x80) {
+            return ((cp < 64 ? _ascii0 >>> cp : _ascii1 >>> (cp - 64)) & 1) != 0;
+        }
+        // Found at a start, or not found with a start before it:
+        // either way the result is even.
+        return (Arrays.binarySearch(_list, cp) & 1) == 0;
+    }
+
+    /**
+     * Same as {@link #contains(int)}.
+     *
+     * @param cp a code point
+     * @return whether it's in this set
+     */
+    @Override
+    public boolean test(int cp) {
+        return contains(cp);
+    }
+
+    /**
+     * The code points in this set or another.
+     *
+     * @param other another set
+     * @return a set
+     */
+    public CodePointSet union(CodePointSet other) {
+        final int[] ranges = Arrays.copyOf(_list, _list.length + other._list.length);
+        System.arraycopy(other._list, 0, ranges, _list.length, other._list.length);
+        return fromRanges(ranges);
+    }
+
+    /**
+     * The code points not in this set.
+     *
+     * @return a set
+     */
+    public CodePointSet complement() {
+        final int max = Character.MAX_CODE_POINT + 1;
+        final boolean first = (_list.length > 0 && _list[0] == 0);
+        final boolean last = (_list.length > 0 && _list[_list.length - 1] == max);
+        final int[] list = new int[_list.length + (first ? -1 : 1) + (last ? -1 : 1)];
+        int size = 0;
+        if (!first) {
+            list[size++] = 0;
+        }
+        for (int i = first ? 1 : 0; i < (last ? _list.length - 1 : _list.length); i++) {
+            list[size++] = _list[i];
+        }
+        if (!last) {
+            list[size++] = max;
+        }
+        return new CodePointSet(list);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return (o instanceof CodePointSet) && Arrays.equals(_list, ((CodePointSet) o)._list);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(_list);
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder b = new StringBuilder("[");
+        for (int i = 0; i < _list.length; i += 2) {
+            if (i > 0) {
+                b.append(' ');
+            }
+            b.append(String.format("U+%04X", _list[i]));
+            if (_list[i + 1] - 1 > _list[i]) {
+                b.append(String.format("..U+%04X", _list[i + 1] - 1));
+            }
+        }
+        return b.append(']').toString();
+    }
+}
@@ -24,6 +24,7 @@ package com.frank_mitchell.codepoint;
 import java.io.Closeable;
 import java.io.Flushable;
 import java.io.IOException;
+import java.util.Objects;
 import java.util.PrimitiveIterator;
 import java.util.stream.IntStream;
 
@@ -52,6 +53,48 @@ public interface CodePointSink extends Appendable, Flushable, Closeable {
         }
     }
 
+    /**
+     * Write code points from an array to underlying output.
+     * Implementations can override this to encode a whole block at once.
+     * @param cps array of code points
+     * @param off index in {@code cps} of the first code point
+     * @param len number of code points to write
+     * @throws IOException if the underlying output throws an exception
+     */
+    default void putCodePoints(final int[] cps, final int off, final int len) throws IOException {
+        Objects.checkFromIndexSize(off, len, cps.length);
+        for (int i = off; i < off + len; i++) {
+            putCodePoint(cps[i]);
+        }
+    }
+
+    /**
+     * How this sink handles code points its charset can't encode.
+     * Sinks that don't support other policies always
+     * {@link EncodingPolicy#REPORT}.
+     *
+     * @return the current policy
+     */
+    default EncodingPolicy getEncodingPolicy() {
+        return EncodingPolicy.REPORT;
+    }
+
+    /**
+     * Change how this sink handles code points its charset can't encode,
+     * from the next code point on.
+     *
+     * @param policy the new policy
+     *
+     * @throws UnsupportedOperationException if this sink can't use
+     *      that policy
+     */
+    default void setEncodingPolicy(EncodingPolicy policy) {
+        if (policy.getAction() != EncodingPolicy.Action.REPORT) {
+            throw new UnsupportedOperationException(
+                    getClass().getName() + " only supports " + EncodingPolicy.REPORT);
+        }
+    }
+
     @Override
     default Appendable append(final char c) throws IOException {
         // TODO: keep a buffer so we can detect surrogates?
@@ -25,6 +25,7 @@ package com.frank_mitchell.codepoint;
 import java.io.Closeable;
 import java.io.IOException;
 import java.util.Iterator;
+import java.util.Objects;
 
 /**
  * An iterator over an external sequence of Unicode code points.
@@ -69,6 +70,54 @@ public interface CodePointSource extends Closeable {
      */
     void next() throws IOException;
 
+    /**
+     * Read up to {@code len} code points into an array.
+     * Afterward {@link #getCodePoint()} returns the last code point read.
+     * Implementations can override this to decode a whole block at once.
+     *
+     * @param cps where to put the code points
+     * @param off index in {@code cps} of the first code point
+     * @param len most code points to read
+     * @return the number of code points read, or -1 at the end of input
+     *
+     * @throws IOException if reading throws an exception.
+     */
+    default int read(int[] cps, int off, int len) throws IOException {
+        Objects.checkFromIndexSize(off, len, cps.length);
+        int n = 0;
+        while (n < len && hasNext()) {
+            next();
+            cps[off + n++] = getCodePoint();
+        }
+        return (n == 0 && len > 0) ? -1 : n;
+    }
+
+    /**
+     * How this source handles input that isn't valid in its charset.
+     * Sources that can't see bad input always {@link DecodingPolicy#REPORT}.
+     *
+     * @return the current policy
+     */
+    default DecodingPolicy getDecodingPolicy() {
+        return DecodingPolicy.REPORT;
+    }
+
+    /**
+     * Change how this source handles input that isn't valid in its
+     * charset, from the next code point on.
+     *
+     * @param policy the new policy
+     *
+     * @throws UnsupportedOperationException if this source can't use
+     *      that policy
+     */
+    default void setDecodingPolicy(DecodingPolicy policy) {
+        if (policy.getAction() != DecodingPolicy.Action.REPORT) {
+            throw new UnsupportedOperationException(
+                    getClass().getName() + " only supports " + DecodingPolicy.REPORT);
+        }
+    }
+
     /**
      * Close the underlying IO or NIO object.
      *
@@ -0,0 +1,143 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2023 Frank Mitchell.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.frank_mitchell.codepoint;
+
+import java.io.IOException;
+import java.util.Objects;
+
+/**
+ * What a {@link CodePointSource} does with input that isn't valid in its
+ * charset: malformed or truncated byte sequences, bytes with no mapping,
+ * or unpaired UTF-16 surrogates.
+ * Only {@link #REPORT} throws; sources handle the others without creating
+ * any exceptions.
+ *
+ * @author Frank Mitchell
+ */
+public final class DecodingPolicy {
+
+    /**
+     * The Unicode replacement character, U+FFFD.
+     */
+    public static final int REPLACEMENT_CHARACTER = 0xFFFD;
+
+    /**
+     * The kinds of policy.
+     */
+    public enum Action {
+        /**
+         * Throw a {@link java.nio.charset.CharacterCodingException}.
+         */
+        REPORT,
+        /**
+         * Return {@link #REPLACEMENT_CHARACTER} instead.
+         */
+        REPLACE,
+        /**
+         * Leave the bad input out entirely.
+         */
+        SKIP,
+        /**
+         * Ask a {@link Handler}.
+         */
+        CALLBACK
+    }
+
+    /**
+     * Decides what to do about each stretch of bad input.
+     */
+    @FunctionalInterface
+    public interface Handler {
+
+        /**
+         * Decide what to do about bad input.
+         * Sources that read characters rather than bytes pass the bad
+         * characters in UTF-16BE, and count the offset in bytes of UTF-16.
+         *
+         * @param byteOffset offset of the first bad byte from where the
+         *      source started reading
+         * @param bad a copy of the bad bytes
+         * @return a code point to read in their place, or a negative
+         *      number to skip them
+         * @throws IOException to stop reading
+         */
+        int onMalformed(long byteOffset, byte[] bad) throws IOException;
+    }
+
+    /**
+     * Throw an exception for bad input.
+     */
+    public static final DecodingPolicy REPORT = new DecodingPolicy(Action.REPORT, null);
+
+    /**
+     * Read bad input as {@link #REPLACEMENT_CHARACTER}.
+     */
+    public static final DecodingPolicy REPLACE = new DecodingPolicy(Action.REPLACE, null);
+
+    /**
+     * Skip bad input.
+     */
+    public static final DecodingPolicy SKIP = new DecodingPolicy(Action.SKIP, null);
+
+    private final Action _action;
+    private final Handler _handler;
+
+    private DecodingPolicy(Action action, Handler handler) {
+        _action = action;
+        _handler = handler;
+    }
+
+    /**
+     * A policy that asks {@code handler} what to do with bad input.
+     *
+     * @param handler the handler
+     * @return a new policy
+     */
+    public static DecodingPolicy callback(Handler handler) {
+        return new DecodingPolicy(Action.CALLBACK, Objects.requireNonNull(handler));
+    }
+
+    /**
+     * What kind of policy this is.
+     *
+     * @return the action
+     */
+    public Action getAction() {
+        return _action;
+    }
+
+    /**
+     * The handler for a {@link Action#CALLBACK} policy.
+     *
+     * @return the handler, or null for other policies
+     */
+    public Handler getHandler() {
+        return _handler;
+    }
+
+    @Override
+    public String toString() {
+        return (_handler == null) ? _action.name() : _action.name() + "(" + _handler + ")";
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2023 Frank Mitchell.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.frank_mitchell.codepoint;
+
+import java.io.IOException;
+import java.util.Objects;
+
+/**
+ * What a {@link CodePointSink} does with a code point its charset can't
+ * encode, including an unpaired UTF-16 surrogate.
+ * Only {@link #REPORT} throws; sinks handle the others without creating
+ * any exceptions.
+ *
+ * @author Frank Mitchell
+ */
+public final class EncodingPolicy {
+
+    /**
+     * The kinds of policy.
+     */
+    public enum Action {
+        /**
+         * Throw a {@link java.nio.charset.UnmappableCharacterException}.
+         */
+        REPORT,
+        /**
+         * Write the charset's replacement, usually '?', instead.
+         */
+        REPLACE,
+        /**
+         * Leave the code point out entirely.
+         */
+        SKIP,
+        /**
+         * Ask a {@link Handler}.
+         */
+        CALLBACK
+    }
+
+    /**
+     * Decides what to do about each code point the charset can't encode.
+     */
+    @FunctionalInterface
+    public interface Handler {
+
+        /**
+         * Decide what to do about a code point.
+         *
+         * @param byteOffset number of bytes the sink has written before
+         *      this code point
+         * @param codePoint the code point
+         * @return a code point to write in its place, which the charset
+         *      must be able to encode, or a negative number to skip it
+         * @throws IOException to stop writing
+         */
+        int onUnmappable(long byteOffset, int codePoint) throws IOException;
+    }
+
+    /**
+     * Throw an exception for an unmappable code point.
+     */
+    public static final EncodingPolicy REPORT = new EncodingPolicy(Action.REPORT, null);
+
+    /**
+     * Write the charset's replacement for an unmappable code point.
+     */
+    public static final EncodingPolicy REPLACE = new EncodingPolicy(Action.REPLACE, null);
+
+    /**
+     * Skip unmappable code points.
+     */
+    public static final EncodingPolicy SKIP = new EncodingPolicy(Action.SKIP, null);
+
+    private final Action _action;
+    private final Handler _handler;
+
+    private EncodingPolicy(Action action, Handler handler) {
+        _action = action;
+        _handler = handler;
+    }
+
+    /**
+     * A policy that asks {@code handler} what to do with unmappable
+     * code points.
+     *
+     * @param handler the handler
+     * @return a new policy
+     */
+    public static EncodingPolicy callback(Handler handler) {
+        return new EncodingPolicy(Action.CALLBACK, Objects.requireNonNull(handler));
+    }
+
+    /**
+     * What kind of policy this is.
+     *
+     * @return the action
+     */
+    public Action getAction() {
+        return _action;
+    }
+
+    /**
+     * The handler for a {@link Action#CALLBACK} policy.
+     *
+     * @return the handler, or null for other policies
+     */
+    public Handler getHandler() {
+        return _handler;
+    }
+
+    @Override
+    public String toString() {
+        return (_handler == null) ? _action.name() : _action.name() + "(" + _handler + ")";
+    }
+}
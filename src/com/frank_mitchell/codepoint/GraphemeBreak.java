@@ -0,0 +1,297 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2023 Frank Mitchell.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.frank_mitchell.codepoint;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The Unicode Grapheme_Cluster_Break property, plus Extended_Pictographic,
+ * for every code point.
+ * Values live in a two-level table of 256-entry pages, built on first use;
+ * identical pages are shared, so the whole table is a few dozen kilobytes.
+ * <p>
+ * The JDK doesn't expose these properties.
+ * Most follow from {@link Character#getType(int)}; the rest come from the
+ * short lists of exceptions below, taken from the Unicode Character
+ * Database.
+ *
+ * @author Frank Mitchell
+ * @see <a href="https://www.unicode.org/reports/tr29/">UAX #29</a>
+ */
+final class GraphemeBreak {
+
+    static final byte OTHER = 0;
+    static final byte CR = 1;
+    static final byte LF = 2;
+    static final byte CONTROL = 3;
+    static final byte EXTEND = 4;
+    static final byte ZWJ = 5;
+    static final byte REGIONAL_INDICATOR = 6;
+    static final byte PREPEND = 7;
+    static final byte SPACING_MARK = 8;
+    static final byte L = 9;
+    static final byte V = 10;
+    static final byte T = 11;
+    static final byte LV = 12;
+    static final byte LVT = 13;
+    /**
+     * Grapheme_Cluster_Break=Other and Extended_Pictographic.
+     */
+    static final byte PICTOGRAPHIC = 14;
+
+    /**
+     * Ranges (first, last, value) that {@link Character#getType(int)}
+     * gets wrong or can't tell, sorted.
+     */
+    private static final int[] EXCEPTIONS = {
+        0x00A9, 0x00A9, PICTOGRAPHIC,
+        0x00AE, 0x00AE, PICTOGRAPHIC,
+        0x0600, 0x0605, PREPEND,
+        0x06DD, 0x06DD, PREPEND,
+        0x070F, 0x070F, PREPEND,
+        0x0890, 0x0891, PREPEND,
+        0x08E2, 0x08E2, PREPEND,
+        0x09BE, 0x09BE, EXTEND,
+        0x09D7, 0x09D7, EXTEND,
+        0x0B3E, 0x0B3E, EXTEND,
+        0x0B57, 0x0B57, EXTEND,
+        0x0BBE, 0x0BBE, EXTEND,
+        0x0BD7, 0x0BD7, EXTEND,
+        0x0CC2, 0x0CC2, EXTEND,
+        0x0CD5, 0x0CD6, EXTEND,
+        0x0D3E, 0x0D3E, EXTEND,
+        0x0D4E, 0x0D4E, PREPEND,
+        0x0D57, 0x0D57, EXTEND,
+        0x0DCF, 0x0DCF, EXTEND,
+        0x0DDF, 0x0DDF, EXTEND,
+        0x0E33, 0x0E33, SPACING_MARK,
+        0x0EB3, 0x0EB3, SPACING_MARK,
+        0x102B, 0x102C, OTHER,
+        0x1038, 0x1038, OTHER,
+        0x1062, 0x1064, OTHER,
+        0x1067, 0x106D, OTHER,
+        0x1083, 0x1083, OTHER,
+        0x1087, 0x108C, OTHER,
+        0x108F, 0x108F, OTHER,
+        0x109A, 0x109C, OTHER,
+        0x1100, 0x115F, L,
+        0x1160, 0x11A7, V,
+        0x11A8, 0x11FF, T,
+        0x1A61, 0x1A61, OTHER,
+        0x1A63, 0x1A64, OTHER,
+        0x1B35, 0x1B35, EXTEND,
+        0x200C, 0x200C, EXTEND,
+        0x200D, 0x200D, ZWJ,
+        0x203C, 0x203C, PICTOGRAPHIC,
+        0x2049, 0x2049, PICTOGRAPHIC,
+        0x2065, 0x2065, CONTROL,
+        0x2122, 0x2122, PICTOGRAPHIC,
+        0x2139, 0x2139, PICTOGRAPHIC,
+        0x2194, 0x2199, PICTOGRAPHIC,
+        0x21A9, 0x21AA, PICTOGRAPHIC,
+        0x231A, 0x231B, PICTOGRAPHIC,
+        0x2328, 0x2328, PICTOGRAPHIC,
+        0x2388, 0x2388, PICTOGRAPHIC,
+        0x23CF, 0x23CF, PICTOGRAPHIC,
+        0x23E9, 0x23F3, PICTOGRAPHIC,
+        0x23F8, 0x23FA, PICTOGRAPHIC,
+        0x24C2, 0x24C2, PICTOGRAPHIC,
+        0x25AA, 0x25AB, PICTOGRAPHIC,
+        0x25B6, 0x25B6, PICTOGRAPHIC,
+        0x25C0, 0x25C0, PICTOGRAPHIC,
+        0x25FB, 0x25FE, PICTOGRAPHIC,
+        0x2600, 0x2605, PICTOGRAPHIC,
+        0x2607, 0x2612, PICTOGRAPHIC,
+        0x2614, 0x2685, PICTOGRAPHIC,
+        0x2690, 0x2705, PICTOGRAPHIC,
+        0x2708, 0x2712, PICTOGRAPHIC,
+        0x2714, 0x2714, PICTOGRAPHIC,
+        0x2716, 0x2716, PICTOGRAPHIC,
+        0x271D, 0x271D, PICTOGRAPHIC,
+        0x2721, 0x2721, PICTOGRAPHIC,
+        0x2728, 0x2728, PICTOGRAPHIC,
+        0x2733, 0x2734, PICTOGRAPHIC,
+        0x2744, 0x2744, PICTOGRAPHIC,
+        0x2747, 0x2747, PICTOGRAPHIC,
+        0x274C, 0x274C, PICTOGRAPHIC,
+        0x274E, 0x274E, PICTOGRAPHIC,
+        0x2753, 0x2755, PICTOGRAPHIC,
+        0x2757, 0x2757, PICTOGRAPHIC,
+        0x2763, 0x2767, PICTOGRAPHIC,
+        0x2795, 0x2797, PICTOGRAPHIC,
+        0x27A1, 0x27A1, PICTOGRAPHIC,
+        0x27B0, 0x27B0, PICTOGRAPHIC,
+        0x27BF, 0x27BF, PICTOGRAPHIC,
+        0x2934, 0x2935, PICTOGRAPHIC,
+        0x2B05, 0x2B07, PICTOGRAPHIC,
+        0x2B1B, 0x2B1C, PICTOGRAPHIC,
+        0x2B50, 0x2B50, PICTOGRAPHIC,
+        0x2B55, 0x2B55, PICTOGRAPHIC,
+        0x302E, 0x302F, EXTEND,
+        0x3030, 0x3030, PICTOGRAPHIC,
+        0x303D, 0x303D, PICTOGRAPHIC,
+        0x3297, 0x3297, PICTOGRAPHIC,
+        0x3299, 0x3299, PICTOGRAPHIC,
+        0xA960, 0xA97C, L,
+        0xAA7B, 0xAA7B, OTHER,
+        0xAA7D, 0xAA7D, OTHER,
+        0xD7B0, 0xD7C6, V,
+        0xD7CB, 0xD7FB, T,
+        0xFF9E, 0xFF9F, EXTEND,
+        0xFFF0, 0xFFF8, CONTROL,
+        0x110BD, 0x110BD, PREPEND,
+        0x110CD, 0x110CD, PREPEND,
+        0x111C2, 0x111C3, PREPEND,
+        0x1133E, 0x1133E, EXTEND,
+        0x11357, 0x11357, EXTEND,
+        0x114B0, 0x114B0, EXTEND,
+        0x114BD, 0x114BD, EXTEND,
+        0x115AF, 0x115AF, EXTEND,
+        0x11720, 0x11721, OTHER,
+        0x11930, 0x11930, EXTEND,
+        0x1193F, 0x1193F, PREPEND,
+        0x11941, 0x11941, PREPEND,
+        0x11A3A, 0x11A3A, PREPEND,
+        0x11A84, 0x11A89, PREPEND,
+        0x11D46, 0x11D46, PREPEND,
+        0x1D165, 0x1D165, EXTEND,
+        0x1D16E, 0x1D172, EXTEND,
+        0x1F000, 0x1F0FF, PICTOGRAPHIC,
+        0x1F10D, 0x1F10F, PICTOGRAPHIC,
+        0x1F12F, 0x1F12F, PICTOGRAPHIC,
+        0x1F16C, 0x1F171, PICTOGRAPHIC,
+        0x1F17E, 0x1F17F, PICTOGRAPHIC,
+        0x1F18E, 0x1F18E, PICTOGRAPHIC,
+        0x1F191, 0x1F19A, PICTOGRAPHIC,
+        0x1F1AD, 0x1F1E5, PICTOGRAPHIC,
+        0x1F1E6, 0x1F1FF, REGIONAL_INDICATOR,
+        0x1F201, 0x1F20F, PICTOGRAPHIC,
+        0x1F21A, 0x1F21A, PICTOGRAPHIC,
+        0x1F22F, 0x1F22F, PICTOGRAPHIC,
+        0x1F232, 0x1F23A, PICTOGRAPHIC,
+        0x1F23C, 0x1F23F, PICTOGRAPHIC,
+        0x1F249, 0x1F3FA, PICTOGRAPHIC,
+        0x1F3FB, 0x1F3FF, EXTEND,
+        0x1F400, 0x1F53D, PICTOGRAPHIC,
+        0x1F546, 0x1F64F, PICTOGRAPHIC,
+        0x1F680, 0x1F6FF, PICTOGRAPHIC,
+        0x1F774, 0x1F77F, PICTOGRAPHIC,
+        0x1F7D5, 0x1F7FF, PICTOGRAPHIC,
+        0x1F80C, 0x1F80F, PICTOGRAPHIC,
+        0x1F848, 0x1F84F, PICTOGRAPHIC,
+        0x1F85A, 0x1F85F, PICTOGRAPHIC,
+        0x1F888, 0x1F88F, PICTOGRAPHIC,
+        0x1F8AE, 0x1F8FF, PICTOGRAPHIC,
+        0x1F90C, 0x1F93A, PICTOGRAPHIC,
+        0x1F93C, 0x1F945, PICTOGRAPHIC,
+        0x1F947, 0x1FAFF, PICTOGRAPHIC,
+        0x1FC00, 0x1FFFD, PICTOGRAPHIC,
+        0xE0000, 0xE001F, CONTROL,
+        0xE0020, 0xE007F, EXTEND,
+        0xE0080, 0xE00FF, CONTROL,
+        0xE01F0, 0xE0FFF, CONTROL,
+    };
+
+    private GraphemeBreak() {
+    }
+
+    /**
+     * The property of a code point.
+     *
+     * @param cp a code point
+     * @return one of the constants in this class
+     */
+    static byte of(int cp) {
+        if (cp < 0x80) {
+            return ascii(cp);
+        }
+        return Table.PAGES[cp >>> 8][cp & 0xFF];
+    }
+
+    /**
+     * The property of an ASCII code point, without the table.
+     *
+     * @param cp a code point below 0x80
+     * @return CR, LF, CONTROL, or OTHER
+     */
+    static byte ascii(int cp) {
+        if (cp >= 0x20 && cp < 0x7F) {
+            return OTHER;
+        }
+        return (cp == '\r') ? CR : (cp == '\n') ? LF : CONTROL;
+    }
+
+    private static final class Table {
+        static final byte[][] PAGES = build();
+    }
+
+    private static byte[][] build() {
+        final byte[][] pages = new byte[(Character.MAX_CODE_POINT + 1) >>> 8][];
+        final Map<ByteBuffer, byte[]> unique = new HashMap<>();
+        int ex = 0;
+        for (int p = 0; p < pages.length; p++) {
+            final byte[] page = new byte[256];
+            for (int i = 0; i < 256; i++) {
+                final int cp = (p << 8) | i;
+                while (ex < EXCEPTIONS.length && EXCEPTIONS[ex + 1] < cp) {
+                    ex += 3;
+                }
+                if (ex < EXCEPTIONS.length && EXCEPTIONS[ex] <= cp
+                        && (EXCEPTIONS[ex + 2] != CONTROL || !Character.isDefined(cp))) {
+                    page[i] = (byte) EXCEPTIONS[ex + 2];
+                } else {
+                    page[i] = compute(cp);
+                }
+            }
+            pages[p] = unique.computeIfAbsent(ByteBuffer.wrap(page), k -> page);
+        }
+        return pages;
+    }
+
+    private static byte compute(int cp) {
+        if (cp < 0x80) {
+            return ascii(cp);
+        }
+        if (cp >= 0xAC00 && cp <= 0xD7A3) {
+            return ((cp - 0xAC00) % 28 == 0) ? LV : LVT;
+        }
+        switch (Character.getType(cp)) {
+            case Character.NON_SPACING_MARK:
+            case Character.ENCLOSING_MARK:
+                return EXTEND;
+            case Character.COMBINING_SPACING_MARK:
+                return SPACING_MARK;
+            case Character.CONTROL:
+            case Character.FORMAT:
+            case Character.LINE_SEPARATOR:
+            case Character.PARAGRAPH_SEPARATOR:
+            case Character.SURROGATE:
+                return CONTROL;
+            default:
+                return OTHER;
+        }
+    }
+}
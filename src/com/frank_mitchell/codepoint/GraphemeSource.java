@@ -0,0 +1,308 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2023 Frank Mitchell.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.frank_mitchell.codepoint;
+
+import java.io.IOException;
+import java.util.Objects;
+
+/**
+ * Reads code points from another source unchanged, while tracking where
+ * each extended grapheme cluster (user-perceived character) begins and
+ * ends.
+ * Boundaries follow the default rules of UAX #29, including emoji ZWJ
+ * sequences and regional indicator (flag) pairs.
+ * Memory use doesn't depend on cluster length: the state is a handful of
+ * fields plus a block of lookahead.
+ * <p>
+ * To keep at most {@code n} clusters, read until
+ * {@code getClusterCount() == n && isClusterEnd()}.
+ *
+ * @author Frank Mitchell
+ * @see <a href="https://www.unicode.org/reports/tr29/">UAX #29</a>
+ */
+public final class GraphemeSource implements CodePointSource {
+
+    private static final int BLOCK = 1024;
+
+    /**
+     * For each property of a previous code point, the set of properties
+     * after it that don't start a new cluster, by rules GB3 to GB9b.
+     * GB11 and GB12/13 depend on more than one code point of context, so
+     * {@link #isBoundary(int)} applies them separately.
+     */
+    private static final int[] JOINS = joins();
+
+    private static final int EMOJI_NONE = 0;
+    private static final int EMOJI_BASE = 1;
+    private static final int EMOJI_ZWJ = 2;
+
+    private final CodePointSource _source;
+    private final int[] _block = new int[BLOCK];
+    private int _pos;
+    private int _len;
+    private int _current = -1;
+    private int _prop = -1;
+    private int _emoji = EMOJI_NONE;
+    private boolean _oddIndicators;
+    private boolean _start;
+    private long _index = -1;
+    private long _clusterStart = -1;
+    private long _clusters;
+
+    /**
+     * Find the clusters in what another source reads.
+     *
+     * @param source the source
+     */
+    public GraphemeSource(CodePointSource source) {
+        _source = Objects.requireNonNull(source);
+    }
+
+    private Object getLock() {
+        return this;
+    }
+
+    private static int[] joins() {
+        final int[] joins = new int[GraphemeBreak.PICTOGRAPHIC + 1];
+        final int extend = bit(GraphemeBreak.EXTEND) | bit(GraphemeBreak.ZWJ)
+                | bit(GraphemeBreak.SPACING_MARK);
+        for (int p = 0; p < joins.length; p++) {
+            joins[p] = extend;
+        }
+        joins[GraphemeBreak.CR] = bit(GraphemeBreak.LF);
+        joins[GraphemeBreak.LF] = 0;
+        joins[GraphemeBreak.CONTROL] = 0;
+        joins[GraphemeBreak.PREPEND] = ~(bit(GraphemeBreak.CR)
+                | bit(GraphemeBreak.LF) | bit(GraphemeBreak.CONTROL));
+        joins[GraphemeBreak.L] |= bit(GraphemeBreak.L) | bit(GraphemeBreak.V)
+                | bit(GraphemeBreak.LV) | bit(GraphemeBreak.LVT);
+        joins[GraphemeBreak.LV] |= bit(GraphemeBreak.V) | bit(GraphemeBreak.T);
+        joins[GraphemeBreak.V] |= bit(GraphemeBreak.V) | bit(GraphemeBreak.T);
+        joins[GraphemeBreak.LVT] |= bit(GraphemeBreak.T);
+        joins[GraphemeBreak.T] |= bit(GraphemeBreak.T);
+        return joins;
+    }
+
+    private static int bit(int prop) {
+        return 1 << prop;
+    }
+
+    private static int property(int cp) {
+        return (cp < 0x80) ? GraphemeBreak.ascii(cp) : GraphemeBreak.of(cp);
+    }
+
+    /**
+     * Whether a code point with a given property starts a new cluster
+     * after the current one.
+     *
+     * @param prop the property of the following code point
+     * @return whether there's a boundary between them
+     */
+    private boolean isBoundary(int prop) {
+        if (_prop < 0) {
+            return true;
+        }
+        if ((JOINS[_prop] & bit(prop)) != 0) {
+            return false;
+        }
+        switch (prop) {
+            case GraphemeBreak.PICTOGRAPHIC:
+                return _emoji != EMOJI_ZWJ;
+            case GraphemeBreak.REGIONAL_INDICATOR:
+                return !_oddIndicators;
+            default:
+                return true;
+        }
+    }
+
+    /**
+     * Move past a code point.
+     *
+     * @param cp the next code point
+     */
+    private void advance(int cp) {
+        final int prop = property(cp);
+        _start = isBoundary(prop);
+        if (_start) {
+            _clusterStart = _index + 1;
+            _clusters++;
+        }
+        switch (prop) {
+            case GraphemeBreak.PICTOGRAPHIC:
+                _emoji = EMOJI_BASE;
+                break;
+            case GraphemeBreak.EXTEND:
+                // GB11: only a pictograph and Extend* may come before the ZWJ
+                _emoji = (_emoji == EMOJI_BASE) ? EMOJI_BASE : EMOJI_NONE;
+                break;
+            case GraphemeBreak.ZWJ:
+                _emoji = (_emoji == EMOJI_BASE) ? EMOJI_ZWJ : EMOJI_NONE;
+                break;
+            default:
+                _emoji = EMOJI_NONE;
+                break;
+        }
+        _oddIndicators = (prop == GraphemeBreak.REGIONAL_INDICATOR) && !_oddIndicators;
+        _prop = prop;
+        _current = cp;
+        _index++;
+    }
+
+    private boolean fill() throws IOException {
+        if (_pos < _len) {
+            return true;
+        }
+        _pos = 0;
+        _len = Math.max(_source.read(_block, 0, _block.length), 0);
+        return _len > 0;
+    }
+
+    /**
+     * Whether the current code point is the first of its cluster.
+     *
+     * @return whether a cluster starts here
+     */
+    public boolean isClusterStart() {
+        synchronized (getLock()) {
+            return _start;
+        }
+    }
+
+    /**
+     * Whether the current code point is the last of its cluster, i.e.
+     * the next code point starts a new one, or there isn't one.
+     * This may read ahead from the underlying source.
+     *
+     * @return whether a cluster ends here
+     * @throws IOException if reading ahead caused an exception
+     */
+    public boolean isClusterEnd() throws IOException {
+        synchronized (getLock()) {
+            if (_current < 0) {
+                return false;
+            }
+            return !fill() || isBoundary(property(_block[_pos]));
+        }
+    }
+
+    /**
+     * The index of the current code point, counting from 0.
+     *
+     * @return the number of code points read before the current one,
+     *      or -1 before the first
+     */
+    public long getIndex() {
+        synchronized (getLock()) {
+            return _index;
+        }
+    }
+
+    /**
+     * The index of the first code point in the current cluster.
+     * With {@link #getIndex()} this gives the span of the cluster so far.
+     *
+     * @return the index where the current cluster started, or -1 before
+     *      the first
+     */
+    public long getClusterStart() {
+        synchronized (getLock()) {
+            return _clusterStart;
+        }
+    }
+
+    /**
+     * The number of clusters started so far, including the current one.
+     *
+     * @return the number of clusters seen
+     */
+    public long getClusterCount() {
+        synchronized (getLock()) {
+            return _clusters;
+        }
+    }
+
+    @Override
+    public DecodingPolicy getDecodingPolicy() {
+        return _source.getDecodingPolicy();
+    }
+
+    @Override
+    public void setDecodingPolicy(DecodingPolicy policy) {
+        _source.setDecodingPolicy(policy);
+    }
+
+    @Override
+    public int getCodePoint() {
+        synchronized (getLock()) {
+            if (_current < 0) {
+                throw new IllegalStateException("have not called next() yet");
+            }
+            return _current;
+        }
+    }
+
+    @Override
+    public boolean hasNext() throws IOException {
+        synchronized (getLock()) {
+            return fill();
+        }
+    }
+
+    @Override
+    public void next() throws IOException {
+        synchronized (getLock()) {
+            if (fill()) {
+                advance(_block[_pos++]);
+            } else {
+                _current = -1;
+            }
+        }
+    }
+
+    @Override
+    public int read(int[] cps, int off, int len) throws IOException {
+        Objects.checkFromIndexSize(off, len, cps.length);
+        if (len == 0) {
+            return 0;
+        }
+        synchronized (getLock()) {
+            int n = 0;
+            while (n < len && fill()) {
+                final int count = Math.min(len - n, _len - _pos);
+                for (int i = 0; i < count; i++) {
+                    advance(_block[_pos + i]);
+                }
+                System.arraycopy(_block, _pos, cps, off + n, count);
+                _pos += count;
+                n += count;
+            }
+            return (n == 0) ? -1 : n;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        _source.close();
+    }
+}
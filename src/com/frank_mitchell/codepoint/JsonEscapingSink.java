@@ -0,0 +1,187 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2023 Frank Mitchell.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.frank_mitchell.codepoint;
+
+import java.io.IOException;
+import java.util.Objects;
+
+/**
+ * Writes code points to another sink escaped for the body of a JSON
+ * string, i.e. without the enclosing quotes.
+ * Quotes, backslashes, control characters, and unpaired surrogates are
+ * always escaped; optionally everything outside ASCII is too, as
+ * <code>&#92;uXXXX</code> escapes, with surrogate pairs above the BMP.
+ * <p>
+ * A table of the 128 ASCII code points decides what to escape, and runs
+ * of code points that need no escape go to the other sink in one call.
+ *
+ * @author Frank Mitchell
+ * @see JsonUnescapingSource
+ */
+public final class JsonEscapingSink implements CodePointSink {
+
+    /**
+     * For each ASCII code point, the character after the backslash in
+     * its escape, or 0 if it needs none.
+     */
+    private static final byte[] ESCAPES = new byte[0x80];
+
+    static {
+        for (int c = 0; c < 0x20; c++) {
+            ESCAPES[c] = 'u';
+        }
+        ESCAPES['\b'] = 'b';
+        ESCAPES['\t'] = 't';
+        ESCAPES['\n'] = 'n';
+        ESCAPES['\f'] = 'f';
+        ESCAPES['\r'] = 'r';
+        ESCAPES['"'] = '"';
+        ESCAPES['\\'] = '\\';
+    }
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final CodePointSink _sink;
+    private final boolean _asciiOnly;
+    private final int[] _escape = new int[12];
+
+    /**
+     * Escape what goes into another sink, leaving non-ASCII code points
+     * alone.
+     *
+     * @param sink the sink
+     */
+    public JsonEscapingSink(CodePointSink sink) {
+        this(sink, false);
+    }
+
+    /**
+     * Escape what goes into another sink.
+     *
+     * @param sink the sink
+     * @param asciiOnly whether to escape every code point above ASCII
+     */
+    public JsonEscapingSink(CodePointSink sink, boolean asciiOnly) {
+        _sink = Objects.requireNonNull(sink);
+        _asciiOnly = asciiOnly;
+    }
+
+    private Object getLock() {
+        return this;
+    }
+
+    /**
+     * Whether this escapes everything outside ASCII.
+     *
+     * @return whether output is pure ASCII
+     */
+    public boolean isAsciiOnly() {
+        return _asciiOnly;
+    }
+
+    @Override
+    public EncodingPolicy getEncodingPolicy() {
+        return _sink.getEncodingPolicy();
+    }
+
+    @Override
+    public void setEncodingPolicy(EncodingPolicy policy) {
+        _sink.setEncodingPolicy(policy);
+    }
+
+    private boolean isSafe(int cp) {
+        if (cp < 0x80) {
+            return ESCAPES[cp] == 0;
+        }
+        return !_asciiOnly && (cp < Character.MIN_SURROGATE || cp > Character.MAX_SURROGATE);
+    }
+
+    @Override
+    public void putCodePoint(int cp) throws IOException {
+        synchronized (getLock()) {
+            if (isSafe(cp)) {
+                _sink.putCodePoint(cp);
+            } else {
+                escape(cp);
+            }
+        }
+    }
+
+    @Override
+    public void putCodePoints(int[] cps, int off, int len) throws IOException {
+        Objects.checkFromIndexSize(off, len, cps.length);
+        synchronized (getLock()) {
+            final int end = off + len;
+            int run = off;
+            for (int i = off; i < end; i++) {
+                if (!isSafe(cps[i])) {
+                    if (i > run) {
+                        _sink.putCodePoints(cps, run, i - run);
+                    }
+                    escape(cps[i]);
+                    run = i + 1;
+                }
+            }
+            if (end > run) {
+                _sink.putCodePoints(cps, run, end - run);
+            }
+        }
+    }
+
+    private void escape(int cp) throws IOException {
+        final int n;
+        if (cp < 0x80 && ESCAPES[cp] != 'u') {
+            _escape[0] = '\\';
+            _escape[1] = ESCAPES[cp];
+            n = 2;
+        } else if (Character.isSupplementaryCodePoint(cp)) {
+            hex(Character.highSurrogate(cp), 0);
+            hex(Character.lowSurrogate(cp), 6);
+            n = 12;
+        } else {
+            hex(cp, 0);
+            n = 6;
+        }
+        _sink.putCodePoints(_escape, 0, n);
+    }
+
+    private void hex(int c, int at) {
+        _escape[at] = '\\';
+        _escape[at + 1] = 'u';
+        _escape[at + 2] = HEX[(c >>> 12) & 0xF];
+        _escape[at + 3] = HEX[(c >>> 8) & 0xF];
+        _escape[at + 4] = HEX[(c >>> 4) & 0xF];
+        _escape[at + 5] = HEX[c & 0xF];
+    }
+
+    @Override
+    public void flush() throws IOException {
+        _sink.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        _sink.close();
+    }
+}
@@ -0,0 +1,405 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2023 Frank Mitchell.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.frank_mitchell.codepoint;
+
+import java.io.IOException;
+import java.nio.charset.MalformedInputException;
+import java.util.Objects;
+
+/**
+ * Reads the body of a JSON string from another source with its escapes
+ * decoded, including surrogate pairs written as two
+ * <code>&#92;uXXXX</code> escapes.
+ * Anything else passes through unchanged, a run at a time.
+ * <p>
+ * Unknown escapes, bad hex digits, unpaired surrogates, and escapes cut
+ * off by the end of input are handled by this source's own
+ * {@link DecodingPolicy}, which by default reports them.
+ * A callback gets the bad escape in UTF-16BE, at its offset in bytes of
+ * UTF-16.
+ * The other source keeps its own policy for its own input.
+ *
+ * @author Frank Mitchell
+ * @see JsonEscapingSink
+ */
+public final class JsonUnescapingSource implements CodePointSource {
+
+    private static final int BLOCK = 1024;
+
+    private static final int TEXT = 0;
+    private static final int BACKSLASH = 1;
+    private static final int HEX = 2;
+
+    private final CodePointSource _source;
+    private final int[] _in = new int[BLOCK];
+    private final int[] _out = new int[BLOCK * 2];
+    private int _inPos;
+    private int _inLen;
+    private int _outPos;
+    private int _outLen;
+    private int _current = -1;
+    // At most two per escape: a high surrogate it didn't pair, and itself
+    private final IOException[] _errors = new IOException[2];
+    private final int[] _errorAt = new int[2];
+    private int _errorPos;
+    private int _errorCount;
+    private DecodingPolicy _policy = DecodingPolicy.REPORT;
+
+    private int _state = TEXT;
+    private long _chars;
+    private final int[] _escape = new int[6];
+    private int _escapeLen;
+    private long _escapeStart;
+    private int _high = -1;
+    private final int[] _highEscape = new int[6];
+    private long _highStart;
+
+    /**
+     * Decode escapes in what another source reads.
+     *
+     * @param source the source
+     */
+    public JsonUnescapingSource(CodePointSource source) {
+        _source = Objects.requireNonNull(source);
+    }
+
+    private Object getLock() {
+        return this;
+    }
+
+    @Override
+    public DecodingPolicy getDecodingPolicy() {
+        synchronized (getLock()) {
+            return _policy;
+        }
+    }
+
+    @Override
+    public void setDecodingPolicy(DecodingPolicy policy) {
+        synchronized (getLock()) {
+            _policy = Objects.requireNonNull(policy);
+        }
+    }
+
+    @Override
+    public int getCodePoint() {
+        synchronized (getLock()) {
+            if (_current < 0) {
+                throw new IllegalStateException("have not called next() yet");
+            }
+            return _current;
+        }
+    }
+
+    @Override
+    public boolean hasNext() throws IOException {
+        synchronized (getLock()) {
+            return _outPos < limit() || fill();
+        }
+    }
+
+    @Override
+    public void next() throws IOException {
+        synchronized (getLock()) {
+            if (_outPos < limit() || fill()) {
+                _current = _out[_outPos++];
+            } else {
+                _current = -1;
+            }
+        }
+    }
+
+    @Override
+    public int read(int[] cps, int off, int len) throws IOException {
+        Objects.checkFromIndexSize(off, len, cps.length);
+        if (len == 0) {
+            return 0;
+        }
+        synchronized (getLock()) {
+            int n = 0;
+            while (n < len) {
+                if (_outPos == limit()) {
+                    // Return what came before an error before throwing it
+                    if ((n > 0 && _errorPos < _errorCount) || !fill()) {
+                        break;
+                    }
+                }
+                final int count = Math.min(len - n, limit() - _outPos);
+                System.arraycopy(_out, _outPos, cps, off + n, count);
+                _outPos += count;
+                n += count;
+            }
+            if (n == 0) {
+                return -1;
+            }
+            _current = cps[off + n - 1];
+            return n;
+        }
+    }
+
+    /**
+     * How far {@link #_out} can be read before the next error.
+     */
+    private int limit() {
+        return (_errorPos < _errorCount) ? _errorAt[_errorPos] : _outLen;
+    }
+
+    /**
+     * Decode until there's something to read or nothing left, once
+     * everything decoded has been read.
+     * If the policy throws, the exception waits until everything before
+     * the bad escape has been read, and decoding picks up after it.
+     *
+     * @return whether there's anything to read
+     */
+    private boolean fill() throws IOException {
+        if (_outPos == _outLen && _errorPos == _errorCount) {
+            _outPos = 0;
+            _outLen = 0;
+            _errorPos = 0;
+            _errorCount = 0;
+            while (_outLen == 0 && _errorCount == 0) {
+                if (_inPos >= _inLen) {
+                    _inPos = 0;
+                    _inLen = Math.max(_source.read(_in, 0, _in.length), 0);
+                    if (_inLen == 0) {
+                        finish();
+                        break;
+                    }
+                }
+                decode();
+            }
+        }
+        if (_errorPos < _errorCount && _outPos == _errorAt[_errorPos]) {
+            final IOException e = _errors[_errorPos];
+            _errors[_errorPos++] = null;
+            throw e;
+        }
+        return _outPos < limit();
+    }
+
+    /**
+     * Decode the rest of the input block.
+     */
+    private void decode() {
+        while (_inPos < _inLen && _errorCount == 0) {
+            if (_state == TEXT && _high < 0) {
+                int end = _inPos;
+                int cp;
+                while (end < _inLen && (cp = _in[end]) != '\\') {
+                    if (cp > 0xFFFF) {
+                        _chars++;
+                    }
+                    end++;
+                }
+                System.arraycopy(_in, _inPos, _out, _outLen, end - _inPos);
+                _outLen += end - _inPos;
+                _chars += end - _inPos;
+                _inPos = end;
+                if (_inPos == _inLen) {
+                    break;
+                }
+            }
+            final int cp = _in[_inPos++];
+            final long at = _chars;
+            _chars += Character.charCount(cp);
+            accept(cp, at);
+        }
+    }
+
+    /**
+     * Decode one code point outside a run of plain text.
+     *
+     * @param cp the code point
+     * @param at its offset in UTF-16 chars
+     */
+    private void accept(int cp, long at) {
+        switch (_state) {
+            case TEXT:
+                if (cp == '\\') {
+                    _state = BACKSLASH;
+                    _escape[0] = cp;
+                    _escapeLen = 1;
+                    _escapeStart = at;
+                } else {
+                    unpairedHigh();
+                    _out[_outLen++] = cp;
+                }
+                break;
+            case BACKSLASH:
+                _escape[_escapeLen++] = cp;
+                if (cp == 'u') {
+                    _state = HEX;
+                    break;
+                }
+                _state = TEXT;
+                unpairedHigh();
+                final int c = simpleEscape(cp);
+                if (c >= 0) {
+                    _out[_outLen++] = c;
+                } else {
+                    malformed(_escape, _escapeLen, _escapeStart);
+                }
+                break;
+            default:
+                _escape[_escapeLen++] = cp;
+                if (hexDigit(cp) < 0) {
+                    _state = TEXT;
+                    unpairedHigh();
+                    malformed(_escape, _escapeLen, _escapeStart);
+                } else if (_escapeLen == _escape.length) {
+                    _state = TEXT;
+                    unit();
+                }
+                break;
+        }
+    }
+
+    /**
+     * Handle a complete <code>&#92;uXXXX</code> escape.
+     */
+    private void unit() {
+        int c = 0;
+        for (int i = 2; i < _escape.length; i++) {
+            c = (c << 4) | hexDigit(_escape[i]);
+        }
+        if (_high >= 0) {
+            if (Character.isLowSurrogate((char) c)) {
+                _out[_outLen++] = Character.toCodePoint((char) _high, (char) c);
+                _high = -1;
+                return;
+            }
+            unpairedHigh();
+        }
+        if (Character.isHighSurrogate((char) c)) {
+            _high = c;
+            System.arraycopy(_escape, 0, _highEscape, 0, _escape.length);
+            _highStart = _escapeStart;
+        } else if (Character.isLowSurrogate((char) c)) {
+            malformed(_escape, _escape.length, _escapeStart);
+        } else {
+            _out[_outLen++] = c;
+        }
+    }
+
+    private void unpairedHigh() {
+        if (_high >= 0) {
+            _high = -1;
+            malformed(_highEscape, _highEscape.length, _highStart);
+        }
+    }
+
+    /**
+     * Handle an escape cut off by the end of input.
+     */
+    private void finish() {
+        unpairedHigh();
+        if (_state != TEXT) {
+            _state = TEXT;
+            malformed(_escape, _escapeLen, _escapeStart);
+        }
+    }
+
+    private void malformed(int[] bad, int len, long start) {
+        switch (_policy.getAction()) {
+            case REPLACE:
+                _out[_outLen++] = DecodingPolicy.REPLACEMENT_CHARACTER;
+                break;
+            case SKIP:
+                break;
+            case CALLBACK:
+                final String text = new String(bad, 0, len);
+                final byte[] bytes = new byte[text.length() * 2];
+                for (int i = 0; i < text.length(); i++) {
+                    bytes[2 * i] = (byte) (text.charAt(i) >> 8);
+                    bytes[2 * i + 1] = (byte) text.charAt(i);
+                }
+                final int cp;
+                try {
+                    cp = _policy.getHandler().onMalformed(start * 2, bytes);
+                } catch (IOException e) {
+                    fail(e);
+                    break;
+                }
+                if (cp >= 0) {
+                    if (!Character.isValidCodePoint(cp)) {
+                        throw new IllegalStateException("Handler returned invalid code point "
+                                + Integer.toHexString(cp));
+                    }
+                    _out[_outLen++] = cp;
+                }
+                break;
+            default:
+                fail(new MalformedInputException(len));
+                break;
+        }
+    }
+
+    /**
+     * Hold an exception until what came before it has been read.
+     */
+    private void fail(IOException e) {
+        _errors[_errorCount] = e;
+        _errorAt[_errorCount++] = _outLen;
+    }
+
+    private static int simpleEscape(int cp) {
+        switch (cp) {
+            case '"':
+            case '\\':
+            case '/':
+                return cp;
+            case 'b':
+                return '\b';
+            case 'f':
+                return '\f';
+            case 'n':
+                return '\n';
+            case 'r':
+                return '\r';
+            case 't':
+                return '\t';
+            default:
+                return -1;
+        }
+    }
+
+    private static int hexDigit(int cp) {
+        if (cp >= '0' && cp <= '9') {
+            return cp - '0';
+        }
+        if (cp >= 'a' && cp <= 'f') {
+            return cp - 'a' + 10;
+        }
+        if (cp >= 'A' && cp <= 'F') {
+            return cp - 'A' + 10;
+        }
+        return -1;
+    }
+
+    @Override
+    public void close() throws IOException {
+        _source.close();
+    }
+}
@@ -0,0 +1,271 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2023 Frank Mitchell.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.frank_mitchell.codepoint;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.BitSet;
+import java.util.Objects;
+
+/**
+ * Writes code points to another sink escaped for HTML or XML.
+ * A table of the 128 ASCII code points for each {@link Context} decides
+ * what to escape, and runs of code points that need no escape go to the
+ * other sink in one call.
+ * <p>
+ * Given the charset the other sink writes, this also writes numeric
+ * character references, e.g. {@code &#x1F600;}, for code points that
+ * charset can't encode.
+ * Code points XML can't hold at all become U+FFFD.
+ *
+ * @author Frank Mitchell
+ */
+public final class MarkupEscapingSink implements CodePointSink {
+
+    private static final String[] ENTITIES = {
+        null, "&amp;", "&lt;", "&gt;", "&quot;", "&#39;", "&apos;"
+    };
+
+    private static final byte AMP = 1;
+    private static final byte LT = 2;
+    private static final byte GT = 3;
+    private static final byte QUOT = 4;
+    private static final byte APOS_HTML = 5;
+    private static final byte APOS_XML = 6;
+    private static final byte INVALID = 7;
+
+    /**
+     * Where the escaped text goes.
+     */
+    public enum Context {
+        /**
+         * HTML element content: escapes {@code & < >}.
+         */
+        HTML_TEXT(false, false),
+        /**
+         * A quoted HTML attribute value: escapes {@code & < > " '}.
+         */
+        HTML_ATTRIBUTE(true, false),
+        /**
+         * XML content or attribute values: escapes {@code & < > " '},
+         * and replaces control characters XML 1.0 doesn't allow.
+         */
+        XML(true, true);
+
+        private final byte[] _table = new byte[0x80];
+        private final boolean _xml;
+
+        Context(boolean quotes, boolean xml) {
+            _xml = xml;
+            _table['&'] = AMP;
+            _table['<'] = LT;
+            _table['>'] = GT;
+            if (quotes) {
+                _table['"'] = QUOT;
+                _table['\''] = xml ? APOS_XML : APOS_HTML;
+            }
+            if (xml) {
+                for (int c = 0; c < 0x20; c++) {
+                    if (c != '\t' && c != '\n' && c != '\r') {
+                        _table[c] = INVALID;
+                    }
+                }
+            }
+        }
+    }
+
+    private final CodePointSink _sink;
+    private final Context _context;
+    private final byte[] _table;
+    private final CharsetEncoder _encoder;
+    private final BitSet _checked;
+    private final BitSet _encodable;
+    private final int[] _escape = new int[12];
+
+    /**
+     * Escape what goes into another sink, leaving every code point above
+     * ASCII alone.
+     *
+     * @param sink the sink
+     * @param context where the text goes
+     */
+    public MarkupEscapingSink(CodePointSink sink, Context context) {
+        this(sink, context, null);
+    }
+
+    /**
+     * Escape what goes into another sink, with references for code
+     * points its charset can't encode.
+     *
+     * @param sink the sink
+     * @param context where the text goes
+     * @param cs the charset {@code sink} writes, or null to write every
+     *      code point above ASCII as is
+     */
+    public MarkupEscapingSink(CodePointSink sink, Context context, Charset cs) {
+        _sink = Objects.requireNonNull(sink);
+        _context = Objects.requireNonNull(context);
+        _table = context._table;
+        if (cs == null || isUnicode(cs)) {
+            _encoder = null;
+            _checked = null;
+            _encodable = null;
+        } else {
+            _encoder = cs.newEncoder();
+            _checked = new BitSet();
+            _encodable = new BitSet();
+        }
+    }
+
+    private static boolean isUnicode(Charset cs) {
+        return cs.equals(StandardCharsets.UTF_8) || cs.name().startsWith("UTF-16")
+                || cs.name().startsWith("UTF-32");
+    }
+
+    private Object getLock() {
+        return this;
+    }
+
+    /**
+     * Where the escaped text goes.
+     *
+     * @return the context
+     */
+    public Context getContext() {
+        return _context;
+    }
+
+    @Override
+    public EncodingPolicy getEncodingPolicy() {
+        return _sink.getEncodingPolicy();
+    }
+
+    @Override
+    public void setEncodingPolicy(EncodingPolicy policy) {
+        _sink.setEncodingPolicy(policy);
+    }
+
+    private boolean isSafe(int cp) {
+        if (cp < 0x80) {
+            return _table[cp] == 0;
+        }
+        if (_context._xml && !isXmlChar(cp)) {
+            return false;
+        }
+        return _encoder == null || canEncode(cp);
+    }
+
+    private static boolean isXmlChar(int cp) {
+        return (cp < Character.MIN_SURROGATE || (cp > Character.MAX_SURROGATE && cp < 0xFFFE))
+                || cp >= 0x10000;
+    }
+
+    /**
+     * Whether the charset can encode a code point, remembering the
+     * answer for the BMP.
+     */
+    private boolean canEncode(int cp) {
+        if (cp >= 0x10000) {
+            return _encoder.canEncode(new String(Character.toChars(cp)));
+        }
+        if (!_checked.get(cp)) {
+            _checked.set(cp);
+            if (_encoder.canEncode((char) cp)) {
+                _encodable.set(cp);
+            }
+        }
+        return _encodable.get(cp);
+    }
+
+    @Override
+    public void putCodePoint(int cp) throws IOException {
+        synchronized (getLock()) {
+            if (isSafe(cp)) {
+                _sink.putCodePoint(cp);
+            } else {
+                escape(cp);
+            }
+        }
+    }
+
+    @Override
+    public void putCodePoints(int[] cps, int off, int len) throws IOException {
+        Objects.checkFromIndexSize(off, len, cps.length);
+        synchronized (getLock()) {
+            final int end = off + len;
+            int run = off;
+            for (int i = off; i < end; i++) {
+                if (!isSafe(cps[i])) {
+                    if (i > run) {
+                        _sink.putCodePoints(cps, run, i - run);
+                    }
+                    escape(cps[i]);
+                    run = i + 1;
+                }
+            }
+            if (end > run) {
+                _sink.putCodePoints(cps, run, end - run);
+            }
+        }
+    }
+
+    private void escape(int cp) throws IOException {
+        int n = 0;
+        if (cp < 0x80 && _table[cp] != INVALID) {
+            final String entity = ENTITIES[_table[cp]];
+            for (int i = 0; i < entity.length(); i++) {
+                _escape[n++] = entity.charAt(i);
+            }
+        } else {
+            if (_context._xml && (cp < 0x80 || !isXmlChar(cp))) {
+                cp = DecodingPolicy.REPLACEMENT_CHARACTER;
+                if (isSafe(cp)) {
+                    _sink.putCodePoint(cp);
+                    return;
+                }
+            }
+            _escape[n++] = '&';
+            _escape[n++] = '#';
+            _escape[n++] = 'x';
+            final String hex = Integer.toHexString(cp).toUpperCase();
+            for (int i = 0; i < hex.length(); i++) {
+                _escape[n++] = hex.charAt(i);
+            }
+            _escape[n++] = ';';
+        }
+        _sink.putCodePoints(_escape, 0, n);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        _sink.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        _sink.close();
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2023 Frank Mitchell.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.frank_mitchell.codepoint;
+
+import java.text.Normalizer;
+
+/**
+ * What {@link NormalizingSource} and {@link NormalizingSink} need to know
+ * about each code point for one normalization form.
+ * Text splits into segments, each starting at a code point with a
+ * boundary before it; each segment normalizes without regard to the
+ * others.
+ * A segment of one code point that is already normalized needs no work
+ * at all, which covers nearly all of most text.
+ * <p>
+ * The JDK doesn't expose the Unicode quick-check properties or combining
+ * classes, so this class works them out from {@link Normalizer} the first
+ * time it sees each code point, and remembers them.
+ *
+ * @author Frank Mitchell
+ */
+final class NormalForm {
+
+    /**
+     * Most UTF-16 characters in a segment.
+     * A longer run of combining marks is split, as the Unicode Stream-Safe
+     * Text Format would, so a hostile stream can't make us buffer it all.
+     */
+    static final int MAX_SEGMENT = 64;
+
+    private static final byte KNOWN = 1;
+    private static final byte BOUNDARY = 2;
+    private static final byte STABLE = 4;
+
+    private static final NormalForm[] FORMS = new NormalForm[Normalizer.Form.values().length];
+
+    static {
+        for (Normalizer.Form f : Normalizer.Form.values()) {
+            FORMS[f.ordinal()] = new NormalForm(f);
+        }
+    }
+
+    private final Normalizer.Form _form;
+    private final Normalizer.Form _decomposition;
+
+    /**
+     * Flags for each code point, in pages of 256 made as needed.
+     * Races only cost a repeated lookup.
+     */
+    private final byte[][] _pages = new byte[(Character.MAX_CODE_POINT + 1) >>> 8][];
+
+    private NormalForm(Normalizer.Form form) {
+        _form = form;
+        _decomposition = (form == Normalizer.Form.NFKC || form == Normalizer.Form.NFKD)
+                ? Normalizer.Form.NFKD
+                : Normalizer.Form.NFD;
+    }
+
+    /**
+     * The shared instance for a form.
+     *
+     * @param form a normalization form
+     * @return what we know about it
+     */
+    static NormalForm of(Normalizer.Form form) {
+        return FORMS[form.ordinal()];
+    }
+
+    Normalizer.Form getForm() {
+        return _form;
+    }
+
+    /**
+     * Whether nothing before a code point can combine or reorder with it
+     * or anything after it.
+     *
+     * @param cp a code point
+     * @return whether a segment can start at {@code cp}
+     */
+    boolean isBoundary(int cp) {
+        return cp < 0x80 || (flags(cp) & BOUNDARY) != 0;
+    }
+
+    /**
+     * Whether a code point is a segment by itself and already normalized.
+     *
+     * @param cp a code point with a boundary before it
+     * @return whether {@code cp} can pass through unchanged when the next
+     *      code point is a boundary too
+     */
+    boolean isStable(int cp) {
+        return cp < 0x80 || (flags(cp) & STABLE) != 0;
+    }
+
+    /**
+     * Normalize one segment.
+     *
+     * @param segment the segment
+     * @return its normal form
+     */
+    String normalize(CharSequence segment) {
+        return Normalizer.normalize(segment, _form);
+    }
+
+    private int flags(int cp) {
+        byte[] page = _pages[cp >>> 8];
+        if (page == null) {
+            page = new byte[256];
+            _pages[cp >>> 8] = page;
+        }
+        byte result = page[cp & 0xFF];
+        if (result == 0) {
+            result = compute(cp);
+            page[cp & 0xFF] = result;
+        }
+        return result;
+    }
+
+    private byte compute(int cp) {
+        final String s = new String(Character.toChars(cp));
+        byte result = KNOWN;
+        // Anything that combines or reorders is a mark or a Hangul jamo,
+        // or a compatibility character that decomposes to one.
+        if (!isCombining(cp) && !isCombining(Normalizer.normalize(s, _decomposition).codePointAt(0))) {
+            result |= BOUNDARY;
+            if (Normalizer.isNormalized(s, _form)) {
+                result |= STABLE;
+            }
+        }
+        return result;
+    }
+
+    private static boolean isCombining(int cp) {
+        switch (Character.getType(cp)) {
+            case Character.NON_SPACING_MARK:
+            case Character.ENCLOSING_MARK:
+            case Character.COMBINING_SPACING_MARK:
+                return true;
+            default:
+                // Hangul vowel and trailing consonant jamo
+                return (cp >= 0x1160 && cp <= 0x11FF) || (cp >= 0xD7B0 && cp <= 0xD7FF);
+        }
+    }
+}
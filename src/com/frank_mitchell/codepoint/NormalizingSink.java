@@ -0,0 +1,165 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2023 Frank Mitchell.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.frank_mitchell.codepoint;
+
+import java.io.IOException;
+import java.text.Normalizer;
+import java.util.Objects;
+
+/**
+ * Writes code points to another sink in a Unicode normalization form.
+ * Only the current combining sequence is held back, and a code point
+ * already in normal form with no marks after it passes straight through,
+ * so text that is already normalized costs little more than writing it.
+ * <p>
+ * {@link #flush()} ends the current sequence, so marks written after a
+ * flush won't combine with what came before it.
+ * A run of more than {@link NormalForm#MAX_SEGMENT} combining marks is
+ * normalized in pieces.
+ *
+ * @author Frank Mitchell
+ */
+public final class NormalizingSink implements CodePointSink {
+
+    private final CodePointSink _sink;
+    private final NormalForm _form;
+    /**
+     * The current segment if it's more than one code point.
+     */
+    private final StringBuilder _segment = new StringBuilder();
+
+    /**
+     * The current segment if it's one code point, or -1.
+     */
+    private int _pending = -1;
+
+    /**
+     * Normalize what goes into another sink.
+     *
+     * @param sink the sink
+     * @param form the normalization form
+     */
+    public NormalizingSink(CodePointSink sink, Normalizer.Form form) {
+        _sink = Objects.requireNonNull(sink);
+        _form = NormalForm.of(form);
+    }
+
+    private Object getLock() {
+        return this;
+    }
+
+    /**
+     * The normalization form of this sink.
+     *
+     * @return the form
+     */
+    public Normalizer.Form getForm() {
+        return _form.getForm();
+    }
+
+    @Override
+    public EncodingPolicy getEncodingPolicy() {
+        return _sink.getEncodingPolicy();
+    }
+
+    @Override
+    public void setEncodingPolicy(EncodingPolicy policy) {
+        _sink.setEncodingPolicy(policy);
+    }
+
+    @Override
+    public void putCodePoint(int cp) throws IOException {
+        synchronized (getLock()) {
+            put(cp);
+        }
+    }
+
+    @Override
+    public void putCodePoints(int[] cps, int off, int len) throws IOException {
+        Objects.checkFromIndexSize(off, len, cps.length);
+        synchronized (getLock()) {
+            for (int i = off; i < off + len; i++) {
+                put(cps[i]);
+            }
+        }
+    }
+
+    private void put(int cp) throws IOException {
+        if (_form.isBoundary(cp)) {
+            emit();
+            _pending = cp;
+            return;
+        }
+        if (_pending >= 0) {
+            _segment.appendCodePoint(_pending);
+            _pending = -1;
+        }
+        _segment.appendCodePoint(cp);
+        if (_segment.length() >= NormalForm.MAX_SEGMENT) {
+            emit();
+        }
+    }
+
+    /**
+     * Write the current segment, if any.
+     */
+    private void emit() throws IOException {
+        if (_pending >= 0 && _form.isStable(_pending)) {
+            _sink.putCodePoint(_pending);
+        } else if (_pending >= 0) {
+            write(_form.normalize(new String(Character.toChars(_pending))));
+        } else if (_segment.length() > 0) {
+            write(_form.normalize(_segment));
+        }
+        _pending = -1;
+        _segment.setLength(0);
+    }
+
+    private void write(String s) throws IOException {
+        for (int i = 0; i < s.length(); ) {
+            final int cp = s.codePointAt(i);
+            _sink.putCodePoint(cp);
+            i += Character.charCount(cp);
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        synchronized (getLock()) {
+            emit();
+            _sink.flush();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (getLock()) {
+            try {
+                emit();
+            } finally {
+                _sink.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,202 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2023 Frank Mitchell.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.frank_mitchell.codepoint;
+
+import java.io.IOException;
+import java.text.Normalizer;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Reads code points from another source in a Unicode normalization form.
+ * Only the current combining sequence is buffered, and a code point
+ * already in normal form with no marks after it passes straight through,
+ * so text that is already normalized costs little more than reading it.
+ * <p>
+ * This source reads its source in blocks, and to know a sequence has
+ * ended it reads at least one code point ahead.
+ * A run of more than {@link NormalForm#MAX_SEGMENT} combining marks is
+ * normalized in pieces.
+ *
+ * @author Frank Mitchell
+ */
+public final class NormalizingSource implements CodePointSource {
+
+    private static final int BLOCK = 1024;
+
+    private final CodePointSource _source;
+    private final NormalForm _form;
+    private final int[] _in = new int[BLOCK];
+    private int _inPos;
+    private int _inLen;
+    private int[] _out = new int[NormalForm.MAX_SEGMENT];
+    private int _outPos;
+    private int _outLen;
+    private final StringBuilder _segment = new StringBuilder();
+    private int _current = -1;
+
+    /**
+     * Normalize what another source reads.
+     *
+     * @param source the source
+     * @param form the normalization form
+     */
+    public NormalizingSource(CodePointSource source, Normalizer.Form form) {
+        _source = Objects.requireNonNull(source);
+        _form = NormalForm.of(form);
+    }
+
+    private Object getLock() {
+        return this;
+    }
+
+    /**
+     * The normalization form of this source.
+     *
+     * @return the form
+     */
+    public Normalizer.Form getForm() {
+        return _form.getForm();
+    }
+
+    @Override
+    public DecodingPolicy getDecodingPolicy() {
+        return _source.getDecodingPolicy();
+    }
+
+    @Override
+    public void setDecodingPolicy(DecodingPolicy policy) {
+        _source.setDecodingPolicy(policy);
+    }
+
+    @Override
+    public int getCodePoint() {
+        synchronized (getLock()) {
+            if (_current < 0) {
+                throw new IllegalStateException("have not called next() yet");
+            }
+            return _current;
+        }
+    }
+
+    @Override
+    public boolean hasNext() throws IOException {
+        synchronized (getLock()) {
+            return _outPos < _outLen || fill();
+        }
+    }
+
+    @Override
+    public void next() throws IOException {
+        synchronized (getLock()) {
+            if (_outPos < _outLen || fill()) {
+                _current = _out[_outPos++];
+            } else {
+                _current = -1;
+            }
+        }
+    }
+
+    @Override
+    public int read(int[] cps, int off, int len) throws IOException {
+        Objects.checkFromIndexSize(off, len, cps.length);
+        if (len == 0) {
+            return 0;
+        }
+        synchronized (getLock()) {
+            int n = 0;
+            while (n < len && (_outPos < _outLen || fill())) {
+                final int count = Math.min(len - n, _outLen - _outPos);
+                System.arraycopy(_out, _outPos, cps, off + n, count);
+                _outPos += count;
+                n += count;
+            }
+            if (n == 0) {
+                return -1;
+            }
+            _current = cps[off + n - 1];
+            return n;
+        }
+    }
+
+    /**
+     * The next unnormalized code point, without consuming it.
+     *
+     * @return a code point, or -1 at the end of input
+     */
+    private int peek() throws IOException {
+        if (_inPos == _inLen) {
+            _inPos = 0;
+            _inLen = Math.max(_source.read(_in, 0, _in.length), 0);
+            if (_inLen == 0) {
+                return -1;
+            }
+        }
+        return _in[_inPos];
+    }
+
+    /**
+     * Normalize the next segment into the output buffer.
+     *
+     * @return whether there was another segment
+     */
+    private boolean fill() throws IOException {
+        _outPos = 0;
+        _outLen = 0;
+        final int first = peek();
+        if (first < 0) {
+            return false;
+        }
+        _inPos++;
+        int next = peek();
+        if (next < 0 || _form.isBoundary(next)) {
+            if (_form.isStable(first)) {
+                _out[_outLen++] = first;
+                return true;
+            }
+        }
+        _segment.setLength(0);
+        _segment.appendCodePoint(first);
+        while (next >= 0 && !_form.isBoundary(next) && _segment.length() < NormalForm.MAX_SEGMENT) {
+            _segment.appendCodePoint(next);
+            _inPos++;
+            next = peek();
+        }
+        final String result = _form.normalize(_segment);
+        for (int i = 0; i < result.length(); ) {
+            final int cp = result.codePointAt(i);
+            if (_outLen == _out.length) {
+                _out = Arrays.copyOf(_out, _out.length * 2);
+            }
+            _out[_outLen++] = cp;
+            i += Character.charCount(cp);
+        }
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        _source.close();
+    }
+}
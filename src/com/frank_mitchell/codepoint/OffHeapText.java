@@ -0,0 +1,361 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2023 Frank Mitchell.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.frank_mitchell.codepoint;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Code points stored outside the Java heap, so the garbage collector never
+ * scans them, however many gigabytes they take.
+ * Text is stored in UTF-8 or as fixed-width 32-bit code points, in direct
+ * buffers allocated a chunk at a time; its length isn't limited to what
+ * one buffer can hold.
+ * <p>
+ * Write to it as a {@link CodePointSink}, and read it with any number of
+ * independent cursors from {@link #getSource()}.
+ * Closing it as a sink does nothing to the text; {@link #release()} ends
+ * its lifetime, after which using it or its cursors throws
+ * {@link IllegalStateException}.
+ *
+ * @author Frank Mitchell
+ */
+public final class OffHeapText implements CodePointSink {
+
+    /**
+     * How code points are stored.
+     */
+    public enum Format {
+        /**
+         * One to four bytes each, as in UTF-8.
+         * Unpaired surrogates take three bytes, like any other code point
+         * in their range.
+         */
+        UTF_8,
+        /**
+         * Four bytes each, so {@link #codePointAt(long)} takes constant
+         * time.
+         */
+        UTF_32
+    }
+
+    /**
+     * Default chunk size, in bytes.
+     */
+    public static final int DEFAULT_CHUNK = 1 << 20;
+
+    private final Format _format;
+    private final int _shift;
+    private final int _mask;
+    private List<ByteBuffer> _chunks = new ArrayList<>();
+    private long _bytes;
+    private long _length;
+
+    /**
+     * Reads the text from the start.
+     */
+    private final class Cursor implements CodePointSource {
+
+        private long _pos;
+        private int _current = -1;
+
+        @Override
+        public int getCodePoint() {
+            synchronized (getLock()) {
+                if (_current < 0) {
+                    throw new IllegalStateException("have not called next() yet");
+                }
+                return _current;
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            synchronized (getLock()) {
+                checkLive();
+                return _pos < _bytes;
+            }
+        }
+
+        @Override
+        public void next() {
+            synchronized (getLock()) {
+                checkLive();
+                if (_pos < _bytes) {
+                    _current = decode(_pos);
+                    _pos += size(_current);
+                } else {
+                    _current = -1;
+                }
+            }
+        }
+
+        @Override
+        public int read(int[] cps, int off, int len) {
+            Objects.checkFromIndexSize(off, len, cps.length);
+            if (len == 0) {
+                return 0;
+            }
+            synchronized (getLock()) {
+                checkLive();
+                int n = 0;
+                while (n < len && _pos < _bytes) {
+                    final int cp = decode(_pos);
+                    _pos += size(cp);
+                    cps[off + n++] = cp;
+                }
+                if (n == 0) {
+                    return -1;
+                }
+                _current = cps[off + n - 1];
+                return n;
+            }
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    /**
+     * Create empty text with the default chunk size.
+     *
+     * @param format how to store code points
+     */
+    public OffHeapText(Format format) {
+        this(format, DEFAULT_CHUNK);
+    }
+
+    /**
+     * Create empty text.
+     *
+     * @param format how to store code points
+     * @param chunkSize bytes to allocate at a time, rounded up to a power
+     *      of two of at least 64
+     */
+    public OffHeapText(Format format, int chunkSize) {
+        if (chunkSize <= 0 || chunkSize > (1 << 30)) {
+            throw new IllegalArgumentException("bad chunk size " + chunkSize);
+        }
+        _format = Objects.requireNonNull(format);
+        final int size = Math.max(64, Integer.highestOneBit(chunkSize - 1) << 1);
+        _shift = Integer.numberOfTrailingZeros(size);
+        _mask = size - 1;
+    }
+
+    private Object getLock() {
+        return this;
+    }
+
+    private void checkLive() {
+        if (_chunks == null) {
+            throw new IllegalStateException("text has been released");
+        }
+    }
+
+    /**
+     * How code points are stored.
+     *
+     * @return the format
+     */
+    public Format getFormat() {
+        return _format;
+    }
+
+    /**
+     * The number of code points.
+     *
+     * @return the length
+     */
+    public long length() {
+        synchronized (getLock()) {
+            return _length;
+        }
+    }
+
+    /**
+     * The number of bytes the code points take.
+     *
+     * @return the size of the text, not counting unused room in the last
+     *      chunk
+     */
+    public long byteSize() {
+        synchronized (getLock()) {
+            return _bytes;
+        }
+    }
+
+    /**
+     * The code point at an index.
+     *
+     * @param index the index
+     * @return the code point
+     * @throws IndexOutOfBoundsException unless {@code 0 <= index < length()}
+     * @throws UnsupportedOperationException unless the format is
+     *      {@link Format#UTF_32}
+     */
+    public int codePointAt(long index) {
+        if (_format != Format.UTF_32) {
+            throw new UnsupportedOperationException("no random access in " + _format);
+        }
+        synchronized (getLock()) {
+            checkLive();
+            if (index < 0 || index >= _length) {
+                throw new IndexOutOfBoundsException("index " + index + " out of bounds for length " + _length);
+            }
+            final long pos = index * 4;
+            return _chunks.get((int) (pos >>> _shift)).getInt((int) (pos & _mask));
+        }
+    }
+
+    /**
+     * A cursor that reads from the start.
+     *
+     * @return a new source
+     */
+    public CodePointSource getSource() {
+        synchronized (getLock()) {
+            checkLive();
+            return new Cursor();
+        }
+    }
+
+    /**
+     * Whether the text is still there.
+     *
+     * @return whether {@link #release()} hasn't been called
+     */
+    public boolean isLive() {
+        synchronized (getLock()) {
+            return _chunks != null;
+        }
+    }
+
+    /**
+     * Give up the text.
+     * The memory is returned once the JVM cleans up the direct buffers.
+     */
+    public void release() {
+        synchronized (getLock()) {
+            _chunks = null;
+        }
+    }
+
+    private int size(int cp) {
+        if (_format == Format.UTF_32) {
+            return 4;
+        }
+        return (cp < 0x80) ? 1 : (cp < 0x800) ? 2 : (cp < 0x10000) ? 3 : 4;
+    }
+
+    private byte byteAt(long pos) {
+        return _chunks.get((int) (pos >>> _shift)).get((int) (pos & _mask));
+    }
+
+    private int decode(long pos) {
+        final ByteBuffer chunk = _chunks.get((int) (pos >>> _shift));
+        final int off = (int) (pos & _mask);
+        if (_format == Format.UTF_32) {
+            return chunk.getInt(off);
+        }
+        final int b = chunk.get(off) & 0xFF;
+        if (b < 0x80) {
+            return b;
+        }
+        final int n = (b < 0xE0) ? 2 : (b < 0xF0) ? 3 : 4;
+        int cp = b & (0x7F >>> n);
+        for (int i = 1; i < n; i++) {
+            cp = (cp << 6) | (byteAt(pos + i) & 0x3F);
+        }
+        return cp;
+    }
+
+    private void putByte(int b) {
+        final int off = (int) (_bytes & _mask);
+        if (off == 0 && (_bytes >>> _shift) == _chunks.size()) {
+            _chunks.add(ByteBuffer.allocateDirect(_mask + 1).order(ByteOrder.nativeOrder()));
+        }
+        _chunks.get(_chunks.size() - 1).put(off, (byte) b);
+        _bytes++;
+    }
+
+    private void put(int cp) {
+        if (!Character.isValidCodePoint(cp)) {
+            throw new IllegalArgumentException("invalid code point " + cp);
+        }
+        if (_format == Format.UTF_32) {
+            final int off = (int) (_bytes & _mask);
+            if (off == 0 && (_bytes >>> _shift) == _chunks.size()) {
+                _chunks.add(ByteBuffer.allocateDirect(_mask + 1).order(ByteOrder.nativeOrder()));
+            }
+            _chunks.get(_chunks.size() - 1).putInt(off, cp);
+            _bytes += 4;
+        } else if (cp < 0x80) {
+            putByte(cp);
+        } else if (cp < 0x800) {
+            putByte(0xC0 | (cp >>> 6));
+            putByte(0x80 | (cp & 0x3F));
+        } else if (cp < 0x10000) {
+            putByte(0xE0 | (cp >>> 12));
+            putByte(0x80 | ((cp >>> 6) & 0x3F));
+            putByte(0x80 | (cp & 0x3F));
+        } else {
+            putByte(0xF0 | (cp >>> 18));
+            putByte(0x80 | ((cp >>> 12) & 0x3F));
+            putByte(0x80 | ((cp >>> 6) & 0x3F));
+            putByte(0x80 | (cp & 0x3F));
+        }
+        _length++;
+    }
+
+    @Override
+    public void putCodePoint(int cp) {
+        synchronized (getLock()) {
+            checkLive();
+            put(cp);
+        }
+    }
+
+    @Override
+    public void putCodePoints(int[] cps, int off, int len) {
+        Objects.checkFromIndexSize(off, len, cps.length);
+        synchronized (getLock()) {
+            checkLive();
+            for (int i = off; i < off + len; i++) {
+                put(cps[i]);
+            }
+        }
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public void close() {
+    }
+}
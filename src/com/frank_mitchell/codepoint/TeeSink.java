@@ -0,0 +1,352 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2023 Frank Mitchell.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.frank_mitchell.codepoint;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Writes the same code points to many outputs, encoding them only once
+ * per charset.
+ * Output streams are grouped by charset; each group has one sink from the
+ * provider that encodes every block, and the bytes it writes go to every
+ * stream in the group.
+ * Other sinks can join too, and get the code points as they are.
+ * <p>
+ * Targets are written, flushed, and closed one by one: if one throws, the
+ * rest are still written, flushed, or closed, and the first exception is
+ * thrown afterward with any others suppressed.
+ * An output stream that throws leaves its group, since the group's sink
+ * has already taken its bytes as written; it's only closed at the end.
+ *
+ * @author Frank Mitchell
+ */
+public final class TeeSink implements CodePointSink {
+
+    private final Map<Charset, Fanout> _groups = new LinkedHashMap<>();
+    private final List<CodePointSink> _sinks = new ArrayList<>();
+    private EncodingPolicy _policy = EncodingPolicy.REPORT;
+    private boolean _started;
+
+    /**
+     * Writes the same bytes to every stream in a group.
+     * It never throws: a stream that fails is dropped and its exception
+     * kept for the tee, so the group's sink carries on for the others.
+     */
+    private static final class Fanout extends OutputStream {
+
+        private final List<OutputStream> _targets = new ArrayList<>();
+        private final List<OutputStream> _dropped = new ArrayList<>();
+        private CodePointSink _encoder;
+        private IOException _error;
+
+        private void drop(Iterator<OutputStream> it, OutputStream out, IOException e) {
+            it.remove();
+            _dropped.add(out);
+            _error = collect(_error, e);
+        }
+
+        /**
+         * The exceptions since the last call, if any.
+         */
+        IOException takeError() {
+            final IOException e = _error;
+            _error = null;
+            return e;
+        }
+
+        @Override
+        public void write(int b) {
+            for (Iterator<OutputStream> it = _targets.iterator(); it.hasNext();) {
+                final OutputStream out = it.next();
+                try {
+                    out.write(b);
+                } catch (IOException e) {
+                    drop(it, out, e);
+                }
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            for (Iterator<OutputStream> it = _targets.iterator(); it.hasNext();) {
+                final OutputStream out = it.next();
+                try {
+                    out.write(b, off, len);
+                } catch (IOException e) {
+                    drop(it, out, e);
+                }
+            }
+        }
+
+        @Override
+        public void flush() {
+            for (Iterator<OutputStream> it = _targets.iterator(); it.hasNext();) {
+                final OutputStream out = it.next();
+                try {
+                    out.flush();
+                } catch (IOException e) {
+                    drop(it, out, e);
+                }
+            }
+        }
+
+        @Override
+        public void close() {
+            _targets.addAll(_dropped);
+            _dropped.clear();
+            for (OutputStream out : _targets) {
+                try {
+                    out.close();
+                } catch (IOException e) {
+                    _error = collect(_error, e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Create a sink with no targets yet.
+     */
+    public TeeSink() {
+    }
+
+    private Object getLock() {
+        return this;
+    }
+
+    private static IOException collect(IOException first, IOException next) {
+        if (first == null || next == null) {
+            return (first == null) ? next : first;
+        }
+        first.addSuppressed(next);
+        return first;
+    }
+
+    private static void check(IOException error) throws IOException {
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    private void checkNotStarted() {
+        if (_started) {
+            throw new IllegalStateException("can't add a target after writing");
+        }
+    }
+
+    /**
+     * Add an output stream.
+     *
+     * @param out the stream
+     * @param cs the charset to write to it
+     * @return this sink
+     * @throws IOException if creating an encoding sink caused an exception
+     * @throws IllegalStateException if anything has been written
+     * @throws UnsupportedOperationException if a new group's sink can't
+     *      use this sink's policy
+     */
+    public TeeSink addTarget(OutputStream out, Charset cs) throws IOException {
+        Objects.requireNonNull(out);
+        Objects.requireNonNull(cs);
+        synchronized (getLock()) {
+            checkNotStarted();
+            Fanout group = _groups.get(cs);
+            if (group == null) {
+                group = new Fanout();
+                group._encoder = CodePoint.getSink(OutputStream.class, group, cs);
+                group._encoder.setEncodingPolicy(_policy);
+                _groups.put(cs, group);
+            }
+            group._targets.add(out);
+            return this;
+        }
+    }
+
+    /**
+     * Add any other sink.
+     *
+     * @param sink the sink
+     * @return this sink
+     * @throws IllegalStateException if anything has been written
+     */
+    public TeeSink addSink(CodePointSink sink) {
+        Objects.requireNonNull(sink);
+        synchronized (getLock()) {
+            checkNotStarted();
+            _sinks.add(sink);
+            return this;
+        }
+    }
+
+    /**
+     * The number of distinct charsets among the output streams, i.e. how
+     * many times each code point is encoded.
+     *
+     * @return the number of groups
+     */
+    public int getGroupCount() {
+        synchronized (getLock()) {
+            return _groups.size();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * The policy applies to every group.
+     */
+    @Override
+    public EncodingPolicy getEncodingPolicy() {
+        synchronized (getLock()) {
+            return _policy;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * The policy applies to every group; other sinks keep their own.
+     * If any group's sink can't use the policy, none of them change.
+     */
+    @Override
+    public void setEncodingPolicy(EncodingPolicy policy) {
+        Objects.requireNonNull(policy);
+        synchronized (getLock()) {
+            final List<Fanout> changed = new ArrayList<>(_groups.size());
+            try {
+                for (Fanout group : _groups.values()) {
+                    group._encoder.setEncodingPolicy(policy);
+                    changed.add(group);
+                }
+            } catch (UnsupportedOperationException e) {
+                for (Fanout group : changed) {
+                    group._encoder.setEncodingPolicy(_policy);
+                }
+                throw e;
+            }
+            _policy = policy;
+        }
+    }
+
+    @Override
+    public void putCodePoint(int cp) throws IOException {
+        synchronized (getLock()) {
+            _started = true;
+            IOException error = null;
+            for (Fanout group : _groups.values()) {
+                try {
+                    group._encoder.putCodePoint(cp);
+                } catch (IOException e) {
+                    error = collect(error, e);
+                }
+                error = collect(error, group.takeError());
+            }
+            for (CodePointSink sink : _sinks) {
+                try {
+                    sink.putCodePoint(cp);
+                } catch (IOException e) {
+                    error = collect(error, e);
+                }
+            }
+            check(error);
+        }
+    }
+
+    @Override
+    public void putCodePoints(int[] cps, int off, int len) throws IOException {
+        Objects.checkFromIndexSize(off, len, cps.length);
+        synchronized (getLock()) {
+            _started = true;
+            IOException error = null;
+            for (Fanout group : _groups.values()) {
+                try {
+                    group._encoder.putCodePoints(cps, off, len);
+                } catch (IOException e) {
+                    error = collect(error, e);
+                }
+                error = collect(error, group.takeError());
+            }
+            for (CodePointSink sink : _sinks) {
+                try {
+                    sink.putCodePoints(cps, off, len);
+                } catch (IOException e) {
+                    error = collect(error, e);
+                }
+            }
+            check(error);
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        synchronized (getLock()) {
+            IOException error = null;
+            for (Fanout group : _groups.values()) {
+                try {
+                    group._encoder.flush();
+                } catch (IOException e) {
+                    error = collect(error, e);
+                }
+                error = collect(error, group.takeError());
+            }
+            for (CodePointSink sink : _sinks) {
+                try {
+                    sink.flush();
+                } catch (IOException e) {
+                    error = collect(error, e);
+                }
+            }
+            check(error);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (getLock()) {
+            IOException error = null;
+            for (Fanout group : _groups.values()) {
+                try {
+                    group._encoder.close();
+                } catch (IOException e) {
+                    error = collect(error, e);
+                }
+                error = collect(error, group.takeError());
+            }
+            for (CodePointSink sink : _sinks) {
+                try {
+                    sink.close();
+                } catch (IOException e) {
+                    error = collect(error, e);
+                }
+            }
+            check(error);
+        }
+    }
+}
@@ -0,0 +1,281 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2023 Frank Mitchell.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.frank_mitchell.codepoint;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Finds a literal string in UTF-8 bytes without decoding them.
+ * The needle is encoded once; the search then compares raw bytes.
+ * Short needles are found by scanning eight bytes at a time for the first
+ * byte; longer ones by Horspool's algorithm, which skips ahead by a table
+ * of the needle's bytes.
+ * <p>
+ * A needle encoded from code points never starts with a continuation
+ * byte, so every match starts on a code point boundary.
+ *
+ * @author Frank Mitchell
+ */
+public final class Utf8Search {
+
+    /**
+     * Needles shorter than this are found by first byte, since Horspool
+     * can't skip far for them.
+     */
+    private static final int SHORT = 4;
+
+    private static final long ONES = 0x0101010101010101L;
+    private static final long HIGHS = 0x8080808080808080L;
+
+    /**
+     * Where a needle was found.
+     */
+    public static final class Match {
+
+        private final ByteBuffer _haystack;
+        private final int _offset;
+
+        private Match(ByteBuffer haystack, int offset) {
+            _haystack = haystack;
+            _offset = offset;
+        }
+
+        /**
+         * The index of the first byte of the match in the haystack.
+         *
+         * @return a byte offset
+         */
+        public int getOffset() {
+            return _offset;
+        }
+
+        /**
+         * A source that reads the haystack from the match to its limit.
+         * The haystack's own position is unchanged.
+         *
+         * @return a new source, whose first code point starts the match
+         * @throws IOException if creating the source caused an exception
+         */
+        public CodePointSource getSource() throws IOException {
+            final ByteBuffer rest = _haystack.duplicate();
+            rest.position(_offset);
+            return CodePoint.getSource(ByteBuffer.class, rest, StandardCharsets.UTF_8);
+        }
+    }
+
+    private final byte[] _needle;
+    private final int[] _skip;
+
+    /**
+     * Search for a string.
+     *
+     * @param needle the string to find
+     * @throws IllegalArgumentException if {@code needle} is empty or has
+     *      an unpaired surrogate
+     */
+    public Utf8Search(CharSequence needle) {
+        this(needle.codePoints().toArray());
+    }
+
+    /**
+     * Search for a sequence of code points.
+     *
+     * @param needle the code points to find
+     * @throws IllegalArgumentException if {@code needle} is empty or has
+     *      a surrogate or an invalid code point
+     */
+    public Utf8Search(int... needle) {
+        if (needle.length == 0) {
+            throw new IllegalArgumentException("needle is empty");
+        }
+        _needle = encode(needle);
+        _skip = new int[256];
+        Arrays.fill(_skip, _needle.length);
+        for (int i = 0; i < _needle.length - 1; i++) {
+            _skip[_needle[i] & 0xFF] = _needle.length - 1 - i;
+        }
+    }
+
+    private static byte[] encode(int[] cps) {
+        final ByteBuffer out = ByteBuffer.allocate(cps.length * 4);
+        for (int cp : cps) {
+            if (cp < 0 || cp > Character.MAX_CODE_POINT
+                    || (cp >= Character.MIN_SURROGATE && cp <= Character.MAX_SURROGATE)) {
+                throw new IllegalArgumentException("can't encode " + Integer.toHexString(cp) + " in UTF-8");
+            }
+            if (cp < 0x80) {
+                out.put((byte) cp);
+            } else if (cp < 0x800) {
+                out.put((byte) (0xC0 | (cp >>> 6)));
+                out.put((byte) (0x80 | (cp & 0x3F)));
+            } else if (cp < 0x10000) {
+                out.put((byte) (0xE0 | (cp >>> 12)));
+                out.put((byte) (0x80 | ((cp >>> 6) & 0x3F)));
+                out.put((byte) (0x80 | (cp & 0x3F)));
+            } else {
+                out.put((byte) (0xF0 | (cp >>> 18)));
+                out.put((byte) (0x80 | ((cp >>> 12) & 0x3F)));
+                out.put((byte) (0x80 | ((cp >>> 6) & 0x3F)));
+                out.put((byte) (0x80 | (cp & 0x3F)));
+            }
+        }
+        return Arrays.copyOf(out.array(), out.position());
+    }
+
+    /**
+     * Map a whole file read-only, to search it.
+     *
+     * @param path the file
+     * @return a buffer of the file's bytes
+     * @throws IOException if opening or mapping the file caused an exception
+     */
+    public static ByteBuffer map(Path path) throws IOException {
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+            return ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+        }
+    }
+
+    /**
+     * The needle in UTF-8.
+     *
+     * @return a copy of the bytes searched for
+     */
+    public byte[] getNeedle() {
+        return _needle.clone();
+    }
+
+    /**
+     * Find the first match at or after an index.
+     *
+     * @param haystack the bytes to search, up to their limit
+     * @param from the index to start from
+     * @return the index of the first byte of the match, or -1 if none
+     */
+    public int indexOf(ByteBuffer haystack, int from) {
+        Objects.checkIndex(from, haystack.limit() + 1);
+        final int end = haystack.limit() - _needle.length + 1;
+        if (from >= end) {
+            return -1;
+        }
+        return (_needle.length < SHORT) ? scan(haystack, from, end) : horspool(haystack, from, end);
+    }
+
+    /**
+     * Find the first match at or after an index.
+     *
+     * @param haystack the bytes to search
+     * @param from the index to start from
+     * @return the index of the first byte of the match, or -1 if none
+     */
+    public int indexOf(byte[] haystack, int from) {
+        return indexOf(ByteBuffer.wrap(haystack), from);
+    }
+
+    /**
+     * Find the first match between a buffer's position and its limit.
+     *
+     * @param haystack the bytes to search
+     * @return the match, or null if none
+     */
+    public Match find(ByteBuffer haystack) {
+        final int offset = indexOf(haystack, haystack.position());
+        return (offset < 0) ? null : new Match(haystack, offset);
+    }
+
+    /**
+     * Find the first match in an array.
+     *
+     * @param haystack the bytes to search
+     * @return the match, or null if none
+     */
+    public Match find(byte[] haystack) {
+        return find(ByteBuffer.wrap(haystack));
+    }
+
+    private boolean matchesAt(ByteBuffer haystack, int at) {
+        for (int i = 0; i < _needle.length; i++) {
+            if (haystack.get(at + i) != _needle[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Look for the first byte of the needle eight bytes at a time, and
+     * check the rest wherever it turns up.
+     * With the lowest address in the low byte, the lowest flag set in
+     * {@code found} is always a real match.
+     */
+    private int scan(ByteBuffer haystack, int from, int end) {
+        final ByteBuffer le = haystack.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        final long first = ONES * (_needle[0] & 0xFF);
+        final int limit = haystack.limit();
+        int i = from;
+        while (i < end && i + Long.BYTES <= limit) {
+            final long x = le.getLong(i) ^ first;
+            final long found = (x - ONES) & ~x & HIGHS;
+            if (found == 0) {
+                i += Long.BYTES;
+                continue;
+            }
+            final int at = i + (Long.numberOfTrailingZeros(found) >>> 3);
+            if (at >= end) {
+                return -1;
+            }
+            if (matchesAt(haystack, at)) {
+                return at;
+            }
+            i = at + 1;
+        }
+        for (; i < end; i++) {
+            if (haystack.get(i) == _needle[0] && matchesAt(haystack, i)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private int horspool(ByteBuffer haystack, int from, int end) {
+        final int last = _needle.length - 1;
+        final byte lastByte = _needle[last];
+        int i = from;
+        while (i < end) {
+            final byte b = haystack.get(i + last);
+            if (b == lastByte && matchesAt(haystack, i)) {
+                return i;
+            }
+            i += _skip[b & 0xFF];
+        }
+        return -1;
+    }
+}
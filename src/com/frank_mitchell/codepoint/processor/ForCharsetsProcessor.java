@@ -0,0 +1,413 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2023 Frank Mitchell.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.frank_mitchell.codepoint.processor;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.charset.IllegalCharsetNameException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.Filer;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardLocation;
+
+/**
+ * Generates a {@code WrapperRegistry} for each package containing
+ * constructors annotated with {@code ForCharsets}.
+ * The generated class calls each public constructor of each source or sink
+ * directly, and carries the constructors' charsets, so the {@code Provider}
+ * needs neither reflection nor a charset lookup by name for standard
+ * charsets.
+ * The processor also lists the generated classes in
+ * {@code META-INF/services} so the {@code Provider} can find them.
+ *
+ * <p>The jar registers this processor as a service, so any code compiled
+ * against it gets a registry automatically.
+ * Classes that can't be called directly, e.g. private nested classes, are
+ * left out with a warning; the {@code Provider} will still find them through
+ * reflection.</p>
+ *
+ * @author Frank Mitchell
+ */
+@SupportedAnnotationTypes(ForCharsetsProcessor.FOR_CHARSETS)
+public class ForCharsetsProcessor extends AbstractProcessor {
+
+    static final String FOR_CHARSETS = "com.frank_mitchell.codepoint.ForCharsets";
+    static final String SOURCE = "com.frank_mitchell.codepoint.CodePointSource";
+    static final String SINK = "com.frank_mitchell.codepoint.CodePointSink";
+    static final String REGISTRY = "com.frank_mitchell.codepoint.spi.WrapperRegistry";
+    static final String GENERATED_NAME = "GeneratedWrapperRegistry";
+    static final String SERVICE_FILE = "META-INF/services/" + REGISTRY;
+
+    /**
+     * Charsets we can name with a constant instead of a lookup.
+     */
+    private static final Map<Charset, String> STANDARD = new HashMap<>();
+
+    static {
+        STANDARD.put(StandardCharsets.US_ASCII, "US_ASCII");
+        STANDARD.put(StandardCharsets.ISO_8859_1, "ISO_8859_1");
+        STANDARD.put(StandardCharsets.UTF_8, "UTF_8");
+        STANDARD.put(StandardCharsets.UTF_16BE, "UTF_16BE");
+        STANDARD.put(StandardCharsets.UTF_16LE, "UTF_16LE");
+        STANDARD.put(StandardCharsets.UTF_16, "UTF_16");
+    }
+
+    /**
+     * Types to register, by package name, then by qualified name.
+     */
+    private final Map<String, Map<String, TypeElement>> _pending = new LinkedHashMap<>();
+
+    /**
+     * Registries generated during this compilation.
+     */
+    private final Set<String> _generated = new TreeSet<>();
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment env) {
+        for (TypeElement ann : annotations) {
+            for (Element e : env.getElementsAnnotatedWith(ann)) {
+                if (e.getKind() != ElementKind.CONSTRUCTOR) {
+                    warn("@ForCharsets has no effect except on constructors", e);
+                    continue;
+                }
+                TypeElement type = (TypeElement) e.getEnclosingElement();
+                if (isUsable(type)) {
+                    String pkg = getPackage(type).getQualifiedName().toString();
+                    _pending.computeIfAbsent(pkg, k -> new LinkedHashMap<>())
+                            .put(type.getQualifiedName().toString(), type);
+                }
+            }
+        }
+        for (Map.Entry<String, Map<String, TypeElement>> e : _pending.entrySet()) {
+            String pkg = e.getKey();
+            if (_generated.contains(qualify(pkg, GENERATED_NAME))) {
+                for (TypeElement type : e.getValue().values()) {
+                    warn("Registry for package already generated; "
+                            + "Provider will use reflection", type);
+                }
+            } else {
+                writeRegistry(pkg, e.getValue().values());
+            }
+        }
+        _pending.clear();
+        if (env.processingOver() && !_generated.isEmpty()) {
+            writeServiceFile();
+        }
+        return true;
+    }
+
+    private static String qualify(String pkg, String name) {
+        return pkg.isEmpty() ? name : pkg + "." + name;
+    }
+
+    private PackageElement getPackage(Element e) {
+        return processingEnv.getElementUtils().getPackageOf(e);
+    }
+
+    private void warn(String msg, Element e) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING, msg, e);
+    }
+
+    private void error(String msg, Element e) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, msg, e);
+    }
+
+    private boolean isUsable(TypeElement type) {
+        final Elements elements = processingEnv.getElementUtils();
+        final Types types = processingEnv.getTypeUtils();
+
+        if (type.getKind() != ElementKind.CLASS
+                || type.getModifiers().contains(Modifier.ABSTRACT)) {
+            warn("Only concrete classes can be sources or sinks", type);
+            return false;
+        }
+        if (!type.getTypeParameters().isEmpty()) {
+            warn("Generic sources and sinks are not supported; "
+                    + "Provider will use reflection", type);
+            return false;
+        }
+        for (Element e = type; e instanceof TypeElement; e = e.getEnclosingElement()) {
+            final TypeElement t = (TypeElement) e;
+            if (t.getModifiers().contains(Modifier.PRIVATE)
+                    || (t.getNestingKind() == NestingKind.MEMBER
+                    && !t.getModifiers().contains(Modifier.STATIC))
+                    || t.getNestingKind() == NestingKind.LOCAL
+                    || t.getNestingKind() == NestingKind.ANONYMOUS) {
+                warn("Class is not accessible to its package; "
+                        + "Provider will use reflection", type);
+                return false;
+            }
+        }
+        boolean wrapper = false;
+        for (String iface : new String[]{SOURCE, SINK}) {
+            TypeElement te = elements.getTypeElement(iface);
+            if (te != null && types.isAssignable(type.asType(), types.erasure(te.asType()))) {
+                wrapper = true;
+            }
+        }
+        if (!wrapper) {
+            warn("Neither a CodePointSource nor a CodePointSink", type);
+        }
+        return wrapper;
+    }
+
+    /**
+     * Whether the Provider can call a constructor: it's public and
+     * each parameter takes either the wrapped object or the charset.
+     */
+    private boolean isCallable(ExecutableElement cons) {
+        if (!cons.getModifiers().contains(Modifier.PUBLIC)) {
+            return false;
+        }
+        for (VariableElement p : cons.getParameters()) {
+            TypeKind kind = p.asType().getKind();
+            if (kind != TypeKind.DECLARED && kind != TypeKind.ARRAY
+                    && kind != TypeKind.TYPEVAR) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean isCharset(TypeMirror t) {
+        final Types types = processingEnv.getTypeUtils();
+        final TypeElement cs = processingEnv.getElementUtils().getTypeElement(Charset.class.getName());
+        return cs != null && types.isSameType(types.erasure(t), cs.asType());
+    }
+
+    private boolean throwsOnlyIOException(ExecutableElement cons) {
+        final Elements elements = processingEnv.getElementUtils();
+        final Types types = processingEnv.getTypeUtils();
+        final TypeMirror ioe = elements.getTypeElement(IOException.class.getName()).asType();
+        final TypeMirror rte = elements.getTypeElement(RuntimeException.class.getName()).asType();
+        final TypeMirror err = elements.getTypeElement(Error.class.getName()).asType();
+        for (TypeMirror t : cons.getThrownTypes()) {
+            if (!types.isAssignable(t, ioe) && !types.isAssignable(t, rte)
+                    && !types.isAssignable(t, err)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private List<String> getCharsetNames(ExecutableElement cons) {
+        List<String> result = new ArrayList<>();
+        for (AnnotationMirror am : cons.getAnnotationMirrors()) {
+            TypeElement at = (TypeElement) am.getAnnotationType().asElement();
+            if (!at.getQualifiedName().contentEquals(FOR_CHARSETS)) {
+                continue;
+            }
+            for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> e
+                    : am.getElementValues().entrySet()) {
+                if (!e.getKey().getSimpleName().contentEquals("names")) {
+                    continue;
+                }
+                Object value = e.getValue().getValue();
+                if (value instanceof List) {
+                    for (Object v : (List<?>) value) {
+                        result.add(String.valueOf(((AnnotationValue) v).getValue()));
+                    }
+                } else {
+                    result.add(String.valueOf(value));
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Write an expression for the set of charsets named by a constructor.
+     */
+    private String charsetsExpression(ExecutableElement cons) {
+        final Set<String> known = new LinkedHashSet<>();
+        final Set<String> names = new LinkedHashSet<>();
+        for (String n : getCharsetNames(cons)) {
+            try {
+                Charset cs = Charset.isSupported(n) ? Charset.forName(n) : null;
+                if (cs != null && STANDARD.containsKey(cs)) {
+                    known.add("java.nio.charset.StandardCharsets." + STANDARD.get(cs));
+                } else {
+                    names.add(n);
+                }
+            } catch (IllegalCharsetNameException e) {
+                error("Illegal charset name \"" + n + "\"", cons);
+            }
+        }
+        StringBuilder b = new StringBuilder();
+        b.append(REGISTRY).append(".charsets(new java.nio.charset.Charset[] {");
+        b.append(String.join(", ", known));
+        b.append('}');
+        for (String n : names) {
+            b.append(", \"").append(escape(n)).append('"');
+        }
+        b.append(')');
+        return b.toString();
+    }
+
+    private static String escape(String s) {
+        return s.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+
+    private void writeRegistry(String pkg, Iterable<TypeElement> classes) {
+        final Types types = processingEnv.getTypeUtils();
+        final String name = qualify(pkg, GENERATED_NAME);
+        final List<Element> origins = new ArrayList<>();
+        final StringBuilder body = new StringBuilder();
+
+        for (TypeElement type : classes) {
+            origins.add(type);
+            final String cname = type.getQualifiedName().toString();
+            for (ExecutableElement cons : ElementFilter.constructorsIn(type.getEnclosedElements())) {
+                if (!isCallable(cons)) {
+                    continue;
+                }
+                final List<String> params = new ArrayList<>();
+                final List<String> args = new ArrayList<>();
+                for (VariableElement p : cons.getParameters()) {
+                    String ptype = types.erasure(p.asType()).toString();
+                    params.add(ptype + ".class");
+                    if (isCharset(p.asType())) {
+                        args.add("cs");
+                    } else {
+                        args.add("(" + ptype + ") obj");
+                    }
+                }
+                final String create = "new " + cname + "(" + String.join(", ", args) + ")";
+                body.append("        c.add(").append(cname).append(".class,\n");
+                body.append("                new Class<?>[] {").append(String.join(", ", params)).append("},\n");
+                body.append("                ").append(charsetsExpression(cons)).append(",\n");
+                if (throwsOnlyIOException(cons)) {
+                    body.append("                (obj, cs) -> ").append(create).append(");\n");
+                } else {
+                    body.append("                (obj, cs) -> {\n");
+                    body.append("                    try {\n");
+                    body.append("                        return ").append(create).append(";\n");
+                    body.append("                    } catch (java.io.IOException | RuntimeException e) {\n");
+                    body.append("                        throw e;\n");
+                    body.append("                    } catch (Exception e) {\n");
+                    body.append("                        throw new java.io.IOException(e);\n");
+                    body.append("                    }\n");
+                    body.append("                });\n");
+                }
+            }
+        }
+
+        try {
+            JavaFileObject jfo = processingEnv.getFiler().createSourceFile(
+                    name, origins.toArray(new Element[origins.size()]));
+            try (Writer w = jfo.openWriter(); PrintWriter out = new PrintWriter(w)) {
+                if (!pkg.isEmpty()) {
+                    out.println("package " + pkg + ";");
+                    out.println();
+                }
+                out.println("/**");
+                out.println(" * Sources and sinks in this package, for the Provider.");
+                out.println(" * Generated by " + getClass().getName() + "; do not edit.");
+                out.println(" */");
+                out.println("public final class " + GENERATED_NAME + " implements " + REGISTRY + " {");
+                out.println();
+                out.println("    @Override");
+                out.println("    @SuppressWarnings({\"unchecked\", \"rawtypes\"})");
+                out.println("    public void registerWrappers(" + REGISTRY + ".Collector c) {");
+                out.print(body);
+                out.println("    }");
+                out.println("}");
+            }
+            _generated.add(name);
+        } catch (IOException e) {
+            error("Could not write " + name + ": " + e, origins.isEmpty() ? null : origins.get(0));
+        }
+    }
+
+    private void writeServiceFile() {
+        final Filer filer = processingEnv.getFiler();
+        final Set<String> names = new TreeSet<>();
+        try {
+            // Keep registries from earlier, incremental compilations.
+            FileObject old = filer.getResource(StandardLocation.CLASS_OUTPUT, "", SERVICE_FILE);
+            try (Reader r = new InputStreamReader(old.openInputStream(), StandardCharsets.UTF_8);
+                    BufferedReader br = new BufferedReader(r)) {
+                for (String line = br.readLine(); line != null; line = br.readLine()) {
+                    line = line.trim();
+                    if (!line.isEmpty() && !line.startsWith("#")) {
+                        names.add(line);
+                    }
+                }
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            // No file yet; that's fine.
+        }
+        names.addAll(_generated);
+        try {
+            FileObject fo = filer.createResource(StandardLocation.CLASS_OUTPUT, "", SERVICE_FILE);
+            try (Writer w = fo.openWriter(); PrintWriter out = new PrintWriter(w)) {
+                for (String n : names) {
+                    out.println(n);
+                }
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                    "Could not write " + SERVICE_FILE + ": " + e);
+        }
+    }
+}
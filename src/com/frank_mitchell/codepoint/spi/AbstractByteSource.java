@@ -0,0 +1,413 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2023 Frank Mitchell.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.frank_mitchell.codepoint.spi;
+
+import com.frank_mitchell.codepoint.CodePointSource;
+import com.frank_mitchell.codepoint.DecodingPolicy;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.util.Objects;
+
+/**
+ * Base for sources that decode bytes themselves, either from a
+ * {@link ByteBuffer} or through a buffer filled from an
+ * {@link InputStream}.
+ * Subclasses implement {@link #decode()}, using {@link #fill(int)} to make
+ * sure enough bytes are in {@link #_in} and {@link #malformed(int, boolean)}
+ * to apply the {@link DecodingPolicy}.
+ * <p>
+ * Like an {@code InputStreamReader}, a byte source reads bad input as
+ * U+FFFD unless given another policy.
+ * A {@link ByteBuffer}'s input ends at its limit, but if the limit later
+ * moves out, the source will read the new bytes.
+ *
+ * @author Frank Mitchell
+ */
+abstract class AbstractByteSource implements CodePointSource, ErrorCounting {
+
+    /**
+     * Size of the buffer for {@link InputStream}s.
+     */
+    static final int BUFFER_SIZE = 8192;
+
+    /**
+     * Most bytes {@link #decode()} reads for one code point, so if
+     * {@link #_in} has this many it needn't {@link #fill(int)}.
+     */
+    static final int MAX_SEQUENCE = 4;
+
+    /**
+     * Bytes waiting to be decoded, in read mode.
+     */
+    protected final ByteBuffer _in;
+    private final InputStream _stream;
+    private final int _origin;
+    private long _discarded;
+    private DecodingPolicy _policy = DecodingPolicy.REPLACE;
+    private CodePointMetrics.Counters _errors;
+    /**
+     * While {@link #transferTo(ByteSink)} runs, the sink and the offset
+     * copied up to.
+     */
+    private ByteSink _copying;
+    private long _copied;
+    private int _current = -1;
+    private int _next = -1;
+    private boolean _peeked;
+
+    /**
+     * Read bytes from a buffer, starting at its position.
+     *
+     * @param in the buffer
+     */
+    protected AbstractByteSource(ByteBuffer in) {
+        _in = Objects.requireNonNull(in);
+        _stream = null;
+        _origin = in.position();
+    }
+
+    /**
+     * Read bytes from a stream.
+     *
+     * @param in the stream
+     */
+    protected AbstractByteSource(InputStream in) {
+        _in = ByteBuffer.allocate(BUFFER_SIZE);
+        _in.flip();
+        _stream = Objects.requireNonNull(in);
+        _origin = 0;
+    }
+
+    /**
+     * Decode the next code point from {@link #_in}.
+     *
+     * @return the code point, or -1 at the end of input
+     * @throws IOException if reading failed or the policy is to report
+     */
+    protected abstract int decode() throws IOException;
+
+    /**
+     * Try to have at least {@code n} bytes in {@link #_in}.
+     * Reads from the stream only if there are fewer, and no more than
+     * the stream has ready.
+     *
+     * @param n number of bytes wanted, no more than {@link #BUFFER_SIZE}
+     * @return whether {@code n} bytes are available
+     * @throws IOException if the stream threw one
+     */
+    protected final boolean fill(int n) throws IOException {
+        if (_in.remaining() >= n || _stream == null) {
+            return _in.remaining() >= n;
+        }
+        _discarded += _in.position();
+        _in.compact();
+        try {
+            while (_in.position() < n) {
+                final int count = _stream.read(_in.array(), _in.arrayOffset() + _in.position(), _in.remaining());
+                if (count < 0) {
+                    break;
+                }
+                _in.position(_in.position() + count);
+            }
+        } finally {
+            _in.flip();
+        }
+        return _in.remaining() >= n;
+    }
+
+    /**
+     * Offset of the next byte in {@link #_in} from where this source
+     * started.
+     *
+     * @return a byte offset
+     */
+    protected final long offset() {
+        return _discarded + _in.position() - _origin;
+    }
+
+    /**
+     * Apply the policy to bad bytes at the current position, and skip them.
+     * While transferring, the good bytes before them are copied, and the
+     * code point read in their place, if any, is written instead.
+     *
+     * @param length number of bad bytes
+     * @param unmappable whether the bytes are well formed but unmappable
+     * @return a code point to read in their place, or
+     *      {@link Malformed#SKIP}
+     * @throws IOException if the policy is to report, or a callback threw
+     */
+    protected final int malformed(int length, boolean unmappable) throws IOException {
+        final long offset = offset();
+        final boolean copying = (_copying != null
+                && _policy.getAction() != DecodingPolicy.Action.REPORT);
+        if (copying) {
+            putBytes(_copying, _copied, offset);
+            _copied = offset + length;
+        }
+        final int result;
+        try {
+            result = Malformed.resolve(_policy, offset, _in, length, unmappable, _errors);
+        } finally {
+            _in.position(_in.position() + length);
+        }
+        if (copying && result >= 0) {
+            _copying.putCodePoint(result);
+        }
+        return result;
+    }
+
+    /**
+     * The charset of the bytes this source reads, if copying them
+     * unchanged gives the same bytes as decoding and encoding them again.
+     * Copying skips {@link #decode()}'s side effects, so a source that
+     * e.g. reads a byte order mark must return null.
+     *
+     * @return the charset, or null
+     */
+    Charset getByteCharset() {
+        return null;
+    }
+
+    /**
+     * Whether {@link #decode()} accepts any byte at all, one byte per
+     * code point, so bytes can be copied without even checking them.
+     *
+     * @return whether every byte is a valid character
+     */
+    boolean isEveryByteValid() {
+        return false;
+    }
+
+    /**
+     * Copy the rest of the input to a sink in {@link #getByteCharset()}.
+     * Bytes are decoded only to check them, a block at a time, then
+     * written as they are.
+     * If every byte is valid and both ends are files, the file channels
+     * copy all but the last byte.
+     *
+     * @param sink the sink
+     * @return the number of code points copied
+     * @throws IOException if reading or writing failed, or the input
+     *      wasn't valid
+     */
+    final long transferTo(ByteSink sink) throws IOException {
+        synchronized (getLock()) {
+            try {
+                _copying = sink;
+                return copyTo(sink);
+            } finally {
+                _copying = null;
+            }
+        }
+    }
+
+    private long copyTo(ByteSink sink) throws IOException {
+        long count = 0;
+        if (_peeked && _next >= 0) {
+            // Its bytes are already behind us
+            sink.putCodePoint(_next);
+            _current = _next;
+            count++;
+        }
+        _peeked = false;
+        if (_stream instanceof FileInputStream && isEveryByteValid()) {
+            count += transferFile((FileInputStream) _stream, sink);
+        }
+        boolean more = (_stream != null);
+        // Offsets, not positions, since fill() may move the bytes
+        _copied = offset();
+        while (true) {
+            if (_stream != null && _in.remaining() < MAX_SEQUENCE) {
+                // Write out what fill() may discard
+                putBytes(sink, _copied, offset());
+                _copied = offset();
+                if (more) {
+                    more = fill(BUFFER_SIZE);
+                }
+            }
+            final long before = offset();
+            final int cp;
+            try {
+                cp = decode();
+            } catch (CharacterCodingException e) {
+                // Write what was good up to here, as decoding would
+                putBytes(sink, _copied, before);
+                throw e;
+            }
+            if (cp < 0) {
+                break;
+            }
+            _current = cp;
+            count++;
+        }
+        putBytes(sink, _copied, offset());
+        return count;
+    }
+
+    /**
+     * Write bytes still in {@link #_in}, between two offsets.
+     */
+    private void putBytes(ByteSink sink, long from, long to) throws IOException {
+        if (to > from) {
+            final int end = (int) (_in.position() - (offset() - to));
+            sink.putBytes(_in.duplicate().limit(end).position(end - (int) (to - from)));
+        }
+    }
+
+    /**
+     * Copy all but the last byte of a file with
+     * {@link FileChannel#transferTo}, if the sink writes a file too.
+     * The last byte is left to decode, so {@link #getCodePoint()} has a
+     * value afterward.
+     *
+     * @return the number of bytes, thus code points, copied
+     */
+    private long transferFile(FileInputStream stream, ByteSink sink) throws IOException {
+        final FileChannel out = sink.getFileChannel();
+        if (out == null) {
+            return 0;
+        }
+        final FileChannel in = stream.getChannel();
+        final long end = in.size() - 1;
+        final long begin = in.position();
+        if (begin >= end) {
+            return 0;
+        }
+        final long buffered = _in.remaining();
+        sink.putBytes(_in);
+        long pos = begin;
+        try {
+            while (pos < end) {
+                final long n = in.transferTo(pos, end - pos, out);
+                if (n <= 0) {
+                    // The file shrank; decode whatever is left
+                    break;
+                }
+                pos += n;
+            }
+        } finally {
+            sink.transferred(pos - begin);
+        }
+        in.position(pos);
+        _discarded += pos - begin;
+        return buffered + (pos - begin);
+    }
+
+    protected Object getLock() {
+        return this;
+    }
+
+    @Override
+    public DecodingPolicy getDecodingPolicy() {
+        synchronized (getLock()) {
+            return _policy;
+        }
+    }
+
+    @Override
+    public void setDecodingPolicy(DecodingPolicy policy) {
+        synchronized (getLock()) {
+            _policy = Objects.requireNonNull(policy);
+        }
+    }
+
+    @Override
+    public void setErrorCounters(CodePointMetrics.Counters counters) {
+        synchronized (getLock()) {
+            _errors = counters;
+        }
+    }
+
+    @Override
+    public int getCodePoint() {
+        synchronized (getLock()) {
+            if (_current < 0) {
+                throw new IllegalStateException("have not called next() yet");
+            }
+            return _current;
+        }
+    }
+
+    @Override
+    public boolean hasNext() throws IOException {
+        synchronized (getLock()) {
+            // Look again after the end, in case a buffer has grown
+            if (!_peeked || _next < 0) {
+                _next = decode();
+                _peeked = true;
+            }
+            return _next >= 0;
+        }
+    }
+
+    @Override
+    public void next() throws IOException {
+        synchronized (getLock()) {
+            if (!_peeked || _next < 0) {
+                _next = decode();
+            }
+            _peeked = false;
+            _current = _next;
+        }
+    }
+
+    @Override
+    public int read(int[] cps, int off, int len) throws IOException {
+        Objects.checkFromIndexSize(off, len, cps.length);
+        if (len == 0) {
+            return 0;
+        }
+        synchronized (getLock()) {
+            int n = 0;
+            if (_peeked && _next >= 0) {
+                cps[off + n++] = _next;
+            }
+            _peeked = false;
+            while (n < len) {
+                final int cp = decode();
+                if (cp < 0) {
+                    break;
+                }
+                cps[off + n++] = cp;
+            }
+            if (n == 0) {
+                return -1;
+            }
+            _current = cps[off + n - 1];
+            return n;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (_stream != null) {
+            _stream.close();
+        }
+    }
+}
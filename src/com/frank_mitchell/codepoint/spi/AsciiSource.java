@@ -23,95 +23,115 @@
  */
 package com.frank_mitchell.codepoint.spi;
 
-import com.frank_mitchell.codepoint.CodePointSource;
 import com.frank_mitchell.codepoint.ForCharsets;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
-import java.util.Arrays;
-import java.util.Objects;
 
 /**
  * A wrapper for a stream of ASCII or UTF-8 bytes.
  * It's fastest if the stream is pure ASCII, but it can handle multi-byte
  * UTF-8 characters correctly, if not efficiently.
+ * Invalid UTF-8 is handled according to the source's
+ * {@link com.frank_mitchell.codepoint.DecodingPolicy}.
  */
-class AsciiSource implements CodePointSource {
-    private final InputStream _input;
-    private int _current = -1;
-    private int _next = -1;
+class AsciiSource extends AbstractByteSource {
 
     /**
      * Create a source around a stream of ASCII or UTF-8 bytes (only).
      *
      * @param in the Input Stream.
      */
-    @ForCharsets(names={"ASCII"})
+    @ForCharsets(names={"ASCII","UTF-8"})
     public AsciiSource(InputStream in) {
-        Objects.requireNonNull(in);
-        _input = in;
+        super(in);
     }
 
-    @Override
-    public int getCodePoint() {
-        synchronized (this) {
-            if (_current < 0) {
-                throw new IllegalStateException("have not called next() yet");
-            }
-            return _current;
-        }
+    /**
+     * Create a source around a buffer of ASCII or UTF-8 bytes (only),
+     * starting at its position.
+     *
+     * @param b the buffer
+     */
+    @ForCharsets(names={"ASCII","UTF-8"})
+    public AsciiSource(ByteBuffer b) {
+        super(b);
     }
 
     @Override
-    public boolean hasNext() throws IOException {
-        synchronized (this) {
-            if (_next < 0) {
-                _next = _input.read();
-            }
-            return _next >= 0;
-        }
+    Charset getByteCharset() {
+        // Even when asked for ASCII, this class reads UTF-8
+        return StandardCharsets.UTF_8;
     }
 
     @Override
-    public void next() throws IOException {
-        synchronized (this) {
-            if (_next >= 0) {
-                _current = _next;
-                _next = -1;
-            } else {
-                _current = _input.read();
+    protected int decode() throws IOException {
+        while (fill(1)) {
+            final int b = _in.get(_in.position()) & 0xFF;
+            if (b < 0x80) {
+                _in.position(_in.position() + 1);
+                return b;
             }
-            if (_current > 0x7F) {
-                int[] result = getUtf8Bytes(_current);
-                _current = result[0];
-                _next = result[1];
+            final int cp = decodeMultiByte(b);
+            if (cp >= 0) {
+                return cp;
             }
         }
+        return -1;
     }
 
-    private int[] getUtf8Bytes(int initial) throws IOException {
-        // TODO: require initial > 0
-        byte[] buffer = new byte[8];
-        int length = 0;
-        int b = initial;
-        do {
-            if (length > buffer.length) {
-                buffer = Arrays.copyOf(buffer, length * 2);
+    /**
+     * Decode a UTF-8 sequence, or apply the policy to its longest
+     * invalid prefix.
+     *
+     * @param lead the first byte
+     * @return a code point, or {@link Malformed#SKIP}
+     */
+    private int decodeMultiByte(int lead) throws IOException {
+        final int length;
+        int cp;
+        // Bounds on the second byte rule out overlong forms and surrogates
+        int min = 0x80;
+        int max = 0xBF;
+        if (lead >= 0xC2 && lead <= 0xDF) {
+            length = 2;
+            cp = lead & 0x1F;
+        } else if (lead >= 0xE0 && lead <= 0xEF) {
+            length = 3;
+            cp = lead & 0x0F;
+            if (lead == 0xE0) {
+                min = 0xA0;
+            } else if (lead == 0xED) {
+                max = 0x9F;
             }
-            buffer[length] = (byte) b;
-            length++;
-            b = _input.read();
-        } while (b > 0b10000000 && b < 0b10111111);
-
-        // A real programmer would translate the bytes by hand, but ...
-        String s = new String(buffer, StandardCharsets.UTF_8);
-        int cp = s.codePointAt(0);
-
-        return new int[]{cp, b};
-    }
-
-    @Override
-    public void close() throws IOException {
-        _input.close();
+        } else if (lead >= 0xF0 && lead <= 0xF4) {
+            length = 4;
+            cp = lead & 0x07;
+            if (lead == 0xF0) {
+                min = 0x90;
+            } else if (lead == 0xF4) {
+                max = 0x8F;
+            }
+        } else {
+            return malformed(1, false);
+        }
+        fill(length);
+        final int pos = _in.position();
+        for (int i = 1; i < length; i++) {
+            if (i >= _in.remaining()) {
+                return malformed(i, false);
+            }
+            final int b = _in.get(pos + i) & 0xFF;
+            if (b < min || b > max) {
+                return malformed(i, false);
+            }
+            cp = (cp << 6) | (b & 0x3F);
+            min = 0x80;
+            max = 0xBF;
+        }
+        _in.position(pos + length);
+        return cp;
     }
 }
@@ -0,0 +1,362 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2023 Frank Mitchell.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.frank_mitchell.codepoint.spi;
+
+import com.frank_mitchell.codepoint.CharsetDetection;
+import com.frank_mitchell.codepoint.CodePointSource;
+import com.frank_mitchell.codepoint.DecodingPolicy;
+import com.frank_mitchell.codepoint.DetectingSource;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A source that works out whether its input is UTF-8, UTF-16, or UTF-32
+ * from the first {@link #PREFIX} bytes, then decodes it with the fastest
+ * source for that charset.
+ * It looks for a byte order mark first, then for the zero bytes that
+ * UTF-16 and UTF-32 leave in mostly-Latin text, then checks whether the
+ * bytes are valid UTF-8.
+ * Input that is none of these is assumed to be in a fallback charset,
+ * Windows-1252 unless the caller says otherwise.
+ * <p>
+ * The bytes read to decide aren't read again; the source decodes them
+ * from memory before carrying on with the stream.
+ *
+ * @author Frank Mitchell
+ */
+class AutoDetectSource implements DetectingSource {
+
+    /**
+     * Most bytes to look at before deciding.
+     */
+    static final int PREFIX = 4096;
+
+    /**
+     * Charset for input that isn't Unicode.
+     */
+    static final Charset DEFAULT_FALLBACK = Charset.forName("windows-1252");
+
+    private static final Charset UTF_32BE = Charset.forName("UTF-32BE");
+    private static final Charset UTF_32LE = Charset.forName("UTF-32LE");
+
+    private final CharsetDetection _detection;
+    private final CodePointSource _source;
+
+    /**
+     * Detect the charset of a stream.
+     *
+     * @param in the stream
+     * @throws IOException if reading the stream failed
+     */
+    public AutoDetectSource(InputStream in) throws IOException {
+        this(in, DEFAULT_FALLBACK);
+    }
+
+    /**
+     * Detect the charset of a stream.
+     * Reads until it has {@link #PREFIX} bytes, the stream ends, or the
+     * stream has no more bytes available without blocking.
+     *
+     * @param in the stream
+     * @param fallback charset if the stream doesn't look like Unicode
+     * @throws IOException if reading the stream failed
+     */
+    public AutoDetectSource(InputStream in, Charset fallback) throws IOException {
+        final byte[] prefix = new byte[PREFIX];
+        final int length = readPrefix(in, prefix);
+        _detection = detect(ByteBuffer.wrap(prefix, 0, length), fallback);
+        final int skip = getByteOrderMarkLength(_detection);
+        _source = open(new SequenceInputStream(
+                new ByteArrayInputStream(prefix, skip, length - skip), in),
+                _detection.getCharset());
+    }
+
+    /**
+     * Detect the charset of a buffer, starting at its position.
+     *
+     * @param b the buffer
+     */
+    public AutoDetectSource(ByteBuffer b) {
+        this(b, DEFAULT_FALLBACK);
+    }
+
+    /**
+     * Detect the charset of a buffer, starting at its position.
+     *
+     * @param b the buffer
+     * @param fallback charset if the buffer doesn't look like Unicode
+     */
+    public AutoDetectSource(ByteBuffer b, Charset fallback) {
+        final ByteBuffer prefix = b.duplicate();
+        prefix.limit(Math.min(b.limit(), b.position() + PREFIX));
+        _detection = detect(prefix, fallback);
+        b.position(b.position() + getByteOrderMarkLength(_detection));
+        _source = open(b, _detection.getCharset());
+    }
+
+    private static int readPrefix(InputStream in, byte[] prefix) throws IOException {
+        int length = 0;
+        while (length < prefix.length) {
+            // Enough for a byte order mark, then only what won't block
+            if (length >= 4 && in.available() <= 0) {
+                break;
+            }
+            final int count = in.read(prefix, length, prefix.length - length);
+            if (count < 0) {
+                break;
+            }
+            length += count;
+        }
+        return length;
+    }
+
+    private static int getByteOrderMarkLength(CharsetDetection d) {
+        if (!d.hasByteOrderMark()) {
+            return 0;
+        }
+        final Charset cs = d.getCharset();
+        if (cs.equals(StandardCharsets.UTF_8)) {
+            return 3;
+        }
+        return (cs.equals(UTF_32BE) || cs.equals(UTF_32LE)) ? 4 : 2;
+    }
+
+    private static boolean isSingleByte(Charset cs) {
+        return cs.canEncode() && cs.newEncoder().maxBytesPerChar() == 1.0f;
+    }
+
+    private static CodePointSource open(InputStream in, Charset cs) {
+        if (cs.equals(StandardCharsets.UTF_8)) {
+            return new AsciiSource(in);
+        } else if (cs.equals(StandardCharsets.UTF_16BE) || cs.equals(StandardCharsets.UTF_16LE)) {
+            return new Utf16Source(in, cs);
+        } else if (cs.equals(UTF_32BE) || cs.equals(UTF_32LE)) {
+            return new Utf32Source(in, cs);
+        } else if (isSingleByte(cs)) {
+            return new SingleByteSource(in, cs);
+        } else {
+            return new ByteBufferSource(in, cs);
+        }
+    }
+
+    private static CodePointSource open(ByteBuffer b, Charset cs) {
+        if (cs.equals(StandardCharsets.UTF_8)) {
+            return new AsciiSource(b);
+        } else if (cs.equals(StandardCharsets.UTF_16BE) || cs.equals(StandardCharsets.UTF_16LE)) {
+            return new Utf16Source(b, cs);
+        } else if (cs.equals(UTF_32BE) || cs.equals(UTF_32LE)) {
+            return new Utf32Source(b, cs);
+        } else if (isSingleByte(cs)) {
+            return new SingleByteSource(b, cs);
+        } else {
+            return new ByteBufferSource(b, cs);
+        }
+    }
+
+    /**
+     * Decide what charset some bytes are in.
+     *
+     * @param p the bytes from position to limit; not modified
+     * @param fallback charset if the bytes don't look like Unicode
+     * @return the charset and how sure we are
+     */
+    static CharsetDetection detect(ByteBuffer p, Charset fallback) {
+        final int start = p.position();
+        final int n = p.remaining();
+        final int b0 = (n > 0) ? p.get(start) & 0xFF : -1;
+        final int b1 = (n > 1) ? p.get(start + 1) & 0xFF : -1;
+        final int b2 = (n > 2) ? p.get(start + 2) & 0xFF : -1;
+        final int b3 = (n > 3) ? p.get(start + 3) & 0xFF : -1;
+
+        if (b0 == 0xEF && b1 == 0xBB && b2 == 0xBF) {
+            return new CharsetDetection(StandardCharsets.UTF_8, 1.0, true);
+        } else if (b0 == 0x00 && b1 == 0x00 && b2 == 0xFE && b3 == 0xFF) {
+            return new CharsetDetection(UTF_32BE, 1.0, true);
+        } else if (b0 == 0xFF && b1 == 0xFE && b2 == 0x00 && b3 == 0x00) {
+            return new CharsetDetection(UTF_32LE, 1.0, true);
+        } else if (b0 == 0xFE && b1 == 0xFF) {
+            return new CharsetDetection(StandardCharsets.UTF_16BE, 1.0, true);
+        } else if (b0 == 0xFF && b1 == 0xFE) {
+            return new CharsetDetection(StandardCharsets.UTF_16LE, 1.0, true);
+        } else if (n == 0) {
+            return new CharsetDetection(StandardCharsets.UTF_8, 0.0, false);
+        }
+
+        // Zero bytes by their offset within each (possible) 32-bit unit
+        final int[] zeros = new int[4];
+        int ascii = 0;
+        for (int i = 0; i < n; i++) {
+            final int b = p.get(start + i) & 0xFF;
+            if (b == 0) {
+                zeros[i & 3]++;
+            }
+            if (b < 0x80) {
+                ascii++;
+            }
+        }
+
+        // UTF-32 has at least two zero bytes in every character
+        final int units = n / 4;
+        if (units > 0) {
+            if (zeros[0] >= units && zeros[1] * 2 >= units && zeros[3] * 4 < units) {
+                return new CharsetDetection(UTF_32BE, confidence(zeros[1], units), false);
+            }
+            if (zeros[3] >= units && zeros[2] * 2 >= units && zeros[0] * 4 < units) {
+                return new CharsetDetection(UTF_32LE, confidence(zeros[2], units), false);
+            }
+        }
+
+        // UTF-16 has a zero byte in every Latin-1 character
+        final int pairs = n / 2;
+        final int even = zeros[0] + zeros[2];
+        final int odd = zeros[1] + zeros[3];
+        if (pairs > 0) {
+            if (even * 3 >= pairs && odd * 20 < pairs) {
+                return new CharsetDetection(StandardCharsets.UTF_16BE, confidence(even, pairs), false);
+            }
+            if (odd * 3 >= pairs && even * 20 < pairs) {
+                return new CharsetDetection(StandardCharsets.UTF_16LE, confidence(odd, pairs), false);
+            }
+        }
+
+        final int multi = countUtf8Sequences(p);
+        if (multi > 0) {
+            return new CharsetDetection(StandardCharsets.UTF_8,
+                    Math.min(0.99, 0.9 + multi * 0.01), false);
+        } else if (multi == 0) {
+            // Plain ASCII reads the same in UTF-8 as in most charsets
+            return new CharsetDetection(StandardCharsets.UTF_8, 0.5, false);
+        }
+        // Not Unicode; the more ASCII, the more it looks like legacy text
+        return new CharsetDetection(fallback, 0.8 * ascii / n, false);
+    }
+
+    /**
+     * Confidence that grows with the share of tell-tale bytes.
+     */
+    private static double confidence(int found, int total) {
+        return Math.min(1.0, 0.5 + 0.5 * found / total);
+    }
+
+    /**
+     * Check whether bytes are valid UTF-8, allowing for a character cut
+     * off at the end.
+     *
+     * @param p the bytes from position to limit; not modified
+     * @return the number of multi-byte characters, or -1 if invalid
+     */
+    private static int countUtf8Sequences(ByteBuffer p) {
+        final int end = p.limit();
+        int count = 0;
+        int i = p.position();
+        while (i < end) {
+            final int lead = p.get(i) & 0xFF;
+            if (lead < 0x80) {
+                i++;
+                continue;
+            }
+            final int length;
+            int min = 0x80;
+            int max = 0xBF;
+            if (lead >= 0xC2 && lead <= 0xDF) {
+                length = 2;
+            } else if (lead >= 0xE0 && lead <= 0xEF) {
+                length = 3;
+                min = (lead == 0xE0) ? 0xA0 : 0x80;
+                max = (lead == 0xED) ? 0x9F : 0xBF;
+            } else if (lead >= 0xF0 && lead <= 0xF4) {
+                length = 4;
+                min = (lead == 0xF0) ? 0x90 : 0x80;
+                max = (lead == 0xF4) ? 0x8F : 0xBF;
+            } else {
+                return -1;
+            }
+            for (int j = 1; j < length && i + j < end; j++) {
+                final int b = p.get(i + j) & 0xFF;
+                if (b < min || b > max) {
+                    return -1;
+                }
+                min = 0x80;
+                max = 0xBF;
+            }
+            i += length;
+            count++;
+        }
+        return count;
+    }
+
+    @Override
+    public CharsetDetection getDetection() {
+        return _detection;
+    }
+
+    @Override
+    public DecodingPolicy getDecodingPolicy() {
+        return _source.getDecodingPolicy();
+    }
+
+    @Override
+    public void setDecodingPolicy(DecodingPolicy policy) {
+        _source.setDecodingPolicy(policy);
+    }
+
+    @Override
+    public int getCodePoint() {
+        return _source.getCodePoint();
+    }
+
+    @Override
+    public boolean hasNext() throws IOException {
+        return _source.hasNext();
+    }
+
+    @Override
+    public void next() throws IOException {
+        _source.next();
+    }
+
+    @Override
+    public int read(int[] cps, int off, int len) throws IOException {
+        return _source.read(cps, off, len);
+    }
+
+    /**
+     * The source for the detected charset, which does the real work.
+     *
+     * @return the source this one delegates to
+     */
+    CodePointSource getSource() {
+        return _source;
+    }
+
+    @Override
+    public void close() throws IOException {
+        _source.close();
+    }
+}
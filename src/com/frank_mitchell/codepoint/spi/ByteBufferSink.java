@@ -25,6 +25,7 @@ package com.frank_mitchell.codepoint.spi;
 
 import com.frank_mitchell.codepoint.CodePointSink;
 import java.io.IOException;
+import java.nio.BufferOverflowException;
 import java.nio.ByteBuffer;
 import java.nio.CharBuffer;
 import java.nio.charset.CharacterCodingException;
@@ -34,6 +35,8 @@ import java.nio.charset.CoderResult;
 
 /**
  * Writes code points to a {@link ByteBuffer}.
+ * A code point that doesn't fit in the space left throws a
+ * {@link BufferOverflowException} and isn't written.
  *
  * @author fmitchell
  */
@@ -41,41 +44,55 @@ class ByteBufferSink implements CodePointSink {
     private final ByteBuffer _buf;
     private final CharBuffer _cbuf;
     private final CharsetEncoder _enc;
+    private boolean _closed;
 
     public ByteBufferSink(ByteBuffer b, Charset cs) {
         _buf = b;
-        _cbuf = CharBuffer.allocate(b.capacity());
+        // Only ever holds the code point being encoded
+        _cbuf = CharBuffer.allocate(2);
         _enc = cs.newEncoder();
     }
 
     @Override
     public void putCodePoint(int cp) throws IOException {
-        boolean endofinput = false;
         if (Character.isBmpCodePoint(cp)) {
             _cbuf.put((char)cp);
         } else {
-            int[] iarray = { cp };
-            String str = new String(iarray, 0, iarray.length);
-            _cbuf.put(str);
+            _cbuf.put(Character.highSurrogate(cp));
+            _cbuf.put(Character.lowSurrogate(cp));
         }
-        writeToByteBuf(endofinput);
+        writeToByteBuf(false);
     }
 
     private void writeToByteBuf(boolean endofinput) throws CharacterCodingException {
-        CoderResult result = _enc.encode(_cbuf, _buf, endofinput);
-        if (result.isError()) {
-            result.throwException();
+        _cbuf.flip();
+        try {
+            CoderResult result = _enc.encode(_cbuf, _buf, endofinput);
+            if (endofinput && result.isUnderflow()) {
+                result = _enc.flush(_buf);
+            }
+            if (result.isError()) {
+                result.throwException();
+            }
+            if (result.isOverflow()) {
+                throw new BufferOverflowException();
+            }
+        } finally {
+            // Drop whatever didn't fit, as ByteBuffer.put() would
+            _cbuf.clear();
         }
     }
 
     @Override
     public void flush() throws IOException {
-        writeToByteBuf(true);
     }
 
     @Override
     public void close() throws IOException {
-        flush();
+        if (!_closed) {
+            _closed = true;
+            writeToByteBuf(true);
+        }
     }
 
 }
@@ -23,9 +23,9 @@
  */
 package com.frank_mitchell.codepoint.spi;
 
-import com.frank_mitchell.codepoint.CodePointSource;
 import com.frank_mitchell.codepoint.ForCharsets;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.ByteBuffer;
 import java.nio.CharBuffer;
 import java.nio.charset.Charset;
@@ -36,15 +36,20 @@ import java.nio.charset.StandardCharsets;
 
 /**
  * Wraps an {@link ByteBuffer} with Unicode code points.
+ * Decodes any charset through a {@link CharsetDecoder}, but handles bad
+ * input itself according to its
+ * {@link com.frank_mitchell.codepoint.DecodingPolicy}.
  *
  * @author Frank Mitchell
  */
-class ByteBufferSource implements CodePointSource {
-    private final ByteBuffer _buf;
+class ByteBufferSource extends AbstractByteSource {
+    private static final int CHAR_BUFFER_SIZE = 1024;
+
     private final CharsetDecoder _dec;
-    private final CharBuffer _cbuf;
-    private boolean _atstart;
-    private int _codepoint;
+    private final CharBuffer _chars;
+    private final boolean _stream;
+    private boolean _eof;
+    private boolean _flushed;
 
     /**
      * Create an instance for UTF-8 bytes
@@ -107,52 +112,118 @@ class ByteBufferSource implements CodePointSource {
      * @param cs expected character set
      */
     public ByteBufferSource(ByteBuffer b, Charset cs) {
-        _buf = b;
-        _dec = cs.newDecoder();
-        _dec.onMalformedInput(CodingErrorAction.REPORT);
-        _dec.onUnmappableCharacter(CodingErrorAction.REPORT);
-        _cbuf = CharBuffer.allocate(b.capacity());
-        _codepoint = -1;
-        _atstart = true;
+        super(b);
+        _dec = newDecoder(cs);
+        _chars = newCharBuffer();
+        _stream = false;
     }
 
-    @Override
-    public int getCodePoint() {
-        synchronized (this) {
-            return _codepoint;
-        }
+    /**
+     * Create an instance reading a stream in an arbitrary Charset.
+     *
+     * @param in the stream to decode
+     * @param cs expected character set
+     */
+    public ByteBufferSource(InputStream in, Charset cs) {
+        super(in);
+        _dec = newDecoder(cs);
+        _chars = newCharBuffer();
+        _stream = true;
     }
 
-    @Override
-    public boolean hasNext() throws IOException {
-        return _atstart || _cbuf.hasRemaining();
+    private static CharsetDecoder newDecoder(Charset cs) {
+        // We handle errors ourselves, without exceptions.
+        return cs.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPORT)
+                .onUnmappableCharacter(CodingErrorAction.REPORT);
+    }
+
+    private static CharBuffer newCharBuffer() {
+        final CharBuffer result = CharBuffer.allocate(CHAR_BUFFER_SIZE);
+        result.flip();
+        return result;
     }
 
     @Override
-    public void next() throws IOException {
-        synchronized (this) {
-            final boolean endofinput = !_atstart && _buf.hasRemaining();
-            CoderResult result = _dec.decode(_buf, _cbuf, endofinput);
-            _atstart = false;
-            if (result.isError()) {
-                result.throwException();
-            }
-            final int pos = _cbuf.position();
-            final char c = _cbuf.get();
-            if (Character.isHighSurrogate(c) && hasNext()) {
-                final int cp = Character.codePointAt(_cbuf, pos);
-                for (int i = 1; i < Character.charCount(cp); i++) {
-                    // clear the characters we just read
-                    _cbuf.get();
-                }
-                _codepoint = cp;
-            } else {
-                _codepoint = c;
+    protected int decode() throws IOException {
+        // Make sure a surrogate pair is all there
+        while (_chars.remaining() < 2
+                && (!_chars.hasRemaining() || Character.isHighSurrogate(_chars.get(_chars.position())))) {
+            if (!decodeMore()) {
+                break;
             }
         }
+        if (!_chars.hasRemaining()) {
+            return -1;
+        }
+        final char c = _chars.get();
+        if (Character.isHighSurrogate(c) && _chars.hasRemaining()
+                && Character.isLowSurrogate(_chars.get(_chars.position()))) {
+            return Character.toCodePoint(c, _chars.get());
+        }
+        return c;
     }
 
-    @Override
-    public void close() {
+    /**
+     * Decode more bytes into {@link #_chars}.
+     *
+     * @return whether we decoded anything
+     */
+    private boolean decodeMore() throws IOException {
+        _chars.compact();
+        final int before = _chars.position();
+        try {
+            // Leave room for a substitute supplementary character
+            _chars.limit(_chars.capacity() - 2);
+            while (_chars.position() == before && !_flushed) {
+                CoderResult result = _dec.decode(_in, _chars, _eof);
+                if (result.isOverflow()) {
+                    break;
+                }
+                if (result.isUnderflow()) {
+                    if (_eof) {
+                        _flushed = _dec.flush(_chars).isUnderflow();
+                        continue;
+                    }
+                    if (!fill(_in.remaining() + 1)) {
+                        if (_stream) {
+                            _eof = true;
+                        } else if (_in.hasRemaining()) {
+                            // A buffer ending mid-character is truncated,
+                            // but it may grow later.
+                            result = _dec.decode(_in, _chars, true);
+                            _dec.reset();
+                            if (!result.isError()) {
+                                break;
+                            }
+                        } else {
+                            break;
+                        }
+                    }
+                }
+                if (result.isError()) {
+                    if (_chars.position() > before) {
+                        // Hand out what came before; the decoder will
+                        // find the same error next time.
+                        break;
+                    }
+                    final int cp = malformed(result.length(), result.isUnmappable());
+                    if (cp >= 0) {
+                        _chars.limit(_chars.capacity());
+                        if (Character.isBmpCodePoint(cp)) {
+                            _chars.put((char) cp);
+                        } else {
+                            _chars.put(Character.highSurrogate(cp));
+                            _chars.put(Character.lowSurrogate(cp));
+                        }
+                        _chars.limit(_chars.capacity() - 2);
+                    }
+                }
+            }
+            return _chars.position() > before;
+        } finally {
+            _chars.limit(_chars.capacity());
+            _chars.flip();
+        }
     }
 }
@@ -0,0 +1,100 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2023 Frank Mitchell.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.frank_mitchell.codepoint.spi;
+
+import com.frank_mitchell.codepoint.CodePointSink;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+
+/**
+ * A sink that writes bytes, and can take bytes already encoded in its
+ * charset instead of code points.
+ * {@link Provider#transfer} uses this to copy bytes from an
+ * {@link AbstractByteSource} in the same charset without re-encoding them.
+ *
+ * @author Frank Mitchell
+ */
+interface ByteSink extends CodePointSink {
+
+    /**
+     * The charset of the bytes this sink writes.
+     *
+     * @return the charset, or null if this sink can't take bytes
+     */
+    Charset getByteCharset();
+
+    /**
+     * Write the remaining bytes of a buffer after anything already
+     * written, without buffering them.
+     *
+     * @param b bytes in {@link #getByteCharset()}
+     * @throws IOException if the underlying output throws an exception
+     */
+    void putBytes(ByteBuffer b) throws IOException;
+
+    /**
+     * Write out anything buffered, and get the file this sink writes to,
+     * if it is one.
+     *
+     * @return a channel positioned after everything already written, or
+     *      null if this sink doesn't write straight to a file
+     * @throws IOException if the underlying output throws an exception
+     */
+    FileChannel getFileChannel() throws IOException;
+
+    /**
+     * Count bytes written straight to {@link #getFileChannel()}, so
+     * offsets this sink reports afterward stay right.
+     *
+     * @param count number of bytes written to the channel
+     */
+    void transferred(long count);
+
+    /**
+     * Write the remaining bytes of a buffer to a stream.
+     *
+     * @param b the bytes
+     * @param out the stream
+     * @return the number of bytes written
+     * @throws IOException if the stream throws an exception
+     */
+    static int write(ByteBuffer b, OutputStream out) throws IOException {
+        final int result = b.remaining();
+        if (b.hasArray()) {
+            out.write(b.array(), b.arrayOffset() + b.position(), result);
+            b.position(b.limit());
+        } else {
+            final byte[] chunk = new byte[Math.min(result, AbstractByteSource.BUFFER_SIZE)];
+            while (b.hasRemaining()) {
+                final int n = Math.min(chunk.length, b.remaining());
+                b.get(chunk, 0, n);
+                out.write(chunk, 0, n);
+            }
+        }
+        return result;
+    }
+}
@@ -24,57 +24,101 @@
 package com.frank_mitchell.codepoint.spi;
 
 import com.frank_mitchell.codepoint.CodePointSource;
+import com.frank_mitchell.codepoint.DecodingPolicy;
 import com.frank_mitchell.codepoint.ForCharsets;
 import java.io.IOException;
+import java.util.Objects;
 
 /**
  * Wraps an arbitrary CharSequence, from a {@link String} to a
- * {@link CharBuffer}.
+ * {@link java.nio.CharBuffer}.
+ * Unpaired surrogates are handled according to the
+ * {@link DecodingPolicy}, by default {@link DecodingPolicy#REPORT}.
  *
  * @author Frank Mitchell
  */
-class CharSequenceSource implements CodePointSource {
+class CharSequenceSource implements CodePointSource, ErrorCounting {
     private final CharSequence _seq;
+    private DecodingPolicy _policy = DecodingPolicy.REPORT;
+    private CodePointMetrics.Counters _errors;
     private int _pos;
+    private int _current;
 
     @ForCharsets(names={"UTF-16","UTF-16BE"})
     public CharSequenceSource(CharSequence s) {
         _seq = s;
-        _pos = -1;
+        _pos = 0;
+        _current = -1;
+    }
+
+    @Override
+    public DecodingPolicy getDecodingPolicy() {
+        synchronized (this) {
+            return _policy;
+        }
+    }
+
+    @Override
+    public void setDecodingPolicy(DecodingPolicy policy) {
+        synchronized (this) {
+            _policy = Objects.requireNonNull(policy);
+        }
+    }
+
+    @Override
+    public void setErrorCounters(CodePointMetrics.Counters counters) {
+        synchronized (this) {
+            _errors = counters;
+        }
     }
 
     @Override
     public int getCodePoint() {
         synchronized (this) {
-            if (_pos < 0 || _pos >= _seq.length()) {
+            if (_current < 0) {
                throw new IllegalStateException();
             }
-            final char c = _seq.charAt(_pos);
-            if (Character.isHighSurrogate(c) && hasNext()) {
-                final int cp = Character.codePointAt(_seq, _pos);
-                _pos += Character.charCount(cp);
-                return cp;
-            } else {
-                return c;
-            }
+            return _current;
         }
     }
 
+    private boolean isUnpairedSurrogateAt(int pos) {
+        final int cp = Character.codePointAt(_seq, pos);
+        return cp <= 0xFFFF && Character.isSurrogate((char) cp);
+    }
+
     @Override
     public boolean hasNext() {
         synchronized (this) {
-            return (_pos + 1 < _seq.length());
+            if (_policy.getAction() == DecodingPolicy.Action.SKIP) {
+                // next() would skip them anyway
+                while (_pos < _seq.length() && isUnpairedSurrogateAt(_pos)) {
+                    Malformed.count(_policy, _errors);
+                    _pos++;
+                }
+            }
+            return (_pos < _seq.length());
         }
     }
 
     @Override
     public void next() throws IOException {
         synchronized (this) {
-            if (hasNext()) {
-              _pos++;
-            } else {
-                throw new java.io.EOFException("End of character sequence");
+            while (_pos < _seq.length()) {
+                final int start = _pos;
+                final int cp = Character.codePointAt(_seq, _pos);
+                _pos += Character.charCount(cp);
+                if (!isUnpairedSurrogateAt(start)) {
+                    _current = cp;
+                    return;
+                }
+                final int sub = Malformed.resolve(_policy, start, (char) cp, _errors);
+                if (sub >= 0) {
+                    _current = sub;
+                    return;
+                }
             }
+            throw new java.io.EOFException("End of character sequence");
         }
     }
 
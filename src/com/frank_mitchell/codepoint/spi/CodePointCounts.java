@@ -0,0 +1,194 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2023 Frank Mitchell.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.frank_mitchell.codepoint.spi;
+
+import javax.management.openmbean.CompositeData;
+
+/**
+ * A snapshot of the counters for one source or sink implementation and
+ * charset, or the totals for all of them.
+ *
+ * @author Frank Mitchell
+ * @see CodePointMetricsMXBean
+ */
+public final class CodePointCounts {
+
+    private final String _implementation;
+    private final String _charset;
+    private final long _codePointsRead;
+    private final long _codePointsWritten;
+    private final long _bytesRead;
+    private final long _bytesWritten;
+    private final long _malformed;
+    private final long _unmappable;
+    private final long _lookups;
+    private final long _cacheHits;
+
+    /**
+     * Create a snapshot.
+     *
+     * @param implementation source or sink class name, or "*" for totals
+     * @param charset charset name, or "*" for totals
+     * @param counts code points read and written, bytes read and written,
+     *      malformed input, unmappable characters, provider lookups, and
+     *      provider cache hits, in that order
+     */
+    CodePointCounts(String implementation, String charset, long... counts) {
+        _implementation = implementation;
+        _charset = charset;
+        _codePointsRead = counts[0];
+        _codePointsWritten = counts[1];
+        _bytesRead = counts[2];
+        _bytesWritten = counts[3];
+        _malformed = counts[4];
+        _unmappable = counts[5];
+        _lookups = counts[6];
+        _cacheHits = counts[7];
+    }
+
+    /**
+     * Rebuild a snapshot from its JMX representation.
+     *
+     * @param cd the composite data from a {@link CodePointMetricsMXBean}
+     * @return an equivalent snapshot
+     */
+    public static CodePointCounts from(CompositeData cd) {
+        return new CodePointCounts(
+                (String) cd.get("implementation"),
+                (String) cd.get("charset"),
+                (Long) cd.get("codePointsRead"),
+                (Long) cd.get("codePointsWritten"),
+                (Long) cd.get("bytesRead"),
+                (Long) cd.get("bytesWritten"),
+                (Long) cd.get("malformed"),
+                (Long) cd.get("unmappable"),
+                (Long) cd.get("lookups"),
+                (Long) cd.get("cacheHits"));
+    }
+
+    /**
+     * Name of the source or sink class.
+     *
+     * @return a class name, or "*" for totals
+     */
+    public String getImplementation() {
+        return _implementation;
+    }
+
+    /**
+     * Name of the charset the source or sink was created for.
+     *
+     * @return a charset name, or "*" for totals
+     */
+    public String getCharset() {
+        return _charset;
+    }
+
+    /**
+     * Code points returned by sources.
+     *
+     * @return a count
+     */
+    public long getCodePointsRead() {
+        return _codePointsRead;
+    }
+
+    /**
+     * Code points passed to sinks.
+     *
+     * @return a count
+     */
+    public long getCodePointsWritten() {
+        return _codePointsWritten;
+    }
+
+    /**
+     * Bytes sources read from an {@link java.io.InputStream}.
+     * Sources that read characters don't count here.
+     *
+     * @return a count
+     */
+    public long getBytesRead() {
+        return _bytesRead;
+    }
+
+    /**
+     * Bytes sinks wrote to an {@link java.io.OutputStream}.
+     * Sinks that write characters don't count here.
+     *
+     * @return a count
+     */
+    public long getBytesWritten() {
+        return _bytesWritten;
+    }
+
+    /**
+     * Malformed input sequences sources reported.
+     *
+     * @return a count
+     */
+    public long getMalformed() {
+        return _malformed;
+    }
+
+    /**
+     * Characters sources or sinks reported they could not map.
+     *
+     * @return a count
+     */
+    public long getUnmappable() {
+        return _unmappable;
+    }
+
+    /**
+     * Times a {@link Provider} looked up this implementation.
+     *
+     * @return a count
+     */
+    public long getLookups() {
+        return _lookups;
+    }
+
+    /**
+     * Lookups answered from the {@link Provider}'s cache.
+     *
+     * @return a count no greater than {@link #getLookups()}
+     */
+    public long getCacheHits() {
+        return _cacheHits;
+    }
+
+    @Override
+    public String toString() {
+        return "CodePointCounts(" + _implementation + ", " + _charset
+                + ": read=" + _codePointsRead
+                + ", written=" + _codePointsWritten
+                + ", bytesRead=" + _bytesRead
+                + ", bytesWritten=" + _bytesWritten
+                + ", malformed=" + _malformed
+                + ", unmappable=" + _unmappable
+                + ", lookups=" + _lookups
+                + ", cacheHits=" + _cacheHits + ")";
+    }
+}
@@ -0,0 +1,190 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2023 Frank Mitchell.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.frank_mitchell.codepoint.spi;
+
+import java.lang.management.ManagementFactory;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.MalformedInputException;
+import java.nio.charset.UnmappableCharacterException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * The one {@link CodePointMetricsMXBean} in this JVM.
+ * Counters are keyed by implementation class name rather than class, so
+ * they don't keep class loaders alive.
+ *
+ * @author Frank Mitchell
+ */
+final class CodePointMetrics implements CodePointMetricsMXBean {
+
+    private static final CodePointMetrics INSTANCE = new CodePointMetrics();
+
+    private final ConcurrentMap<String, ConcurrentMap<Charset, Counters>> _counters =
+            new ConcurrentHashMap<>();
+
+    private boolean _registered;
+
+    private CodePointMetrics() {
+    }
+
+    static CodePointMetrics getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Register this bean with the platform MBean server, if it isn't
+     * already.
+     *
+     * @throws JMException if registration failed
+     */
+    void register() throws JMException {
+        synchronized (this) {
+            if (!_registered) {
+                final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+                final ObjectName name = new ObjectName(OBJECT_NAME);
+                if (!server.isRegistered(name)) {
+                    server.registerMBean(this, name);
+                }
+                _registered = true;
+            }
+        }
+    }
+
+    /**
+     * The counters for an implementation and charset.
+     *
+     * @param impl source or sink class
+     * @param cs charset
+     * @return counters, created if necessary
+     */
+    Counters getCounters(Class<?> impl, Charset cs) {
+        return _counters
+                .computeIfAbsent(impl.getName(), k -> new ConcurrentHashMap<>())
+                .computeIfAbsent(cs, k -> new Counters());
+    }
+
+    @Override
+    public CodePointCounts getTotals() {
+        final long[] sum = new long[Counters.SIZE];
+        for (CodePointCounts c : getCounts()) {
+            sum[0] += c.getCodePointsRead();
+            sum[1] += c.getCodePointsWritten();
+            sum[2] += c.getBytesRead();
+            sum[3] += c.getBytesWritten();
+            sum[4] += c.getMalformed();
+            sum[5] += c.getUnmappable();
+            sum[6] += c.getLookups();
+            sum[7] += c.getCacheHits();
+        }
+        return new CodePointCounts("*", "*", sum);
+    }
+
+    @Override
+    public List<CodePointCounts> getCounts() {
+        final List<CodePointCounts> result = new ArrayList<>();
+        for (Map.Entry<String, ConcurrentMap<Charset, Counters>> e : _counters.entrySet()) {
+            for (Map.Entry<Charset, Counters> f : e.getValue().entrySet()) {
+                result.add(new CodePointCounts(e.getKey(), f.getKey().name(), f.getValue().values()));
+            }
+        }
+        return Collections.unmodifiableList(result);
+    }
+
+    @Override
+    public void reset() {
+        for (ConcurrentMap<Charset, Counters> m : _counters.values()) {
+            for (Counters c : m.values()) {
+                c.reset();
+            }
+        }
+    }
+
+    /**
+     * Striped counters for one implementation and charset.
+     * Sources and sinks batch their updates, so each adds to these only
+     * every few thousand code points.
+     */
+    static final class Counters {
+
+        static final int SIZE = 8;
+
+        final LongAdder codePointsRead = new LongAdder();
+        final LongAdder codePointsWritten = new LongAdder();
+        final LongAdder bytesRead = new LongAdder();
+        final LongAdder bytesWritten = new LongAdder();
+        final LongAdder malformed = new LongAdder();
+        final LongAdder unmappable = new LongAdder();
+        final LongAdder lookups = new LongAdder();
+        final LongAdder cacheHits = new LongAdder();
+
+        void lookup(boolean hit) {
+            lookups.increment();
+            if (hit) {
+                cacheHits.increment();
+            }
+        }
+
+        void error(CharacterCodingException e) {
+            if (e instanceof MalformedInputException) {
+                malformed.increment();
+            } else if (e instanceof UnmappableCharacterException) {
+                unmappable.increment();
+            }
+        }
+
+        long[] values() {
+            return new long[]{
+                codePointsRead.sum(),
+                codePointsWritten.sum(),
+                bytesRead.sum(),
+                bytesWritten.sum(),
+                malformed.sum(),
+                unmappable.sum(),
+                lookups.sum(),
+                cacheHits.sum()
+            };
+        }
+
+        void reset() {
+            codePointsRead.reset();
+            codePointsWritten.reset();
+            bytesRead.reset();
+            bytesWritten.reset();
+            malformed.reset();
+            unmappable.reset();
+            lookups.reset();
+            cacheHits.reset();
+        }
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2023 Frank Mitchell.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.frank_mitchell.codepoint.spi;
+
+import java.util.List;
+
+/**
+ * Counters for everything that passed through sources and sinks created
+ * while a {@link Provider} had metrics turned on.
+ * The {@link Provider} registers this bean under {@link #OBJECT_NAME}
+ * the first time it turns on metrics.
+ *
+ * @author Frank Mitchell
+ */
+public interface CodePointMetricsMXBean {
+
+    /**
+     * Name of the bean in the platform MBean server.
+     */
+    String OBJECT_NAME = "com.frank_mitchell.codepoint:type=CodePointMetrics";
+
+    /**
+     * Totals for every implementation and charset.
+     *
+     * @return the sum of all {@link #getCounts()}
+     */
+    CodePointCounts getTotals();
+
+    /**
+     * Counters for each implementation and charset.
+     *
+     * @return one entry per (implementation, charset) seen so far
+     */
+    List<CodePointCounts> getCounts();
+
+    /**
+     * Set all counters to zero.
+     */
+    void reset();
+}
@@ -23,37 +23,112 @@
  */
 package com.frank_mitchell.codepoint.spi;
 
+import java.io.IOException;
 import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
 import java.nio.charset.Charset;
+import java.util.Collections;
 import java.util.Set;
 
 /**
+ * A constructor for a source or sink, the charsets it prefers, and a
+ * way to call it.
+ * The constructor may come from reflection or from a
+ * {@link WrapperRegistry} generated at compile time.
  *
  * @author fmitchell
  */
 class ConstructorRecord<S> {
-    
-    Constructor<? extends S> _cons;
-    Set<Charset> _charsets;
+
+    /**
+     * A record standing for the lack of any suitable constructor.
+     */
+    static final ConstructorRecord<?> NONE = new ConstructorRecord<>(
+            Object.class, new Class<?>[0], Collections.emptySet(), null);
+
+    private final Class<?> _impl;
+    private final Class<?>[] _params;
+    private final Set<Charset> _charsets;
+    private final WrapperRegistry.Factory _factory;
 
     ConstructorRecord(Constructor<? extends S> c, Set<Charset> css) {
-        _cons = c;
+        this(c.getDeclaringClass(), c.getParameterTypes(), css, reflect(c));
+    }
+
+    ConstructorRecord(Class<?> impl, Class<?>[] params, Set<Charset> css, WrapperRegistry.Factory f) {
+        _impl = impl;
+        _params = params.clone();
         _charsets = css;
+        _factory = f;
+    }
+
+    private static WrapperRegistry.Factory reflect(final Constructor<?> cons) {
+        return (obj, cs) -> {
+            Class<?>[] types = cons.getParameterTypes();
+            Object[] args = new Object[types.length];
+            for (int i = 0; i < types.length; i++) {
+                // TODO: keep track of which arguments have been used
+                if (types[i].isAssignableFrom(obj.getClass())) {
+                    args[i] = obj;
+                } else if (types[i].isAssignableFrom(cs.getClass())) {
+                    args[i] = cs;
+                } else {
+                    throw new IllegalStateException("Constructor " + cons + " cannot be called with arguments (" + obj + ", " + cs + ")");
+                }
+            }
+            try {
+                return cons.newInstance(args);
+            } catch (InstantiationException | InvocationTargetException | IllegalArgumentException | IllegalAccessException e) {
+                throw new IOException(e);
+            }
+        };
     }
 
-    Constructor<? extends S> getConstructor() {
-        return _cons;
+    /**
+     * Whether this record stands for an actual constructor.
+     *
+     * @return false for {@link #NONE}, true otherwise
+     */
+    boolean exists() {
+        return _factory != null;
+    }
+
+    Class<?> getImplementation() {
+        return _impl;
+    }
+
+    Class<?>[] getParameterTypes() {
+        return _params.clone();
     }
 
     Set<Charset> getCharsets() {
         return _charsets;
     }
 
+    /**
+     * Call the constructor.
+     *
+     * @param obj the object to wrap
+     * @param cs the charset of {@code obj}
+     * @return a new source or sink
+     * @throws IOException if the constructor threw one
+     */
+    @SuppressWarnings("unchecked")
+    S create(Object obj, Charset cs) throws IOException {
+        return (S) _factory.create(obj, cs);
+    }
+
     @Override
     public String toString() {
         StringBuilder b = new StringBuilder();
-        b.append("('").append(_cons).append("' ").append(_charsets).append(")");
+        b.append("('").append(_impl.getName()).append('(');
+        for (int i = 0; i < _params.length; i++) {
+            if (i > 0) {
+                b.append(',');
+            }
+            b.append(_params[i].getName());
+        }
+        b.append(")' ").append(_charsets).append(")");
         return b.toString();
     }
-    
 }
@@ -0,0 +1,66 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2023 Frank Mitchell.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.frank_mitchell.codepoint.spi;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * Flight Recorder event for a block of code points read from a source.
+ * Off unless a recording turns it on, and only blocks slower than the
+ * threshold are recorded.
+ *
+ * @author Frank Mitchell
+ * @see TracedSource
+ */
+@Name("com.frank_mitchell.codepoint.Decode")
+@Label("Codepoint Decode")
+@Description("A block of code points read from a source, including time the reader spent between reads")
+@Category({"Codepoint"})
+@Enabled(false)
+@Threshold("1 ms")
+@StackTrace(false)
+final class DecodeEvent extends Event {
+
+    @Label("Implementation")
+    Class<?> implementation;
+
+    @Label("Charset")
+    String charset;
+
+    @Label("Bytes")
+    @Description("Bytes read from an input stream, or 0 if the source doesn't read bytes")
+    @DataAmount
+    long bytes;
+
+    @Label("Code Points")
+    long codePoints;
+}
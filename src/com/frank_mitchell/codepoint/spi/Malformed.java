@@ -0,0 +1,129 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2023 Frank Mitchell.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.frank_mitchell.codepoint.spi;
+
+import com.frank_mitchell.codepoint.DecodingPolicy;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.MalformedInputException;
+import java.nio.charset.UnmappableCharacterException;
+
+/**
+ * Applies a {@link DecodingPolicy} to bad input.
+ * Only {@link DecodingPolicy#REPORT} creates an exception, and only
+ * {@link DecodingPolicy.Action#CALLBACK} copies the bad input.
+ *
+ * @author Frank Mitchell
+ */
+final class Malformed {
+
+    /**
+     * Returned when the policy drops the bad input.
+     */
+    static final int SKIP = -1;
+
+    private Malformed() {
+    }
+
+    /**
+     * Decide what to read in place of bad bytes.
+     * The caller then skips {@code length} bytes, whatever the outcome.
+     *
+     * @param policy the policy
+     * @param offset offset of the bad bytes from the start of input
+     * @param in buffer positioned at the bad bytes; not modified
+     * @param length number of bad bytes
+     * @param unmappable whether the bytes are valid but have no mapping
+     * @param counters where to count an error the policy handles, or null
+     * @return a code point, or {@link #SKIP}
+     * @throws IOException if the policy is to report, or the callback threw
+     */
+    static int resolve(DecodingPolicy policy, long offset, ByteBuffer in, int length, boolean unmappable,
+            CodePointMetrics.Counters counters) throws IOException {
+        if (counters != null && policy.getAction() != DecodingPolicy.Action.REPORT) {
+            (unmappable ? counters.unmappable : counters.malformed).increment();
+        }
+        switch (policy.getAction()) {
+            case REPLACE:
+                return DecodingPolicy.REPLACEMENT_CHARACTER;
+            case SKIP:
+                return SKIP;
+            case CALLBACK:
+                final byte[] bad = new byte[length];
+                in.duplicate().get(bad);
+                return check(policy.getHandler().onMalformed(offset, bad));
+            default:
+                throw unmappable
+                        ? new UnmappableCharacterException(length)
+                        : new MalformedInputException(length);
+        }
+    }
+
+    /**
+     * Decide what to read in place of an unpaired surrogate.
+     *
+     * @param policy the policy
+     * @param offset offset of the surrogate from the start of input, in
+     *      chars
+     * @param c the surrogate
+     * @param counters where to count an error the policy handles, or null
+     * @return a code point, or {@link #SKIP}
+     * @throws IOException if the policy is to report, or the callback threw
+     */
+    static int resolve(DecodingPolicy policy, long offset, char c,
+            CodePointMetrics.Counters counters) throws IOException {
+        count(policy, counters);
+        switch (policy.getAction()) {
+            case REPLACE:
+                return DecodingPolicy.REPLACEMENT_CHARACTER;
+            case SKIP:
+                return SKIP;
+            case CALLBACK:
+                final byte[] bad = {(byte) (c >> 8), (byte) c};
+                return check(policy.getHandler().onMalformed(offset * 2, bad));
+            default:
+                throw new MalformedInputException(1);
+        }
+    }
+
+    /**
+     * Count a malformed sequence, unless the policy reports it.
+     *
+     * @param policy the policy
+     * @param counters where to count, or null
+     */
+    static void count(DecodingPolicy policy, CodePointMetrics.Counters counters) {
+        if (counters != null && policy.getAction() != DecodingPolicy.Action.REPORT) {
+            counters.malformed.increment();
+        }
+    }
+
+    private static int check(int cp) {
+        if (cp >= 0 && !Character.isValidCodePoint(cp)) {
+            throw new IllegalStateException("Handler returned invalid code point "
+                    + Integer.toHexString(cp));
+        }
+        return (cp < 0) ? SKIP : cp;
+    }
+}
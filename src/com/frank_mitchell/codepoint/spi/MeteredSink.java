@@ -0,0 +1,143 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2023 Frank Mitchell.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.frank_mitchell.codepoint.spi;
+
+import com.frank_mitchell.codepoint.CodePointSink;
+import com.frank_mitchell.codepoint.EncodingPolicy;
+import java.io.IOException;
+import java.nio.charset.CharacterCodingException;
+
+/**
+ * Counts the code points written to another sink, and any coding errors
+ * it reports or, if it is {@link ErrorCounting}, handles by policy.
+ * Counts go to the shared counters in batches, and on {@link #flush()}
+ * and {@link #close()}.
+ *
+ * @author Frank Mitchell
+ */
+final class MeteredSink implements CodePointSink {
+
+    private final CodePointSink _sink;
+    private final CodePointMetrics.Counters _counters;
+    private final CountingOutputStream _bytes;
+    private int _pending;
+    private long _bytesSeen;
+
+    /**
+     * Count what goes into a sink.
+     *
+     * @param sink the sink
+     * @param counters where to add counts
+     * @param bytes the stream the sink writes, or null if it doesn't
+     *      write bytes
+     */
+    MeteredSink(CodePointSink sink, CodePointMetrics.Counters counters, CountingOutputStream bytes) {
+        _sink = sink;
+        _counters = counters;
+        _bytes = bytes;
+        if (sink instanceof ErrorCounting) {
+            ((ErrorCounting) sink).setErrorCounters(counters);
+        }
+    }
+
+    private Object getLock() {
+        return this;
+    }
+
+    @Override
+    public EncodingPolicy getEncodingPolicy() {
+        return _sink.getEncodingPolicy();
+    }
+
+    @Override
+    public void setEncodingPolicy(EncodingPolicy policy) {
+        _sink.setEncodingPolicy(policy);
+    }
+
+    @Override
+    public void putCodePoint(int cp) throws IOException {
+        synchronized (getLock()) {
+            try {
+                _sink.putCodePoint(cp);
+            } catch (CharacterCodingException e) {
+                _counters.error(e);
+                throw e;
+            }
+            if (++_pending >= MeteredSource.BATCH) {
+                flushCounts();
+            }
+        }
+    }
+
+    @Override
+    public void putCodePoints(int[] cps, int off, int len) throws IOException {
+        synchronized (getLock()) {
+            try {
+                _sink.putCodePoints(cps, off, len);
+            } catch (CharacterCodingException e) {
+                _counters.error(e);
+                throw e;
+            }
+            _pending += len;
+            if (_pending >= MeteredSource.BATCH) {
+                flushCounts();
+            }
+        }
+    }
+
+    private void flushCounts() {
+        if (_pending > 0) {
+            _counters.codePointsWritten.add(_pending);
+            _pending = 0;
+        }
+        if (_bytes != null && _bytes.getCount() > _bytesSeen) {
+            _counters.bytesWritten.add(_bytes.getCount() - _bytesSeen);
+            _bytesSeen = _bytes.getCount();
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        synchronized (getLock()) {
+            try {
+                _sink.flush();
+            } catch (CharacterCodingException e) {
+                _counters.error(e);
+                throw e;
+            }
+            flushCounts();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (getLock()) {
+            try {
+                _sink.close();
+            } finally {
+                flushCounts();
+            }
+        }
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2023 Frank Mitchell.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.frank_mitchell.codepoint.spi;
+
+import com.frank_mitchell.codepoint.CodePointSource;
+import com.frank_mitchell.codepoint.DecodingPolicy;
+import java.io.IOException;
+import java.nio.charset.CharacterCodingException;
+
+/**
+ * Counts the code points another source returns, and any coding errors
+ * it reports or, if it is {@link ErrorCounting}, handles by policy.
+ * Counts go to the shared counters in batches, at the end of input, and
+ * on {@link #close()}.
+ *
+ * @author Frank Mitchell
+ */
+final class MeteredSource implements CodePointSource {
+
+    static final int BATCH = 4096;
+
+    private final CodePointSource _source;
+    private final CodePointMetrics.Counters _counters;
+    private final CountingInputStream _bytes;
+    private int _pending;
+    private long _bytesSeen;
+
+    /**
+     * Count what a source reads.
+     *
+     * @param source the source
+     * @param counters where to add counts
+     * @param bytes the stream the source reads, or null if it doesn't
+     *      read bytes
+     */
+    MeteredSource(CodePointSource source, CodePointMetrics.Counters counters, CountingInputStream bytes) {
+        _source = source;
+        _counters = counters;
+        _bytes = bytes;
+        if (source instanceof ErrorCounting) {
+            ((ErrorCounting) source).setErrorCounters(counters);
+        }
+    }
+
+    private Object getLock() {
+        return this;
+    }
+
+    @Override
+    public int getCodePoint() {
+        return _source.getCodePoint();
+    }
+
+    @Override
+    public DecodingPolicy getDecodingPolicy() {
+        return _source.getDecodingPolicy();
+    }
+
+    @Override
+    public void setDecodingPolicy(DecodingPolicy policy) {
+        _source.setDecodingPolicy(policy);
+    }
+
+    @Override
+    public boolean hasNext() throws IOException {
+        synchronized (getLock()) {
+            try {
+                final boolean result = _source.hasNext();
+                if (!result) {
+                    flushCounts();
+                }
+                return result;
+            } catch (CharacterCodingException e) {
+                _counters.error(e);
+                throw e;
+            }
+        }
+    }
+
+    @Override
+    public void next() throws IOException {
+        synchronized (getLock()) {
+            try {
+                _source.next();
+            } catch (CharacterCodingException e) {
+                _counters.error(e);
+                throw e;
+            }
+            if (++_pending >= BATCH) {
+                flushCounts();
+            }
+        }
+    }
+
+    @Override
+    public int read(int[] cps, int off, int len) throws IOException {
+        synchronized (getLock()) {
+            final int n;
+            try {
+                n = _source.read(cps, off, len);
+            } catch (CharacterCodingException e) {
+                _counters.error(e);
+                throw e;
+            }
+            if (n < 0) {
+                flushCounts();
+            } else {
+                _pending += n;
+                if (_pending >= BATCH) {
+                    flushCounts();
+                }
+            }
+            return n;
+        }
+    }
+
+    private void flushCounts() {
+        if (_pending > 0) {
+            _counters.codePointsRead.add(_pending);
+            _pending = 0;
+        }
+        if (_bytes != null && _bytes.getCount() > _bytesSeen) {
+            _counters.bytesRead.add(_bytes.getCount() - _bytesSeen);
+            _bytesSeen = _bytes.getCount();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (getLock()) {
+            flushCounts();
+            _source.close();
+        }
+    }
+}
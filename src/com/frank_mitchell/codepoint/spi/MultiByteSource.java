@@ -0,0 +1,310 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2023 Frank Mitchell.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.frank_mitchell.codepoint.spi;
+
+import com.frank_mitchell.codepoint.ForCharsets;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Decodes East Asian charsets with one- and two-byte characters, such as
+ * Shift_JIS, GBK, and Big5, plus the three-byte JIS X 0212 characters of
+ * EUC-JP.
+ * Each byte is looked up in a 256-entry table, and the second (or third)
+ * byte in a page of characters for the bytes before it.
+ * A {@link Table} is built once per charset, the first time a source
+ * needs it, and shared by every source after that.
+ * Bytes the charset doesn't map are handled according to the
+ * {@link com.frank_mitchell.codepoint.DecodingPolicy}.
+ *
+ * @author Frank Mitchell
+ */
+class MultiByteSource extends AbstractByteSource {
+
+    /**
+     * Tables already built, by charset.
+     */
+    private static final Map<Charset, Table> TABLES = new ConcurrentHashMap<>();
+
+    private final Table _table;
+    private final Charset _charset;
+
+    /**
+     * Create a source reading a stream.
+     *
+     * @param in the stream to decode
+     * @param cs a charset listed in {@link ForCharsets}, or like them
+     * @throws IllegalArgumentException if {@code cs} has characters
+     *      longer than three bytes
+     */
+    @ForCharsets(names={"Shift_JIS", "windows-31j", "EUC-JP", "GBK", "Big5", "EUC-KR"})
+    public MultiByteSource(InputStream in, Charset cs) {
+        super(in);
+        _table = getTable(cs);
+        _charset = cs;
+    }
+
+    /**
+     * Create a source reading a buffer from its position.
+     *
+     * @param b the bytes to decode
+     * @param cs a charset listed in {@link ForCharsets}, or like them
+     * @throws IllegalArgumentException if {@code cs} has characters
+     *      longer than three bytes
+     */
+    @ForCharsets(names={"Shift_JIS", "windows-31j", "EUC-JP", "GBK", "Big5", "EUC-KR"})
+    public MultiByteSource(ByteBuffer b, Charset cs) {
+        super(b);
+        _table = getTable(cs);
+        _charset = cs;
+    }
+
+    @Override
+    Charset getByteCharset() {
+        return _charset;
+    }
+
+    /**
+     * The decoding table for a charset.
+     *
+     * @param cs the charset
+     * @return its table
+     */
+    static Table getTable(Charset cs) {
+        return TABLES.computeIfAbsent(cs, Table::new);
+    }
+
+    @Override
+    protected int decode() throws IOException {
+        while (fill(1)) {
+            final int b1 = _in.get(_in.position()) & 0xFF;
+            final int single = _table._single[b1];
+            if (single >= 0) {
+                _in.position(_in.position() + 1);
+                return single;
+            }
+            final int sub = (single == Table.INVALID)
+                    ? malformed(1, false)
+                    : decodeMultiByte(b1, single == Table.LEAD3 ? 3 : 2);
+            if (sub >= 0) {
+                return sub;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Decode a two- or three-byte character, or apply the policy to
+     * its first byte or the whole thing.
+     *
+     * @param b1 the first byte
+     * @param length length of the character
+     * @return a code point, or {@link Malformed#SKIP}
+     */
+    private int decodeMultiByte(int b1, int length) throws IOException {
+        fill(length);
+        final int pos = _in.position();
+        final int remaining = _in.remaining();
+        if (remaining < 2) {
+            return malformed(remaining, false);
+        }
+        final int b2 = _in.get(pos + 1) & 0xFF;
+        final char[] page;
+        final int trail;
+        if (length == 3) {
+            page = _table._pages[256 + b2];
+            if (page != null && remaining < 3) {
+                return malformed(remaining, false);
+            }
+            trail = (page == null) ? b2 : _in.get(pos + 2) & 0xFF;
+        } else {
+            page = _table._pages[b1];
+            trail = b2;
+        }
+        final int i = trail - _table._trailMin;
+        if (page == null || i < 0 || i >= page.length) {
+            // Not a trailing byte; it may start the next character
+            return malformed(1, false);
+        }
+        final char c = page[i];
+        if (c == 0) {
+            return malformed(length, true);
+        }
+        _in.position(pos + length);
+        return c;
+    }
+
+    /**
+     * The mappings of one charset, taken from the JDK's own decoder.
+     */
+    static final class Table {
+
+        /**
+         * A byte that can't start a character.
+         */
+        static final int INVALID = -1;
+
+        /**
+         * A byte that starts a two-byte character.
+         */
+        static final int LEAD2 = -2;
+
+        /**
+         * A byte that starts a three-byte character.
+         */
+        static final int LEAD3 = -3;
+
+        /**
+         * The code point of each byte, or {@link #INVALID},
+         * {@link #LEAD2}, or {@link #LEAD3}.
+         */
+        final int[] _single = new int[256];
+
+        /**
+         * Pages of characters by the last byte, less {@link #_trailMin}.
+         * Indexed by the first byte of a two-byte character, or 256 plus
+         * the second byte of a three-byte character.
+         * 0 means the bytes aren't mapped.
+         */
+        final char[][] _pages = new char[512][];
+
+        /**
+         * Smallest last byte of any multi-byte character.
+         */
+        final int _trailMin;
+
+        private Table(Charset cs) {
+            final Probe probe = new Probe(cs);
+
+            final int[][] found = new int[512][];
+            int min = 0xFF;
+            int max = 0;
+            int lead3 = -1;
+            for (int b1 = 0; b1 < 256; b1++) {
+                final int cp = probe.decode(b1);
+                _single[b1] = cp;
+                if (cp != LEAD2) {
+                    continue;
+                }
+                for (int b2 = 0; b2 < 256; b2++) {
+                    int c = probe.decode(b1, b2);
+                    if (c == LEAD2) {
+                        if (lead3 >= 0 && lead3 != b1) {
+                            throw new IllegalArgumentException(cs + " has more than one three-byte lead");
+                        }
+                        lead3 = b1;
+                        _single[b1] = LEAD3;
+                        for (int b3 = 0; b3 < 256; b3++) {
+                            c = probe.decode(b1, b2, b3);
+                            if (c > 0) {
+                                put(found, 256 + b2, b3, c);
+                                min = Math.min(min, b3);
+                                max = Math.max(max, b3);
+                            }
+                        }
+                    } else if (c > 0) {
+                        put(found, b1, b2, c);
+                        min = Math.min(min, b2);
+                        max = Math.max(max, b2);
+                    }
+                }
+            }
+            if (lead3 >= 0) {
+                // A lead byte is either two-byte or three-byte, not both
+                found[lead3] = null;
+            }
+            _trailMin = min;
+            for (int i = 0; i < found.length; i++) {
+                if (found[i] != null) {
+                    final char[] page = new char[max - min + 1];
+                    for (int t = min; t <= max; t++) {
+                        page[t - min] = (char) found[i][t];
+                    }
+                    _pages[i] = page;
+                }
+            }
+        }
+
+        private static void put(int[][] found, int index, int trail, int c) {
+            if (found[index] == null) {
+                found[index] = new int[256];
+            }
+            found[index][trail] = c;
+        }
+    }
+
+    /**
+     * Asks the JDK's decoder about short sequences of bytes.
+     */
+    private static final class Probe {
+        private final CharsetDecoder _dec;
+        private final ByteBuffer _bytes = ByteBuffer.allocate(3);
+        private final CharBuffer _chars = CharBuffer.allocate(4);
+
+        Probe(Charset cs) {
+            _dec = cs.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPORT)
+                    .onUnmappableCharacter(CodingErrorAction.REPORT);
+        }
+
+        /**
+         * Decode a sequence of bytes on its own.
+         *
+         * @return the only character, {@link Table#LEAD2} if the decoder
+         *      needs another byte, or {@link Table#INVALID}
+         */
+        int decode(int... bytes) {
+            _bytes.clear();
+            for (int b : bytes) {
+                _bytes.put((byte) b);
+            }
+            _bytes.flip();
+            _chars.clear();
+            _dec.reset();
+            final CoderResult cr = _dec.decode(_bytes, _chars, false);
+            if (cr.isError()) {
+                return Table.INVALID;
+            }
+            if (_chars.position() == 0 && _bytes.position() == 0) {
+                return Table.LEAD2;
+            }
+            if (cr.isUnderflow() && !_bytes.hasRemaining() && _chars.position() == 1) {
+                final char c = _chars.get(0);
+                return Character.isSurrogate(c) ? Table.INVALID : c;
+            }
+            if (bytes.length == 3 || _bytes.position() > 0) {
+                return Table.INVALID;
+            }
+            throw new IllegalArgumentException(_dec.charset() + " is not a simple multi-byte charset");
+        }
+    }
+}
@@ -26,7 +26,9 @@ package com.frank_mitchell.codepoint.spi;
 import com.frank_mitchell.codepoint.CodePointProvider;
 import com.frank_mitchell.codepoint.CodePointSink;
 import com.frank_mitchell.codepoint.CodePointSource;
-import com.frank_mitchell.codepoint.ForCharsets;
+import com.frank_mitchell.codepoint.DecodingPolicy;
+import com.frank_mitchell.codepoint.DetectingSource;
+import com.frank_mitchell.codepoint.EncodingPolicy;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
@@ -34,34 +36,52 @@ import java.io.LineNumberReader;
 import java.io.OutputStream;
 import java.io.Reader;
 import java.io.Writer;
-import java.lang.reflect.Constructor;
-import java.lang.reflect.InvocationTargetException;
+import java.net.URL;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
 import java.util.Set;
+import java.util.WeakHashMap;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
 import java.util.logging.Level;
-import java.util.logging.LogManager;
 import java.util.logging.Logger;
+import javax.management.JMException;
+import jdk.jfr.EventType;
 
 /**
  * The default implementation of a {@link CodePointProvider}.
  * Only {@link com.frank_mitchell.codepoint.CodePoint} should create an
  * instance of this class under normal circumstances.
  *
+ * Where a {@link WrapperRegistry} generated at compile time lists a class's
+ * constructors, this class calls them directly; otherwise it finds them
+ * through reflection.
+ *
  * @author Frank Mitchell
  */
 public final class Provider implements CodePointProvider {
 
-    private static final Class<Charset> CHARSET_CLASS = Charset.class;
+    /**
+     * System property which, if "true", turns on metrics in every new
+     * provider.
+     *
+     * @see #setMetricsEnabled(boolean)
+     */
+    public static final String METRICS_PROPERTY = "com.frank_mitchell.codepoint.metrics";
 
     /**
      * Hardcode defaults for common sources and sinks (compile-time).
@@ -69,193 +89,327 @@ public final class Provider implements CodePointProvider {
     private static final boolean HARDCODE_DEFAULTS = false;
 
     /**
-     * Map of an input class to a CodePointSource implementation.
+     * Checked before each lookup, so no event is created unless a
+     * recording wants it.
      */
-    private final Map<Class<?>, Set<ConstructorRecord<CodePointSource>>> _sourcesByClass = new ConcurrentHashMap<>();
+    private static final EventType RESOLUTION = EventType.getEventType(ResolutionEvent.class);
+
     /**
-     * Map of an output class to a CodePointSink implementation.
+     * The current snapshot of known sources and sinks.
+     * Replaced, never modified, when we load new classes.
      */
-    private final Map<Class<?>, Set<ConstructorRecord<CodePointSink>>> _sinksByClass = new ConcurrentHashMap<>();
+    private final AtomicReference<Registry> _registry;
+
+    /**
+     * Class loaders whose configuration files we have already read.
+     * Weak keys, so we don't keep an undeployed application alive.
+     */
+    private final Map<ClassLoader, Boolean> _configured = new WeakHashMap<>();
+
+    /**
+     * Constructors from generated {@link WrapperRegistry}s, by the class
+     * they construct.
+     */
+    private final Map<Class<?>, List<ConstructorRecord<?>>> _prelinked = new ConcurrentHashMap<>();
+
+    /**
+     * Generated {@link WrapperRegistry} classes already loaded.
+     */
+    private final Set<Class<?>> _registries = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Whether to count what goes through the sources and sinks we create.
+     */
+    private volatile boolean _metered;
+
     /**
-     * Rules to map a Charset to Charsets they extend.
+     * Policy for new sources, or null to leave each source's own default.
      */
-    private final Map<Charset, Set<Charset>> _implies = new ConcurrentHashMap<>();
+    private volatile DecodingPolicy _policy;
+
+    /**
+     * Policy for new sinks, or null to leave each sink's own default.
+     */
+    private volatile EncodingPolicy _encodingPolicy;
 
     private static Set<Charset> set(Charset... charsets) {
-        return new CopyOnWriteArraySet<>(Arrays.asList(charsets));
+        return Collections.unmodifiableSet(new HashSet<>(Arrays.asList(charsets)));
     }
 
     /**
      * Default and only constructor.
      */
     public Provider() {
-        initImpliesTable();
+        _registry = new AtomicReference<>(new Registry(initImpliesTable()));
+        loadRegistries(Provider.class.getClassLoader());
         initSourcesAndSinksTables();
+        setMetricsEnabled(Boolean.getBoolean(METRICS_PROPERTY));
+    }
+
+    /**
+     * Turn metrics on or off for sources and sinks created from now on.
+     * When on, each source or sink counts code points, bytes, and errors
+     * into {@link #getMetrics()}, which is also registered with the platform
+     * MBean server as {@link CodePointMetricsMXBean#OBJECT_NAME}.
+     * When off, sources and sinks cost exactly what they did before.
+     *
+     * @param on whether to count
+     */
+    public void setMetricsEnabled(boolean on) {
+        if (on) {
+            try {
+                CodePointMetrics.getInstance().register();
+            } catch (JMException e) {
+                log("Registering", CodePointMetricsMXBean.OBJECT_NAME, e);
+            }
+        }
+        _metered = on;
+    }
+
+    /**
+     * Whether new sources and sinks count what goes through them.
+     *
+     * @return whether metrics are on
+     */
+    public boolean isMetricsEnabled() {
+        return _metered;
+    }
+
+    /**
+     * Set the {@link DecodingPolicy} of sources created from now on.
+     *
+     * @param policy the policy, or null to leave each source with its
+     *      own default: {@link DecodingPolicy#REPLACE} for bytes,
+     *      {@link DecodingPolicy#REPORT} for characters
+     */
+    public void setDecodingPolicy(DecodingPolicy policy) {
+        _policy = policy;
     }
 
-    private void initImpliesTable() {
+    /**
+     * The {@link DecodingPolicy} for new sources.
+     *
+     * @return the policy, or null if each source uses its own default
+     */
+    public DecodingPolicy getDecodingPolicy() {
+        return _policy;
+    }
+
+    /**
+     * Set the {@link EncodingPolicy} of sinks created from now on.
+     * Creating a sink that can't use the policy, such as an
+     * {@link EncodingPolicy.Action#CALLBACK} for a sink that hands its
+     * output stream to an {@link java.io.OutputStreamWriter}, throws an
+     * {@link UnsupportedOperationException}.
+     *
+     * @param policy the policy, or null to leave each sink with its
+     *      own default
+     */
+    public void setEncodingPolicy(EncodingPolicy policy) {
+        _encodingPolicy = policy;
+    }
+
+    /**
+     * The {@link EncodingPolicy} for new sinks.
+     *
+     * @return the policy, or null if each sink uses its own default
+     */
+    public EncodingPolicy getEncodingPolicy() {
+        return _encodingPolicy;
+    }
+
+    /**
+     * The counters shared by every provider in this JVM.
+     *
+     * @return the metrics bean
+     */
+    public CodePointMetricsMXBean getMetrics() {
+        return CodePointMetrics.getInstance();
+    }
+
+    private static Map<Charset, Set<Charset>> initImpliesTable() {
+        final Map<Charset, Set<Charset>> implies = new HashMap<>();
         // Common knowledge that some charsets are strict subsets of others.
         // E.g. UTF-8 => ASCII and UTF_16BE => UTF_16
-        _implies.put(StandardCharsets.UTF_8, set(StandardCharsets.US_ASCII));
-        _implies.put(StandardCharsets.ISO_8859_1, set(StandardCharsets.US_ASCII));
+        implies.put(StandardCharsets.UTF_8, set(StandardCharsets.US_ASCII));
+        implies.put(StandardCharsets.ISO_8859_1, set(StandardCharsets.US_ASCII));
         // Not sure which way this one should go, since UTF_16 should handle both "endian" variants
-        _implies.put(StandardCharsets.UTF_16BE, set(StandardCharsets.UTF_16));
-        _implies.put(StandardCharsets.UTF_16LE, set(StandardCharsets.UTF_16));
-        _implies.put(StandardCharsets.UTF_16, set(StandardCharsets.UTF_16BE, StandardCharsets.UTF_16LE));
+        implies.put(StandardCharsets.UTF_16BE, set(StandardCharsets.UTF_16));
+        implies.put(StandardCharsets.UTF_16LE, set(StandardCharsets.UTF_16));
+        implies.put(StandardCharsets.UTF_16, set(StandardCharsets.UTF_16BE, StandardCharsets.UTF_16LE));
+        return Collections.unmodifiableMap(implies);
     }
 
     private void initSourcesAndSinksTables() {
-        collectConstructors(AsciiSource.class, _sourcesByClass);
-        //collectConstructors(ByteBufferSource.class, _sourcesByClass);
-        collectConstructors(CharSequenceSource.class, _sourcesByClass);
-        collectConstructors(ReaderSource.class, _sourcesByClass);
-
-        //collectConstructors(ByteBufferSink.class, _sinksByClass);
-        collectConstructors(StringBufferSink.class, _sinksByClass);
-        collectConstructors(WriterSink.class, _sinksByClass);
+        register(Arrays.asList(
+                AsciiSource.class,
+                ByteBufferSource.class,
+                SingleByteSource.class,
+                MultiByteSource.class,
+                Utf16Source.class,
+                Utf32Source.class,
+                CharSequenceSource.class,
+                ReaderSource.class,
+                //ByteBufferSink.class,
+                SingleByteSink.class,
+                StringBufferSink.class,
+                WriterSink.class));
     }
 
-    private <W, T> W createWrapper(Constructor<? extends W> cons, T obj, Charset cs) throws IOException {
-        Class<?>[] types = cons.getParameterTypes();
-        Object[] args = new Object[types.length];
-        for (int i = 0; i < types.length; i++) {
-            // TODO: keep track of which arguments have been used
-            if (types[i].isAssignableFrom(obj.getClass())) {
-                args[i] = obj;
-            } else if (types[i].isAssignableFrom(cs.getClass())) {
-                args[i] = cs;
-            } else {
-                throw new IllegalStateException("Constructor " + cons + " cannot be called with arguments (" + obj + ", " + cs + ")");
-            }
-        }
-        try {
-            return cons.newInstance(args);
-        } catch (InstantiationException | InvocationTargetException | IllegalArgumentException | IllegalAccessException e) {
-            throw new IOException(e);
-        }
+    /**
+     * Add classes to the registry by swapping in a new snapshot.
+     *
+     * @param classes implementations of sources and sinks
+     */
+    private void register(Collection<Class<?>> classes) {
+        _registry.updateAndGet(r -> r.withClasses(classes, _prelinked::get));
     }
 
-    @SuppressWarnings(value = "unchecked")
-    private <S, W> void collectConstructors(final Class<?> klass, final Map<Class<?>, Set<ConstructorRecord<S>>> classmap) throws SecurityException {
-        Constructor<?>[] conslist = klass.getConstructors();
-        for (Constructor<?> cons : conslist) {
-            Set<Charset> css = getCharsetsForConstructor(cons);
-            ConstructorRecord<?> rec = new ConstructorRecord<>(cons, Collections.unmodifiableSet(css));
-            // Fill in constructor maps
-            for (Class<?> param : cons.getParameterTypes()) {
-                if (!param.equals(CHARSET_CLASS)) {
-                    Set<ConstructorRecord<S>> set = classmap.get(param);
-                    if (set == null) {
-                        set = new CopyOnWriteArraySet<>();
-                        classmap.put(param, set);
-                    }
-                    set.add((ConstructorRecord<S>) rec);
+    /**
+     * Collect constructors from any {@link WrapperRegistry} generated by
+     * our annotation processor and visible to a class loader.
+     *
+     * @param loader the class loader
+     */
+    private void loadRegistries(ClassLoader loader) {
+        final Map<Class<?>, List<ConstructorRecord<?>>> found = new HashMap<>();
+        final WrapperRegistry.Collector collector = (impl, params, charsets, factory) ->
+                found.computeIfAbsent(impl, k -> new ArrayList<>())
+                        .add(new ConstructorRecord<>(impl, params, charsets, factory));
+        try {
+            for (WrapperRegistry r : ServiceLoader.load(WrapperRegistry.class, loader)) {
+                if (_registries.add(r.getClass())) {
+                    r.registerWrappers(collector);
                 }
             }
+        } catch (ServiceConfigurationError e) {
+            log("Loading", WrapperRegistry.class.getName(), e);
         }
-    }
-
-    private boolean matchesCharset(Set<Charset> charsets, Charset cs) {
-        if (charsets.contains(cs)) {
-            return true;
-        }
-        for (Charset tcs : charsets) {
-            Set<Charset> implied = _implies.get(tcs);
-            if (implied != null && implied.contains(cs)) {
-                return true;
-            }
+        for (Map.Entry<Class<?>, List<ConstructorRecord<?>>> e : found.entrySet()) {
+            _prelinked.putIfAbsent(e.getKey(), Collections.unmodifiableList(e.getValue()));
         }
-        return false;
     }
 
-    private void log(String where, String name, Exception e) {
-        Logger log = LogManager.getLogManager().getLogger(this.getClass().getName());
+    private void log(String where, String name, Throwable e) {
+        Logger log = Logger.getLogger(this.getClass().getName());
         Level level = Level.WARNING;
         if (log.isLoggable(level)) {
             log.log(level, where + " " + name, e);
         }
     }
 
-    private Set<Charset> getCharsetsForConstructor(Constructor<?> cons) {
-        Set<Charset> css = new HashSet<>();
-        final ForCharsets[] anns = cons.getAnnotationsByType(ForCharsets.class);
-        if (anns != null) {
-            for (ForCharsets an : anns) {
-                String[] names = an.names();
-                for (String n : names) {
-                    Charset cs = Charset.forName(n);
-                    if (cs != null) {
-                        css.add(cs);
-                    }
+    private <S, T> ConstructorRecord<S> getConstructor(Function<Registry, Registry.Table<S>> tables, Class<T> type, Charset cs) throws IOException {
+        final ResolutionEvent event = RESOLUTION.isEnabled() ? new ResolutionEvent() : null;
+        if (event != null) {
+            event.begin();
+        }
+        Registry.Table<S> table = tables.apply(_registry.get());
+        ConstructorRecord<S> rec = table.lookup(type, cs);
+        final boolean hit = (rec != null);
+        if (rec == null) {
+            if (!table.containsType(type)) {
+                // is this the right loader?
+                ClassLoader loader = type.getClassLoader();
+                if (loader == null) {
+                    loader = ClassLoader.getSystemClassLoader();
+                }
+                if (configure(loader)) {
+                    table = tables.apply(_registry.get());
                 }
             }
+            rec = table.resolve(type, cs);
         }
-        return css;
+        if (event != null) {
+            event.end();
+            if (event.shouldCommit()) {
+                event.type = type;
+                event.charset = cs.name();
+                event.constructor = rec.exists() ? rec.toString() : "";
+                event.cacheHit = hit;
+                event.commit();
+            }
+        }
+        if (_metered && rec.exists()) {
+            CodePointMetrics.getInstance().getCounters(rec.getImplementation(), cs).lookup(hit);
+        }
+        return rec;
     }
 
-    private <S,T> Set<ConstructorRecord<S>> getTypeInMap(Map<Class<?>, Set<ConstructorRecord<S>>> map, Class<T> type) {
-        Set<ConstructorRecord<S>> result = null;
-        if (type == null) {
-            return null;
-        }
-        if (map.containsKey(type)) {
-            result = map.get(type);
-        } else if (!type.equals(Object.class)) {
-            result = getTypeInMap(map, type.getSuperclass());
-            if (result == null) {
-                for (Class<?> iface : type.getInterfaces()) {
-                    result = getTypeInMap(map, iface);
-                    if (result != null) {
-                        break;
-                    }
-                }
-            }
-            // Add to map so we don't have to do this again.
-            if (result != null) {
-                map.put(type, result);
+    private static boolean accepts(ConstructorRecord<?> cons, Class<?> wrapper) {
+        for (Class<?> param : cons.getParameterTypes()) {
+            if (param.isAssignableFrom(wrapper)) {
+                return true;
             }
         }
-        return result;
+        return false;
     }
 
-    private <S, T> Constructor<? extends S> getConstructor(Map<Class<?>, Set<ConstructorRecord<S>>> map, Class<T> type, Charset cs) throws IOException {
-        if (!map.containsKey(type)) {
-            // is this the right loader?
-            ClassLoader loader = type.getClassLoader();
-            if (loader != null) {
-                readConfiguration(loader);
+    /**
+     * Call a source constructor, decorating the result for metrics or
+     * Flight Recorder if either is on.
+     */
+    private CodePointSource createSource(ConstructorRecord<CodePointSource> cons, Object in, Charset cs) throws IOException {
+        final boolean traced = TracedSource.isRecording();
+        final DecodingPolicy policy = _policy;
+        if (!_metered && !traced) {
+            final CodePointSource result = cons.create(in, cs);
+            if (policy != null) {
+                result.setDecodingPolicy(policy);
             }
+            return result;
         }
-
-        Set<ConstructorRecord<S>> recset = getTypeInMap(map, type);
-        if (recset == null) {
-            // What *do* we do if we have nothing?
-            return null;
+        Object arg = in;
+        CountingInputStream bytes = null;
+        if (in instanceof InputStream && accepts(cons, CountingInputStream.class)) {
+            bytes = new CountingInputStream((InputStream) in);
+            arg = bytes;
         }
-        ConstructorRecord<S> first = null;
-        for (ConstructorRecord<S> rec : recset) {
-            if (first == null) {
-                first = rec;
-            }
-            // First prefer constructors specializing in the target charset
-            if (matchesCharset(rec.getCharsets(), cs)) {
-                Class<?>[] sig = rec.getConstructor().getParameterTypes();
-                if (sig.length == 1 && sig[0].isAssignableFrom(type)) {
-                    return rec.getConstructor();
-                }
-            }
+        CodePointSource result = cons.create(arg, cs);
+        if (policy != null) {
+            result.setDecodingPolicy(policy);
+        }
+        if (traced) {
+            result = new TracedSource(result, cons.getImplementation(), cs, bytes);
+        }
+        if (_metered) {
+            result = new MeteredSource(result,
+                    CodePointMetrics.getInstance().getCounters(cons.getImplementation(), cs), bytes);
+        }
+        return result;
+    }
 
-            // Otherwise, prefer the simplest one for the type and charset,
-            // or at least the type
-            Class<?>[] sig = rec.getConstructor().getParameterTypes();
-            if (sig.length == 2 && sig[0].isAssignableFrom(type) && sig[1].equals(CHARSET_CLASS)) {
-                return rec.getConstructor();
-            } else if (sig.length == 1 && sig[0].isAssignableFrom(type)) {
-                return rec.getConstructor();
+    /**
+     * Call a sink constructor, decorating the result for metrics or
+     * Flight Recorder if either is on.
+     */
+    private CodePointSink createSink(ConstructorRecord<CodePointSink> cons, Object out, Charset cs) throws IOException {
+        final boolean traced = TracedSink.isRecording();
+        final EncodingPolicy policy = _encodingPolicy;
+        if (!_metered && !traced) {
+            final CodePointSink result = cons.create(out, cs);
+            if (policy != null) {
+                result.setEncodingPolicy(policy);
             }
+            return result;
+        }
+        Object arg = out;
+        CountingOutputStream bytes = null;
+        if (out instanceof OutputStream && accepts(cons, CountingOutputStream.class)) {
+            bytes = new CountingOutputStream((OutputStream) out);
+            arg = bytes;
         }
-        // Well, just pick one
-        return first == null ? null : first.getConstructor();
+        CodePointSink result = cons.create(arg, cs);
+        if (policy != null) {
+            result.setEncodingPolicy(policy);
+        }
+        if (traced) {
+            result = new TracedSink(result, cons.getImplementation(), cs, bytes);
+        }
+        if (_metered) {
+            result = new MeteredSink(result,
+                    CodePointMetrics.getInstance().getCounters(cons.getImplementation(), cs), bytes);
+        }
+        return result;
     }
 
     @Override
@@ -279,15 +433,44 @@ public final class Provider implements CodePointProvider {
             }
         }
 
-        Constructor<? extends CodePointSource> cons = getConstructor(_sourcesByClass, clz, cs);
-        if (cons == null) {
+        ConstructorRecord<CodePointSource> cons = getConstructor(Registry::getSources, clz, cs);
+        if (!cons.exists()) {
             // exception or null??
             throw new IllegalStateException("No constructor for arguments (" + clz + ", \"" + cs + "\")");
         } else {
-            return createWrapper(cons, in, cs);
+            return createSource(cons, in, cs);
         }
     }
 
+    /**
+     * {@inheritDoc}
+     * This provider detects the charset of an {@link InputStream}, a
+     * {@link ByteBuffer}, or a {@code byte[]}, and applies its
+     * {@link DecodingPolicy} if it has one.
+     * Metrics and Flight Recorder events don't cover these sources.
+     */
+    @Override
+    public <T> DetectingSource getDetectingSource(Class<T> clz, T in) throws IOException {
+        Objects.requireNonNull(clz);
+        Objects.requireNonNull(in);
+
+        final DetectingSource result;
+        if (in instanceof InputStream) {
+            result = new AutoDetectSource((InputStream) in);
+        } else if (in instanceof ByteBuffer) {
+            result = new AutoDetectSource((ByteBuffer) in);
+        } else if (in instanceof byte[]) {
+            result = new AutoDetectSource(ByteBuffer.wrap((byte[]) in));
+        } else {
+            throw new IllegalStateException("Cannot detect the charset of " + clz);
+        }
+        final DecodingPolicy policy = _policy;
+        if (policy != null) {
+            result.setDecodingPolicy(policy);
+        }
+        return result;
+    }
+
     @Override
     public <T> CodePointSink getSink(Class<T> clz, T out, Charset cs) throws IOException {
         Objects.requireNonNull(clz);
@@ -306,31 +489,82 @@ public final class Provider implements CodePointProvider {
             }
         }
 
-        Constructor<? extends CodePointSink> cons = getConstructor(_sinksByClass, clz, cs);
-        if (cons == null) {
+        ConstructorRecord<CodePointSink> cons = getConstructor(Registry::getSinks, clz, cs);
+        if (!cons.exists()) {
             throw new IllegalStateException("No constructor for arguments (" + clz + ", \"" + cs + "\")");
         } else {
-            return createWrapper(cons, out, cs);
+            return createSink(cons, out, cs);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * When the source and sink are ones this provider made for the same
+     * charset, with metrics and Flight Recorder off, bytes are only
+     * decoded to check them and then copied as they are; bad input is
+     * written as its policy resolves it.
+     * If every byte is valid in the charset, as in ISO-8859-1, a file is
+     * copied to a file with {@link java.nio.channels.FileChannel#transferTo}.
+     * Otherwise code points move in blocks.
+     */
+    @Override
+    public long transfer(CodePointSource in, CodePointSink out) throws IOException {
+        Objects.requireNonNull(in);
+        Objects.requireNonNull(out);
+
+        final CodePointSource source = (in instanceof AutoDetectSource)
+                ? ((AutoDetectSource) in).getSource()
+                : in;
+        if (source instanceof AbstractByteSource && out instanceof ByteSink) {
+            final AbstractByteSource bytes = (AbstractByteSource) source;
+            final Charset cs = bytes.getByteCharset();
+            if (cs != null && cs.equals(((ByteSink) out).getByteCharset())) {
+                return bytes.transferTo((ByteSink) out);
+            }
+        }
+        return CodePointProvider.super.transfer(in, out);
+    }
+
+    /**
+     * Read the configuration for a class loader, unless we already have.
+     *
+     * @param loader the class loader
+     * @return whether this call read the loader's configuration
+     * @throws IOException if reading a configuration file failed
+     */
+    boolean configure(ClassLoader loader) throws IOException {
+        synchronized (_configured) {
+            if (_configured.containsKey(loader)) {
+                return false;
+            }
+            loadRegistries(loader);
+            readConfiguration(loader);
+            _configured.put(loader, Boolean.TRUE);
+            return true;
         }
     }
 
     void readConfiguration(ClassLoader loader) throws SecurityException, IOException {
-        InputStream instream = loader.getResourceAsStream(CodePointProvider.CONFIG_FILE);
+        // ClassLoader resource names don't start with '/' like Class ones do.
+        final String name = CodePointProvider.CONFIG_FILE.startsWith("/")
+                ? CodePointProvider.CONFIG_FILE.substring(1)
+                : CodePointProvider.CONFIG_FILE;
+        List<Class<?>> classes = new ArrayList<>();
 
-        for (String s : readConfigurationStream(instream)) {
-            try {
-                Class<?> clz = loader.loadClass(s);
-                if (CodePointSource.class.isAssignableFrom(clz)) {
-                    collectConstructors(clz, _sourcesByClass);
-                }
-                if (CodePointSink.class.isAssignableFrom(clz)) {
-                    collectConstructors(clz, _sinksByClass);
+        Enumeration<URL> urls = loader.getResources(name);
+        while (urls.hasMoreElements()) {
+            URL url = urls.nextElement();
+            try (InputStream instream = url.openStream()) {
+                for (String s : readConfigurationStream(instream)) {
+                    try {
+                        classes.add(loader.loadClass(s));
+                    } catch (ClassNotFoundException e) {
+                        log("Loading", s, e);
+                    }
                 }
-            } catch (ClassNotFoundException e) {
-                log("Loading", s, e);
             }
         }
-
+        register(classes);
     }
 
     List<String> readConfigurationStream(InputStream instream) throws IOException {
@@ -339,7 +573,7 @@ public final class Provider implements CodePointProvider {
         List<String> result = new ArrayList<>();
         for (String line = lr.readLine(); line != null; line = lr.readLine()) {
             int comment = line.indexOf('#');
-            if (comment > 0) {
+            if (comment >= 0) {
                 line = line.substring(0, comment);
             }
             String[] names = line.split("\\s+");
@@ -22,26 +22,43 @@
 package com.frank_mitchell.codepoint.spi;
 
 import com.frank_mitchell.codepoint.CodePointSource;
+import com.frank_mitchell.codepoint.DecodingPolicy;
 import com.frank_mitchell.codepoint.ForCharsets;
-import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.io.Reader;
-import java.io.UTFDataFormatException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
 import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
 import java.nio.charset.StandardCharsets;
+import java.util.Objects;
 
 /**
  * A {@link CodePointSource} that wraps a {@link Reader}.
+ * <p>
+ * Unpaired surrogates are handled according to the
+ * {@link DecodingPolicy}, by default {@link DecodingPolicy#REPORT}.
+ * When reading an {@link InputStream}, this class decodes the bytes itself
+ * and applies the policy to bad bytes as well;
+ * like an {@code InputStreamReader}, it replaces them by default.
  * 
  * @author fmitchell
  */
-final class ReaderSource implements CodePointSource {
+final class ReaderSource implements CodePointSource, ErrorCounting {
 
-    private final Reader _reader;
-    private int _lastChar;
-    private int _nextChar;
+    private Reader _reader;
+    private final InputStream _stream;
+    private final Charset _charset;
+    private DecodingPolicy _policy;
+    private CodePointMetrics.Counters _errors;
+    private long _offset;
+    private int _pending = -1;
+    private int _current = -1;
+    private int _next = -1;
+    private boolean _peeked;
 
     @ForCharsets(names={"UTF-16","UTF-16BE","UTF-16LE"})
     public ReaderSource(Reader r) throws IOException {
@@ -50,9 +67,10 @@ final class ReaderSource implements CodePointSource {
 
     public ReaderSource(Reader r, Charset cs) throws IOException {
         // TODO: Not using the charset
-        _reader = r;
-        _lastChar = -1;
-        _nextChar = -1;
+        _reader = Objects.requireNonNull(r);
+        _stream = null;
+        _charset = cs;
+        _policy = DecodingPolicy.REPORT;
     }
 
     public ReaderSource(InputStream s) throws IOException {
@@ -60,72 +78,233 @@ final class ReaderSource implements CodePointSource {
     }
 
     public ReaderSource(InputStream s, Charset e) throws IOException {
-        this(new InputStreamReader(s, e));
+        _reader = null;
+        _stream = Objects.requireNonNull(s);
+        _charset = e;
+        _policy = DecodingPolicy.REPLACE;
     }
 
     private Object getLock() {
         return this;
     }
 
+    private Reader getReader() {
+        if (_reader == null) {
+            _reader = new DecodingReader();
+        }
+        return _reader;
+    }
+
+    @Override
+    public DecodingPolicy getDecodingPolicy() {
+        synchronized (getLock()) {
+            return _policy;
+        }
+    }
+
+    @Override
+    public void setDecodingPolicy(DecodingPolicy policy) {
+        synchronized (getLock()) {
+            _policy = Objects.requireNonNull(policy);
+        }
+    }
+
+    @Override
+    public void setErrorCounters(CodePointMetrics.Counters counters) {
+        synchronized (getLock()) {
+            _errors = counters;
+        }
+    }
+
     @Override
     public int getCodePoint() {
         synchronized (getLock()) {
-            if (_lastChar < 0) {
+            if (_current < 0) {
                 throw new IllegalStateException("have not called next() yet");
             }
-            return _lastChar;
+            return _current;
         }
     }
 
     @Override
     public boolean hasNext() throws IOException {
         synchronized (getLock()) {
-            if (_nextChar < 0) {
-                _nextChar = _reader.read();
+            // Look again after the end, in case the reader has more now
+            if (!_peeked || _next < 0) {
+                _next = readCodePoint();
+                _peeked = true;
             }
-            return _nextChar > 0;
+            return _next >= 0;
         }
     }
 
     @Override
     public void next() throws IOException {
         synchronized (getLock()) {
-            int cp;
-            if (_nextChar > 0) {
-                cp = _nextChar;
-            } else {
-                cp = _reader.read();
-            }
-            if (cp >= 0 && Character.isSurrogate((char)cp)) {
-                cp = toCodePoint(cp, _reader.read());
+            if (!_peeked || _next < 0) {
+                _next = readCodePoint();
             }
-            _lastChar = cp;
-            _nextChar = -1;
+            _peeked = false;
+            _current = _next;
         }
     }
 
-    private int toCodePoint(int c1, int c2) throws UTFDataFormatException, EOFException {
-        int cp;
-        if (c2 < 0) {
-            throw new EOFException("Incomplete surrogate pair: "
-                    + Integer.toHexString(c2));
-        }
-        if (Character.isHighSurrogate((char)c1)
-                && Character.isLowSurrogate((char)c2)) {
-            cp = Character.toCodePoint((char)c1, (char)c2);
-        } else if (Character.isHighSurrogate((char)c2)
-                && Character.isLowSurrogate((char)c1)) {
-            cp = Character.toCodePoint((char)c2, (char)c1);
+    private int readChar() throws IOException {
+        int c = _pending;
+        if (c >= 0) {
+            _pending = -1;
         } else {
-            throw new UTFDataFormatException("Mismatched surrogate pair: "
-                    + Integer.toHexString(c1) + " "
-                    + Integer.toHexString(c2));
+            c = getReader().read();
+        }
+        if (c >= 0) {
+            _offset++;
+        }
+        return c;
+    }
+
+    private void unreadChar(int c) {
+        if (c >= 0) {
+            _pending = c;
+            _offset--;
+        }
+    }
+
+    private int readCodePoint() throws IOException {
+        while (true) {
+            final long offset = _offset;
+            final int c1 = readChar();
+            if (c1 < 0 || !Character.isSurrogate((char) c1)) {
+                return c1;
+            }
+            final int c2 = readChar();
+            if (c2 >= 0) {
+                if (Character.isHighSurrogate((char) c1)
+                        && Character.isLowSurrogate((char) c2)) {
+                    return Character.toCodePoint((char) c1, (char) c2);
+                } else if (Character.isHighSurrogate((char) c2)
+                        && Character.isLowSurrogate((char) c1)) {
+                    return Character.toCodePoint((char) c2, (char) c1);
+                }
+            }
+            // An unpaired surrogate; the next char may be fine
+            unreadChar(c2);
+            final int cp = Malformed.resolve(_policy, offset, (char) c1, _errors);
+            if (cp >= 0) {
+                return cp;
+            }
         }
-        return cp;
     }
 
     @Override
     public void close() throws IOException {
-        _reader.close();
+        if (_reader != null) {
+            _reader.close();
+        } else {
+            _stream.close();
+        }
+    }
+
+    /**
+     * Decodes {@link #_stream} like an {@code InputStreamReader}, but
+     * applies the source's policy to bad bytes.
+     */
+    private final class DecodingReader extends Reader {
+
+        private final CharsetDecoder _decoder;
+        private final ByteBuffer _bytes = ByteBuffer.allocate(8192);
+        private final CharBuffer _chars = CharBuffer.allocate(8192);
+        private long _decoded;
+        private boolean _eof;
+        private boolean _done;
+
+        DecodingReader() {
+            _decoder = _charset.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPORT)
+                    .onUnmappableCharacter(CodingErrorAction.REPORT);
+            _bytes.flip();
+            _chars.flip();
+        }
+
+        @Override
+        public int read() throws IOException {
+            while (!_chars.hasRemaining()) {
+                if (!fill()) {
+                    return -1;
+                }
+            }
+            return _chars.get();
+        }
+
+        @Override
+        public int read(char[] cbuf, int off, int len) throws IOException {
+            Objects.checkFromIndexSize(off, len, cbuf.length);
+            if (len == 0) {
+                return 0;
+            }
+            while (!_chars.hasRemaining()) {
+                if (!fill()) {
+                    return -1;
+                }
+            }
+            final int n = Math.min(len, _chars.remaining());
+            _chars.get(cbuf, off, n);
+            return n;
+        }
+
+        /**
+         * Decode more chars into {@link #_chars}.
+         *
+         * @return false at the end of input
+         */
+        private boolean fill() throws IOException {
+            if (_done) {
+                return false;
+            }
+            _chars.clear();
+            try {
+                while (_chars.position() == 0) {
+                    final int start = _bytes.position();
+                    final CoderResult cr = _decoder.decode(_bytes, _chars, _eof);
+                    _decoded += _bytes.position() - start;
+                    if (cr.isError()) {
+                        if (_chars.remaining() < 2) {
+                            // No room for a substitute; decode it next time
+                            break;
+                        }
+                        final int length = cr.length();
+                        final int cp = Malformed.resolve(_policy, _decoded, _bytes,
+                                length, cr.isUnmappable(), _errors);
+                        _bytes.position(_bytes.position() + length);
+                        _decoded += length;
+                        if (cp >= 0) {
+                            _chars.put(Character.toChars(cp));
+                        }
+                    } else if (cr.isUnderflow()) {
+                        if (_eof) {
+                            _decoder.flush(_chars);
+                            _done = true;
+                            return _chars.position() > 0;
+                        }
+                        _bytes.compact();
+                        final int n = _stream.read(_bytes.array(),
+                                _bytes.position(), _bytes.remaining());
+                        if (n < 0) {
+                            _eof = true;
+                        } else {
+                            _bytes.position(_bytes.position() + n);
+                        }
+                        _bytes.flip();
+                    }
+                }
+                return true;
+            } finally {
+                _chars.flip();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            _stream.close();
+        }
     }
 }
@@ -0,0 +1,380 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2023 Frank Mitchell.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.frank_mitchell.codepoint.spi;
+
+import com.frank_mitchell.codepoint.CodePointSink;
+import com.frank_mitchell.codepoint.CodePointSource;
+import com.frank_mitchell.codepoint.ForCharsets;
+import java.lang.reflect.Constructor;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+
+/**
+ * An immutable snapshot of the sources and sinks a {@link Provider} knows.
+ * Each table also remembers which constructor it chose for a given type and
+ * {@link Charset}, including the absence of one, so a repeated lookup is a
+ * probe by type and then by charset, with no writes and no allocation.
+ * A {@link Provider} never modifies a snapshot; it builds a new one with
+ * {@link #withClasses(Collection)} and swaps it in.
+ *
+ * @author Frank Mitchell
+ */
+final class Registry {
+
+    private static final Class<Charset> CHARSET_CLASS = Charset.class;
+
+    private final Map<Charset, Set<Charset>> _implies;
+    private final Set<Class<?>> _classes;
+    private final Table<CodePointSource> _sources;
+    private final Table<CodePointSink> _sinks;
+
+    /**
+     * Create an empty registry.
+     *
+     * @param implies rules to map a Charset to Charsets it extends
+     */
+    Registry(Map<Charset, Set<Charset>> implies) {
+        this(implies, Collections.emptySet(),
+                Collections.emptyMap(), Collections.emptyMap());
+    }
+
+    private Registry(Map<Charset, Set<Charset>> implies,
+            Set<Class<?>> classes,
+            Map<Class<?>, List<ConstructorRecord<CodePointSource>>> sources,
+            Map<Class<?>, List<ConstructorRecord<CodePointSink>>> sinks) {
+        _implies = implies;
+        _classes = classes;
+        _sources = new Table<>(sources);
+        _sinks = new Table<>(sinks);
+    }
+
+    /**
+     * The table of {@link CodePointSource} constructors.
+     *
+     * @return the table of source constructors
+     */
+    Table<CodePointSource> getSources() {
+        return _sources;
+    }
+
+    /**
+     * The table of {@link CodePointSink} constructors.
+     *
+     * @return the table of sink constructors
+     */
+    Table<CodePointSink> getSinks() {
+        return _sinks;
+    }
+
+    /**
+     * Whether this registry already includes the constructors of a class.
+     *
+     * @param clz an implementation of a source or sink
+     * @return whether {@code clz} has been registered
+     */
+    boolean contains(Class<?> clz) {
+        return _classes.contains(clz);
+    }
+
+    /**
+     * Create a new registry with the constructors of additional classes.
+     * Classes already in this registry, or which implement neither
+     * {@link CodePointSource} nor {@link CodePointSink}, are ignored.
+     * The new registry starts with an empty cache.
+     *
+     * @param classes implementations of sources and/or sinks
+     * @return a new registry, or this one if nothing changed
+     */
+    Registry withClasses(Collection<Class<?>> classes) {
+        return withClasses(classes, c -> null);
+    }
+
+    /**
+     * Create a new registry with the constructors of additional classes,
+     * using precompiled records where available.
+     *
+     * @param classes implementations of sources and/or sinks
+     * @param prelinked returns a class's records from a
+     *     {@link WrapperRegistry}, or {@code null} to use reflection
+     * @return a new registry, or this one if nothing changed
+     */
+    Registry withClasses(Collection<Class<?>> classes,
+            Function<Class<?>, List<ConstructorRecord<?>>> prelinked) {
+        final Set<Class<?>> newclasses = new HashSet<>(_classes);
+        final Map<Class<?>, List<ConstructorRecord<CodePointSource>>> sources = copy(_sources._byClass);
+        final Map<Class<?>, List<ConstructorRecord<CodePointSink>>> sinks = copy(_sinks._byClass);
+        boolean changed = false;
+
+        for (Class<?> clz : classes) {
+            if (!newclasses.add(clz)) {
+                continue;
+            }
+            List<ConstructorRecord<?>> records = prelinked.apply(clz);
+            if (records == null) {
+                records = collectConstructors(clz);
+            }
+            if (CodePointSource.class.isAssignableFrom(clz)) {
+                addRecords(records, sources);
+                changed = true;
+            }
+            if (CodePointSink.class.isAssignableFrom(clz)) {
+                addRecords(records, sinks);
+                changed = true;
+            }
+        }
+        if (!changed) {
+            return this;
+        }
+        return new Registry(_implies,
+                Collections.unmodifiableSet(newclasses),
+                freeze(sources), freeze(sinks));
+    }
+
+    private static <S> Map<Class<?>, List<ConstructorRecord<S>>> copy(Map<Class<?>, List<ConstructorRecord<S>>> map) {
+        final Map<Class<?>, List<ConstructorRecord<S>>> result = new HashMap<>();
+        for (Map.Entry<Class<?>, List<ConstructorRecord<S>>> e : map.entrySet()) {
+            result.put(e.getKey(), new ArrayList<>(e.getValue()));
+        }
+        return result;
+    }
+
+    private static <S> Map<Class<?>, List<ConstructorRecord<S>>> freeze(Map<Class<?>, List<ConstructorRecord<S>>> map) {
+        for (Map.Entry<Class<?>, List<ConstructorRecord<S>>> e : map.entrySet()) {
+            e.setValue(Collections.unmodifiableList(e.getValue()));
+        }
+        return Collections.unmodifiableMap(map);
+    }
+
+    private static List<ConstructorRecord<?>> collectConstructors(final Class<?> klass) throws SecurityException {
+        List<ConstructorRecord<?>> result = new ArrayList<>();
+        for (Constructor<?> cons : klass.getConstructors()) {
+            Set<Charset> css = getCharsetsForConstructor(cons);
+            result.add(new ConstructorRecord<>(cons, Collections.unmodifiableSet(css)));
+        }
+        return result;
+    }
+
+    @SuppressWarnings(value = "unchecked")
+    private static <S> void addRecords(final List<ConstructorRecord<?>> records, final Map<Class<?>, List<ConstructorRecord<S>>> classmap) {
+        for (ConstructorRecord<?> rec : records) {
+            // Fill in constructor maps
+            for (Class<?> param : rec.getParameterTypes()) {
+                if (!param.equals(CHARSET_CLASS)) {
+                    List<ConstructorRecord<S>> list = classmap.get(param);
+                    if (list == null) {
+                        list = new ArrayList<>();
+                        classmap.put(param, list);
+                    }
+                    list.add((ConstructorRecord<S>) rec);
+                }
+            }
+        }
+    }
+
+    private static Set<Charset> getCharsetsForConstructor(Constructor<?> cons) {
+        Set<Charset> css = new HashSet<>();
+        final ForCharsets[] anns = cons.getAnnotationsByType(ForCharsets.class);
+        if (anns != null) {
+            for (ForCharsets an : anns) {
+                String[] names = an.names();
+                for (String n : names) {
+                    // Not every JVM has every charset
+                    if (Charset.isSupported(n)) {
+                        css.add(Charset.forName(n));
+                    }
+                }
+            }
+        }
+        return css;
+    }
+
+    private boolean matchesCharset(Set<Charset> charsets, Charset cs) {
+        if (charsets.contains(cs)) {
+            return true;
+        }
+        for (Charset tcs : charsets) {
+            Set<Charset> implied = _implies.get(tcs);
+            if (implied != null && implied.contains(cs)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Constructors for one kind of wrapper, indexed by the type they wrap.
+     *
+     * @param <S> {@link CodePointSource} or {@link CodePointSink}
+     */
+    final class Table<S> {
+        /**
+         * Map of a wrapped class to constructors that accept it.
+         */
+        private final Map<Class<?>, List<ConstructorRecord<S>>> _byClass;
+        /**
+         * Constructors already chosen, by type and then by charset.
+         */
+        private final ConcurrentMap<Class<?>, ConcurrentMap<Charset, ConstructorRecord<S>>> _cache
+                = new ConcurrentHashMap<>();
+
+        private Table(Map<Class<?>, List<ConstructorRecord<S>>> byClass) {
+            _byClass = byClass;
+        }
+
+        /**
+         * Whether some constructor takes exactly this type.
+         *
+         * @param type the type of the wrapped object
+         * @return whether the type has an entry in this table
+         */
+        boolean containsType(Class<?> type) {
+            return _byClass.containsKey(type);
+        }
+
+        /**
+         * Look up a previously resolved constructor.
+         * This method never modifies the table.
+         *
+         * @param type the type of the wrapped object
+         * @param cs the charset of the wrapped object
+         * @return the record found by {@link #resolve(Class, Charset)},
+         *     {@link ConstructorRecord#NONE} if it found none,
+         *     or {@code null} if nobody has resolved this pair yet
+         */
+        ConstructorRecord<S> lookup(Class<?> type, Charset cs) {
+            final Map<Charset, ConstructorRecord<S>> byCharset = _cache.get(type);
+            return (byCharset == null) ? null : byCharset.get(cs);
+        }
+
+        /**
+         * Choose the best constructor for a type and charset, and remember
+         * the result.
+         *
+         * @param type the type of the wrapped object
+         * @param cs the charset of the wrapped object
+         * @return the chosen record, or {@link ConstructorRecord#NONE}
+         */
+        ConstructorRecord<S> resolve(Class<?> type, Charset cs) {
+            Objects.requireNonNull(type);
+            Objects.requireNonNull(cs);
+            final ConcurrentMap<Charset, ConstructorRecord<S>> byCharset
+                    = _cache.computeIfAbsent(type, t -> new ConcurrentHashMap<>());
+            ConstructorRecord<S> result = byCharset.get(cs);
+            if (result == null) {
+                result = choose(type, cs);
+                if (result == null) {
+                    result = none();
+                }
+                final ConstructorRecord<S> prior = byCharset.putIfAbsent(cs, result);
+                if (prior != null) {
+                    result = prior;
+                }
+            }
+            return result;
+        }
+
+        @SuppressWarnings(value = "unchecked")
+        private ConstructorRecord<S> none() {
+            return (ConstructorRecord<S>) ConstructorRecord.NONE;
+        }
+
+        private List<ConstructorRecord<S>> getTypeInMap(Class<?> type) {
+            List<ConstructorRecord<S>> result = null;
+            if (type == null) {
+                return null;
+            }
+            if (_byClass.containsKey(type)) {
+                result = _byClass.get(type);
+            } else if (!type.equals(Object.class)) {
+                result = getTypeInMap(type.getSuperclass());
+                if (result == null) {
+                    for (Class<?> iface : type.getInterfaces()) {
+                        result = getTypeInMap(iface);
+                        if (result != null) {
+                            break;
+                        }
+                    }
+                }
+            }
+            return result;
+        }
+
+        private ConstructorRecord<S> choose(Class<?> type, Charset cs) {
+            List<ConstructorRecord<S>> reclist = getTypeInMap(type);
+            if (reclist == null) {
+                // What *do* we do if we have nothing?
+                return null;
+            }
+            ConstructorRecord<S> first = null;
+            ConstructorRecord<S> generic = null;
+            ConstructorRecord<S> simplest = null;
+            for (ConstructorRecord<S> rec : reclist) {
+                if (first == null) {
+                    first = rec;
+                }
+                Class<?>[] sig = rec.getParameterTypes();
+                if (sig.length == 0 || !sig[0].isAssignableFrom(type)) {
+                    continue;
+                }
+                final boolean takesCharset = sig.length == 2 && sig[1].equals(CHARSET_CLASS);
+                if (sig.length != 1 && !takesCharset) {
+                    continue;
+                }
+                // First prefer constructors specializing in the target charset
+                if (matchesCharset(rec.getCharsets(), cs)) {
+                    return rec;
+                }
+                // Otherwise, prefer the simplest one for any charset,
+                // or at least the type
+                if (!rec.getCharsets().isEmpty()) {
+                    continue;
+                }
+                if (takesCharset && generic == null) {
+                    generic = rec;
+                } else if (!takesCharset && simplest == null) {
+                    simplest = rec;
+                }
+            }
+            if (generic != null) {
+                return generic;
+            }
+            if (simplest != null) {
+                return simplest;
+            }
+            // Well, just pick one
+            return first;
+        }
+    }
+}
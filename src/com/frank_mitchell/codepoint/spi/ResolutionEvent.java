@@ -0,0 +1,62 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2023 Frank Mitchell.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.frank_mitchell.codepoint.spi;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight Recorder event for a {@link Provider} choosing a constructor.
+ * Off unless a recording turns it on.
+ *
+ * @author Frank Mitchell
+ */
+@Name("com.frank_mitchell.codepoint.Resolution")
+@Label("Codepoint Resolution")
+@Description("A provider chose a source or sink constructor for a type and charset")
+@Category({"Codepoint"})
+@Enabled(false)
+@StackTrace(false)
+final class ResolutionEvent extends Event {
+
+    @Label("Type")
+    @Description("Type of the object to wrap")
+    Class<?> type;
+
+    @Label("Charset")
+    String charset;
+
+    @Label("Constructor")
+    @Description("Constructor chosen, or empty if none")
+    String constructor;
+
+    @Label("Cache Hit")
+    @Description("Whether the provider had already resolved this type and charset")
+    boolean cacheHit;
+}
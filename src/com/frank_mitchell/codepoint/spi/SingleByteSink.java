@@ -0,0 +1,271 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2023 Frank Mitchell.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.frank_mitchell.codepoint.spi;
+
+import com.frank_mitchell.codepoint.CodePointSink;
+import com.frank_mitchell.codepoint.EncodingPolicy;
+import com.frank_mitchell.codepoint.ForCharsets;
+import java.io.IOException;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.UnmappableCharacterException;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Encodes a charset with one byte per character, such as ISO-8859-1,
+ * the rest of the ISO-8859 family, or the Windows-125x code pages.
+ * Each code point is looked up in a two-level table built once per
+ * charset, and written into a buffer that goes to the stream when full
+ * or on {@link #flush()}.
+ * Code points the charset can't encode are handled according to the
+ * {@link EncodingPolicy}.
+ *
+ * @author Frank Mitchell
+ */
+class SingleByteSink implements ByteSink, ErrorCounting {
+
+    /**
+     * Tables already built, by charset.
+     */
+    private static final Map<Charset, byte[][]> TABLES = new ConcurrentHashMap<>();
+
+    private final OutputStream _out;
+    private final Charset _charset;
+    private final byte[][] _pages;
+    private final byte _replacement;
+    private final byte[] _buf = new byte[AbstractByteSource.BUFFER_SIZE];
+    private int _count;
+    private long _written;
+    private EncodingPolicy _policy = EncodingPolicy.REPORT;
+    private CodePointMetrics.Counters _errors;
+
+    /**
+     * Create a sink writing to a stream.
+     *
+     * @param out the stream to write to
+     * @param cs a single-byte charset
+     * @throws IllegalArgumentException if {@code cs} isn't single-byte
+     */
+    @ForCharsets(names={"ISO-8859-1",
+        "ISO-8859-2", "ISO-8859-3", "ISO-8859-4", "ISO-8859-5",
+        "ISO-8859-6", "ISO-8859-7", "ISO-8859-8", "ISO-8859-9",
+        "ISO-8859-10", "ISO-8859-11", "ISO-8859-13", "ISO-8859-14",
+        "ISO-8859-15", "ISO-8859-16",
+        "windows-1250", "windows-1251", "windows-1252", "windows-1253",
+        "windows-1254", "windows-1255", "windows-1256", "windows-1257",
+        "windows-1258"})
+    public SingleByteSink(OutputStream out, Charset cs) {
+        _out = Objects.requireNonNull(out);
+        _charset = cs;
+        _pages = TABLES.computeIfAbsent(cs, SingleByteSink::buildTable);
+        _replacement = cs.newEncoder().replacement()[0];
+    }
+
+    /**
+     * Invert the decoding table for a charset.
+     * Each page covers 256 code points, and is null if none of them
+     * can be encoded.
+     * Within a page, 0 means "unmapped" for any code point but U+0000.
+     */
+    private static byte[][] buildTable(Charset cs) {
+        final int[] decode = SingleByteSource.getTable(cs);
+        final byte[][] result = new byte[256][];
+        for (int b = 0; b < 256; b++) {
+            final int cp = (decode == null) ? b : decode[b];
+            if (cp < 0) {
+                continue;
+            }
+            byte[] page = result[cp >>> 8];
+            if (page == null) {
+                page = new byte[256];
+                result[cp >>> 8] = page;
+            }
+            page[cp & 0xFF] = (byte) b;
+        }
+        return result;
+    }
+
+    private Object getLock() {
+        return this;
+    }
+
+    @Override
+    public EncodingPolicy getEncodingPolicy() {
+        synchronized (getLock()) {
+            return _policy;
+        }
+    }
+
+    @Override
+    public void setEncodingPolicy(EncodingPolicy policy) {
+        synchronized (getLock()) {
+            _policy = Objects.requireNonNull(policy);
+        }
+    }
+
+    @Override
+    public void setErrorCounters(CodePointMetrics.Counters counters) {
+        synchronized (getLock()) {
+            _errors = counters;
+        }
+    }
+
+    /**
+     * Look up the byte for a code point.
+     *
+     * @return the byte, or -1 if there is none
+     */
+    private int lookup(int cp) {
+        if (cp >>> 16 != 0) {
+            return -1;
+        }
+        final byte[] page = _pages[cp >>> 8];
+        if (page == null) {
+            return -1;
+        }
+        final int b = page[cp & 0xFF] & 0xFF;
+        return (b == 0 && cp != 0) ? -1 : b;
+    }
+
+    @Override
+    public void putCodePoint(int cp) throws IOException {
+        synchronized (getLock()) {
+            put(cp);
+        }
+    }
+
+    @Override
+    public void putCodePoints(int[] cps, int off, int len) throws IOException {
+        Objects.checkFromIndexSize(off, len, cps.length);
+        synchronized (getLock()) {
+            for (int i = off; i < off + len; i++) {
+                put(cps[i]);
+            }
+        }
+    }
+
+    private void put(int cp) throws IOException {
+        int b = lookup(cp);
+        if (b < 0) {
+            b = unmappable(cp);
+            if (b < 0) {
+                return;
+            }
+        }
+        if (_count == _buf.length) {
+            drain();
+        }
+        _buf[_count++] = (byte) b;
+    }
+
+    @Override
+    public Charset getByteCharset() {
+        return _charset;
+    }
+
+    @Override
+    public void putBytes(ByteBuffer b) throws IOException {
+        synchronized (getLock()) {
+            drain();
+            _written += ByteSink.write(b, _out);
+        }
+    }
+
+    @Override
+    public FileChannel getFileChannel() throws IOException {
+        synchronized (getLock()) {
+            drain();
+            return (_out instanceof FileOutputStream) ? ((FileOutputStream) _out).getChannel() : null;
+        }
+    }
+
+    @Override
+    public void transferred(long count) {
+        synchronized (getLock()) {
+            _written += count;
+        }
+    }
+
+    /**
+     * Apply the policy to a code point we can't encode.
+     *
+     * @return the byte to write instead, or -1 to write nothing
+     */
+    private int unmappable(int cp) throws IOException {
+        if (_errors != null && _policy.getAction() != EncodingPolicy.Action.REPORT) {
+            _errors.unmappable.increment();
+        }
+        switch (_policy.getAction()) {
+            case REPLACE:
+                return _replacement & 0xFF;
+            case SKIP:
+                return -1;
+            case CALLBACK:
+                final int sub = _policy.getHandler().onUnmappable(_written + _count, cp);
+                if (sub < 0) {
+                    return -1;
+                }
+                final int b = lookup(sub);
+                if (b < 0) {
+                    throw new IllegalStateException("Handler returned unmappable code point "
+                            + Integer.toHexString(sub));
+                }
+                return b;
+            default:
+                throw new UnmappableCharacterException(Character.charCount(cp));
+        }
+    }
+
+    private void drain() throws IOException {
+        if (_count > 0) {
+            _out.write(_buf, 0, _count);
+            _written += _count;
+            _count = 0;
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        synchronized (getLock()) {
+            drain();
+            _out.flush();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (getLock()) {
+            try {
+                drain();
+            } finally {
+                _out.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,176 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2023 Frank Mitchell.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.frank_mitchell.codepoint.spi;
+
+import com.frank_mitchell.codepoint.ForCharsets;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Decodes a charset with one byte per character, such as ISO-8859-1,
+ * the rest of the ISO-8859 family, or the Windows-125x code pages.
+ * Each byte is looked up in a 256-entry table built once per charset;
+ * ISO-8859-1 doesn't even need that.
+ * Bytes the charset doesn't map are handled according to the
+ * {@link com.frank_mitchell.codepoint.DecodingPolicy}.
+ *
+ * @author Frank Mitchell
+ */
+class SingleByteSource extends AbstractByteSource {
+
+    /**
+     * Tables already built, by charset.
+     */
+    private static final Map<Charset, int[]> TABLES = new ConcurrentHashMap<>();
+
+    /**
+     * Code point for each byte, -1 if unmapped, or null for ISO-8859-1.
+     */
+    private final int[] _table;
+    private final Charset _charset;
+
+    /**
+     * Create a source reading a stream.
+     *
+     * @param in the stream to decode
+     * @param cs a single-byte charset
+     * @throws IllegalArgumentException if {@code cs} isn't single-byte
+     */
+    @ForCharsets(names={"ISO-8859-1",
+        "ISO-8859-2", "ISO-8859-3", "ISO-8859-4", "ISO-8859-5",
+        "ISO-8859-6", "ISO-8859-7", "ISO-8859-8", "ISO-8859-9",
+        "ISO-8859-10", "ISO-8859-11", "ISO-8859-13", "ISO-8859-14",
+        "ISO-8859-15", "ISO-8859-16",
+        "windows-1250", "windows-1251", "windows-1252", "windows-1253",
+        "windows-1254", "windows-1255", "windows-1256", "windows-1257",
+        "windows-1258"})
+    public SingleByteSource(InputStream in, Charset cs) {
+        super(in);
+        _table = getTable(cs);
+        _charset = cs;
+    }
+
+    /**
+     * Create a source reading a buffer from its position.
+     *
+     * @param b the bytes to decode
+     * @param cs a single-byte charset
+     * @throws IllegalArgumentException if {@code cs} isn't single-byte
+     */
+    @ForCharsets(names={"ISO-8859-1",
+        "ISO-8859-2", "ISO-8859-3", "ISO-8859-4", "ISO-8859-5",
+        "ISO-8859-6", "ISO-8859-7", "ISO-8859-8", "ISO-8859-9",
+        "ISO-8859-10", "ISO-8859-11", "ISO-8859-13", "ISO-8859-14",
+        "ISO-8859-15", "ISO-8859-16",
+        "windows-1250", "windows-1251", "windows-1252", "windows-1253",
+        "windows-1254", "windows-1255", "windows-1256", "windows-1257",
+        "windows-1258"})
+    public SingleByteSource(ByteBuffer b, Charset cs) {
+        super(b);
+        _table = getTable(cs);
+        _charset = cs;
+    }
+
+    /**
+     * The decoding table for a charset.
+     *
+     * @param cs a single-byte charset
+     * @return the code point for each byte, -1 where there's none, or
+     *      null for ISO-8859-1
+     */
+    static int[] getTable(Charset cs) {
+        if (cs.equals(StandardCharsets.ISO_8859_1)) {
+            return null;
+        }
+        return TABLES.computeIfAbsent(cs, SingleByteSource::buildTable);
+    }
+
+    @Override
+    Charset getByteCharset() {
+        return _charset;
+    }
+
+    @Override
+    boolean isEveryByteValid() {
+        if (_table != null) {
+            for (int cp : _table) {
+                if (cp < 0) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static int[] buildTable(Charset cs) {
+        if (!cs.canEncode() || cs.newEncoder().maxBytesPerChar() != 1.0f) {
+            throw new IllegalArgumentException(cs + " is not a single-byte charset");
+        }
+        final CharsetDecoder dec = cs.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPORT)
+                .onUnmappableCharacter(CodingErrorAction.REPORT);
+        final int[] result = new int[256];
+        final ByteBuffer in = ByteBuffer.allocate(1);
+        final CharBuffer out = CharBuffer.allocate(2);
+        for (int b = 0; b < result.length; b++) {
+            in.clear();
+            in.put((byte) b).flip();
+            out.clear();
+            dec.reset();
+            CoderResult cr = dec.decode(in, out, true);
+            if (!cr.isError()) {
+                cr = dec.flush(out);
+            }
+            out.flip();
+            result[b] = (cr.isError() || out.remaining() != 1) ? -1 : out.get();
+        }
+        return result;
+    }
+
+    @Override
+    protected int decode() throws IOException {
+        while (fill(1)) {
+            final int b = _in.get(_in.position()) & 0xFF;
+            final int cp = (_table == null) ? b : _table[b];
+            if (cp >= 0) {
+                _in.position(_in.position() + 1);
+                return cp;
+            }
+            final int sub = malformed(1, true);
+            if (sub >= 0) {
+                return sub;
+            }
+        }
+        return -1;
+    }
+}
@@ -24,12 +24,16 @@
 package com.frank_mitchell.codepoint.spi;
 
 import com.frank_mitchell.codepoint.CodePointSink;
+import com.frank_mitchell.codepoint.EncodingPolicy;
 import java.io.IOException;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.util.Objects;
 
 /**
  * A {@link CodePointSink} that wraps a {@link StringBuffer}.
+ * A {@code StringBuffer} can hold any code point, so this class accepts
+ * any {@link EncodingPolicy} but never needs one.
  *
  * @author Frank Mitchell
  */
@@ -37,6 +41,7 @@ class StringBufferSink implements CodePointSink {
 
     private final StringBuffer _buffer;
     private final boolean _littleEndian;
+    private EncodingPolicy _policy = EncodingPolicy.REPORT;
 
      /**
      * Wrap this object around a writer.
@@ -53,21 +58,49 @@ class StringBufferSink implements CodePointSink {
         return this;
     }
 
+    @Override
+    public EncodingPolicy getEncodingPolicy() {
+        synchronized (getLock()) {
+            return _policy;
+        }
+    }
+
+    @Override
+    public void setEncodingPolicy(EncodingPolicy policy) {
+        synchronized (getLock()) {
+            _policy = Objects.requireNonNull(policy);
+        }
+    }
+
     @Override
     public void putCodePoint(int cp) throws IOException {
         synchronized (getLock()) {
-            if (cp <= 0xFFFF) {
-                _buffer.append((char)cp);
-            } else if (_littleEndian) {
-                _buffer.append(Character.lowSurrogate(cp));
-                _buffer.append(Character.highSurrogate(cp));
-            } else {
-                _buffer.append(Character.highSurrogate(cp));
-                _buffer.append(Character.lowSurrogate(cp));
+            put(cp);
+        }
+    }
+
+    @Override
+    public void putCodePoints(int[] cps, int off, int len) throws IOException {
+        Objects.checkFromIndexSize(off, len, cps.length);
+        synchronized (getLock()) {
+            for (int i = off; i < off + len; i++) {
+                put(cps[i]);
             }
         }
     }
 
+    private void put(int cp) {
+        if (cp <= 0xFFFF) {
+            _buffer.append((char)cp);
+        } else if (_littleEndian) {
+            _buffer.append(Character.lowSurrogate(cp));
+            _buffer.append(Character.highSurrogate(cp));
+        } else {
+            _buffer.append(Character.highSurrogate(cp));
+            _buffer.append(Character.lowSurrogate(cp));
+        }
+    }
+
     @Override
     public void flush() throws IOException {
     }
@@ -0,0 +1,163 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2023 Frank Mitchell.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.frank_mitchell.codepoint.spi;
+
+import com.frank_mitchell.codepoint.CodePointSink;
+import com.frank_mitchell.codepoint.EncodingPolicy;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import jdk.jfr.EventType;
+
+/**
+ * Emits an {@link EncodeEvent} for every block of code points written to
+ * another sink.
+ * A block ends after {@link TracedSource#BLOCK} code points, or on
+ * {@link #flush()} or {@link #close()}.
+ *
+ * @author Frank Mitchell
+ */
+final class TracedSink implements CodePointSink, ErrorCounting {
+
+    private static final EventType ENCODE = EventType.getEventType(EncodeEvent.class);
+
+    private final CodePointSink _sink;
+    private final Class<?> _impl;
+    private final Charset _charset;
+    private final CountingOutputStream _bytes;
+    private EncodeEvent _event;
+    private int _count;
+    private long _bytesAtStart;
+
+    /**
+     * Trace what goes into a sink.
+     *
+     * @param sink the sink
+     * @param impl the sink's implementation, before any other decorator
+     * @param cs the sink's charset
+     * @param bytes the stream the sink writes, or null if it doesn't
+     *      write bytes
+     */
+    TracedSink(CodePointSink sink, Class<?> impl, Charset cs, CountingOutputStream bytes) {
+        _sink = sink;
+        _impl = impl;
+        _charset = cs;
+        _bytes = bytes;
+    }
+
+    /**
+     * Whether a recording wants encode events right now.
+     *
+     * @return whether to trace new sinks
+     */
+    static boolean isRecording() {
+        return ENCODE.isEnabled();
+    }
+
+    private Object getLock() {
+        return this;
+    }
+
+    @Override
+    public EncodingPolicy getEncodingPolicy() {
+        return _sink.getEncodingPolicy();
+    }
+
+    @Override
+    public void setEncodingPolicy(EncodingPolicy policy) {
+        _sink.setEncodingPolicy(policy);
+    }
+
+    @Override
+    public void setErrorCounters(CodePointMetrics.Counters counters) {
+        if (_sink instanceof ErrorCounting) {
+            ((ErrorCounting) _sink).setErrorCounters(counters);
+        }
+    }
+
+    @Override
+    public void putCodePoint(int cp) throws IOException {
+        synchronized (getLock()) {
+            beginBlock();
+            _sink.putCodePoint(cp);
+            if (++_count >= TracedSource.BLOCK) {
+                endBlock();
+            }
+        }
+    }
+
+    @Override
+    public void putCodePoints(int[] cps, int off, int len) throws IOException {
+        synchronized (getLock()) {
+            beginBlock();
+            _sink.putCodePoints(cps, off, len);
+            _count += len;
+            if (_count >= TracedSource.BLOCK) {
+                endBlock();
+            }
+        }
+    }
+
+    private void beginBlock() {
+        if (_event == null) {
+            _event = new EncodeEvent();
+            _bytesAtStart = (_bytes == null) ? 0 : _bytes.getCount();
+            _event.begin();
+        }
+    }
+
+    private void endBlock() {
+        final EncodeEvent event = _event;
+        if (event != null) {
+            event.end();
+            if (_count > 0 && event.shouldCommit()) {
+                event.implementation = _impl;
+                event.charset = _charset.name();
+                event.bytes = (_bytes == null) ? 0 : _bytes.getCount() - _bytesAtStart;
+                event.codePoints = _count;
+                event.commit();
+            }
+            _event = null;
+            _count = 0;
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        synchronized (getLock()) {
+            _sink.flush();
+            endBlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (getLock()) {
+            try {
+                _sink.close();
+            } finally {
+                endBlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2023 Frank Mitchell.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.frank_mitchell.codepoint.spi;
+
+import com.frank_mitchell.codepoint.CodePointSource;
+import com.frank_mitchell.codepoint.DecodingPolicy;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import jdk.jfr.EventType;
+
+/**
+ * Emits a {@link DecodeEvent} for every block of code points read from
+ * another source.
+ * A block ends after {@link #BLOCK} code points, at the end of input, or
+ * on {@link #close()}.
+ *
+ * @author Frank Mitchell
+ */
+final class TracedSource implements CodePointSource, ErrorCounting {
+
+    static final int BLOCK = 4096;
+
+    private static final EventType DECODE = EventType.getEventType(DecodeEvent.class);
+
+    private final CodePointSource _source;
+    private final Class<?> _impl;
+    private final Charset _charset;
+    private final CountingInputStream _bytes;
+    private DecodeEvent _event;
+    private int _count;
+    private long _bytesAtStart;
+
+    /**
+     * Trace what a source reads.
+     *
+     * @param source the source
+     * @param impl the source's implementation, before any other decorator
+     * @param cs the source's charset
+     * @param bytes the stream the source reads, or null if it doesn't
+     *      read bytes
+     */
+    TracedSource(CodePointSource source, Class<?> impl, Charset cs, CountingInputStream bytes) {
+        _source = source;
+        _impl = impl;
+        _charset = cs;
+        _bytes = bytes;
+    }
+
+    /**
+     * Whether a recording wants decode events right now.
+     *
+     * @return whether to trace new sources
+     */
+    static boolean isRecording() {
+        return DECODE.isEnabled();
+    }
+
+    private Object getLock() {
+        return this;
+    }
+
+    @Override
+    public int getCodePoint() {
+        return _source.getCodePoint();
+    }
+
+    @Override
+    public DecodingPolicy getDecodingPolicy() {
+        return _source.getDecodingPolicy();
+    }
+
+    @Override
+    public void setDecodingPolicy(DecodingPolicy policy) {
+        _source.setDecodingPolicy(policy);
+    }
+
+    @Override
+    public void setErrorCounters(CodePointMetrics.Counters counters) {
+        if (_source instanceof ErrorCounting) {
+            ((ErrorCounting) _source).setErrorCounters(counters);
+        }
+    }
+
+    @Override
+    public boolean hasNext() throws IOException {
+        synchronized (getLock()) {
+            // hasNext() may read ahead, so it can begin a block too
+            beginBlock();
+            final boolean result = _source.hasNext();
+            if (!result) {
+                endBlock();
+            }
+            return result;
+        }
+    }
+
+    @Override
+    public void next() throws IOException {
+        synchronized (getLock()) {
+            beginBlock();
+            _source.next();
+            if (++_count >= BLOCK) {
+                endBlock();
+            }
+        }
+    }
+
+    @Override
+    public int read(int[] cps, int off, int len) throws IOException {
+        synchronized (getLock()) {
+            beginBlock();
+            final int n = _source.read(cps, off, len);
+            if (n < 0) {
+                endBlock();
+            } else {
+                _count += n;
+                if (_count >= BLOCK) {
+                    endBlock();
+                }
+            }
+            return n;
+        }
+    }
+
+    private void beginBlock() {
+        if (_event == null) {
+            _event = new DecodeEvent();
+            _bytesAtStart = (_bytes == null) ? 0 : _bytes.getCount();
+            _event.begin();
+        }
+    }
+
+    private void endBlock() {
+        final DecodeEvent event = _event;
+        if (event != null) {
+            event.end();
+            if (_count > 0 && event.shouldCommit()) {
+                event.implementation = _impl;
+                event.charset = _charset.name();
+                event.bytes = (_bytes == null) ? 0 : _bytes.getCount() - _bytesAtStart;
+                event.codePoints = _count;
+                event.commit();
+            }
+            _event = null;
+            _count = 0;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (getLock()) {
+            endBlock();
+            _source.close();
+        }
+    }
+}
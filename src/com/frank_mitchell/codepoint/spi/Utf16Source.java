@@ -0,0 +1,142 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2023 Frank Mitchell.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.frank_mitchell.codepoint.spi;
+
+import com.frank_mitchell.codepoint.ForCharsets;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Decodes UTF-16 bytes directly, without a {@link java.io.Reader} or
+ * {@link java.nio.charset.CharsetDecoder}.
+ * Plain "UTF-16" reads a byte order mark if there is one, and otherwise
+ * assumes big-endian, as the JDK does.
+ * Unpaired surrogates and odd trailing bytes are handled according to the
+ * {@link com.frank_mitchell.codepoint.DecodingPolicy}.
+ *
+ * @author Frank Mitchell
+ */
+class Utf16Source extends AbstractByteSource {
+
+    private boolean _bigEndian;
+    private boolean _detect;
+    private Charset _charset;
+
+    /**
+     * Create a source reading a stream.
+     *
+     * @param in the stream to decode
+     * @param cs UTF-16, UTF-16BE, or UTF-16LE
+     * @throws IllegalArgumentException for any other charset
+     */
+    @ForCharsets(names={"UTF-16", "UTF-16BE", "UTF-16LE"})
+    public Utf16Source(InputStream in, Charset cs) {
+        super(in);
+        setByteOrder(cs);
+    }
+
+    /**
+     * Create a source reading a buffer from its position.
+     *
+     * @param b the bytes to decode
+     * @param cs UTF-16, UTF-16BE, or UTF-16LE
+     * @throws IllegalArgumentException for any other charset
+     */
+    @ForCharsets(names={"UTF-16", "UTF-16BE", "UTF-16LE"})
+    public Utf16Source(ByteBuffer b, Charset cs) {
+        super(b);
+        setByteOrder(cs);
+    }
+
+    @Override
+    Charset getByteCharset() {
+        // With a byte order mark, the order of the bytes is our business
+        return _charset;
+    }
+
+    private void setByteOrder(Charset cs) {
+        if (cs.equals(StandardCharsets.UTF_16)) {
+            _bigEndian = true;
+            _detect = true;
+        } else if (cs.equals(StandardCharsets.UTF_16BE)) {
+            _bigEndian = true;
+            _charset = cs;
+        } else if (cs.equals(StandardCharsets.UTF_16LE)) {
+            _bigEndian = false;
+            _charset = cs;
+        } else {
+            throw new IllegalArgumentException(cs + " is not UTF-16");
+        }
+    }
+
+    private char charAt(int pos) {
+        final int b0 = _in.get(pos) & 0xFF;
+        final int b1 = _in.get(pos + 1) & 0xFF;
+        return (char) (_bigEndian ? (b0 << 8) | b1 : (b1 << 8) | b0);
+    }
+
+    @Override
+    protected int decode() throws IOException {
+        while (true) {
+            if (!fill(2)) {
+                if (!_in.hasRemaining()) {
+                    return -1;
+                }
+                final int sub = malformed(_in.remaining(), false);
+                if (sub >= 0) {
+                    return sub;
+                }
+                continue;
+            }
+            if (_detect) {
+                _detect = false;
+                final char bom = charAt(_in.position());
+                if (bom == '\uFEFF' || bom == '\uFFFE') {
+                    _bigEndian = (bom == '\uFEFF');
+                    _in.position(_in.position() + 2);
+                    continue;
+                }
+            }
+            final char c1 = charAt(_in.position());
+            if (!Character.isSurrogate(c1)) {
+                _in.position(_in.position() + 2);
+                return c1;
+            }
+            if (Character.isHighSurrogate(c1) && fill(4)) {
+                final char c2 = charAt(_in.position() + 2);
+                if (Character.isLowSurrogate(c2)) {
+                    _in.position(_in.position() + 4);
+                    return Character.toCodePoint(c1, c2);
+                }
+            }
+            final int sub = malformed(2, false);
+            if (sub >= 0) {
+                return sub;
+            }
+        }
+    }
+}
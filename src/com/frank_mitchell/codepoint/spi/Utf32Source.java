@@ -0,0 +1,143 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2023 Frank Mitchell.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.frank_mitchell.codepoint.spi;
+
+import com.frank_mitchell.codepoint.ForCharsets;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+/**
+ * Decodes UTF-32 bytes directly, without a
+ * {@link java.nio.charset.CharsetDecoder}.
+ * Plain "UTF-32" reads a byte order mark if there is one, and otherwise
+ * assumes big-endian, as the JDK does.
+ * Values that aren't Unicode scalar values, and trailing bytes short of
+ * a whole character, are handled according to the
+ * {@link com.frank_mitchell.codepoint.DecodingPolicy}.
+ *
+ * @author Frank Mitchell
+ */
+class Utf32Source extends AbstractByteSource {
+
+    private boolean _bigEndian;
+    private boolean _detect;
+    private Charset _charset;
+
+    /**
+     * Create a source reading a stream.
+     *
+     * @param in the stream to decode
+     * @param cs UTF-32, UTF-32BE, or UTF-32LE
+     * @throws IllegalArgumentException for any other charset
+     */
+    @ForCharsets(names={"UTF-32", "UTF-32BE", "UTF-32LE"})
+    public Utf32Source(InputStream in, Charset cs) {
+        super(in);
+        setByteOrder(cs);
+    }
+
+    /**
+     * Create a source reading a buffer from its position.
+     *
+     * @param b the bytes to decode
+     * @param cs UTF-32, UTF-32BE, or UTF-32LE
+     * @throws IllegalArgumentException for any other charset
+     */
+    @ForCharsets(names={"UTF-32", "UTF-32BE", "UTF-32LE"})
+    public Utf32Source(ByteBuffer b, Charset cs) {
+        super(b);
+        setByteOrder(cs);
+    }
+
+    @Override
+    Charset getByteCharset() {
+        // With a byte order mark, the order of the bytes is our business
+        return _charset;
+    }
+
+    private void setByteOrder(Charset cs) {
+        switch (cs.name()) {
+            case "UTF-32":
+                _bigEndian = true;
+                _detect = true;
+                break;
+            case "UTF-32BE":
+                _bigEndian = true;
+                _charset = cs;
+                break;
+            case "UTF-32LE":
+                _bigEndian = false;
+                _charset = cs;
+                break;
+            default:
+                throw new IllegalArgumentException(cs + " is not UTF-32");
+        }
+    }
+
+    private int intAt(int pos) {
+        final int b0 = _in.get(pos) & 0xFF;
+        final int b1 = _in.get(pos + 1) & 0xFF;
+        final int b2 = _in.get(pos + 2) & 0xFF;
+        final int b3 = _in.get(pos + 3) & 0xFF;
+        return _bigEndian
+                ? (b0 << 24) | (b1 << 16) | (b2 << 8) | b3
+                : (b3 << 24) | (b2 << 16) | (b1 << 8) | b0;
+    }
+
+    @Override
+    protected int decode() throws IOException {
+        while (true) {
+            if (!fill(4)) {
+                if (!_in.hasRemaining()) {
+                    return -1;
+                }
+                final int sub = malformed(_in.remaining(), false);
+                if (sub >= 0) {
+                    return sub;
+                }
+                continue;
+            }
+            final int cp = intAt(_in.position());
+            if (_detect) {
+                _detect = false;
+                if (cp == 0xFEFF || cp == 0xFFFE0000) {
+                    _bigEndian = (cp == 0xFEFF);
+                    _in.position(_in.position() + 4);
+                    continue;
+                }
+            }
+            if (Character.isValidCodePoint(cp)
+                    && (cp > 0xFFFF || !Character.isSurrogate((char) cp))) {
+                _in.position(_in.position() + 4);
+                return cp;
+            }
+            final int sub = malformed(4, false);
+            if (sub >= 0) {
+                return sub;
+            }
+        }
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2023 Frank Mitchell.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.frank_mitchell.codepoint.spi;
+
+import com.frank_mitchell.codepoint.CodePointSink;
+import com.frank_mitchell.codepoint.CodePointSource;
+import com.frank_mitchell.codepoint.ForCharsets;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * A precompiled list of constructors for {@link CodePointSource}s and
+ * {@link CodePointSink}s.
+ * The annotation processor for {@link ForCharsets} generates one
+ * implementation per package, named {@link #GENERATED_NAME}, and lists it in
+ * {@code META-INF/services} so {@link Provider} can find it with
+ * {@link java.util.ServiceLoader}.
+ * {@link Provider} uses these factories instead of scanning constructors
+ * through reflection, but only for classes it would register anyway:
+ * the built-in classes and those named in
+ * {@link com.frank_mitchell.codepoint.CodePointProvider#CONFIG_FILE}.
+ *
+ * @author Frank Mitchell
+ */
+public interface WrapperRegistry {
+
+    /**
+     * Simple name of each generated registry class.
+     */
+    public static final String GENERATED_NAME = "GeneratedWrapperRegistry";
+
+    /**
+     * Calls a constructor of a source or sink.
+     */
+    @FunctionalInterface
+    public interface Factory {
+        /**
+         * Create a new source or sink.
+         *
+         * @param obj the object to wrap
+         * @param cs the charset of {@code obj}
+         * @return a new source or sink wrapping {@code obj}
+         * @throws IOException if the constructor threw one
+         */
+        Object create(Object obj, Charset cs) throws IOException;
+    }
+
+    /**
+     * Receives the constructors in a registry.
+     */
+    public interface Collector {
+        /**
+         * Add a constructor.
+         *
+         * @param impl the class the constructor creates
+         * @param params the constructor's parameter types
+         * @param charsets the charsets from its {@link ForCharsets}, if any
+         * @param factory a function that calls the constructor
+         */
+        void add(Class<?> impl, Class<?>[] params, Set<Charset> charsets, Factory factory);
+    }
+
+    /**
+     * Pass each constructor in this registry to a collector.
+     *
+     * @param collector receives each constructor
+     */
+    void registerWrappers(Collector collector);
+
+    /**
+     * Build a set of charsets for {@link Collector#add}.
+     * Names this JVM doesn't support are left out.
+     *
+     * @param known charsets already looked up, e.g. from
+     *     {@link java.nio.charset.StandardCharsets}
+     * @param names names of other charsets
+     * @return an unmodifiable set of charsets
+     */
+    static Set<Charset> charsets(Charset[] known, String... names) {
+        Set<Charset> result = new HashSet<>();
+        Collections.addAll(result, known);
+        for (String n : names) {
+            if (Charset.isSupported(n)) {
+                result.add(Charset.forName(n));
+            }
+        }
+        return Collections.unmodifiableSet(result);
+    }
+}
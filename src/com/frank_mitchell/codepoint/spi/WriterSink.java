@@ -24,23 +24,53 @@
 package com.frank_mitchell.codepoint.spi;
 
 import com.frank_mitchell.codepoint.CodePointSink;
+import com.frank_mitchell.codepoint.DecodingPolicy;
+import com.frank_mitchell.codepoint.EncodingPolicy;
 import com.frank_mitchell.codepoint.ForCharsets;
 import java.io.IOException;
+import java.io.FileOutputStream;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
 import java.nio.charset.StandardCharsets;
+import java.nio.charset.UnmappableCharacterException;
+import java.util.Objects;
 
 /**
  * A {@link CodePointSink} that wraps a {@link Writer}.
+ * <p>
+ * When writing an {@link OutputStream}, this class creates an
+ * {@link OutputStreamWriter} with an encoder that replaces, skips, or
+ * reports unmappable code points according to the {@link EncodingPolicy};
+ * if the policy changes, the next write flushes that writer and makes
+ * another.
+ * The writer can't say which code points it couldn't encode, or where, so
+ * an output stream can't have an {@link EncodingPolicy.Action#CALLBACK}
+ * policy.
+ * Since the encoder handles errors out of sight, a sink counting errors
+ * checks each code point with a second encoder first.
+ * <p>
+ * A {@link Writer} passed in takes any code point but an unpaired
+ * surrogate, so only those go to the policy, which may be any of them.
  *
  * @author Frank Mitchell
  */
-class WriterSink implements CodePointSink {
+class WriterSink implements ByteSink, ErrorCounting {
 
-    private final Writer _writer;
+    private Writer _writer;
+    private final OutputStream _stream;
+    private final Charset _charset;
     private final boolean _littleEndian;
+    private EncodingPolicy _policy = EncodingPolicy.REPORT;
+    private CodePointMetrics.Counters _errors;
+    private CharsetEncoder _checker;
+    private CodingErrorAction _action;
+    private long _chars;
 
     /**
      * Wrap this object around a writer.
@@ -59,7 +89,9 @@ class WriterSink implements CodePointSink {
      * @param cs the charset this object is writing
      */
     public WriterSink(final Writer writer, final Charset cs) {
-        _writer = writer;
+        _writer = Objects.requireNonNull(writer);
+        _stream = null;
+        _charset = cs;
         _littleEndian = (cs == StandardCharsets.UTF_16LE);
     }
 
@@ -80,35 +112,227 @@ class WriterSink implements CodePointSink {
      * @param cs the character set for outgoing bytes
      */
     public WriterSink(OutputStream os, Charset cs) {
-        this(new OutputStreamWriter(os, cs), cs);
+        _writer = null;
+        _stream = Objects.requireNonNull(os);
+        _charset = cs;
+        _littleEndian = (cs == StandardCharsets.UTF_16LE);
     }
 
     private Object getLock() {
         return this;
     }
 
+    private Writer getWriter() throws IOException {
+        if (_stream == null) {
+            return _writer;
+        }
+        final CodingErrorAction action;
+        switch (_policy.getAction()) {
+            case REPLACE:
+                action = CodingErrorAction.REPLACE;
+                break;
+            case SKIP:
+                action = CodingErrorAction.IGNORE;
+                break;
+            default:
+                action = CodingErrorAction.REPORT;
+                break;
+        }
+        if (_writer == null || action != _action) {
+            if (_writer != null) {
+                // Closing it would close the stream
+                _writer.flush();
+            }
+            final CharsetEncoder enc = _charset.newEncoder()
+                    .onMalformedInput(action)
+                    .onUnmappableCharacter(action);
+            _writer = new OutputStreamWriter(_stream, enc);
+            _action = action;
+        }
+        return _writer;
+    }
+
+    @Override
+    public EncodingPolicy getEncodingPolicy() {
+        synchronized (getLock()) {
+            return _policy;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws UnsupportedOperationException if the policy is a
+     *      {@link EncodingPolicy.Action#CALLBACK} and this sink writes an
+     *      {@link OutputStream}
+     */
+    @Override
+    public void setEncodingPolicy(EncodingPolicy policy) {
+        Objects.requireNonNull(policy);
+        if (_stream != null && policy.getAction() == EncodingPolicy.Action.CALLBACK) {
+            throw new UnsupportedOperationException(
+                    getClass().getName() + " can't call back for an output stream");
+        }
+        synchronized (getLock()) {
+            _policy = policy;
+        }
+    }
+
+    @Override
+    public void setErrorCounters(CodePointMetrics.Counters counters) {
+        synchronized (getLock()) {
+            _errors = counters;
+        }
+    }
+
     @Override
     public void putCodePoint(int cp) throws IOException {
         synchronized (getLock()) {
-            if (cp <= 0xFFFF) {
-                _writer.write(cp);
-            } else if (_littleEndian) {
-                _writer.write(Character.lowSurrogate(cp));
-                _writer.write(Character.highSurrogate(cp));
-            } else {
-                _writer.write(Character.highSurrogate(cp));
-                _writer.write(Character.lowSurrogate(cp));
+            put(getWriter(), cp);
+        }
+    }
+
+    @Override
+    public void putCodePoints(int[] cps, int off, int len) throws IOException {
+        Objects.checkFromIndexSize(off, len, cps.length);
+        synchronized (getLock()) {
+            final Writer writer = getWriter();
+            for (int i = off; i < off + len; i++) {
+                put(writer, cps[i]);
             }
         }
     }
 
+    private void put(Writer writer, int cp) throws IOException {
+        if (_stream != null) {
+            if (_errors != null && cp >= 0x80
+                    && _policy.getAction() != EncodingPolicy.Action.REPORT) {
+                check(cp);
+            }
+        } else if (cp >= Character.MIN_SURROGATE && cp <= Character.MAX_SURROGATE) {
+            cp = unpaired(cp);
+            if (cp < 0) {
+                return;
+            }
+        }
+        if (cp <= 0xFFFF) {
+            writer.write(cp);
+            _chars++;
+        } else if (_littleEndian) {
+            writer.write(Character.lowSurrogate(cp));
+            writer.write(Character.highSurrogate(cp));
+            _chars += 2;
+        } else {
+            writer.write(Character.highSurrogate(cp));
+            writer.write(Character.lowSurrogate(cp));
+            _chars += 2;
+        }
+    }
+
+    /**
+     * Apply the policy to an unpaired surrogate bound for a {@link Writer}.
+     *
+     * @return the code point to write instead, or -1 to write nothing
+     */
+    private int unpaired(int cp) throws IOException {
+        if (_errors != null && _policy.getAction() != EncodingPolicy.Action.REPORT) {
+            _errors.unmappable.increment();
+        }
+        switch (_policy.getAction()) {
+            case REPLACE:
+                return DecodingPolicy.REPLACEMENT_CHARACTER;
+            case SKIP:
+                return -1;
+            case CALLBACK:
+                // As if the writer wrote UTF-16
+                final int sub = _policy.getHandler().onUnmappable(_chars * 2, cp);
+                if (sub >= Character.MIN_SURROGATE && sub <= Character.MAX_SURROGATE) {
+                    throw new IllegalStateException("Handler returned unpaired surrogate "
+                            + Integer.toHexString(sub));
+                }
+                return sub;
+            default:
+                throw new UnmappableCharacterException(1);
+        }
+    }
+
+    /**
+     * Count a code point the writer's encoder will replace or skip.
+     */
+    private void check(int cp) {
+        if (_checker == null) {
+            _checker = _charset.newEncoder();
+        }
+        final boolean ok = (cp <= 0xFFFF)
+                ? _checker.canEncode((char) cp)
+                : _checker.canEncode(new String(Character.toChars(cp)));
+        if (!ok) {
+            _errors.unmappable.increment();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * Only a sink around an {@link OutputStream} can take bytes.
+     */
+    @Override
+    public Charset getByteCharset() {
+        return (_stream == null) ? null : _charset;
+    }
+
+    @Override
+    public void putBytes(ByteBuffer b) throws IOException {
+        synchronized (getLock()) {
+            if (_stream == null) {
+                throw new IllegalStateException("Not writing bytes");
+            }
+            if (_writer != null) {
+                _writer.flush();
+            }
+            ByteSink.write(b, _stream);
+        }
+    }
+
+    @Override
+    public FileChannel getFileChannel() throws IOException {
+        synchronized (getLock()) {
+            if (!(_stream instanceof FileOutputStream)) {
+                return null;
+            }
+            if (_writer != null) {
+                _writer.flush();
+            }
+            return ((FileOutputStream) _stream).getChannel();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * This sink reports no offsets, so it has nothing to update.
+     */
+    @Override
+    public void transferred(long count) {
+    }
+
     @Override
     public void flush() throws IOException {
-        _writer.flush();
+        synchronized (getLock()) {
+            if (_writer != null) {
+                _writer.flush();
+            } else {
+                _stream.flush();
+            }
+        }
     }
 
     @Override
     public void close() throws IOException {
-        _writer.close();
+        synchronized (getLock()) {
+            if (_writer != null) {
+                _writer.close();
+            } else {
+                _stream.close();
+            }
+        }
     }
 }
@@ -0,0 +1,144 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2023 Frank Mitchell.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.frank_mitchell.codepoint.processor;
+
+import com.frank_mitchell.codepoint.spi.WrapperRegistry;
+import java.io.IOException;
+import java.io.StringReader;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.ServiceLoader;
+import java.util.stream.Stream;
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Frank Mitchell
+ */
+public class ForCharsetsProcessorTest {
+
+    static final String FIXTURE = String.join("\n",
+            "package p;",
+            "import com.frank_mitchell.codepoint.CodePointSource;",
+            "import com.frank_mitchell.codepoint.ForCharsets;",
+            "import java.io.IOException;",
+            "import java.io.Reader;",
+            "import java.nio.charset.Charset;",
+            "class UpperSource implements CodePointSource {",
+            "    @ForCharsets(names={\"UTF-16\", \"windows-1252\"})",
+            "    public UpperSource(Reader r) { }",
+            "    public UpperSource(Reader r, Charset cs) throws IOException { }",
+            "    public UpperSource(Reader r, int n) { }",
+            "    public int getCodePoint() { return 'A'; }",
+            "    public boolean hasNext() { return false; }",
+            "    public void next() { }",
+            "    public void close() { }",
+            "}",
+            "");
+
+    Path _dir;
+
+    @Before
+    public void setUp() throws IOException {
+        _dir = Files.createTempDirectory("processor");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(_dir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+
+    @Test
+    public void testGeneratesRegistry() throws Exception {
+        final Path src = _dir.resolve("src/p/UpperSource.java");
+        final Path out = _dir.resolve("out");
+        final Path gen = _dir.resolve("gen");
+        Files.createDirectories(src.getParent());
+        Files.createDirectories(out);
+        Files.createDirectories(gen);
+        Files.write(src, FIXTURE.getBytes(StandardCharsets.UTF_8));
+
+        JavaCompiler javac = ToolProvider.getSystemJavaCompiler();
+        int status = javac.run(null, null, null,
+                "-classpath", System.getProperty("java.class.path"),
+                "-processor", ForCharsetsProcessor.class.getName(),
+                "-d", out.toString(),
+                "-s", gen.toString(),
+                src.toString());
+        assertEquals("javac exit status", 0, status);
+
+        assertTrue(Files.exists(gen.resolve("p/GeneratedWrapperRegistry.java")));
+        List<String> services = Files.readAllLines(
+                out.resolve(ForCharsetsProcessor.SERVICE_FILE), StandardCharsets.UTF_8);
+        assertEquals(Arrays.asList("p.GeneratedWrapperRegistry"), services);
+
+        final List<Class<?>[]> params = new ArrayList<>();
+        final List<Object> created = new ArrayList<>();
+        try (URLClassLoader loader = new URLClassLoader(
+                new URL[] { out.toUri().toURL() }, getClass().getClassLoader())) {
+            for (WrapperRegistry r : ServiceLoader.load(WrapperRegistry.class, loader)) {
+                if (r.getClass().getClassLoader() != loader) {
+                    continue;
+                }
+                r.registerWrappers((impl, ps, charsets, factory) -> {
+                    assertEquals("p.UpperSource", impl.getName());
+                    if (ps.length == 1) {
+                        assertTrue(charsets.contains(StandardCharsets.UTF_16));
+                        if (Charset.isSupported("windows-1252")) {
+                            assertTrue(charsets.contains(Charset.forName("windows-1252")));
+                        }
+                    } else {
+                        assertTrue(charsets.isEmpty());
+                    }
+                    params.add(ps);
+                    try {
+                        created.add(factory.create(new StringReader(""), StandardCharsets.UTF_16));
+                    } catch (IOException e) {
+                        fail(e.toString());
+                    }
+                });
+            }
+        }
+        // The constructor taking an int can't be called by a Provider.
+        assertEquals(2, params.size());
+        for (Object o : created) {
+            assertEquals("p.UpperSource", o.getClass().getName());
+        }
+    }
+}
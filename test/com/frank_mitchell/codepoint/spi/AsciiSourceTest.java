@@ -24,10 +24,12 @@
 package com.frank_mitchell.codepoint.spi;
 
 import com.frank_mitchell.codepoint.CodePointSource;
+import com.frank_mitchell.codepoint.DecodingPolicy;
 import java.io.*;
 import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import org.junit.Assert;
+import org.junit.Test;
 
 /**
  *
@@ -51,6 +53,30 @@ public final class AsciiSourceTest extends CodePointSourceTest {
     }
  
 
+    @Test
+    public void testUtf8() throws Exception {
+        // U+1F600 ends in 0x80, U+00BF ends in 0xBF
+        final String text = "caf\u00E9 \u00BF \uD83D\uDE00";
+        _source = new AsciiSource(new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8)));
+
+        assertStringRead(text);
+
+        assertEndOfStream();
+    }
+
+    @Test
+    public void testMalformedUtf8() throws Exception {
+        // stray continuation, overlong '/', surrogate, truncated at end
+        final byte[] bad = {'a', (byte) 0x80, (byte) 0xC0, (byte) 0xAF, 'b',
+            (byte) 0xED, (byte) 0xA0, (byte) 0x80, (byte) 0xF0, (byte) 0x9F};
+        _source = new AsciiSource(new ByteArrayInputStream(bad));
+        _source.setDecodingPolicy(DecodingPolicy.REPLACE);
+
+        assertStringRead("a\uFFFD\uFFFD\uFFFDb\uFFFD\uFFFD\uFFFD\uFFFD");
+
+        assertEndOfStream();
+    }
+
     public static class FakeInputStream extends InputStream {
         /*
          * The parser likes to read one or two characters ahead, so we'll give
@@ -0,0 +1,138 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2023 Frank Mitchell.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.frank_mitchell.codepoint.spi;
+
+import com.frank_mitchell.codepoint.CharsetDetection;
+import com.frank_mitchell.codepoint.CodePointSource;
+import com.frank_mitchell.codepoint.DetectingSource;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Frank Mitchell
+ */
+public class AutoDetectSourceTest {
+
+    private static final String LATIN = "{\"name\": \"Andr\u00E9\", \"city\": \"Z\u00FCrich\"}";
+    private static final String MIXED = "{\"\u65E5\u672C\": \"\uD83D\uDE00 caf\u00E9\"}";
+
+    private static String read(CodePointSource src) throws IOException {
+        final StringBuilder b = new StringBuilder();
+        while (src.hasNext()) {
+            src.next();
+            b.appendCodePoint(src.getCodePoint());
+        }
+        return b.toString();
+    }
+
+    private static byte[] encode(String text, String cs, byte... bom) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(bom);
+        out.write(text.getBytes(cs));
+        return out.toByteArray();
+    }
+
+    private static void assertDetects(String cs, boolean bom, String text, byte[] bytes) throws IOException {
+        DetectingSource src = new AutoDetectSource(new ByteArrayInputStream(bytes));
+        CharsetDetection d = src.getDetection();
+        assertEquals(Charset.forName(cs), d.getCharset());
+        assertEquals(bom, d.hasByteOrderMark());
+        assertTrue(d.toString(), d.getConfidence() >= 0.5);
+        assertEquals(text, read(src));
+
+        src = new AutoDetectSource(ByteBuffer.wrap(bytes));
+        assertEquals(d.getCharset(), src.getDetection().getCharset());
+        assertEquals(text, read(src));
+    }
+
+    @Test
+    public void testByteOrderMarks() throws IOException {
+        assertDetects("UTF-8", true, MIXED,
+                encode(MIXED, "UTF-8", (byte) 0xEF, (byte) 0xBB, (byte) 0xBF));
+        assertDetects("UTF-16BE", true, MIXED,
+                encode(MIXED, "UTF-16BE", (byte) 0xFE, (byte) 0xFF));
+        assertDetects("UTF-16LE", true, MIXED,
+                encode(MIXED, "UTF-16LE", (byte) 0xFF, (byte) 0xFE));
+        assertDetects("UTF-32BE", true, MIXED,
+                encode(MIXED, "UTF-32BE", (byte) 0, (byte) 0, (byte) 0xFE, (byte) 0xFF));
+        assertDetects("UTF-32LE", true, MIXED,
+                encode(MIXED, "UTF-32LE", (byte) 0xFF, (byte) 0xFE, (byte) 0, (byte) 0));
+    }
+
+    @Test
+    public void testZeroBytes() throws IOException {
+        for (String cs : new String[] {"UTF-16BE", "UTF-16LE", "UTF-32BE", "UTF-32LE"}) {
+            assertDetects(cs, false, LATIN, encode(LATIN, cs));
+        }
+    }
+
+    @Test
+    public void testUtf8() throws IOException {
+        assertDetects("UTF-8", false, MIXED, encode(MIXED, "UTF-8"));
+
+        final DetectingSource src = new AutoDetectSource(new ByteArrayInputStream(
+                "plain".getBytes(StandardCharsets.US_ASCII)));
+        assertEquals(StandardCharsets.UTF_8, src.getDetection().getCharset());
+        assertEquals("plain", read(src));
+    }
+
+    @Test
+    public void testFallback() throws IOException {
+        final String text = "\u201CNa\u00EFve\u201D \u20AC5";
+        DetectingSource src = new AutoDetectSource(
+                new ByteArrayInputStream(encode(text, "windows-1252")));
+        assertEquals(AutoDetectSource.DEFAULT_FALLBACK, src.getDetection().getCharset());
+        assertEquals(text, read(src));
+
+        src = new AutoDetectSource(new ByteArrayInputStream(encode(text, "windows-1252")),
+                StandardCharsets.ISO_8859_1);
+        assertEquals(StandardCharsets.ISO_8859_1, src.getDetection().getCharset());
+    }
+
+    @Test
+    public void testLongerThanPrefix() throws IOException {
+        final StringBuilder b = new StringBuilder();
+        while (b.length() < AutoDetectSource.PREFIX * 2) {
+            b.append(MIXED);
+        }
+        final String text = b.toString();
+        assertDetects("UTF-8", false, text, encode(text, "UTF-8"));
+        assertDetects("UTF-16LE", true, text,
+                encode(text, "UTF-16LE", (byte) 0xFF, (byte) 0xFE));
+    }
+
+    @Test
+    public void testEmpty() throws IOException {
+        final DetectingSource src = new AutoDetectSource(new ByteArrayInputStream(new byte[0]));
+        assertEquals(0.0, src.getDetection().getConfidence(), 0.0);
+        assertFalse(src.hasNext());
+    }
+}
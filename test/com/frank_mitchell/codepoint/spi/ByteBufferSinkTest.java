@@ -24,15 +24,17 @@
 package com.frank_mitchell.codepoint.spi;
 
 import com.frank_mitchell.codepoint.CodePointSink;
+import java.io.IOException;
+import java.nio.BufferOverflowException;
 import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
-import org.junit.Ignore;
+import org.junit.Test;
+import static org.junit.Assert.*;
 
 /**
  * @author fmitchell
  *
  */
-@Ignore("don't understand ByteBuffers yet")
 public class ByteBufferSinkTest extends CodePointSinkTest {
 
     @Override
@@ -48,7 +50,32 @@ public class ByteBufferSinkTest extends CodePointSinkTest {
     @Override
     protected String getOutput() {
         final ByteBuffer buffer = (ByteBuffer)_store;
-        // TODO: Is this right?
-        return buffer.toString();
+        return new String(buffer.array(), 0, buffer.position(), StandardCharsets.UTF_8);
     }
- }
+
+    @Test
+    public void testPutManyCodePoints() throws IOException {
+        final String text = "caf\u00E9 \u65E5\u672C \uD83D\uDE00";
+        final ByteBuffer buffer = ByteBuffer.allocate(64);
+        try (CodePointSink sink = new ByteBufferSink(buffer, StandardCharsets.UTF_8)) {
+            sink.append(text);
+        }
+        assertEquals(text, new String(buffer.array(), 0, buffer.position(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testOverflow() throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocate(4);
+        final CodePointSink sink = new ByteBufferSink(buffer, StandardCharsets.UTF_8);
+        sink.putCodePoint('a');
+        try {
+            sink.putCodePoint(0x1F600);
+            fail("Wrote four bytes into three");
+        } catch (BufferOverflowException e) {
+            // expected
+        }
+        sink.putCodePoint(0xE9);
+        assertEquals(3, buffer.position());
+        assertEquals("a\u00E9", new String(buffer.array(), 0, 3, StandardCharsets.UTF_8));
+    }
+}
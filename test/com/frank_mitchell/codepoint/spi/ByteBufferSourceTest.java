@@ -24,20 +24,27 @@
 package com.frank_mitchell.codepoint.spi;
 
 import com.frank_mitchell.codepoint.CodePointSource;
+import com.frank_mitchell.codepoint.DecodingPolicy;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.nio.ByteBuffer;
-import org.junit.Ignore;
+import java.nio.charset.MalformedInputException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+import static org.junit.Assert.*;
 
 /**
  *
  * @author fmitchell
  */
-@Ignore("don't understand ByteBuffers yet")
 public class ByteBufferSourceTest extends CodePointSourceTest {
 
     @Override
     public Object createBackingStore() {
         ByteBuffer buf = ByteBuffer.allocate(1000);
+        buf.limit(0);
         return buf;
     }
 
@@ -48,8 +55,97 @@ public class ByteBufferSourceTest extends CodePointSourceTest {
 
     @Override
     public void push(String text) {
+        // Append after the limit, leaving the source's position alone
         ByteBuffer buf = (ByteBuffer)_store;
-        buf.put(text.getBytes());
-        buf.flip();
+        final int pos = buf.position();
+        buf.position(buf.limit());
+        buf.limit(buf.capacity());
+        buf.put(text.getBytes(StandardCharsets.UTF_8));
+        buf.limit(buf.position());
+        buf.position(pos);
+    }
+
+    private static final byte[] BAD = {'a', (byte) 0xFF, 'b', (byte) 0xE2, (byte) 0x82};
+
+    private static List<Integer> readAll(CodePointSource src) throws IOException {
+        List<Integer> result = new ArrayList<>();
+        while (src.hasNext()) {
+            src.next();
+            result.add(src.getCodePoint());
+        }
+        return result;
+    }
+
+    @Test
+    public void testNonAscii() throws Exception {
+        push("caf\u00E9 \u65E5\u672C \uD83D\uDE00");
+
+        assertStringRead("caf\u00E9 \u65E5\u672C \uD83D\uDE00");
+
+        assertEndOfStream();
+    }
+
+    @Test
+    public void testMalformedReport() throws Exception {
+        CodePointSource src = new ByteBufferSource(BAD);
+        src.setDecodingPolicy(DecodingPolicy.REPORT);
+        assertTrue(src.hasNext());
+        src.next();
+        assertEquals('a', src.getCodePoint());
+        try {
+            src.hasNext();
+            fail("Read past malformed input");
+        } catch (MalformedInputException e) {
+            assertEquals(1, e.getInputLength());
+        }
+        assertTrue(src.hasNext());
+        src.next();
+        assertEquals('b', src.getCodePoint());
+    }
+
+    @Test
+    public void testMalformedReplace() throws Exception {
+        CodePointSource src = new ByteBufferSource(BAD);
+        src.setDecodingPolicy(DecodingPolicy.REPLACE);
+        assertEquals(List.of((int) 'a', 0xFFFD, (int) 'b', 0xFFFD), readAll(src));
+    }
+
+    @Test
+    public void testMalformedSkip() throws Exception {
+        CodePointSource src = new ByteBufferSource(BAD);
+        src.setDecodingPolicy(DecodingPolicy.SKIP);
+        assertEquals(List.of((int) 'a', (int) 'b'), readAll(src));
+    }
+
+    @Test
+    public void testMalformedCallback() throws Exception {
+        final List<Long> offsets = new ArrayList<>();
+        final List<Integer> lengths = new ArrayList<>();
+        CodePointSource src = new ByteBufferSource(
+                new ByteArrayInputStream(BAD), StandardCharsets.UTF_8);
+        src.setDecodingPolicy(DecodingPolicy.callback((offset, bad) -> {
+            offsets.add(offset);
+            lengths.add(bad.length);
+            return '?';
+        }));
+        assertEquals(List.of((int) 'a', (int) '?', (int) 'b', (int) '?'), readAll(src));
+        assertEquals(List.of(1L, 3L), offsets);
+        assertEquals(List.of(1, 2), lengths);
+    }
+
+    @Test
+    public void testLongStream() throws Exception {
+        StringBuilder b = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            b.append("x\u00E9\u65E5\uD83D\uDE00");
+        }
+        final String text = b.toString();
+        for (String cs : new String[] {"UTF-8", "UTF-16LE", "UTF-32"}) {
+            CodePointSource src = new ByteBufferSource(
+                    new ByteArrayInputStream(text.getBytes(cs)), java.nio.charset.Charset.forName(cs));
+            List<Integer> expected = new ArrayList<>();
+            text.codePoints().forEach(expected::add);
+            assertEquals(cs, expected, readAll(src));
+        }
     }
 }
@@ -0,0 +1,64 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2023 Frank Mitchell.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.frank_mitchell.codepoint.spi;
+
+import com.frank_mitchell.codepoint.CaseFolding;
+import com.frank_mitchell.codepoint.CaseFoldingSink;
+import com.frank_mitchell.codepoint.CodePointSink;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Frank Mitchell
+ */
+public class CaseFoldingSinkTest {
+
+    private static final String TEXT = "{\"Stra\u00DFe\": \"\uFB01LE \u03A3\u039F\u03A3 \uD801\uDC00\"}";
+
+    private static String fold(CaseFolding folding, boolean bulk) throws IOException {
+        final StringBuffer result = new StringBuffer();
+        try (CodePointSink sink = new CaseFoldingSink(new StringBufferSink(result, StandardCharsets.UTF_16), folding)) {
+            if (bulk) {
+                final int[] cps = TEXT.repeat(500).codePoints().toArray();
+                sink.putCodePoints(cps, 0, cps.length);
+            } else {
+                sink.append(TEXT.repeat(500));
+            }
+        }
+        return result.toString();
+    }
+
+    @Test
+    public void testFold() throws IOException {
+        final String full = "{\"strasse\": \"file \u03C3\u03BF\u03C3 \uD801\uDC28\"}".repeat(500);
+        final String simple = "{\"stra\u00DFe\": \"\uFB01le \u03C3\u03BF\u03C3 \uD801\uDC28\"}".repeat(500);
+        assertEquals(full, fold(CaseFolding.FULL, false));
+        assertEquals(full, fold(CaseFolding.FULL, true));
+        assertEquals(simple, fold(CaseFolding.SIMPLE, false));
+        assertEquals(simple, fold(CaseFolding.SIMPLE, true));
+    }
+}
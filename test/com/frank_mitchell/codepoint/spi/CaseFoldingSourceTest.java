@@ -0,0 +1,66 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2023 Frank Mitchell.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.frank_mitchell.codepoint.spi;
+
+import com.frank_mitchell.codepoint.CaseFolding;
+import com.frank_mitchell.codepoint.CaseFoldingSource;
+import com.frank_mitchell.codepoint.CodePointSource;
+import java.io.IOException;
+import org.junit.Test;
+
+/**
+ *
+ * @author Frank Mitchell
+ */
+public class CaseFoldingSourceTest extends CodePointSourceTest {
+
+    @Override
+    protected CodePointSource createCodePointSource(Object store) throws IOException {
+        return new CaseFoldingSource(super.createCodePointSource(store), CaseFolding.FULL);
+    }
+
+    @Test
+    public void testFold() throws IOException {
+        push("{\"Stra\u00DFe\": \"\uFB01LE \u03A3\u039F\u03A3\"}");
+
+        assertStringRead("{\"strasse\": \"file \u03C3\u03BF\u03C3\"}");
+
+        assertEndOfStream();
+    }
+
+    @Test
+    public void testLongerThanBlock() throws IOException {
+        final StringBuilder text = new StringBuilder();
+        final StringBuilder folded = new StringBuilder();
+        for (int i = 0; i < 2000; i++) {
+            text.append("Ab\u00DF");
+            folded.append("abss");
+        }
+        push(text.toString());
+
+        assertStringRead(folded.toString());
+
+        assertEndOfStream();
+    }
+}
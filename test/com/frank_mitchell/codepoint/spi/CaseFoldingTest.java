@@ -0,0 +1,69 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2023 Frank Mitchell.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.frank_mitchell.codepoint.spi;
+
+import com.frank_mitchell.codepoint.CaseFolding;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Frank Mitchell
+ */
+public class CaseFoldingTest {
+
+    @Test
+    public void testAscii() {
+        for (int cp = 0; cp < 0x80; cp++) {
+            assertEquals(Character.toLowerCase(cp), CaseFolding.SIMPLE.fold(cp));
+            assertEquals(Character.toLowerCase(cp), CaseFolding.FULL.fold(cp));
+        }
+    }
+
+    @Test
+    public void testSimple() {
+        assertEquals("ss \u00DF \u00DF \u0130 \u0131 \u03C3\u03C3\u03C3 \uFB01 k \u03C9 \u13A0\u13A0 \uD801\uDC28",
+                CaseFolding.SIMPLE.fold("SS \u00DF \u1E9E \u0130 \u0131 \u03A3\u03C3\u03C2 \uFB01 \u212A \u2126 \uAB70\u13A0 \uD801\uDC00"));
+    }
+
+    @Test
+    public void testFull() {
+        assertEquals("ss ss ss i\u0307 \u0131 \u03C3\u03C3\u03C3 fi k \u03C9 \u03B9\u0308\u0301 \u13A0 \uD801\uDC28",
+                CaseFolding.FULL.fold("SS \u00DF \u1E9E \u0130 \u0131 \u03A3\u03C3\u03C2 \uFB01 \u212A \u2126 \u0390 \uAB70 \uD801\uDC00"));
+    }
+
+    @Test
+    public void testFullAgreesWithSimple() {
+        final int[] buf = new int[CaseFolding.MAX_EXPANSION];
+        for (int cp = 0; cp <= Character.MAX_CODE_POINT; cp++) {
+            final int n = CaseFolding.FULL.fold(cp, buf, 0);
+            if (n == 1) {
+                assertEquals(Integer.toHexString(cp), CaseFolding.SIMPLE.fold(cp), buf[0]);
+            }
+            // Folding twice changes nothing
+            assertEquals(Integer.toHexString(cp), CaseFolding.SIMPLE.fold(cp),
+                    CaseFolding.SIMPLE.fold(CaseFolding.SIMPLE.fold(cp)));
+        }
+    }
+}
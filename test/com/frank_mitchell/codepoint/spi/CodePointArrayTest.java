@@ -0,0 +1,130 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2023 Frank Mitchell.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.frank_mitchell.codepoint.spi;
+
+import com.frank_mitchell.codepoint.CodePointArray;
+import com.frank_mitchell.codepoint.CodePointSource;
+import java.io.IOException;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ *
+ * @author Frank Mitchell
+ */
+public class CodePointArrayTest extends CodePointSourceTest {
+
+    @Override
+    public Object createBackingStore() {
+        return new CodePointArray();
+    }
+
+    @Override
+    protected CodePointSource createCodePointSource(Object store) throws IOException {
+        return ((CodePointArray) store).getSource();
+    }
+
+    @Override
+    protected void push(String text) throws IOException {
+        ((CodePointArray) _store).append(text);
+    }
+
+    private CodePointArray array() {
+        return (CodePointArray) _store;
+    }
+
+    @Test
+    public void testWidening() throws IOException {
+        push("caf");
+        assertEquals(1, array().getWidth());
+        push("\u00E9");
+        assertEquals(1, array().getWidth());
+        push(" \u20AC");
+        assertEquals(2, array().getWidth());
+        push(" \uD83D\uDE00");
+        assertEquals(4, array().getWidth());
+
+        assertEquals("caf\u00E9 \u20AC \uD83D\uDE00", array().toString());
+        assertEquals(8, array().length());
+        assertEquals('\u00E9', array().codePointAt(3));
+        assertEquals(0x1F600, array().codePointAt(7));
+        assertStringRead("caf\u00E9 \u20AC \uD83D\uDE00");
+
+        assertEndOfStream();
+    }
+
+    @Test
+    public void testBulkWidening() {
+        final CodePointArray a = new CodePointArray(2);
+        a.putCodePoints(new int[] {'a', 'b', 'c'}, 0, 3);
+        assertEquals(1, a.getWidth());
+        a.putCodePoints(new int[] {'x', 0x1F600, 0x3042}, 0, 3);
+        assertEquals(4, a.getWidth());
+
+        assertArrayEquals(new int[] {'a', 'b', 'c', 'x', 0x1F600, 0x3042}, a.toArray());
+    }
+
+    @Test
+    public void testIndependentCursors() throws IOException {
+        push("abcdef");
+        final CodePointSource second = array().getSource(3);
+
+        assertStringRead("ab");
+        assertTrue(second.hasNext());
+        second.next();
+        assertEquals('d', second.getCodePoint());
+        assertStringRead("cd");
+
+        final int[] block = new int[10];
+        assertEquals(2, second.read(block, 0, block.length));
+        assertEquals(-1, second.read(block, 0, block.length));
+        push("\u03A9");
+        assertEquals(1, second.read(block, 0, block.length));
+        assertEquals('\u03A9', block[0]);
+        assertStringRead("ef\u03A9");
+
+        assertEndOfStream();
+    }
+
+    @Test
+    public void testClear() throws IOException {
+        push("\u03B1\u03B2\u03B3");
+        array().clear();
+
+        assertEquals(0, array().length());
+        assertFalse(_source.hasNext());
+        push("a");
+        assertEquals(2, array().getWidth());
+        assertEquals("a", array().toString());
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testOutOfBounds() throws IOException {
+        push("abc");
+        array().codePointAt(3);
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2023 Frank Mitchell.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.frank_mitchell.codepoint.spi;
+
+import com.frank_mitchell.codepoint.CodePointInterner;
+import java.io.IOException;
+import java.util.Random;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import org.junit.Test;
+
+/**
+ *
+ * @author Frank Mitchell
+ */
+public class CodePointInternerTest {
+
+    private static String intern(CodePointInterner interner, String s) {
+        final int[] cps = s.codePoints().toArray();
+        return interner.intern(cps, 0, cps.length);
+    }
+
+    @Test
+    public void testIntern() {
+        final CodePointInterner interner = new CodePointInterner(100);
+        final int[] cps = "xkeyx".codePoints().toArray();
+
+        final String key = interner.intern(cps, 1, 3);
+        assertEquals("key", key);
+        assertSame(key, interner.intern(cps, 1, 3));
+        assertSame(key, intern(interner, "key"));
+        assertEquals("", intern(interner, ""));
+        assertEquals("ke", intern(interner, "ke"));
+        assertEquals("keys", intern(interner, "keys"));
+
+        assertEquals(2, interner.getHits());
+        assertEquals(4, interner.getMisses());
+        assertEquals(4, interner.size());
+        assertEquals(0, interner.getEvictions());
+    }
+
+    @Test
+    public void testSink() {
+        final CodePointInterner interner = new CodePointInterner(100);
+        final CodePointInterner.Sink sink = interner.newSink();
+
+        sink.putCodePoint('n');
+        sink.putCodePoints(new int[] {'a', 'm', 0x1F600}, 0, 3);
+        assertEquals(4, sink.length());
+        final String name = sink.intern();
+        assertEquals("nam\uD83D\uDE00", name);
+        assertEquals(0, sink.length());
+
+        final int[] again = "nam\uD83D\uDE00".codePoints().toArray();
+        sink.putCodePoints(again, 0, again.length);
+        assertSame(name, sink.intern());
+        assertSame(name, intern(interner, "nam\uD83D\uDE00"));
+
+        sink.putCodePoint('x');
+        sink.clear();
+        assertEquals("", sink.intern());
+    }
+
+    @Test
+    public void testSource() throws IOException {
+        final CodePointInterner interner = new CodePointInterner(100);
+        final CharSequenceSource in = new CharSequenceSource("keykeyke");
+
+        final String key = interner.intern(in, 3);
+        assertEquals("key", key);
+        assertSame(key, interner.intern(in, 3));
+        assertEquals("ke", interner.intern(in, 3));
+    }
+
+    @Test
+    public void testClock() {
+        final CodePointInterner interner = new CodePointInterner(2);
+        final String a = intern(interner, "a");
+        final String b = intern(interner, "b");
+        assertSame(a, intern(interner, "a"));
+
+        final String c = intern(interner, "c");
+
+        assertEquals(1, interner.getEvictions());
+        assertEquals(2, interner.size());
+        assertSame(a, intern(interner, "a"));
+        assertSame(c, intern(interner, "c"));
+        final String b2 = intern(interner, "b");
+        assertEquals(b, b2);
+        assertNotSame(b, b2);
+    }
+
+    @Test
+    public void testChurn() {
+        final CodePointInterner interner = new CodePointInterner(64);
+        final Random random = new Random(11);
+        for (int i = 0; i < 20000; i++) {
+            final String token = "t" + random.nextInt(200);
+            final String first = intern(interner, token);
+            assertEquals(token, first);
+            assertSame(token, first, intern(interner, token));
+        }
+        assertEquals(64, interner.size());
+        assertEquals(40000, interner.getHits() + interner.getMisses());
+        assertEquals(interner.getMisses() - 64, interner.getEvictions());
+    }
+}
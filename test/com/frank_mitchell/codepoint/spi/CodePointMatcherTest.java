@@ -0,0 +1,159 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2023 Frank Mitchell.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.frank_mitchell.codepoint.spi;
+
+import com.frank_mitchell.codepoint.CodePointMatcher;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import static org.junit.Assert.assertEquals;
+import org.junit.Test;
+
+/**
+ *
+ * @author Frank Mitchell
+ */
+public class CodePointMatcherTest {
+
+    private static List<String> scan(CodePointMatcher m, String text) throws IOException {
+        final List<String> found = new ArrayList<>();
+        m.scan(new CharSequenceSource(text), (pattern, offset) -> found.add(pattern + "@" + offset));
+        return found;
+    }
+
+    @Test
+    public void testOverlapping() throws IOException {
+        final CodePointMatcher m = CodePointMatcher.compile(false, "he", "she", "his", "hers");
+
+        assertEquals(4, m.getPatternCount());
+        assertEquals(Arrays.asList("1@1", "0@2", "3@2"), scan(m, "ushers"));
+        assertEquals(Arrays.asList("2@0", "1@3", "0@4"), scan(m, "hisshe"));
+        assertEquals(Collections.emptyList(), scan(m, "HERS"));
+    }
+
+    @Test
+    public void testNonAscii() throws IOException {
+        final CodePointMatcher m = CodePointMatcher.compile(false, "caf\u00E9", "\u65E5\u672C", "\u672C\u8A9E", "\uD83D\uDE00x");
+
+        assertEquals(Arrays.asList("0@2", "1@7", "2@8", "3@11"),
+                scan(m, "a caf\u00E9 \u65E5\u672C\u8A9E \uD83D\uDE00x \uD83D\uDE00"));
+    }
+
+    @Test
+    public void testIgnoreCase() throws IOException {
+        final CodePointMatcher m = CodePointMatcher.compile(true, "Secret", "\u03C3\u03BF\u03C2", "k");
+
+        assertEquals(true, m.isIgnoreCase());
+        assertEquals(Arrays.asList("0@0", "0@7", "1@14", "2@18"),
+                scan(m, "SECRET secret \u03A3\u039F\u03A3 K"));
+    }
+
+    @Test
+    public void testCodePointPatterns() throws IOException {
+        final CodePointMatcher m = CodePointMatcher.compile(
+                Arrays.asList(new int[] {'a', 'b'}, new int[] {0x1F600}, new int[] {'a', 'b'}), false);
+
+        assertEquals(Arrays.asList("0@0", "2@0", "1@2"), scan(m, "ab\uD83D\uDE00"));
+    }
+
+    @Test
+    public void testStop() throws IOException {
+        final CodePointMatcher m = CodePointMatcher.compile(false, "b");
+
+        final long read = m.scan(new CharSequenceSource("abcabc"), (pattern, offset) -> false);
+
+        assertEquals(2, read);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testEmptyPattern() {
+        CodePointMatcher.compile(false, "a", "");
+    }
+
+    @Test
+    public void testAcrossBlocks() throws IOException {
+        final StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 1020; i++) {
+            text.append('.');
+        }
+        text.append("needle");
+        final CodePointMatcher m = CodePointMatcher.compile(false, "needle");
+
+        assertEquals(Arrays.asList("0@1020"), scan(m, text.toString()));
+    }
+
+    @Test
+    public void testAgainstIndexOf() throws IOException {
+        final Random random = new Random(42);
+        final String alphabet = "ab\u00E9\u65E5";
+        for (int round = 0; round < 50; round++) {
+            final String[] patterns = new String[10];
+            for (int p = 0; p < patterns.length; p++) {
+                patterns[p] = randomString(random, alphabet, 1 + random.nextInt(4));
+            }
+            final String text = randomString(random, alphabet, 200);
+            final List<String> expected = new ArrayList<>();
+            for (int end = 1; end <= text.length(); end++) {
+                for (int p = 0; p < patterns.length; p++) {
+                    final int start = end - patterns[p].length();
+                    if (start >= 0 && text.startsWith(patterns[p], start)) {
+                        expected.add(p + "@" + start);
+                    }
+                }
+            }
+
+            final List<String> actual = scan(CodePointMatcher.compile(false, patterns), text);
+
+            assertEquals(sorted(expected), sorted(actual));
+            assertEquals(ends(expected, patterns), ends(actual, patterns));
+        }
+    }
+
+    private static List<String> sorted(List<String> list) {
+        final List<String> copy = new ArrayList<>(list);
+        Collections.sort(copy);
+        return copy;
+    }
+
+    private static List<Integer> ends(List<String> matches, String[] patterns) {
+        final List<Integer> ends = new ArrayList<>();
+        for (String s : matches) {
+            final int at = s.indexOf('@');
+            final int p = Integer.parseInt(s.substring(0, at));
+            ends.add(Integer.parseInt(s.substring(at + 1)) + patterns[p].length());
+        }
+        return ends;
+    }
+
+    private static String randomString(Random random, String alphabet, int length) {
+        final StringBuilder b = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            b.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        }
+        return b.toString();
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2023 Frank Mitchell.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.frank_mitchell.codepoint.spi;
+
+import com.frank_mitchell.codepoint.CodePoint;
+import com.frank_mitchell.codepoint.CodePointPipe;
+import com.frank_mitchell.codepoint.CodePointSet;
+import com.frank_mitchell.codepoint.CodePointSink;
+import com.frank_mitchell.codepoint.CodePointSource;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Frank Mitchell
+ */
+public class CodePointPipeTest extends CodePointSourceTest {
+
+    private static final CodePointSet SPACE = CodePointSet.of(" \t\r\n");
+
+    @Override
+    protected CodePointSource createCodePointSource(Object store) throws IOException {
+        return CodePoint.pipe(super.createCodePointSource(store))
+                .filter(CodePointSet.ALL)
+                .map(cp -> cp);
+    }
+
+    private static String drain(CodePointPipe pipe) throws IOException {
+        final StringBuffer result = new StringBuffer();
+        try (CodePointSink sink = new StringBufferSink(result, StandardCharsets.UTF_16)) {
+            pipe.drainTo(sink);
+        }
+        return result.toString();
+    }
+
+    @Test
+    public void testStages() throws IOException {
+        final CodePointPipe pipe = CodePoint.pipe(new CharSequenceSource("{ \"key\":\t\"Value \uD83D\uDE00\" }"))
+                .filter(SPACE.complement())
+                .map(Character::toUpperCase)
+                .limit(12);
+        assertEquals("{\"KEY\":\"VALU", drain(pipe));
+        assertFalse(pipe.hasNext());
+    }
+
+    @Test
+    public void testLimitDoesNotReadAhead() throws IOException {
+        final CodePointSource source = new CharSequenceSource("a b c d e f");
+        final CodePointPipe pipe = CodePoint.pipe(source).filter(SPACE.complement()).limit(3);
+        assertEquals("abc", drain(pipe));
+        assertTrue(source.hasNext());
+        source.next();
+        assertEquals(' ', source.getCodePoint());
+    }
+
+    @Test
+    public void testLongerThanBlock() throws IOException {
+        final String text = "ab c".repeat(1000);
+        final CodePointPipe pipe = CodePoint.pipe(new CharSequenceSource(text))
+                .filter(cp -> cp != 'c')
+                .map(cp -> cp + 1);
+        assertEquals("bc!".repeat(1000), drain(pipe));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testNoStagesAfterReading() throws IOException {
+        final CodePointPipe pipe = CodePoint.pipe(new CharSequenceSource("abc"));
+        pipe.hasNext();
+        pipe.limit(1);
+    }
+}
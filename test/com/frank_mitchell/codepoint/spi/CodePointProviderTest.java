@@ -26,13 +26,37 @@ package com.frank_mitchell.codepoint.spi;
 import com.frank_mitchell.codepoint.CodePointProvider;
 import com.frank_mitchell.codepoint.CodePointSink;
 import com.frank_mitchell.codepoint.CodePointSource;
+import com.frank_mitchell.codepoint.DecodingPolicy;
+import com.frank_mitchell.codepoint.DetectingSource;
+import com.frank_mitchell.codepoint.EncodingPolicy;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.StringReader;
 import java.io.StringWriter;
+import java.lang.management.ManagementFactory;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
+import java.nio.charset.MalformedInputException;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import javax.management.ObjectName;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import javax.management.openmbean.CompositeData;
 import org.junit.After;
 import org.junit.AfterClass;
 import org.junit.Before;
@@ -91,6 +115,49 @@ public class CodePointProviderTest {
         assertSourceText(TEXT, result);
     }
 
+    @Test
+    public void testGetTableDrivenSources() throws IOException {
+        final String text = "{\"caf\u00E9\": \"\u20AC\"}";
+        final String[] names = {"windows-1252", "ISO-8859-1", "UTF-16LE", "UTF-16", "UTF-32BE", "Shift_JIS", "GBK"};
+        final Class<?>[] impls = {SingleByteSource.class, SingleByteSource.class,
+            Utf16Source.class, Utf16Source.class, Utf32Source.class,
+            MultiByteSource.class, MultiByteSource.class};
+        for (int i = 0; i < names.length; i++) {
+            final Charset cs = Charset.forName(names[i]);
+            final String expected = cs.newEncoder().canEncode(text) ? text : TEXT;
+            ByteArrayInputStream input = new ByteArrayInputStream(expected.getBytes(cs));
+            CodePointSource result = _provider.getSource(getClassFor(input), input, cs);
+            assertEquals(names[i], impls[i], result.getClass());
+
+            assertSourceText(expected, result);
+        }
+    }
+
+    @Test
+    public void testDefaultDecodingPolicy() throws IOException {
+        // Every byte source replaces bad input, whatever class reads it
+        final String[] names = {"US-ASCII", "UTF-8", "windows-1252", "UTF-16LE",
+            "UTF-32BE", "Shift_JIS", "IBM437", "KOI8-R"};
+        for (String name : names) {
+            final Charset cs = Charset.forName(name);
+            ByteArrayInputStream input = new ByteArrayInputStream(TEXT.getBytes(cs));
+            try (CodePointSource result = _provider.getSource(getClassFor(input), input, cs)) {
+                assertEquals(name, DecodingPolicy.REPLACE, result.getDecodingPolicy());
+            }
+        }
+
+        final Charset cs = StandardCharsets.UTF_8;
+        ByteArrayInputStream input = new ByteArrayInputStream(new byte[] {'a', (byte) 0xFF, 'b'});
+        assertSourceText("a\uFFFDb", _provider.getSource(getClassFor(input), input, cs));
+
+        // Characters can only be bad as unpaired surrogates, which are reported
+        StringReader reader = new StringReader(TEXT);
+        assertEquals(DecodingPolicy.REPORT,
+                _provider.getSource(getClassFor(reader), reader, cs).getDecodingPolicy());
+        assertEquals(DecodingPolicy.REPORT,
+                _provider.getSource(getClassFor(TEXT), TEXT, cs).getDecodingPolicy());
+    }
+
     @Test
     public void testGetReaderSource() throws IOException {
         final Charset cs = StandardCharsets.UTF_16;
@@ -110,6 +177,16 @@ public class CodePointProviderTest {
         assertSourceText(TEXT, result);
     }
 
+    @Test
+    public void testGetDetectingSource() throws IOException {
+        final byte[] bytes = TEXT.getBytes(StandardCharsets.UTF_16LE);
+        ByteArrayInputStream input = new ByteArrayInputStream(bytes);
+        DetectingSource result = _provider.getDetectingSource(getClassFor(input), input);
+        assertEquals(StandardCharsets.UTF_16LE, result.getDetection().getCharset());
+
+        assertSourceText(TEXT, result);
+    }
+
     @SuppressWarnings("unchecked")
     static <T> Class<T> getClassFor(T obj) {
         assertNotNull(obj);
@@ -138,6 +215,22 @@ public class CodePointProviderTest {
         assertEquals(TEXT, output.toString());
     }
 
+    @Test
+    public void testGetSingleByteSink() throws IOException {
+        final Charset cs = Charset.forName("windows-1252");
+        final String text = "{\"caf\u00E9\": \"\u20AC\u3041\"}";
+        Provider provider = (Provider) _provider;
+        provider.setEncodingPolicy(EncodingPolicy.REPLACE);
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (CodePointSink result = provider.getSink(getClassFor(output), output, cs)) {
+            assertTrue(result.getClass().toString(), result instanceof SingleByteSink);
+            assertEquals(EncodingPolicy.REPLACE, result.getEncodingPolicy());
+
+            result.append(text);
+        }
+        assertEquals(text.replace('\u3041', '?'), output.toString(cs));
+    }
+
     @Test
     public void testGetWriterSink() throws IOException {
         final Charset cs = StandardCharsets.UTF_16;
@@ -163,4 +256,484 @@ public class CodePointProviderTest {
         }
         assertEquals(TEXT, output.toString());
     }
+
+    @Test
+    public void testTransferSameCharset() throws IOException {
+        final Charset cs = StandardCharsets.UTF_8;
+        final StringBuilder b = new StringBuilder();
+        while (b.length() < AbstractByteSource.BUFFER_SIZE * 3) {
+            b.append("{\"caf\u00E9\": \"\u20AC\uD83D\uDE00\"}\n");
+        }
+        final String text = b.toString();
+        final ByteArrayInputStream input = new ByteArrayInputStream(text.getBytes(cs));
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        final CodePointSource source = _provider.getSource(getClassFor(input), input, cs);
+        try (CodePointSink sink = _provider.getSink(getClassFor(output), output, cs)) {
+            assertTrue(source.hasNext());
+            assertEquals(text.codePointCount(0, text.length()), _provider.transfer(source, sink));
+            assertEquals('\n', source.getCodePoint());
+            assertFalse(source.hasNext());
+        }
+        assertEquals(text, output.toString(cs));
+    }
+
+    @Test
+    public void testTransferCopiesBytes() throws IOException {
+        // Decoding and encoding again would turn ED 40 into FA 5C
+        final Charset cs = Charset.forName("windows-31j");
+        final byte[] bytes = {'a', (byte) 0xED, 0x40, 'b', (byte) 0x82, (byte) 0xA0};
+        final ByteArrayInputStream input = new ByteArrayInputStream(bytes);
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        final CodePointSource source = _provider.getSource(getClassFor(input), input, cs);
+        try (CodePointSink sink = _provider.getSink(getClassFor(output), output, cs)) {
+            assertEquals(4, _provider.transfer(source, sink));
+        }
+        assertArrayEquals(bytes, output.toByteArray());
+    }
+
+    @Test
+    public void testTransferMalformed() throws IOException {
+        final Charset cs = StandardCharsets.UTF_8;
+        final byte[] bytes = {'a', 'b', 'c', (byte) 0xFF, 'd'};
+        final ByteArrayInputStream input = new ByteArrayInputStream(bytes);
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        final CodePointSource source = _provider.getSource(getClassFor(input), input, cs);
+        source.setDecodingPolicy(DecodingPolicy.REPORT);
+        try (CodePointSink sink = _provider.getSink(getClassFor(output), output, cs)) {
+            _provider.transfer(source, sink);
+            fail("transferred malformed input");
+        } catch (MalformedInputException e) {
+            assertEquals(1, e.getInputLength());
+        }
+        assertEquals("abc", output.toString(cs));
+    }
+
+    @Test
+    public void testTransferMalformedReplace() throws IOException {
+        final Charset cs = StandardCharsets.UTF_8;
+        final byte[] bytes = {'a', 'b', 'c', (byte) 0xFF, 'd', (byte) 0xC3};
+        assertEquals("abc\uFFFDd\uFFFD", transferWith(null, bytes, cs));
+        assertEquals("abcd", transferWith(DecodingPolicy.SKIP, bytes, cs));
+        assertEquals("abc?d?", transferWith(DecodingPolicy.callback((offset, input) -> '?'), bytes, cs));
+    }
+
+    private String transferWith(DecodingPolicy policy, byte[] bytes, Charset cs) throws IOException {
+        final ByteArrayInputStream input = new ByteArrayInputStream(bytes);
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        final CodePointSource source = _provider.getSource(getClassFor(input), input, cs);
+        if (policy != null) {
+            source.setDecodingPolicy(policy);
+        }
+        final long count;
+        try (CodePointSink sink = _provider.getSink(getClassFor(output), output, cs)) {
+            count = _provider.transfer(source, sink);
+        }
+        final String result = output.toString(cs);
+        assertEquals(result.codePointCount(0, result.length()), count);
+        return result;
+    }
+
+    @Test
+    public void testTransferFiles() throws IOException {
+        final Charset cs = StandardCharsets.ISO_8859_1;
+        final byte[] bytes = new byte[256 * 100];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) i;
+        }
+        final Path in = Files.createTempFile("codepoint", ".in");
+        final Path out = Files.createTempFile("codepoint", ".out");
+        try {
+            Files.write(in, bytes);
+            try (FileInputStream input = new FileInputStream(in.toFile());
+                    FileOutputStream output = new FileOutputStream(out.toFile())) {
+                final CodePointSource source = _provider.getSource(getClassFor(input), input, cs);
+                final CodePointSink sink = _provider.getSink(getClassFor(output), output, cs);
+                assertTrue(((AbstractByteSource) source).isEveryByteValid());
+                assertTrue(sink instanceof SingleByteSink);
+                assertTrue(source.hasNext());
+                assertEquals(bytes.length, _provider.transfer(source, sink));
+                assertEquals(0xFF, source.getCodePoint());
+                sink.flush();
+            }
+            assertArrayEquals(bytes, Files.readAllBytes(out));
+        } finally {
+            Files.delete(in);
+            Files.delete(out);
+        }
+    }
+
+    @Test
+    public void testTransferShrinkingFile() throws IOException {
+        final Charset cs = StandardCharsets.ISO_8859_1;
+        final byte[] bytes = new byte[256 * 100];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) i;
+        }
+        final int size = bytes.length / 2;
+        final Path in = Files.createTempFile("codepoint", ".in");
+        final Path out = Files.createTempFile("codepoint", ".out");
+        try {
+            Files.write(in, bytes);
+            try (FileInputStream input = new FileInputStream(in.toFile());
+                    FileOutputStream output = new FileOutputStream(out.toFile())) {
+                final CodePointSource source = _provider.getSource(getClassFor(input), input, cs);
+                // Cut the file short once the copy has measured it
+                final CodePointSink sink = new SingleByteSink(output, cs) {
+                    private boolean _truncated;
+
+                    @Override
+                    public void putBytes(ByteBuffer b) throws IOException {
+                        if (!_truncated) {
+                            try (FileChannel ch = FileChannel.open(in, StandardOpenOption.WRITE)) {
+                                ch.truncate(size);
+                            }
+                            _truncated = true;
+                        }
+                        super.putBytes(b);
+                    }
+                };
+                assertTrue(source.hasNext());
+                assertEquals(size, _provider.transfer(source, sink));
+                assertFalse(source.hasNext());
+                sink.flush();
+            }
+            assertArrayEquals(Arrays.copyOf(bytes, size), Files.readAllBytes(out));
+        } finally {
+            Files.delete(in);
+            Files.delete(out);
+        }
+    }
+
+    @Test
+    public void testTransferFileThenUnmappable() throws IOException {
+        final Charset cs = StandardCharsets.ISO_8859_1;
+        final byte[] bytes = new byte[4096];
+        Arrays.fill(bytes, (byte) 'a');
+        final Path in = Files.createTempFile("codepoint", ".in");
+        final Path out = Files.createTempFile("codepoint", ".out");
+        try {
+            Files.write(in, bytes);
+            final long[] offset = {-1};
+            try (FileInputStream input = new FileInputStream(in.toFile());
+                    FileOutputStream output = new FileOutputStream(out.toFile())) {
+                final CodePointSource source = _provider.getSource(getClassFor(input), input, cs);
+                final CodePointSink sink = _provider.getSink(getClassFor(output), output, cs);
+                assertTrue(sink instanceof SingleByteSink);
+                assertEquals(bytes.length, _provider.transfer(source, sink));
+                sink.setEncodingPolicy(EncodingPolicy.callback((off, cp) -> {
+                    offset[0] = off;
+                    return '?';
+                }));
+                sink.putCodePoint('b');
+                sink.putCodePoint(0x4E00);
+                sink.flush();
+            }
+            assertEquals(bytes.length + 1, offset[0]);
+            assertEquals(bytes.length + 2, Files.size(out));
+        } finally {
+            Files.delete(in);
+            Files.delete(out);
+        }
+    }
+
+    @Test
+    public void testTransferReencodes() throws IOException {
+        final String text = "{\"caf\u00E9\": \"\u20AC\"}";
+        final ByteArrayInputStream input = new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8));
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        final Charset cs = Charset.forName("windows-1252");
+        final CodePointSource source = _provider.getSource(getClassFor(input), input, StandardCharsets.UTF_8);
+        try (CodePointSink sink = _provider.getSink(getClassFor(output), output, cs)) {
+            assertEquals(text.length(), _provider.transfer(source, sink));
+        }
+        assertEquals(text, output.toString(cs));
+
+        final StringBuffer buffer = new StringBuffer();
+        final CodePointSource chars = _provider.getSource(getClassFor(text), text, StandardCharsets.UTF_16);
+        try (CodePointSink sink = _provider.getSink(getClassFor(buffer), buffer, StandardCharsets.UTF_16)) {
+            assertEquals(text.length(), _provider.transfer(chars, sink));
+        }
+        assertEquals(text, buffer.toString());
+    }
+
+    @Test
+    public void testRepeatedLookupChoosesSameSource() throws IOException {
+        final Charset cs = StandardCharsets.US_ASCII;
+        ByteArrayInputStream input1 = new ByteArrayInputStream(TEXT.getBytes(cs));
+        ByteArrayInputStream input2 = new ByteArrayInputStream(TEXT.getBytes(cs));
+        CodePointSource result1 = _provider.getSource(getClassFor(input1), input1, cs);
+        CodePointSource result2 = _provider.getSource(getClassFor(input2), input2, cs);
+
+        assertEquals(result1.getClass(), result2.getClass());
+        assertSourceText(TEXT, result2);
+    }
+
+    @Test
+    public void testNoSourceForUnknownType() throws IOException {
+        final Charset cs = StandardCharsets.UTF_8;
+        for (int i = 0; i < 2; i++) {
+            try {
+                _provider.getSource(Integer.class, 42, cs);
+                fail("Found a source for an Integer");
+            } catch (IllegalStateException e) {
+                // expected, both times
+            }
+        }
+    }
+
+    @Test
+    public void testRegistryCachesResolution() {
+        final Charset cs = StandardCharsets.UTF_8;
+        Registry registry = new Registry(Collections.emptyMap())
+                .withClasses(Arrays.asList(ReaderSource.class, WriterSink.class));
+        Registry.Table<CodePointSource> sources = registry.getSources();
+
+        assertNull(sources.lookup(StringReader.class, cs));
+        ConstructorRecord<CodePointSource> rec = sources.resolve(StringReader.class, cs);
+        assertTrue(rec.exists());
+        assertSame(rec, sources.lookup(StringReader.class, cs));
+
+        ConstructorRecord<CodePointSource> none = sources.resolve(Integer.class, cs);
+        assertFalse(none.exists());
+        assertSame(none, sources.lookup(Integer.class, cs));
+
+        assertSame(registry, registry.withClasses(Arrays.asList(ReaderSource.class)));
+    }
+
+    @Test
+    public void testReadConfigurationStream() throws IOException {
+        final String conf = "# A comment\n"
+                + "  com.example.FooSource com.example.BarSink # trailing\n"
+                + "\n"
+                + "com.example.BazSource\n";
+        List<String> names = ((Provider) _provider).readConfigurationStream(
+                new ByteArrayInputStream(conf.getBytes(StandardCharsets.UTF_8)));
+        assertEquals(Arrays.asList("com.example.FooSource",
+                "com.example.BarSink", "com.example.BazSource"), names);
+    }
+
+    @Test
+    public void testConfigureLoaderOnce() throws IOException {
+        final Path dir = Files.createTempDirectory("codepoint");
+        final Path conf = dir.resolve("codepoint.conf");
+        Files.write(conf, Arrays.asList(
+                "# Test sources",
+                FixtureSource.class.getName()), StandardCharsets.UTF_8);
+        try (CountingLoader loader = new CountingLoader(dir, getClass().getClassLoader())) {
+            Provider provider = (Provider) _provider;
+
+            assertTrue(provider.configure(loader));
+            assertFalse(provider.configure(loader));
+            assertEquals(1, loader._lookups);
+
+            CodePointSource result = provider.getSource(Fixture.class, new Fixture(), StandardCharsets.UTF_8);
+            assertTrue(result.getClass().toString(), result instanceof FixtureSource);
+        } finally {
+            Files.delete(conf);
+            Files.delete(dir);
+        }
+    }
+
+    private static CodePointCounts countsFor(Provider p, Class<?> impl, Charset cs) {
+        for (CodePointCounts c : p.getMetrics().getCounts()) {
+            if (c.getImplementation().equals(impl.getName()) && c.getCharset().equals(cs.name())) {
+                return c;
+            }
+        }
+        return new CodePointCounts(impl.getName(), cs.name(), new long[8]);
+    }
+
+    @Test
+    public void testMetrics() throws Exception {
+        final Charset cs = StandardCharsets.UTF_8;
+        final String text = "{\"caf\u00E9\": \"\u65E5\u672C\"}";
+        final byte[] bytes = text.getBytes(cs);
+        Provider provider = (Provider) _provider;
+        assertFalse(provider.isMetricsEnabled());
+        provider.setMetricsEnabled(true);
+
+        ByteArrayInputStream input = new ByteArrayInputStream(bytes);
+        CodePointCounts before = countsFor(provider, AsciiSource.class, cs);
+        try (CodePointSource source = provider.getSource(getClassFor(input), input, cs)) {
+            assertSourceText(text, source);
+        }
+        CodePointCounts after = countsFor(provider, AsciiSource.class, cs);
+        assertEquals(text.codePointCount(0, text.length()),
+                after.getCodePointsRead() - before.getCodePointsRead());
+        assertEquals(bytes.length, after.getBytesRead() - before.getBytesRead());
+        assertEquals(1, after.getLookups() - before.getLookups());
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        before = countsFor(provider, WriterSink.class, cs);
+        try (CodePointSink sink = provider.getSink(getClassFor(output), output, cs)) {
+            sink.append(text);
+        }
+        after = countsFor(provider, WriterSink.class, cs);
+        assertArrayEquals(bytes, output.toByteArray());
+        assertEquals(text.codePointCount(0, text.length()),
+                after.getCodePointsWritten() - before.getCodePointsWritten());
+        assertEquals(bytes.length, after.getBytesWritten() - before.getBytesWritten());
+
+        CompositeData totals = (CompositeData) ManagementFactory.getPlatformMBeanServer()
+                .getAttribute(new ObjectName(CodePointMetricsMXBean.OBJECT_NAME), "Totals");
+        assertTrue(CodePointCounts.from(totals).getCodePointsRead() >= text.codePointCount(0, text.length()));
+
+        provider.setMetricsEnabled(false);
+        input = new ByteArrayInputStream(bytes);
+        assertTrue(provider.getSource(getClassFor(input), input, cs) instanceof AsciiSource);
+    }
+
+    @Test
+    public void testMetricsCountPolicyErrors() throws Exception {
+        final Charset cs = StandardCharsets.UTF_8;
+        final byte[] bytes = {'a', (byte) 0xFF, 'b', (byte) 0xC3};
+        Provider provider = (Provider) _provider;
+        provider.setMetricsEnabled(true);
+        try {
+            provider.setDecodingPolicy(DecodingPolicy.REPLACE);
+            assertEquals(2, malformedWhileReading(provider, bytes, cs, "a\uFFFDb\uFFFD"));
+
+            provider.setDecodingPolicy(DecodingPolicy.SKIP);
+            assertEquals(2, malformedWhileReading(provider, bytes, cs, "ab"));
+
+            // A reported error is counted once, not again by the source
+            provider.setDecodingPolicy(DecodingPolicy.REPORT);
+            final long before = provider.getMetrics().getTotals().getMalformed();
+            ByteArrayInputStream input = new ByteArrayInputStream(bytes);
+            try (CodePointSource source = provider.getSource(getClassFor(input), input, cs)) {
+                source.next();
+                source.next();
+                fail("Read a malformed byte");
+            } catch (MalformedInputException e) {
+                // expected
+            }
+            assertEquals(1, provider.getMetrics().getTotals().getMalformed() - before);
+
+            provider.setEncodingPolicy(EncodingPolicy.REPLACE);
+            final Charset latin1 = StandardCharsets.ISO_8859_1;
+            final long unmappable = provider.getMetrics().getTotals().getUnmappable();
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            try (CodePointSink sink = provider.getSink(getClassFor(output), output, latin1)) {
+                sink.append("caf\u00E9 \u65E5\u672C");
+            }
+            assertEquals("caf\u00E9 ??", new String(output.toByteArray(), latin1));
+            assertEquals(2, provider.getMetrics().getTotals().getUnmappable() - unmappable);
+        } finally {
+            provider.setMetricsEnabled(false);
+        }
+    }
+
+    private long malformedWhileReading(Provider provider, byte[] bytes, Charset cs, String expected)
+            throws IOException {
+        final long before = provider.getMetrics().getTotals().getMalformed();
+        ByteArrayInputStream input = new ByteArrayInputStream(bytes);
+        try (CodePointSource source = provider.getSource(getClassFor(input), input, cs)) {
+            assertSourceText(expected, source);
+        }
+        return provider.getMetrics().getTotals().getMalformed() - before;
+    }
+
+    @Test
+    public void testFlightRecorderEvents() throws Exception {
+        final Charset cs = StandardCharsets.UTF_8;
+        final byte[] bytes = TEXT.getBytes(cs);
+        final Path file = Files.createTempFile("codepoint", ".jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable("com.frank_mitchell.codepoint.Resolution");
+            recording.enable("com.frank_mitchell.codepoint.Decode").withThreshold(Duration.ZERO);
+            recording.enable("com.frank_mitchell.codepoint.Encode").withThreshold(Duration.ZERO);
+            recording.start();
+
+            ByteArrayInputStream input = new ByteArrayInputStream(bytes);
+            try (CodePointSource source = _provider.getSource(getClassFor(input), input, cs)) {
+                assertSourceText(TEXT, source);
+            }
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            try (CodePointSink sink = _provider.getSink(getClassFor(output), output, cs)) {
+                sink.append(TEXT);
+            }
+            assertArrayEquals(bytes, output.toByteArray());
+
+            recording.stop();
+            recording.dump(file);
+        }
+        try {
+            boolean resolved = false;
+            boolean decoded = false;
+            boolean encoded = false;
+            for (RecordedEvent e : RecordingFile.readAllEvents(file)) {
+                switch (e.getEventType().getName()) {
+                    case "com.frank_mitchell.codepoint.Resolution":
+                        resolved = true;
+                        assertEquals(cs.name(), e.getString("charset"));
+                        break;
+                    case "com.frank_mitchell.codepoint.Decode":
+                        decoded = true;
+                        assertEquals(TEXT.length(), e.getLong("codePoints"));
+                        assertEquals(bytes.length, e.getLong("bytes"));
+                        break;
+                    case "com.frank_mitchell.codepoint.Encode":
+                        encoded = true;
+                        assertEquals(TEXT.length(), e.getLong("codePoints"));
+                        assertEquals(bytes.length, e.getLong("bytes"));
+                        break;
+                    default:
+                        break;
+                }
+            }
+            assertTrue("Resolution event", resolved);
+            assertTrue("Decode event", decoded);
+            assertTrue("Encode event", encoded);
+        } finally {
+            Files.delete(file);
+        }
+
+        // Not recording: no decoration
+        ByteArrayInputStream input = new ByteArrayInputStream(bytes);
+        assertTrue(_provider.getSource(getClassFor(input), input, cs) instanceof AsciiSource);
+    }
+
+    static class CountingLoader extends URLClassLoader {
+        int _lookups = 0;
+
+        CountingLoader(Path dir, ClassLoader parent) throws IOException {
+            super(new URL[] { dir.toUri().toURL() }, parent);
+        }
+
+        @Override
+        public Enumeration<URL> getResources(String name) throws IOException {
+            if (name.equals("codepoint.conf")) {
+                _lookups++;
+            }
+            return super.getResources(name);
+        }
+    }
+
+    public static class Fixture {
+    }
+
+    public static class FixtureSource implements CodePointSource {
+
+        public FixtureSource(Fixture f) {
+        }
+
+        @Override
+        public int getCodePoint() {
+            throw new IllegalStateException();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return false;
+        }
+
+        @Override
+        public void next() throws IOException {
+            throw new java.io.EOFException();
+        }
+
+        @Override
+        public void close() {
+        }
+    }
 }
@@ -0,0 +1,70 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2023 Frank Mitchell.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.frank_mitchell.codepoint.spi;
+
+import com.frank_mitchell.codepoint.CodePointSet;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Frank Mitchell
+ */
+public class CodePointSetTest {
+
+    private static void assertMembers(java.util.function.IntPredicate expected, CodePointSet actual) {
+        for (int cp = 0; cp <= Character.MAX_CODE_POINT; cp++) {
+            if (expected.test(cp) != actual.contains(cp)) {
+                fail(actual + " vs. U+" + Integer.toHexString(cp));
+            }
+        }
+    }
+
+    @Test
+    public void testOf() {
+        final CodePointSet set = CodePointSet.of("ca\u00E9b\uD83D\uDE00a");
+        assertMembers(cp -> cp == 'a' || cp == 'b' || cp == 'c' || cp == 0xE9 || cp == 0x1F600, set);
+        assertEquals("[U+0061..U+0063 U+00E9 U+1F600]", set.toString());
+        assertEquals(set, CodePointSet.range('a', 'c').union(CodePointSet.of(0xE9, 0x1F600)));
+    }
+
+    @Test
+    public void testComplement() {
+        final CodePointSet set = CodePointSet.range('0', '9').union(CodePointSet.range(0x10000, 0x10FFFF));
+        assertMembers(cp -> !(cp >= '0' && cp <= '9') && cp < 0x10000, set.complement());
+        assertEquals(set, set.complement().complement());
+        assertEquals(CodePointSet.ALL, CodePointSet.EMPTY.complement());
+        assertMembers(cp -> false, CodePointSet.EMPTY);
+    }
+
+    @Test
+    public void testMatching() {
+        assertMembers(Character::isLetter, CodePointSet.matching(Character::isLetter));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBadRange() {
+        CodePointSet.range('z', 'a');
+    }
+}
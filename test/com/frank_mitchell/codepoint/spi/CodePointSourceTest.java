@@ -105,6 +105,23 @@ public class CodePointSourceTest  {
         assertEndOfStream();
     }
     
+    @Test
+    public void testBlockRead() throws Exception {
+        push("foobar");
+
+        final int[] block = new int[6];
+        assertTrue(_source.hasNext());
+        assertEquals(4, _source.read(block, 1, 4));
+        assertEquals('b', _source.getCodePoint());
+        assertEquals(2, _source.read(block, 1, 4));
+        assertEquals('r', _source.getCodePoint());
+        assertEquals(-1, _source.read(block, 1, 4));
+        assertEquals(0, _source.read(block, 0, 0));
+        assertEquals("[0, 97, 114, 111, 98, 0]", java.util.Arrays.toString(block));
+
+        assertEndOfStream();
+    }
+
     protected void assertStringRead(String text) throws IOException {
         PrimitiveIterator.OfInt iter = text.codePoints().iterator();
         int index = 0;
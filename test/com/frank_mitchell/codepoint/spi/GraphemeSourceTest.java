@@ -0,0 +1,173 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2023 Frank Mitchell.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.frank_mitchell.codepoint.spi;
+
+import com.frank_mitchell.codepoint.CodePointSource;
+import com.frank_mitchell.codepoint.GraphemeSource;
+import java.io.IOException;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ *
+ * @author Frank Mitchell
+ */
+public class GraphemeSourceTest extends CodePointSourceTest {
+
+    @Override
+    protected CodePointSource createCodePointSource(Object store) throws IOException {
+        return new GraphemeSource(super.createCodePointSource(store));
+    }
+
+    private GraphemeSource graphemes() {
+        return (GraphemeSource) _source;
+    }
+
+    /**
+     * Read everything, with a '|' between clusters.
+     */
+    private String clusters() throws IOException {
+        final StringBuilder result = new StringBuilder();
+        while (_source.hasNext()) {
+            _source.next();
+            if (graphemes().isClusterStart() && result.length() > 0) {
+                result.append('|');
+            }
+            result.appendCodePoint(_source.getCodePoint());
+        }
+        return result.toString();
+    }
+
+    private void assertClusters(String expected) throws IOException {
+        push(expected.replace("|", ""));
+        assertEquals(expected, clusters());
+        assertEquals(expected.split("\\|").length, graphemes().getClusterCount());
+    }
+
+    @Test
+    public void testAscii() throws IOException {
+        assertClusters("a|b|c| |!");
+    }
+
+    @Test
+    public void testLineBreaks() throws IOException {
+        assertClusters("a|\r\n|\n|\r|\u0007|\u0301|b");
+    }
+
+    @Test
+    public void testCombiningMarks() throws IOException {
+        assertClusters("e\u0301\u0323|x|\u0915\u093F|\u0E01\u0E33");
+    }
+
+    @Test
+    public void testHangul() throws IOException {
+        assertClusters("\u1100\u1161\u11A8|\uAC01\u11A8|\u1100\uAC00\u11A8|\u1100");
+    }
+
+    @Test
+    public void testPrepend() throws IOException {
+        assertClusters("\u0600a|b|\u0600|\n");
+    }
+
+    @Test
+    public void testFlags() throws IOException {
+        assertClusters("\uD83C\uDDFA\uD83C\uDDF8|\uD83C\uDDEB\uD83C\uDDF7|\uD83C\uDDE9|x");
+    }
+
+    @Test
+    public void testEmoji() throws IOException {
+        assertClusters("\uD83D\uDC68\u200D\uD83D\uDC69\u200D\uD83D\uDC67|\uD83D\uDC4D\uD83C\uDFFD|\u2764\uFE0F|a\u200D|\uD83D\uDE00|\uD83C\uDFF3\uFE0F\u200D\uD83C\uDF08");
+    }
+
+    @Test
+    public void testEmojiDoubleZwj() throws IOException {
+        assertClusters("\uD83D\uDC69\u200D\u200D|\uD83D\uDC69");
+    }
+
+    @Test
+    public void testEmojiZwjExtendZwj() throws IOException {
+        assertClusters("\uD83D\uDC69\u200D\u0301\u200D|\uD83D\uDC69");
+    }
+
+    @Test
+    public void testEmojiExtendZwj() throws IOException {
+        assertClusters("\uD83D\uDC69\u0301\u200D\uD83D\uDC69");
+    }
+
+    @Test
+    public void testSpans() throws IOException {
+        push("ne\u0301e");
+
+        assertStringRead("ne\u0301");
+        assertEquals(2, graphemes().getIndex());
+        assertEquals(1, graphemes().getClusterStart());
+        assertFalse(graphemes().isClusterStart());
+        assertTrue(graphemes().isClusterEnd());
+        assertEquals(2, graphemes().getClusterCount());
+
+        assertStringRead("e");
+        assertTrue(graphemes().isClusterStart());
+        assertTrue(graphemes().isClusterEnd());
+        assertEquals(3, graphemes().getClusterStart());
+
+        assertEndOfStream();
+    }
+
+    @Test
+    public void testTruncate() throws IOException {
+        push("e\u0301\uD83C\uDDFA\uD83C\uDDF8\uD83D\uDC68\u200D\uD83D\uDC69\u200D\uD83D\uDC67xyz");
+
+        final StringBuilder kept = new StringBuilder();
+        while (_source.hasNext()) {
+            _source.next();
+            kept.appendCodePoint(_source.getCodePoint());
+            if (graphemes().getClusterCount() == 3 && graphemes().isClusterEnd()) {
+                break;
+            }
+        }
+
+        assertEquals("e\u0301\uD83C\uDDFA\uD83C\uDDF8\uD83D\uDC68\u200D\uD83D\uDC69\u200D\uD83D\uDC67", kept.toString());
+    }
+
+    @Test
+    public void testLongCluster() throws IOException {
+        final StringBuilder text = new StringBuilder("a");
+        for (int i = 0; i < 3000; i++) {
+            text.append('\u0301');
+        }
+        push(text + "b");
+
+        final int[] block = new int[2000];
+        assertEquals(2000, _source.read(block, 0, block.length));
+        assertEquals(1, graphemes().getClusterCount());
+        assertEquals(1002, _source.read(block, 0, block.length));
+        assertTrue(graphemes().isClusterStart());
+        assertEquals(2, graphemes().getClusterCount());
+        assertEquals(3001, graphemes().getClusterStart());
+
+        assertEndOfStream();
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2023 Frank Mitchell.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.frank_mitchell.codepoint.spi;
+
+import com.frank_mitchell.codepoint.CodePointSink;
+import com.frank_mitchell.codepoint.JsonEscapingSink;
+import com.frank_mitchell.codepoint.JsonUnescapingSource;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import static org.junit.Assert.assertEquals;
+import org.junit.Test;
+
+/**
+ *
+ * @author Frank Mitchell
+ */
+public class JsonEscapingSinkTest {
+
+    private static final String TEXT = "say \"h\u00E9\\llo\"\n\t\u0001 \uD83D\uDE00 \uD800!";
+
+    private static String escape(String text, boolean asciiOnly, boolean bulk) throws IOException {
+        final StringBuffer result = new StringBuffer();
+        try (CodePointSink sink = new JsonEscapingSink(new StringBufferSink(result, StandardCharsets.UTF_16), asciiOnly)) {
+            if (bulk) {
+                final int[] cps = text.codePoints().toArray();
+                sink.putCodePoints(cps, 0, cps.length);
+            } else {
+                sink.append(text);
+            }
+        }
+        return result.toString();
+    }
+
+    @Test
+    public void testEscape() throws IOException {
+        final String expected = "say \\\"h\u00E9\\\\llo\\\"\\n\\t\\u0001 \uD83D\uDE00 \\ud800!";
+        assertEquals(expected, escape(TEXT, false, false));
+        assertEquals(expected, escape(TEXT, false, true));
+    }
+
+    @Test
+    public void testAsciiOnly() throws IOException {
+        final String expected = "say \\\"h\\u00e9\\\\llo\\\"\\n\\t\\u0001 \\ud83d\\ude00 \\ud800!";
+        assertEquals(expected, escape(TEXT, true, false));
+        assertEquals(expected, escape(TEXT, true, true));
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        final Random random = new Random(3);
+        final StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            final int cp;
+            switch (random.nextInt(4)) {
+                case 0:
+                    cp = random.nextInt(0x80);
+                    break;
+                case 1:
+                    cp = 0x80 + random.nextInt(0xD800 - 0x80);
+                    break;
+                case 2:
+                    cp = 0x10000 + random.nextInt(0x100000);
+                    break;
+                default:
+                    cp = "\"\\/\b\f\n\r\t".charAt(random.nextInt(8));
+                    break;
+            }
+            text.appendCodePoint(cp);
+        }
+        for (boolean asciiOnly : new boolean[] {false, true}) {
+            final JsonUnescapingSource in = new JsonUnescapingSource(
+                    new CharSequenceSource(escape(text.toString(), asciiOnly, true)));
+            final StringBuilder out = new StringBuilder();
+            while (in.hasNext()) {
+                in.next();
+                out.appendCodePoint(in.getCodePoint());
+            }
+            assertEquals(text.toString(), out.toString());
+        }
+    }
+}
@@ -0,0 +1,185 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2023 Frank Mitchell.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.frank_mitchell.codepoint.spi;
+
+import com.frank_mitchell.codepoint.CodePointSource;
+import com.frank_mitchell.codepoint.DecodingPolicy;
+import com.frank_mitchell.codepoint.JsonUnescapingSource;
+import java.io.IOException;
+import java.nio.charset.MalformedInputException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import org.junit.Test;
+
+/**
+ *
+ * @author Frank Mitchell
+ */
+public class JsonUnescapingSourceTest extends CodePointSourceTest {
+
+    @Override
+    protected CodePointSource createCodePointSource(Object store) throws IOException {
+        return new JsonUnescapingSource(super.createCodePointSource(store));
+    }
+
+    private String readAll() throws IOException {
+        final StringBuilder b = new StringBuilder();
+        while (_source.hasNext()) {
+            _source.next();
+            b.appendCodePoint(_source.getCodePoint());
+        }
+        return b.toString();
+    }
+
+    @Test
+    public void testSimpleEscapes() throws IOException {
+        push("a\\\"b\\\\c\\/d\\b\\f\\n\\r\\te");
+
+        assertStringRead("a\"b\\c/d\b\f\n\r\te");
+
+        assertEndOfStream();
+    }
+
+    @Test
+    public void testUnicodeEscapes() throws IOException {
+        push("\\u0041\\u00e9\\u00E9 \\uD83D\\ude00 caf\u00E9 \uD83D\uDE00");
+
+        assertStringRead("A\u00E9\u00E9 \uD83D\uDE00 caf\u00E9 \uD83D\uDE00");
+
+        assertEndOfStream();
+    }
+
+    @Test
+    public void testAcrossBlocks() throws IOException {
+        final StringBuilder text = new StringBuilder();
+        final StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 3000; i++) {
+            text.append(i % 7 == 0 ? "\\uD83D\\uDE00" : "x\\n");
+            expected.append(i % 7 == 0 ? "\uD83D\uDE00" : "x\n");
+        }
+        push(text.toString());
+
+        assertEquals(expected.toString(), readAll());
+    }
+
+    @Test
+    public void testUnpairedSurrogates() throws IOException {
+        _source.setDecodingPolicy(DecodingPolicy.REPLACE);
+        push("\\uD83Da \\uD83D\\n \\uD83D\\uD83D\\uDE00 \\uDE00 \\uD83D");
+
+        assertEquals("\uFFFDa \uFFFD\n \uFFFD\uD83D\uDE00 \uFFFD \uFFFD", readAll());
+    }
+
+    @Test
+    public void testBadEscapes() throws IOException {
+        _source.setDecodingPolicy(DecodingPolicy.SKIP);
+        push("a\\xb\\u12gc\\u12");
+
+        assertEquals("abc", readAll());
+    }
+
+    @Test
+    public void testReport() throws IOException {
+        push("ok\\qrest");
+
+        assertStringRead("ok");
+        try {
+            _source.next();
+            fail("no exception for \\q");
+        } catch (MalformedInputException e) {
+            assertEquals(2, e.getInputLength());
+        }
+        assertStringRead("rest");
+
+        assertEndOfStream();
+    }
+
+    @Test
+    public void testReportUnpairedHigh() throws IOException {
+        // What follows the unpaired escape is read after the exception
+        push("a\\uD800\\nbc|a\\uD800\\u0041bc|a\\uD800bc|a\\uD800\\qbc|a\\uD800\\uDC0");
+
+        assertStringRead("a");
+        assertReports(6);
+        assertStringRead("\nbc|a");
+        assertReports(6);
+        assertStringRead("Abc|a");
+        assertReports(6);
+        assertStringRead("bc|a");
+        assertReports(6);
+        assertReports(2);
+        assertStringRead("bc|a");
+        assertReports(6);
+        assertReports(5);
+
+        assertEndOfStream();
+    }
+
+    @Test
+    public void testReportBlockRead() throws IOException {
+        push("ab\\uD800\\ncd");
+        final int[] buf = new int[16];
+
+        assertEquals(2, _source.read(buf, 0, buf.length));
+        assertEquals('b', _source.getCodePoint());
+        try {
+            _source.read(buf, 0, buf.length);
+            fail("no exception for \\uD800");
+        } catch (MalformedInputException e) {
+            assertEquals(6, e.getInputLength());
+        }
+        assertEquals(3, _source.read(buf, 0, buf.length));
+        assertArrayEquals(new int[] {'\n', 'c', 'd'}, Arrays.copyOf(buf, 3));
+        assertEquals(-1, _source.read(buf, 0, buf.length));
+    }
+
+    private void assertReports(int length) throws IOException {
+        try {
+            _source.next();
+            fail("no exception");
+        } catch (MalformedInputException e) {
+            assertEquals(length, e.getInputLength());
+        }
+    }
+
+    @Test
+    public void testCallback() throws IOException {
+        final List<Long> offsets = new ArrayList<>();
+        final List<byte[]> bad = new ArrayList<>();
+        _source.setDecodingPolicy(DecodingPolicy.callback((offset, bytes) -> {
+            offsets.add(offset);
+            bad.add(bytes);
+            return '?';
+        }));
+        push("\uD83D\uDE00\\uDE00");
+
+        assertEquals("\uD83D\uDE00?", readAll());
+        assertEquals(List.of(4L), offsets);
+        assertArrayEquals(new byte[] {0, '\\', 0, 'u', 0, 'D', 0, 'E', 0, '0', 0, '0'}, bad.get(0));
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2023 Frank Mitchell.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.frank_mitchell.codepoint.spi;
+
+import com.frank_mitchell.codepoint.CodePointSink;
+import com.frank_mitchell.codepoint.MarkupEscapingSink;
+import com.frank_mitchell.codepoint.MarkupEscapingSink.Context;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import static org.junit.Assert.assertEquals;
+import org.junit.Test;
+
+/**
+ *
+ * @author Frank Mitchell
+ */
+public class MarkupEscapingSinkTest {
+
+    private static final String TEXT = "<a href=\"x\">Tom & 'Jerry'</a>";
+
+    private static String escape(String text, Context context, Charset cs, boolean bulk) throws IOException {
+        final StringBuffer result = new StringBuffer();
+        try (CodePointSink sink = new MarkupEscapingSink(new StringBufferSink(result, StandardCharsets.UTF_16), context, cs)) {
+            if (bulk) {
+                final int[] cps = text.codePoints().toArray();
+                sink.putCodePoints(cps, 0, cps.length);
+            } else {
+                sink.append(text);
+            }
+        }
+        return result.toString();
+    }
+
+    private static void assertEscaped(String expected, String text, Context context, Charset cs) throws IOException {
+        assertEquals(expected, escape(text, context, cs, false));
+        assertEquals(expected, escape(text, context, cs, true));
+    }
+
+    @Test
+    public void testHtmlText() throws IOException {
+        assertEscaped("&lt;a href=\"x\"&gt;Tom &amp; 'Jerry'&lt;/a&gt;", TEXT, Context.HTML_TEXT, null);
+    }
+
+    @Test
+    public void testHtmlAttribute() throws IOException {
+        assertEscaped("&lt;a href=&quot;x&quot;&gt;Tom &amp; &#39;Jerry&#39;&lt;/a&gt;", TEXT, Context.HTML_ATTRIBUTE, null);
+    }
+
+    @Test
+    public void testXml() throws IOException {
+        assertEscaped("&lt;a href=&quot;x&quot;&gt;Tom &amp; &apos;Jerry&apos;&lt;/a&gt;", TEXT, Context.XML, null);
+        assertEscaped("a\t\uFFFDb\n\uFFFDc\r\uFFFD\u00E9\uD83D\uDE00", "a\t\u0001b\n\uD800c\r\uFFFE\u00E9\uD83D\uDE00", Context.XML, null);
+    }
+
+    @Test
+    public void testUnencodable() throws IOException {
+        assertEscaped("caf\u00E9 &#x20AC; &#x1F600; &amp;", "caf\u00E9 \u20AC \uD83D\uDE00 &", Context.HTML_TEXT, StandardCharsets.ISO_8859_1);
+        assertEscaped("caf&#xE9; &#xFFFD;", "caf\u00E9 \u0001", Context.XML, StandardCharsets.US_ASCII);
+        assertEscaped("caf\u00E9 \u20AC \uD83D\uDE00", "caf\u00E9 \u20AC \uD83D\uDE00", Context.HTML_TEXT, StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testLongRuns() throws IOException {
+        final String text = "Fish & Chips, ".repeat(1000);
+
+        assertEscaped("Fish &amp; Chips, ".repeat(1000), text, Context.HTML_TEXT, StandardCharsets.ISO_8859_1);
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2023 Frank Mitchell.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.frank_mitchell.codepoint.spi;
+
+import com.frank_mitchell.codepoint.CodePointSource;
+import com.frank_mitchell.codepoint.DecodingPolicy;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Frank Mitchell
+ */
+public class MultiByteSourceTest extends CodePointSourceTest {
+
+    private static final Charset SJIS = Charset.forName("Shift_JIS");
+
+    private static final String[] CHARSETS = {
+        "Shift_JIS", "windows-31j", "EUC-JP", "GBK", "Big5", "EUC-KR"
+    };
+
+    @Override
+    public Object createBackingStore() {
+        ByteBuffer buf = ByteBuffer.allocate(1000);
+        buf.limit(0);
+        return buf;
+    }
+
+    @Override
+    public CodePointSource createCodePointSource(Object store) throws IOException {
+        return new MultiByteSource((ByteBuffer) store, SJIS);
+    }
+
+    @Override
+    public void push(String text) {
+        // Append after the limit, leaving the source's position alone
+        ByteBuffer buf = (ByteBuffer) _store;
+        final int pos = buf.position();
+        buf.position(buf.limit());
+        buf.limit(buf.capacity());
+        buf.put(text.getBytes(SJIS));
+        buf.limit(buf.position());
+        buf.position(pos);
+    }
+
+    private static String read(CodePointSource src) throws IOException {
+        final StringBuilder b = new StringBuilder();
+        while (src.hasNext()) {
+            src.next();
+            b.appendCodePoint(src.getCodePoint());
+        }
+        return b.toString();
+    }
+
+    private static boolean decodes(CharsetDecoder dec, byte[] bytes) {
+        try {
+            dec.reset();
+            dec.decode(ByteBuffer.wrap(bytes));
+            return true;
+        } catch (CharacterCodingException e) {
+            return false;
+        }
+    }
+
+    private static boolean reports(Charset cs, byte[] bytes) throws IOException {
+        try {
+            final MultiByteSource source = new MultiByteSource(ByteBuffer.wrap(bytes), cs);
+            source.setDecodingPolicy(DecodingPolicy.REPORT);
+            read(source);
+            return false;
+        } catch (CharacterCodingException e) {
+            return true;
+        }
+    }
+
+    @Test
+    public void testJapanese() throws Exception {
+        push("abc \u65E5\u672C\u8A9E \uFF76\uFF80\uFF76\uFF85");
+
+        assertStringRead("abc \u65E5\u672C\u8A9E \uFF76\uFF80\uFF76\uFF85");
+
+        assertEndOfStream();
+    }
+
+    /**
+     * Decode every one-, two-, and (for EUC-JP) three-byte sequence with
+     * both this class and the JDK.
+     */
+    @Test
+    public void testMatchesJdk() throws Exception {
+        for (String name : CHARSETS) {
+            final Charset cs = Charset.forName(name);
+            final CharsetDecoder dec = cs.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPORT)
+                    .onUnmappableCharacter(CodingErrorAction.REPORT);
+            final ByteArrayOutputStream valid = new ByteArrayOutputStream();
+            final boolean euc = name.equals("EUC-JP");
+            for (int b1 = 0; b1 < 256; b1++) {
+                for (int b2 = 0; b2 < 256; b2++) {
+                    final byte[] pair = {(byte) b1, (byte) b2};
+                    if (decodes(dec, pair)) {
+                        valid.write(pair);
+                    } else if (!(euc && b1 == 0x8F)) {
+                        assertTrue(name + " accepted " + Integer.toHexString(b1)
+                                + " " + Integer.toHexString(b2), reports(cs, pair));
+                    }
+                    if (euc && b1 == 0x8F) {
+                        for (int b3 = 0; b3 < 256; b3++) {
+                            final byte[] triple = {(byte) b1, (byte) b2, (byte) b3};
+                            if (decodes(dec, triple)) {
+                                valid.write(triple);
+                            }
+                        }
+                    }
+                }
+            }
+            final byte[] bytes = valid.toByteArray();
+            final CharBuffer expected = dec.reset().decode(ByteBuffer.wrap(bytes));
+            assertEquals(name, expected.toString(),
+                    read(new MultiByteSource(new ByteArrayInputStream(bytes), cs)));
+        }
+    }
+
+    @Test
+    public void testMalformed() throws Exception {
+        // a lead byte before ' ', an unmapped pair, and a lead byte at the end
+        final byte[] bytes = {'a', (byte) 0x81, ' ', (byte) 0x81, (byte) 0xAD, 'b', (byte) 0x88};
+        CodePointSource src = new MultiByteSource(ByteBuffer.wrap(bytes), SJIS);
+        src.setDecodingPolicy(DecodingPolicy.REPLACE);
+
+        assertEquals("a\uFFFD \uFFFDb\uFFFD", read(src));
+    }
+}
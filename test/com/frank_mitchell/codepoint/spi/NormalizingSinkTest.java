@@ -0,0 +1,94 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2023 Frank Mitchell.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.frank_mitchell.codepoint.spi;
+
+import com.frank_mitchell.codepoint.CodePointSink;
+import com.frank_mitchell.codepoint.NormalizingSink;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.text.Normalizer;
+import java.util.Random;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Frank Mitchell
+ */
+public class NormalizingSinkTest {
+
+    private static String normalize(String text, Normalizer.Form form, boolean bulk) throws IOException {
+        final StringBuffer result = new StringBuffer();
+        try (CodePointSink sink = new NormalizingSink(new StringBufferSink(result, StandardCharsets.UTF_16), form)) {
+            if (bulk) {
+                final int[] cps = text.codePoints().toArray();
+                sink.putCodePoints(cps, 0, cps.length);
+            } else {
+                sink.append(text);
+            }
+        }
+        return result.toString();
+    }
+
+    @Test
+    public void testMatchesNormalizer() throws IOException {
+        final Random random = new Random(39);
+        for (int i = 0; i < 500; i++) {
+            final String text = NormalizingSourceTest.randomText(random, 1 + random.nextInt(20));
+            for (Normalizer.Form form : Normalizer.Form.values()) {
+                final String expected = Normalizer.normalize(text, form);
+                assertEquals(form + " of " + text, expected, normalize(text, form, false));
+                assertEquals(form + " of " + text, expected, normalize(text, form, true));
+            }
+        }
+    }
+
+    @Test
+    public void testHoldsBackOnlyTheLastSequence() throws IOException {
+        final StringBuffer result = new StringBuffer();
+        final CodePointSink sink = new NormalizingSink(
+                new StringBufferSink(result, StandardCharsets.UTF_16), Normalizer.Form.NFC);
+        sink.append("cafe");
+        assertEquals("caf", result.toString());
+        sink.append("\u0301!");
+        assertEquals("caf\u00E9", result.toString());
+        sink.flush();
+        assertEquals("caf\u00E9!", result.toString());
+        // A flush ends the sequence
+        sink.append("\u0301");
+        sink.close();
+        assertEquals("caf\u00E9!\u0301", result.toString());
+    }
+
+    @Test
+    public void testLongCombiningSequence() throws IOException {
+        final StringBuilder b = new StringBuilder("a");
+        for (int i = 0; i < 200; i++) {
+            b.append('\u0301');
+        }
+        final String text = b.toString();
+        assertEquals(Normalizer.normalize(text, Normalizer.Form.NFC),
+                normalize(text, Normalizer.Form.NFC, false));
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2023 Frank Mitchell.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.frank_mitchell.codepoint.spi;
+
+import com.frank_mitchell.codepoint.CodePointSource;
+import com.frank_mitchell.codepoint.NormalizingSource;
+import java.io.IOException;
+import java.text.Normalizer;
+import java.util.Random;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Frank Mitchell
+ */
+public class NormalizingSourceTest extends CodePointSourceTest {
+
+    /**
+     * Code points that compose, decompose, reorder, or are left alone.
+     */
+    static final String[] PIECES = {
+        "a", "e", "Z", " ", "\u00E9", "\u0301", "\u0323", "\u0307", "\u0345",
+        "\u1100", "\u1161", "\u11A8", "\uAC00", "\uFB01", "\uFF76", "\uFF9E",
+        "\u2126", "\u0958", "\u0344", "\u0F73", "\u1E9B", "\u0B47", "\u0B3E",
+        "\u304B", "\u3099", "\u00C5", "\u212B", "\uD83D\uDE00", "\uD834\uDD5E",
+        "\uD834\uDD65"
+    };
+
+    @Override
+    protected CodePointSource createCodePointSource(Object store) throws IOException {
+        return new NormalizingSource(super.createCodePointSource(store), Normalizer.Form.NFC);
+    }
+
+    /**
+     * Random text built from {@link #PIECES}, reproducibly.
+     */
+    static String randomText(Random random, int pieces) {
+        final StringBuilder b = new StringBuilder();
+        for (int i = 0; i < pieces; i++) {
+            b.append(PIECES[random.nextInt(PIECES.length)]);
+        }
+        return b.toString();
+    }
+
+    private static String normalize(String text, Normalizer.Form form, int block) throws IOException {
+        final CodePointSource source = new NormalizingSource(new CharSequenceSource(text), form);
+        final StringBuilder result = new StringBuilder();
+        final int[] cps = new int[block];
+        if (block == 1) {
+            while (source.hasNext()) {
+                source.next();
+                result.appendCodePoint(source.getCodePoint());
+            }
+        } else {
+            for (int n = source.read(cps, 0, block); n >= 0; n = source.read(cps, 0, block)) {
+                result.append(new String(cps, 0, n));
+            }
+        }
+        return result.toString();
+    }
+
+    @Test
+    public void testMatchesNormalizer() throws IOException {
+        final Random random = new Random(39);
+        for (int i = 0; i < 500; i++) {
+            final String text = randomText(random, 1 + random.nextInt(20));
+            for (Normalizer.Form form : Normalizer.Form.values()) {
+                final String expected = Normalizer.normalize(text, form);
+                assertEquals(form + " of " + text, expected, normalize(text, form, 1));
+                assertEquals(form + " of " + text, expected, normalize(text, form, 7));
+            }
+        }
+    }
+
+    @Test
+    public void testAlreadyNormalized() throws IOException {
+        final String text = "{\"caf\u00E9\": \"\uAC00 \uD83D\uDE00\"}";
+        assertEquals(text, normalize(text, Normalizer.Form.NFC, 1));
+        push(text);
+        assertStringRead(text);
+        assertEndOfStream();
+    }
+
+    @Test
+    public void testLongCombiningSequence() throws IOException {
+        final StringBuilder b = new StringBuilder("a");
+        for (int i = 0; i < 200; i++) {
+            b.append('\u0301');
+        }
+        b.append("b");
+        final String text = b.toString();
+        assertEquals(Normalizer.normalize(text, Normalizer.Form.NFC),
+                normalize(text, Normalizer.Form.NFC, 16));
+    }
+}
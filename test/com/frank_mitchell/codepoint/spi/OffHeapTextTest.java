@@ -0,0 +1,137 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2023 Frank Mitchell.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.frank_mitchell.codepoint.spi;
+
+import com.frank_mitchell.codepoint.CodePointSource;
+import com.frank_mitchell.codepoint.OffHeapText;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+import org.junit.Test;
+
+/**
+ *
+ * @author Frank Mitchell
+ */
+public class OffHeapTextTest extends CodePointSourceTest {
+
+    @Override
+    public Object createBackingStore() {
+        return new OffHeapText(OffHeapText.Format.UTF_8, 64);
+    }
+
+    @Override
+    protected CodePointSource createCodePointSource(Object store) throws IOException {
+        return ((OffHeapText) store).getSource();
+    }
+
+    @Override
+    protected void push(String text) throws IOException {
+        ((OffHeapText) _store).append(text);
+    }
+
+    private static String sample() {
+        final StringBuilder b = new StringBuilder();
+        for (int i = 0; i < 500; i++) {
+            b.append("a \u00E9 \u20AC \uD83D\uDE00 ");
+        }
+        return b.toString();
+    }
+
+    private static String readAll(CodePointSource src) throws IOException {
+        final StringBuilder b = new StringBuilder();
+        final int[] block = new int[100];
+        for (int n = src.read(block, 0, block.length); n >= 0; n = src.read(block, 0, block.length)) {
+            for (int i = 0; i < n; i++) {
+                b.appendCodePoint(block[i]);
+            }
+        }
+        return b.toString();
+    }
+
+    @Test
+    public void testAcrossChunks() throws IOException {
+        final String text = sample();
+        push(text);
+
+        final OffHeapText t = (OffHeapText) _store;
+        assertEquals(text.codePointCount(0, text.length()), t.length());
+        assertEquals(text.getBytes(StandardCharsets.UTF_8).length, t.byteSize());
+        assertEquals(text, readAll(t.getSource()));
+        assertStringRead(text);
+
+        assertEndOfStream();
+    }
+
+    @Test
+    public void testUtf32() throws IOException {
+        final String text = sample();
+        final OffHeapText t = new OffHeapText(OffHeapText.Format.UTF_32, 64);
+        final int[] cps = text.codePoints().toArray();
+        t.putCodePoints(cps, 0, cps.length);
+
+        assertEquals(cps.length, t.length());
+        assertEquals(cps.length * 4L, t.byteSize());
+        assertEquals(0x1F600, t.codePointAt(6));
+        assertEquals(cps[cps.length - 2], t.codePointAt(cps.length - 2));
+        assertEquals(text, readAll(t.getSource()));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testNoRandomAccessInUtf8() throws IOException {
+        push("abc");
+        ((OffHeapText) _store).codePointAt(1);
+    }
+
+    @Test
+    public void testRelease() throws IOException {
+        push("abc");
+        final OffHeapText t = (OffHeapText) _store;
+        t.close();
+        assertStringRead("a");
+
+        t.release();
+
+        assertFalse(t.isLive());
+        try {
+            _source.hasNext();
+            fail("read after release");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        try {
+            t.putCodePoint('d');
+            fail("write after release");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidCodePoint() {
+        ((OffHeapText) _store).putCodePoint(0x110000);
+    }
+}
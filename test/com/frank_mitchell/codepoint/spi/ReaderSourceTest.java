@@ -24,8 +24,14 @@
 package com.frank_mitchell.codepoint.spi;
 
 import com.frank_mitchell.codepoint.CodePointSource;
+import com.frank_mitchell.codepoint.DecodingPolicy;
 import java.io.*;
+import java.nio.charset.MalformedInputException;
+import java.nio.charset.StandardCharsets;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 /**
  *
@@ -86,6 +92,82 @@ public class ReaderSourceTest extends CodePointSourceTest {
         }
     }
     
+    @Test
+    public void testUnpairedSurrogateReport() throws Exception {
+        push("a\uD800b");
+
+        assertStringRead("a");
+        try {
+            _source.next();
+            fail("Read an unpaired surrogate");
+        } catch (MalformedInputException e) {
+            // expected
+        }
+        assertStringRead("b");
+        assertEndOfStream();
+    }
+
+    @Test
+    public void testUnpairedSurrogateReplace() throws Exception {
+        _source.setDecodingPolicy(DecodingPolicy.REPLACE);
+        push("a\uD800b\uDC00c\uD83D\uDE00");
+
+        assertStringRead("a\uFFFDb\uFFFDc\uD83D\uDE00");
+        assertEndOfStream();
+    }
+
+    @Test
+    public void testUnpairedSurrogateCallback() throws Exception {
+        _source.setDecodingPolicy(DecodingPolicy.callback((offset, bad) -> {
+            assertEquals(2L, offset);
+            assertEquals(2, bad.length);
+            return -1;
+        }));
+        push("a\uD800b");
+
+        assertStringRead("ab");
+        assertEndOfStream();
+    }
+
+    @Test
+    public void testMalformedStreamSkip() throws Exception {
+        final byte[] bad = {'a', (byte) 0xFF, 'b'};
+        _source = new ReaderSource(new ByteArrayInputStream(bad), StandardCharsets.UTF_8);
+        assertEquals(DecodingPolicy.REPLACE, _source.getDecodingPolicy());
+        _source.setDecodingPolicy(DecodingPolicy.SKIP);
+
+        assertStringRead("ab");
+        assertEndOfStream();
+    }
+
+    @Test
+    public void testMalformedStreamCounted() throws Exception {
+        final byte[] bad = {'a', (byte) 0xFF, 'b', (byte) 0xC3};
+        final CodePointMetrics.Counters counters = new CodePointMetrics.Counters();
+        final ReaderSource source = new ReaderSource(new ByteArrayInputStream(bad), StandardCharsets.UTF_8);
+        source.setErrorCounters(counters);
+        _source = source;
+
+        assertStringRead("a\uFFFDb\uFFFD");
+        assertEndOfStream();
+        assertEquals(2, counters.malformed.sum());
+    }
+
+    @Test
+    public void testMalformedStreamCallback() throws Exception {
+        final byte[] bad = {'a', (byte) 0xFF, 'b', (byte) 0xC3};
+        _source = new ReaderSource(new ByteArrayInputStream(bad), StandardCharsets.UTF_8);
+        final StringBuilder offsets = new StringBuilder();
+        _source.setDecodingPolicy(DecodingPolicy.callback((offset, bytes) -> {
+            offsets.append(offset).append(':').append(bytes.length).append(' ');
+            return '?';
+        }));
+
+        assertStringRead("a?b?");
+        assertEndOfStream();
+        assertEquals("1:1 3:1 ", offsets.toString());
+    }
+
     // TODO: Throw an exception from inside the Reader.
 
 }
\ No newline at end of file
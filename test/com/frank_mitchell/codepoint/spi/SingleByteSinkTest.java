@@ -0,0 +1,134 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2023 Frank Mitchell.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.frank_mitchell.codepoint.spi;
+
+import com.frank_mitchell.codepoint.CodePointSink;
+import com.frank_mitchell.codepoint.EncodingPolicy;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.UnmappableCharacterException;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Frank Mitchell
+ */
+public class SingleByteSinkTest {
+
+    private static final Charset CP1252 = Charset.forName("windows-1252");
+
+    private ByteArrayOutputStream _out;
+    private CodePointSink _sink;
+
+    @Before
+    public void setUp() {
+        _out = new ByteArrayOutputStream();
+        _sink = new SingleByteSink(_out, CP1252);
+    }
+
+    @Test
+    public void testWindows1252() throws IOException {
+        final String text = "\u20AC caf\u00E9 \u201Cquoted\u201D \u0178\u0000";
+
+        _sink.append(text);
+        _sink.flush();
+
+        assertArrayEquals(text.getBytes(CP1252), _out.toByteArray());
+    }
+
+    @Test
+    public void testMatchesJdk() throws IOException {
+        final StringBuilder b = new StringBuilder();
+        for (char c = 0; c < 0x3000; c++) {
+            b.append(c);
+        }
+        final String text = b.toString();
+        for (String name : new String[] {"ISO-8859-1", "ISO-8859-5", "ISO-8859-15", "windows-1251", "windows-1253"}) {
+            final Charset cs = Charset.forName(name);
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            try (CodePointSink sink = new SingleByteSink(out, cs)) {
+                sink.setEncodingPolicy(EncodingPolicy.REPLACE);
+                sink.append(text);
+            }
+            assertArrayEquals(name, text.getBytes(cs), out.toByteArray());
+        }
+    }
+
+    @Test
+    public void testUnmappableReport() throws IOException {
+        _sink.putCodePoint('a');
+        try {
+            _sink.putCodePoint(0x3041);
+            fail("Wrote an unmappable code point");
+        } catch (UnmappableCharacterException e) {
+            assertEquals(1, e.getInputLength());
+        }
+        _sink.putCodePoint('b');
+        _sink.flush();
+
+        assertEquals("ab", _out.toString(CP1252));
+    }
+
+    @Test
+    public void testUnmappableSkip() throws IOException {
+        _sink.setEncodingPolicy(EncodingPolicy.SKIP);
+        _sink.append("a\u3041b\uD83D\uDE00c");
+        _sink.flush();
+
+        assertEquals("abc", _out.toString(CP1252));
+    }
+
+    @Test
+    public void testUnmappableCallback() throws IOException {
+        final List<Long> offsets = new ArrayList<>();
+        _sink.setEncodingPolicy(EncodingPolicy.callback((offset, cp) -> {
+            offsets.add(offset);
+            return (cp == 0x3041) ? '*' : -1;
+        }));
+        _sink.append("a\u3041b\uD83D\uDE00c");
+        _sink.close();
+
+        assertEquals("a*bc", _out.toString(CP1252));
+        assertEquals(List.of(1L, 3L), offsets);
+    }
+
+    @Test
+    public void testLongOutput() throws IOException {
+        final StringBuilder b = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            b.append("x\u00E9\u20AC");
+        }
+        final String text = b.toString();
+
+        _sink.append(text);
+        _sink.flush();
+
+        assertArrayEquals(text.getBytes(CP1252), _out.toByteArray());
+    }
+}
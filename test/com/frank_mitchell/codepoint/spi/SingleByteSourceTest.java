@@ -0,0 +1,121 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2023 Frank Mitchell.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.frank_mitchell.codepoint.spi;
+
+import com.frank_mitchell.codepoint.CodePointSource;
+import com.frank_mitchell.codepoint.DecodingPolicy;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.charset.UnmappableCharacterException;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Frank Mitchell
+ */
+public class SingleByteSourceTest extends CodePointSourceTest {
+
+    private static final Charset CP1252 = Charset.forName("windows-1252");
+
+    @Override
+    public Object createBackingStore() {
+        ByteBuffer buf = ByteBuffer.allocate(1000);
+        buf.limit(0);
+        return buf;
+    }
+
+    @Override
+    public CodePointSource createCodePointSource(Object store) throws IOException {
+        return new SingleByteSource((ByteBuffer) store, CP1252);
+    }
+
+    @Override
+    public void push(String text) {
+        // Append after the limit, leaving the source's position alone
+        ByteBuffer buf = (ByteBuffer) _store;
+        final int pos = buf.position();
+        buf.position(buf.limit());
+        buf.limit(buf.capacity());
+        buf.put(text.getBytes(CP1252));
+        buf.limit(buf.position());
+        buf.position(pos);
+    }
+
+    @Test
+    public void testWindows1252() throws Exception {
+        push("\u20AC caf\u00E9 \u201Cquoted\u201D \u0178");
+
+        assertStringRead("\u20AC caf\u00E9 \u201Cquoted\u201D \u0178");
+
+        assertEndOfStream();
+    }
+
+    @Test
+    public void testMatchesJdk() throws Exception {
+        final byte[] all = new byte[256];
+        for (int i = 0; i < all.length; i++) {
+            all[i] = (byte) i;
+        }
+        for (String name : new String[] {"ISO-8859-1", "ISO-8859-5", "ISO-8859-15", "windows-1251", "windows-1253"}) {
+            final Charset cs = Charset.forName(name);
+            final String expected = new String(all, cs);
+            _source = new SingleByteSource(new ByteArrayInputStream(all), cs);
+            _source.setDecodingPolicy(DecodingPolicy.REPLACE);
+
+            assertStringRead(expected);
+
+            assertEndOfStream();
+        }
+    }
+
+    @Test
+    public void testUnmappable() throws Exception {
+        // 0x81 has no mapping in windows-1252
+        final byte[] bytes = {'a', (byte) 0x81, 'b'};
+        _source = new SingleByteSource(ByteBuffer.wrap(bytes), CP1252);
+        _source.setDecodingPolicy(DecodingPolicy.REPORT);
+        assertTrue(_source.hasNext());
+        _source.next();
+        try {
+            _source.next();
+            fail("Read an unmapped byte");
+        } catch (UnmappableCharacterException e) {
+            assertEquals(1, e.getInputLength());
+        }
+        _source.setDecodingPolicy(DecodingPolicy.SKIP);
+
+        assertStringRead("b");
+
+        assertEndOfStream();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNotSingleByte() {
+        new SingleByteSource(ByteBuffer.allocate(0), StandardCharsets.UTF_8);
+    }
+}
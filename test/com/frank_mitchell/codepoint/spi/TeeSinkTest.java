@@ -0,0 +1,193 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2023 Frank Mitchell.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.frank_mitchell.codepoint.spi;
+
+import com.frank_mitchell.codepoint.EncodingPolicy;
+import com.frank_mitchell.codepoint.TeeSink;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.charset.UnmappableCharacterException;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.junit.Test;
+
+/**
+ *
+ * @author Frank Mitchell
+ */
+public class TeeSinkTest {
+
+    private static final String TEXT = "caf\u00E9 \u20AC \uD83D\uDE00 ";
+
+    /**
+     * A stream that fails on demand and remembers being closed.
+     */
+    private static final class FlakyStream extends OutputStream {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        boolean failWrites;
+        boolean failClose;
+        boolean closed;
+
+        @Override
+        public void write(int b) throws IOException {
+            if (failWrites) {
+                throw new IOException("write failed");
+            }
+            bytes.write(b);
+        }
+
+        @Override
+        public void close() throws IOException {
+            closed = true;
+            if (failClose) {
+                throw new IOException("close failed");
+            }
+        }
+    }
+
+    @Test
+    public void testGroups() throws IOException {
+        final ByteArrayOutputStream client = new ByteArrayOutputStream();
+        final ByteArrayOutputStream audit = new ByteArrayOutputStream();
+        final ByteArrayOutputStream legacy = new ByteArrayOutputStream();
+        final StringBuffer copy = new StringBuffer();
+        final TeeSink tee = new TeeSink()
+                .addTarget(client, StandardCharsets.UTF_8)
+                .addTarget(audit, StandardCharsets.UTF_8)
+                .addTarget(legacy, StandardCharsets.ISO_8859_1)
+                .addSink(new StringBufferSink(copy, StandardCharsets.UTF_16));
+        tee.setEncodingPolicy(EncodingPolicy.REPLACE);
+
+        assertEquals(2, tee.getGroupCount());
+        final String text = TEXT.repeat(1000);
+        try (TeeSink sink = tee) {
+            final int[] cps = text.codePoints().toArray();
+            sink.putCodePoints(cps, 0, cps.length);
+            sink.append("!");
+        }
+
+        final byte[] utf8 = (text + "!").getBytes(StandardCharsets.UTF_8);
+        assertArrayEquals(utf8, client.toByteArray());
+        assertArrayEquals(utf8, audit.toByteArray());
+        assertEquals("caf\u00E9 ? ? ".repeat(1000) + "!", legacy.toString(StandardCharsets.ISO_8859_1));
+        assertEquals(text + "!", copy.toString());
+    }
+
+    @Test
+    public void testFailingTarget() throws IOException {
+        final FlakyStream bad = new FlakyStream();
+        final FlakyStream good = new FlakyStream();
+        final TeeSink tee = new TeeSink()
+                .addTarget(bad, StandardCharsets.ISO_8859_1)
+                .addTarget(good, StandardCharsets.ISO_8859_1);
+        bad.failWrites = true;
+        bad.failClose = true;
+
+        try {
+            tee.append("hello");
+            tee.flush();
+            fail("no exception from failing target");
+        } catch (IOException e) {
+            assertEquals("write failed", e.getMessage());
+        }
+        assertEquals("hello", good.bytes.toString(StandardCharsets.ISO_8859_1));
+
+        try {
+            tee.close();
+            fail("no exception from failing close");
+        } catch (IOException e) {
+            assertEquals("close failed", e.getMessage());
+        }
+        assertTrue(bad.closed);
+        assertTrue(good.closed);
+    }
+
+    @Test
+    public void testTargetFailsOnce() throws IOException {
+        final Charset[] charsets = {StandardCharsets.ISO_8859_1, Charset.forName("windows-1252")};
+        final FlakyStream[] bad = new FlakyStream[charsets.length];
+        final FlakyStream[] good = new FlakyStream[charsets.length];
+        final TeeSink tee = new TeeSink();
+        for (int i = 0; i < charsets.length; i++) {
+            bad[i] = new FlakyStream();
+            good[i] = new FlakyStream();
+            tee.addTarget(bad[i], charsets[i]).addTarget(good[i], charsets[i]);
+            bad[i].failWrites = true;
+        }
+
+        tee.append("abc");
+        try {
+            tee.flush();
+            fail("no exception from failing target");
+        } catch (IOException e) {
+            assertEquals("write failed", e.getMessage());
+            assertEquals(1, e.getSuppressed().length);
+        }
+        for (FlakyStream out : bad) {
+            out.failWrites = false;
+        }
+        tee.append("def");
+        tee.close();
+
+        for (int i = 0; i < charsets.length; i++) {
+            assertEquals("abcdef", good[i].bytes.toString(charsets[i]));
+            assertEquals("", bad[i].bytes.toString(charsets[i]));
+            assertTrue(bad[i].closed);
+        }
+    }
+
+    @Test
+    public void testUnsupportedPolicyChangesNothing() throws IOException {
+        final ByteArrayOutputStream utf8 = new ByteArrayOutputStream();
+        final ByteArrayOutputStream latin1 = new ByteArrayOutputStream();
+        final TeeSink tee = new TeeSink()
+                .addTarget(latin1, StandardCharsets.ISO_8859_1)
+                .addTarget(utf8, StandardCharsets.UTF_8);
+        try {
+            tee.setEncodingPolicy(EncodingPolicy.callback((offset, cp) -> '?'));
+            fail("UTF-8 output stream took a callback");
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+        assertEquals(EncodingPolicy.REPORT, tee.getEncodingPolicy());
+        try {
+            tee.putCodePoint(0x20AC);
+            fail("ISO-8859-1 group kept the callback");
+        } catch (UnmappableCharacterException e) {
+            // expected
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testAddAfterWrite() throws IOException {
+        final TeeSink tee = new TeeSink().addTarget(new ByteArrayOutputStream(), StandardCharsets.UTF_8);
+        tee.putCodePoint('a');
+        tee.addTarget(new ByteArrayOutputStream(), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2023 Frank Mitchell.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.frank_mitchell.codepoint.spi;
+
+import com.frank_mitchell.codepoint.CodePointSource;
+import com.frank_mitchell.codepoint.DecodingPolicy;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import org.junit.Test;
+
+/**
+ *
+ * @author Frank Mitchell
+ */
+public class Utf16SourceTest extends CodePointSourceTest {
+
+    private static final Charset CS = StandardCharsets.UTF_16LE;
+
+    @Override
+    public Object createBackingStore() {
+        ByteBuffer buf = ByteBuffer.allocate(1000);
+        buf.limit(0);
+        return buf;
+    }
+
+    @Override
+    public CodePointSource createCodePointSource(Object store) throws IOException {
+        return new Utf16Source((ByteBuffer) store, CS);
+    }
+
+    @Override
+    public void push(String text) {
+        // Append after the limit, leaving the source's position alone
+        ByteBuffer buf = (ByteBuffer) _store;
+        final int pos = buf.position();
+        buf.position(buf.limit());
+        buf.limit(buf.capacity());
+        buf.put(text.getBytes(CS));
+        buf.limit(buf.position());
+        buf.position(pos);
+    }
+
+    @Test
+    public void testSupplementary() throws Exception {
+        push("caf\u00E9 \u65E5\u672C \uD83D\uDE00");
+
+        assertStringRead("caf\u00E9 \u65E5\u672C \uD83D\uDE00");
+
+        assertEndOfStream();
+    }
+
+    @Test
+    public void testByteOrderMark() throws Exception {
+        final String text = "\u00E9\uD83D\uDE00";
+        for (Charset cs : new Charset[] {StandardCharsets.UTF_16BE, StandardCharsets.UTF_16LE}) {
+            final byte[] body = text.getBytes(cs);
+            final byte[] bytes = new byte[body.length + 2];
+            bytes[0] = (byte) (cs == StandardCharsets.UTF_16BE ? 0xFE : 0xFF);
+            bytes[1] = (byte) (cs == StandardCharsets.UTF_16BE ? 0xFF : 0xFE);
+            System.arraycopy(body, 0, bytes, 2, body.length);
+            _source = new Utf16Source(new ByteArrayInputStream(bytes), StandardCharsets.UTF_16);
+
+            assertStringRead(text);
+
+            assertEndOfStream();
+        }
+    }
+
+    @Test
+    public void testUnpairedSurrogates() throws Exception {
+        // 'a' U+D800 'b' U+DC00 'c', then half a character
+        final byte[] bytes = {'a', 0, 0x00, (byte) 0xD8, 'b', 0,
+            0x00, (byte) 0xDC, 'c', 0, 'd'};
+        _source = new Utf16Source(ByteBuffer.wrap(bytes), CS);
+        _source.setDecodingPolicy(DecodingPolicy.REPLACE);
+
+        assertStringRead("a\uFFFDb\uFFFDc\uFFFD");
+
+        assertEndOfStream();
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2023 Frank Mitchell.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.frank_mitchell.codepoint.spi;
+
+import com.frank_mitchell.codepoint.CodePointSource;
+import com.frank_mitchell.codepoint.DecodingPolicy;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import org.junit.Test;
+
+/**
+ *
+ * @author Frank Mitchell
+ */
+public class Utf32SourceTest extends CodePointSourceTest {
+
+    private static final Charset CS = Charset.forName("UTF-32LE");
+
+    @Override
+    public Object createBackingStore() {
+        ByteBuffer buf = ByteBuffer.allocate(1000);
+        buf.limit(0);
+        return buf;
+    }
+
+    @Override
+    public CodePointSource createCodePointSource(Object store) throws IOException {
+        return new Utf32Source((ByteBuffer) store, CS);
+    }
+
+    @Override
+    public void push(String text) {
+        // Append after the limit, leaving the source's position alone
+        ByteBuffer buf = (ByteBuffer) _store;
+        final int pos = buf.position();
+        buf.position(buf.limit());
+        buf.limit(buf.capacity());
+        buf.put(text.getBytes(CS));
+        buf.limit(buf.position());
+        buf.position(pos);
+    }
+
+    @Test
+    public void testSupplementary() throws Exception {
+        push("caf\u00E9 \u65E5\u672C \uD83D\uDE00");
+
+        assertStringRead("caf\u00E9 \u65E5\u672C \uD83D\uDE00");
+
+        assertEndOfStream();
+    }
+
+    @Test
+    public void testBigEndianWithoutMark() throws Exception {
+        final String text = "x\uD83D\uDE00";
+        _source = new Utf32Source(new ByteArrayInputStream(text.getBytes("UTF-32BE")),
+                Charset.forName("UTF-32"));
+
+        assertStringRead(text);
+
+        assertEndOfStream();
+    }
+
+    @Test
+    public void testInvalidValues() throws Exception {
+        // a surrogate, a value past U+10FFFF, then half a character
+        final byte[] bytes = {'a', 0, 0, 0, 0, (byte) 0xD8, 0, 0,
+            0, 0, 0x11, 0, 'b', 0, 0, 0, 'c', 0};
+        _source = new Utf32Source(ByteBuffer.wrap(bytes), CS);
+        _source.setDecodingPolicy(DecodingPolicy.REPLACE);
+
+        assertStringRead("a\uFFFD\uFFFDb\uFFFD");
+
+        assertEndOfStream();
+    }
+}
@@ -0,0 +1,182 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2023 Frank Mitchell.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.frank_mitchell.codepoint.spi;
+
+import com.frank_mitchell.codepoint.CodePointSource;
+import com.frank_mitchell.codepoint.Utf8Search;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import org.junit.Test;
+
+/**
+ *
+ * @author Frank Mitchell
+ */
+public class Utf8SearchTest {
+
+    private static byte[] utf8(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String readAll(CodePointSource src) throws IOException {
+        final StringBuilder b = new StringBuilder();
+        while (src.hasNext()) {
+            src.next();
+            b.appendCodePoint(src.getCodePoint());
+        }
+        return b.toString();
+    }
+
+    @Test
+    public void testShortNeedle() {
+        final byte[] hay = utf8("the quick brown fox jumps over the lazy dog");
+
+        assertEquals(16, new Utf8Search("fox").indexOf(hay, 0));
+        assertEquals(4, new Utf8Search("q").indexOf(hay, 0));
+        assertEquals(31, new Utf8Search("th").indexOf(hay, 1));
+        assertEquals(-1, new Utf8Search("cat").indexOf(hay, 0));
+        assertEquals(-1, new Utf8Search("g").indexOf(hay, hay.length));
+    }
+
+    @Test
+    public void testLongNeedle() {
+        final byte[] hay = utf8("the quick brown fox jumps over the lazy dog");
+
+        assertEquals(10, new Utf8Search("brown fox").indexOf(hay, 0));
+        assertEquals(35, new Utf8Search("lazy dog").indexOf(hay, 0));
+        assertEquals(-1, new Utf8Search("lazy dogs").indexOf(hay, 0));
+        assertEquals(-1, new Utf8Search("quick").indexOf(hay, 5));
+    }
+
+    @Test
+    public void testNonAscii() throws IOException {
+        final byte[] hay = utf8("na\u00EFve caf\u00E9 \u65E5\u672C\u8A9E \uD83D\uDE00!");
+
+        assertEquals(10, new Utf8Search("\u00E9").indexOf(hay, 0));
+        assertEquals(13, new Utf8Search("\u65E5\u672C").indexOf(hay, 0));
+        assertEquals(23, new Utf8Search(0x1F600, '!').indexOf(hay, 0));
+        // U+00C3 encodes as C3 83, and U+00E9 as C3 A9: same first byte
+        assertEquals(-1, new Utf8Search("\u00C3").indexOf(hay, 0));
+    }
+
+    @Test
+    public void testEveryAlignment() {
+        for (String needle : new String[] {"x", "xy", "\u00E9", "needle", "\u65E5\u672Cx"}) {
+            final Utf8Search search = new Utf8Search(needle);
+            for (int pad = 0; pad < 20; pad++) {
+                final StringBuilder text = new StringBuilder();
+                for (int i = 0; i < pad; i++) {
+                    text.append('.');
+                }
+                text.append(needle).append("...");
+                assertEquals(needle + " after " + pad, pad, search.indexOf(utf8(text.toString()), 0));
+            }
+        }
+    }
+
+    @Test
+    public void testMatchSource() throws IOException {
+        final ByteBuffer hay = ByteBuffer.wrap(utf8("k\u00F6nig, Stra\u00DFe, ende"));
+        hay.position(1);
+
+        final Utf8Search.Match match = new Utf8Search("Stra\u00DFe").find(hay);
+
+        assertEquals(8, match.getOffset());
+        assertEquals("Stra\u00DFe, ende", readAll(match.getSource()));
+        assertEquals(1, hay.position());
+        assertNull(new Utf8Search("k\u00F6nig").find(hay));
+    }
+
+    @Test
+    public void testMappedFile() throws IOException {
+        final Path file = Files.createTempFile("utf8search", ".txt");
+        try {
+            final StringBuilder text = new StringBuilder();
+            for (int i = 0; i < 10000; i++) {
+                text.append("\u00E9t\u00E9 ");
+            }
+            text.append("hiver");
+            Files.write(file, utf8(text.toString()));
+
+            final Utf8Search.Match match = new Utf8Search("hiver").find(Utf8Search.map(file));
+
+            assertEquals(60000, match.getOffset());
+            assertEquals("hiver", readAll(match.getSource()));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testAgainstIndexOf() {
+        final Random random = new Random(7);
+        final String alphabet = "ab\u00E9\u00E8\u65E5";
+        for (int round = 0; round < 200; round++) {
+            final String needle = randomString(random, alphabet, 1 + random.nextInt(6));
+            final String text = randomString(random, alphabet, 300);
+            final byte[] hay = utf8(text);
+            final int from = random.nextInt(hay.length);
+            final int expected = indexOf(hay, utf8(needle), from);
+
+            assertEquals(expected, new Utf8Search(needle).indexOf(hay, from));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testEmptyNeedle() {
+        new Utf8Search("");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnpairedSurrogate() {
+        new Utf8Search("a\uD800");
+    }
+
+    private static int indexOf(byte[] hay, byte[] needle, int from) {
+        outer:
+        for (int i = from; i + needle.length <= hay.length; i++) {
+            for (int j = 0; j < needle.length; j++) {
+                if (hay[i + j] != needle[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    private static String randomString(Random random, String alphabet, int length) {
+        final StringBuilder b = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            b.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        }
+        return b.toString();
+    }
+}
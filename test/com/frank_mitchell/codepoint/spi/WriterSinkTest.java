@@ -24,7 +24,14 @@
 package com.frank_mitchell.codepoint.spi;
 
 import com.frank_mitchell.codepoint.CodePointSink;
+import com.frank_mitchell.codepoint.EncodingPolicy;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.charset.UnmappableCharacterException;
+import org.junit.Test;
+import static org.junit.Assert.*;
 
 /**
  * @author fmitchell
@@ -45,4 +52,63 @@ public class WriterSinkTest extends CodePointSinkTest {
     protected String getOutput() {
         return _store.toString();
     }
+
+    @Test
+    public void testPolicyChangesAfterWrite() throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final WriterSink sink = new WriterSink(out, StandardCharsets.US_ASCII);
+        sink.putCodePoint('a');
+        try {
+            sink.putCodePoint(0xE9);
+            fail("Wrote an unmappable code point");
+        } catch (UnmappableCharacterException e) {
+            // expected
+        }
+        sink.setEncodingPolicy(EncodingPolicy.REPLACE);
+        sink.putCodePoint(0xE9);
+        sink.putCodePoint('b');
+        sink.setEncodingPolicy(EncodingPolicy.SKIP);
+        sink.putCodePoint(0xE9);
+        sink.putCodePoint('c');
+        sink.flush();
+
+        assertEquals("a?bc", out.toString(StandardCharsets.US_ASCII));
+    }
+
+    @Test
+    public void testStreamCallbackUnsupported() {
+        final WriterSink sink = new WriterSink(new ByteArrayOutputStream());
+        try {
+            sink.setEncodingPolicy(EncodingPolicy.callback((offset, cp) -> '?'));
+            fail("Accepted a callback it can't call");
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+        assertEquals(EncodingPolicy.REPORT, sink.getEncodingPolicy());
+    }
+
+    @Test
+    public void testWriterUnpairedSurrogate() throws IOException {
+        final CodePointSink sink = createSink(_store);
+        sink.putCodePoint('a');
+        try {
+            sink.putCodePoint(0xD800);
+            fail("Wrote an unpaired surrogate");
+        } catch (UnmappableCharacterException e) {
+            assertEquals(1, e.getInputLength());
+        }
+        sink.setEncodingPolicy(EncodingPolicy.REPLACE);
+        sink.putCodePoint(0xDC00);
+        sink.setEncodingPolicy(EncodingPolicy.SKIP);
+        sink.putCodePoint(0xD800);
+        sink.putCodePoint(0x1F600);
+        sink.setEncodingPolicy(EncodingPolicy.callback((offset, cp) -> {
+            assertEquals(8, offset);
+            return '?';
+        }));
+        sink.putCodePoint(0xDBFF);
+        sink.flush();
+
+        assertEquals("a\uFFFD\uD83D\uDE00?", getOutput());
+    }
 }